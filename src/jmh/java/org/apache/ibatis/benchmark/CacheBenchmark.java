@@ -0,0 +1,107 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures cache hits: the second level cache (a new session per invocation, as a web request would do)
+ * and the local session cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Factory {
+
+    SqlSessionFactory sqlSessionFactory;
+
+    @Setup
+    public void setUp() throws Exception {
+      sqlSessionFactory = BenchmarkFixture.createSqlSessionFactory();
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        for (int i = 1; i <= BenchmarkFixture.AUTHOR_COUNT; i++) {
+          sqlSession.getMapper(CachedAuthorMapper.class).selectAuthor(i);
+        }
+        sqlSession.commit();
+      }
+    }
+
+  }
+
+  @State(Scope.Thread)
+  public static class LocalSession {
+
+    SqlSession sqlSession;
+    BlogMapper mapper;
+
+    @Setup
+    public void setUp() throws Exception {
+      SqlSessionFactory sqlSessionFactory = BenchmarkFixture.createSqlSessionFactory();
+      sqlSessionFactory.getConfiguration().setLocalCacheScope(LocalCacheScope.SESSION);
+      sqlSession = sqlSessionFactory.openSession();
+      mapper = sqlSession.getMapper(BlogMapper.class);
+      mapper.selectAuthors();
+    }
+
+    @TearDown
+    public void tearDown() {
+      sqlSession.close();
+    }
+
+  }
+
+  @Benchmark
+  public Author secondLevelCacheHit(Factory factory) {
+    try (SqlSession sqlSession = factory.sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(CachedAuthorMapper.class).selectAuthor(1);
+    }
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Author secondLevelCacheHitContended(Factory factory) {
+    try (SqlSession sqlSession = factory.sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(CachedAuthorMapper.class).selectAuthor(1);
+    }
+  }
+
+  @Benchmark
+  public Object localCacheHit(LocalSession session) {
+    return session.mapper.selectAuthors();
+  }
+
+}
@@ -0,0 +1,89 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.session.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a second level cache built by {@link CacheBuilder} for each eviction policy, without the
+ * surrounding session machinery. Keys are drawn from twice the cache size, so about half of the reads miss
+ * and are followed by a put.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheEvictionBenchmark {
+
+  private static final int SIZE = 1024;
+
+  @Param({"LRU", "CONCURRENT_LRU", "TINY_LFU"})
+  public String eviction;
+
+  private Cache cache;
+
+  @Setup
+  public void setUp() {
+    Configuration configuration = new Configuration();
+    cache = new CacheBuilder(eviction)
+        .addDecorator(configuration.getTypeAliasRegistry().resolveAlias(eviction))
+        .size(SIZE)
+        .build();
+    for (int i = 0; i < SIZE; i++) {
+      cache.putObject(i, i);
+    }
+  }
+
+  private Object getOrPut() {
+    Integer key = ThreadLocalRandom.current().nextInt(SIZE * 2);
+    Object value = cache.getObject(key);
+    if (value == null) {
+      cache.putObject(key, key);
+    }
+    return value;
+  }
+
+  @Benchmark
+  public Object getOrPut1Thread() {
+    return getOrPut();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Object getOrPut8Threads() {
+    return getOrPut();
+  }
+
+}
@@ -0,0 +1,116 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.session.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a read/write second level cache for each {@code cacheCopyStrategy}: every hit returns a private copy
+ * of a cached list of 20 authors with 3 posts each. {@code SERIALIZED_COPY} is the Java serialization path that
+ * read/write caches have always used.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CopyStrategyBenchmark {
+
+  @Param({"SERIALIZED_COPY", "COMPACT_COPY", "DEEP_COPY"})
+  public String copyStrategy;
+
+  private Cache cache;
+
+  private List<AuthorRow> rows;
+
+  @Setup
+  public void setUp() {
+    Configuration configuration = new Configuration();
+    configuration.setCacheCopyStrategy(configuration.getTypeAliasRegistry().resolveAlias(copyStrategy));
+    cache = new CacheBuilder(copyStrategy)
+        .readWrite(true)
+        .copyStrategy(configuration.newCacheCopyStrategy())
+        .build();
+    rows = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      AuthorRow author = new AuthorRow();
+      author.id = i;
+      author.username = "author" + i;
+      author.email = "author" + i + "@example.com";
+      author.balance = new BigDecimal("1234.56");
+      author.created = new Date(1546300800000L + i);
+      for (int j = 0; j < 3; j++) {
+        PostRow post = new PostRow();
+        post.id = i * 3 + j;
+        post.subject = "subject " + j;
+        post.author = author;
+        author.posts.add(post);
+      }
+      rows.add(author);
+    }
+    cache.putObject("rows", rows);
+  }
+
+  @Benchmark
+  public Object hit() {
+    return cache.getObject("rows");
+  }
+
+  @Benchmark
+  public Object put() {
+    cache.putObject("rows", rows);
+    return cache;
+  }
+
+  public static class AuthorRow implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private int id;
+    private String username;
+    private String email;
+    private BigDecimal balance;
+    private Date created;
+    private List<PostRow> posts = new ArrayList<>();
+  }
+
+  public static class PostRow implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private int id;
+    private String subject;
+    private AuthorRow author;
+  }
+
+}
@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link MappedStatement#getBoundSql(Object)} for a dynamic statement,
+ * i.e. the evaluation of the SqlNode tree and the parsing of the resulting SQL.
+ * The {@code mode} parameter compares the interpreted SqlNode tree with the one compiled by the
+ * {@code compileDynamicSql} setting.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DynamicSqlBenchmark {
+
+  private static final String MAPPER = "org/apache/ibatis/benchmark/BlogMapper.xml";
+
+  @Param({"interpreted", "compiled"})
+  public String mode;
+
+  private MappedStatement findAuthors;
+  private AuthorQuery emptyQuery;
+  private AuthorQuery conditionQuery;
+  private AuthorQuery foreachQuery;
+
+  @Setup
+  public void setUp() throws Exception {
+    // getBoundSql does not touch the database, the mapper is parsed on its own
+    Configuration configuration = new Configuration();
+    configuration.setCompileDynamicSql("compiled".equals(mode));
+    try (InputStream inputStream = Resources.getResourceAsStream(MAPPER)) {
+      new XMLMapperBuilder(inputStream, configuration, MAPPER, configuration.getSqlFragments()).parse();
+    }
+    findAuthors = configuration.getMappedStatement("org.apache.ibatis.benchmark.BlogMapper.findAuthors");
+
+    emptyQuery = new AuthorQuery();
+
+    conditionQuery = new AuthorQuery();
+    conditionQuery.setUsername("author%");
+    conditionQuery.setMinAge(30);
+    conditionQuery.setActive(true);
+
+    foreachQuery = new AuthorQuery();
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 1; i <= 20; i++) {
+      ids.add(i);
+    }
+    foreachQuery.setIds(ids);
+  }
+
+  @Benchmark
+  public BoundSql noCondition() {
+    return findAuthors.getBoundSql(emptyQuery);
+  }
+
+  @Benchmark
+  public BoundSql ifConditions() {
+    return findAuthors.getBoundSql(conditionQuery);
+  }
+
+  @Benchmark
+  public BoundSql foreach20() {
+    return findAuthors.getBoundSql(foreachQuery);
+  }
+
+}
@@ -0,0 +1,110 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.executor.parameter.ParameterHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ParameterHandler#setParameters(PreparedStatement)} against a statement prepared once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParameterBindingBenchmark {
+
+  private Configuration configuration;
+  private Connection connection;
+
+  private MappedStatement selectAuthor;
+  private BoundSql selectAuthorSql;
+  private PreparedStatement selectAuthorStatement;
+
+  private MappedStatement findAuthors;
+  private AuthorQuery findAuthorsQuery;
+  private BoundSql findAuthorsSql;
+  private PreparedStatement findAuthorsStatement;
+
+  @Setup
+  public void setUp() throws Exception {
+    SqlSessionFactory sqlSessionFactory = BenchmarkFixture.createSqlSessionFactory();
+    configuration = sqlSessionFactory.getConfiguration();
+    connection = configuration.getEnvironment().getDataSource().getConnection();
+
+    selectAuthor = configuration.getMappedStatement("org.apache.ibatis.benchmark.BlogMapper.selectAuthor");
+    selectAuthorSql = selectAuthor.getBoundSql(1);
+    selectAuthorStatement = connection.prepareStatement(selectAuthorSql.getSql());
+
+    findAuthors = configuration.getMappedStatement("org.apache.ibatis.benchmark.BlogMapper.findAuthors");
+    findAuthorsQuery = new AuthorQuery();
+    findAuthorsQuery.setUsername("author%");
+    findAuthorsQuery.setMinAge(30);
+    findAuthorsQuery.setActive(true);
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 1; i <= 10; i++) {
+      ids.add(i);
+    }
+    findAuthorsQuery.setIds(ids);
+    findAuthorsSql = findAuthors.getBoundSql(findAuthorsQuery);
+    findAuthorsStatement = connection.prepareStatement(findAuthorsSql.getSql());
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    selectAuthorStatement.close();
+    findAuthorsStatement.close();
+    connection.close();
+  }
+
+  @Benchmark
+  public PreparedStatement singleSimpleParameter() throws SQLException {
+    ParameterHandler handler = configuration.newParameterHandler(selectAuthor, 1, selectAuthorSql);
+    handler.setParameters(selectAuthorStatement);
+    return selectAuthorStatement;
+  }
+
+  @Benchmark
+  public PreparedStatement beanPropertiesAndForeachItems() throws SQLException {
+    ParameterHandler handler = configuration.newParameterHandler(findAuthors, findAuthorsQuery, findAuthorsSql);
+    handler.setParameters(findAuthorsStatement);
+    return findAuthorsStatement;
+  }
+
+}
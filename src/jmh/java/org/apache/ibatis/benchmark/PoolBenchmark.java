@@ -0,0 +1,91 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.datasource.pooled.PoolEngine;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures borrowing a connection from {@link PooledDataSource} and returning it, for each {@link PoolEngine}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PoolBenchmark {
+
+  @Param({ "SYNCHRONIZED", "CONCURRENT_BAG" })
+  public PoolEngine engine;
+
+  private PooledDataSource dataSource;
+
+  @Setup
+  public void setUp() throws SQLException {
+    dataSource = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:benchmark_pool", "sa", "");
+    dataSource.setPoolEngine(engine);
+    dataSource.setPoolMaximumActiveConnections(8);
+    dataSource.setPoolMaximumIdleConnections(8);
+    dataSource.getConnection().close();
+  }
+
+  @TearDown
+  public void tearDown() {
+    dataSource.forceCloseAll();
+  }
+
+  @Benchmark
+  public void borrowAndReturn() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      // borrowed and returned
+    }
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void borrowAndReturn8Threads() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      // borrowed and returned
+    }
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void borrowAndReturn32ThreadsOver8Connections() throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      // borrowed and returned
+    }
+  }
+
+}
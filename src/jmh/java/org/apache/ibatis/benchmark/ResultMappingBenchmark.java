@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.reflection.LambdaReflectorFactory;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the whole select path ({@code DefaultSqlSession.selectList} down to
+ * {@code DefaultResultSetHandler.handleResultSets}) for explicit, automatic and nested result mappings.
+ * The local cache scope is STATEMENT, so every invocation executes the query.
+ * The {@code reflectorFactory} parameter compares reflective accessors with the generated ones of
+ * {@link LambdaReflectorFactory}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResultMappingBenchmark {
+
+  @Param({"default", "lambda"})
+  public String reflectorFactory;
+
+  private SqlSession sqlSession;
+  private BlogMapper mapper;
+
+  @Setup
+  public void setUp() throws Exception {
+    SqlSessionFactory sqlSessionFactory = BenchmarkFixture.createSqlSessionFactory();
+    if ("lambda".equals(reflectorFactory)) {
+      sqlSessionFactory.getConfiguration().setReflectorFactory(new LambdaReflectorFactory());
+    }
+    sqlSession = sqlSessionFactory.openSession();
+    mapper = sqlSession.getMapper(BlogMapper.class);
+  }
+
+  @TearDown
+  public void tearDown() {
+    sqlSession.close();
+  }
+
+  @Benchmark
+  public Author simpleSingleRow() {
+    return mapper.selectAuthor(1);
+  }
+
+  @Benchmark
+  public Author autoMappedSingleRow() {
+    return mapper.selectAuthorAutoMapped(1);
+  }
+
+  @Benchmark
+  public List<Author> simple100Rows() {
+    return mapper.selectAuthors();
+  }
+
+  @Benchmark
+  public List<Author> autoMapped100Rows() {
+    return mapper.selectAuthorsAutoMapped();
+  }
+
+  @Benchmark
+  public List<Blog> nested200Rows() {
+    return mapper.selectBlogsWithPosts();
+  }
+
+}
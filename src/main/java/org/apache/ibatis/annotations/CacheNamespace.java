@@ -38,6 +38,16 @@ public @interface CacheNamespace {
 
   long flushInterval() default 0;
 
+  /**
+   * Time to live of each cached entry in milliseconds. 0 means entries do not expire individually.
+   */
+  long timeToLive() default 0;
+
+  /**
+   * Milliseconds before expiry in which a read entry is reloaded in the background. Requires {@link #timeToLive()}.
+   */
+  long refreshAhead() default 0;
+
   int size() default 1024;
 
   boolean readWrite() default true;
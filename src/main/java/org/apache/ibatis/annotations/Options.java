@@ -63,4 +63,10 @@ public @interface Options {
   String keyColumn() default "";
 
   String resultSets() default "";
+
+  /**
+   * Comma separated tables read by a select, or written by an insert/update/delete statement.
+   * Used when {@code cacheInvalidationScope} is {@code TABLE}; parsed from the SQL when empty.
+   */
+  String tables() default "";
 }
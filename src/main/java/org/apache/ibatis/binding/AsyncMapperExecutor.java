@@ -0,0 +1,87 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 默认的异步 Mapper 方法执行器。
+ *
+ * 运行在支持虚拟线程的 JVM 上时，每个任务使用一个虚拟线程；否则，使用守护线程的缓存线程池。
+ *
+ * @see org.apache.ibatis.session.Configuration#getAsyncExecutor()
+ */
+public class AsyncMapperExecutor implements Executor {
+
+  private static final Log log = LogFactory.getLog(AsyncMapperExecutor.class);
+
+  private final ExecutorService delegate;
+
+  public AsyncMapperExecutor() {
+    ExecutorService virtualThreadExecutor = newVirtualThreadPerTaskExecutor();
+    this.delegate = virtualThreadExecutor != null ? virtualThreadExecutor : newCachedDaemonThreadPool();
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    delegate.execute(command);
+  }
+
+  /**
+   * 关闭执行器。已提交的任务仍会执行完成
+   */
+  public void shutdown() {
+    delegate.shutdown();
+  }
+
+  // 通过反射调用 Executors#newVirtualThreadPerTaskExecutor() ，以兼容 Java 8
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (ExecutorService) method.invoke(null);
+    } catch (NoSuchMethodException e) {
+      return null;
+    } catch (Exception e) {
+      // 例如，虚拟线程是预览特性但没有开启
+      if (log.isDebugEnabled()) {
+        log.debug("Virtual threads are not available, using platform threads. Cause: " + e);
+      }
+      return null;
+    }
+  }
+
+  private static ExecutorService newCachedDaemonThreadPool() {
+    AtomicInteger threadNumber = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-async-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), threadFactory);
+  }
+
+}
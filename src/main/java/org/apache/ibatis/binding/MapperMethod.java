@@ -28,12 +28,16 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Mapper方法。在Mapper接口中，每个定义的方法，对应一个MapperMethod对象。
@@ -53,9 +57,41 @@ public class MapperMethod {
   public MapperMethod(Class<?> mapperInterface, Method method, Configuration config) {
     this.command = new SqlCommand(config, mapperInterface, method);
     this.method = new MethodSignature(config, mapperInterface, method);
+    // 异步方法在独立的 SqlSession 中执行，执行完成后 SqlSession 就关闭了
+    if (this.method.returnsFuture() && (command.getType() == SqlCommandType.FLUSH || this.method.returnsCursor())) {
+      throw new BindingException("Mapper method '" + mapperInterface.getName() + "." + method.getName()
+          + "' cannot return a Cursor or flush statements asynchronously.");
+    }
   }
 
   public Object execute(SqlSession sqlSession, Object[] args) {
+    // 返回 CompletableFuture / CompletionStage 的方法，提交到执行器中执行
+    if (method.returnsFuture()) {
+      return executeAsync(sqlSession.getConfiguration(), args);
+    }
+    return executeSync(sqlSession, args);
+  }
+
+  /**
+   * 异步执行。
+   *
+   * 每次执行打开一个新的 SqlSession ，因此看不到调用方 SqlSession 中未提交的修改。
+   * INSERT / UPDATE / DELETE 执行成功后提交，失败时回滚。
+   */
+  private CompletableFuture<Object> executeAsync(Configuration configuration, Object[] args) {
+    SqlSessionFactory sqlSessionFactory = new DefaultSqlSessionFactory(configuration);
+    return CompletableFuture.supplyAsync(() -> {
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        Object result = executeSync(sqlSession, args);
+        if (command.getType() != SqlCommandType.SELECT) {
+          sqlSession.commit();
+        }
+        return result;
+      }
+    }, configuration.getAsyncExecutor());
+  }
+
+  private Object executeSync(SqlSession sqlSession, Object[] args) {
     Object result;
     // 判断mapper中的方法类型，最终调用的还是SqlSession中的方法
     switch (command.getType()) {
@@ -316,6 +352,7 @@ public class MapperMethod {
     private final boolean returnsVoid;
     private final boolean returnsCursor;
     private final boolean returnsOptional;
+    private final boolean returnsFuture;
     private final Class<?> returnType;
     private final String mapKey;
     private final Integer resultHandlerIndex;
@@ -324,14 +361,20 @@ public class MapperMethod {
 
     public MethodSignature(Configuration configuration, Class<?> mapperInterface, Method method) {
       Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, mapperInterface);
+      // CompletableFuture<T> / CompletionStage<T> ，按照 T 解析返回类型
+      this.returnsFuture = isFutureType(method.getReturnType());
+      if (this.returnsFuture) {
+        resolvedReturnType = resolvedReturnType instanceof ParameterizedType
+            ? ((ParameterizedType) resolvedReturnType).getActualTypeArguments()[0] : Object.class;
+      }
       if (resolvedReturnType instanceof Class<?>) {
         this.returnType = (Class<?>) resolvedReturnType;
       } else if (resolvedReturnType instanceof ParameterizedType) {
         this.returnType = (Class<?>) ((ParameterizedType) resolvedReturnType).getRawType();
       } else {
-        this.returnType = method.getReturnType();
+        this.returnType = this.returnsFuture ? Object.class : method.getReturnType();
       }
-      this.returnsVoid = void.class.equals(this.returnType);
+      this.returnsVoid = void.class.equals(this.returnType) || (this.returnsFuture && Void.class.equals(this.returnType));
       this.returnsMany = configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray();
       this.returnsCursor = Cursor.class.equals(this.returnType);
       this.returnsOptional = Optional.class.equals(this.returnType);
@@ -386,6 +429,19 @@ public class MapperMethod {
       return returnsCursor;
     }
 
+    /**
+     * return whether return type is {@code java.util.concurrent.CompletableFuture} or {@code java.util.concurrent.CompletionStage}.
+     * In this case, {@link #getReturnType()} returns the type of the future's value.
+     * @return return {@code true}, if the method is executed asynchronously
+     */
+    public boolean returnsFuture() {
+      return returnsFuture;
+    }
+
+    private static boolean isFutureType(Class<?> type) {
+      return CompletableFuture.class.equals(type) || CompletionStage.class.equals(type);
+    }
+
     /**
      * return whether return type is {@code java.util.Optional}
      * @return return {@code true}, if return type is {@code java.util.Optional}
@@ -62,6 +62,38 @@ public class SqlSourceBuilder extends BaseBuilder {
     return new StaticSqlSource(configuration, sql, handler.getParameterMappings());
   }
 
+  /**
+   * 为已经解析好的 #{} 占位符创建 ParameterMapping 数组，不再扫描 SQL 文本。
+   * 用于编译后的动态 SQL ，占位符在启动时已经解析。
+   *
+   * @param contents 占位符的原始内容，用于异常提示
+   * @param expressions 占位符内容解析后的属性集合，和 contents 一一对应。见 {@link #parseParameterExpression(String)}
+   * @param parameterType 参数类型
+   * @param additionalParameters 附加参数集合
+   * @return ParameterMapping 数组
+   */
+  public List<ParameterMapping> buildParameterMappings(List<String> contents, List<Map<String, String>> expressions,
+      Class<?> parameterType, Map<String, Object> additionalParameters) {
+    ParameterMappingTokenHandler handler = new ParameterMappingTokenHandler(configuration, parameterType, additionalParameters);
+    for (int i = 0; i < contents.size(); i++) {
+      handler.getParameterMappings().add(handler.buildParameterMapping(contents.get(i), expressions.get(i)));
+    }
+    return handler.getParameterMappings();
+  }
+
+  /**
+   * 解析 #{} 占位符的内容，例如 "id, jdbcType=INTEGER" 。
+   */
+  public static Map<String, String> parseParameterExpression(String content) {
+    try {
+      return new ParameterExpression(content);
+    } catch (BuilderException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new BuilderException("Parsing error was found in mapping #{" + content + "}.  Check syntax #{property|(expression), var1=value1, var2=value2, ...} ", ex);
+    }
+  }
+
   // 负责将匹配到的 #{ 和 } 对，替换成相应的 ? 占位符，并获取该 ? 占位符对应的 org.apache.ibatis.mapping.ParameterMapping 对象。
   private static class ParameterMappingTokenHandler extends BaseBuilder implements TokenHandler {
 
@@ -86,7 +118,10 @@ public class SqlSourceBuilder extends BaseBuilder {
     }
 
     private ParameterMapping buildParameterMapping(String content) {
-      Map<String, String> propertiesMap = parseParameterMapping(content);
+      return buildParameterMapping(content, parseParameterExpression(content));
+    }
+
+    private ParameterMapping buildParameterMapping(String content, Map<String, String> propertiesMap) {
       String property = propertiesMap.get("property");
       Class<?> propertyType;
       if (metaParameters.hasGetter(property)) { // issue #448 get type from additional params
@@ -139,16 +174,6 @@ public class SqlSourceBuilder extends BaseBuilder {
       }
       return builder.build();
     }
-
-    private Map<String, String> parseParameterMapping(String content) {
-      try {
-        return new ParameterExpression(content);
-      } catch (BuilderException ex) {
-        throw ex;
-      } catch (Exception ex) {
-        throw new BuilderException("Parsing error was found in mapping #{" + content + "}.  Check syntax #{property|(expression), var1=value1, var2=value2, ...} ", ex);
-      }
-    }
   }
 
 }
@@ -48,4 +48,12 @@ public class StaticSqlSource implements SqlSource {
     return new BoundSql(configuration, sql, parameterMappings, parameterObject);
   }
 
+  public String getSql() {
+    return sql;
+  }
+
+  public List<ParameterMapping> getParameterMappings() {
+    return parameterMappings;
+  }
+
 }
@@ -34,6 +34,8 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import org.apache.ibatis.annotations.Arg;
 import org.apache.ibatis.annotations.CacheNamespace;
@@ -201,8 +203,10 @@ public class MapperAnnotationBuilder {
     if (cacheDomain != null) {
       Integer size = cacheDomain.size() == 0 ? null : cacheDomain.size();
       Long flushInterval = cacheDomain.flushInterval() == 0 ? null : cacheDomain.flushInterval();
+      Long timeToLive = cacheDomain.timeToLive() == 0 ? null : cacheDomain.timeToLive();
+      Long refreshAhead = cacheDomain.refreshAhead() == 0 ? null : cacheDomain.refreshAhead();
       Properties props = convertToProperties(cacheDomain.properties());
-      assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), props);
+      assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, timeToLive, refreshAhead, size, cacheDomain.readWrite(), cacheDomain.blocking(), props);
     }
   }
 
@@ -397,7 +401,8 @@ public class MapperAnnotationBuilder {
           null,
           languageDriver,
           // ResultSets
-          options != null ? nullOrEmpty(options.resultSets()) : null);
+          options != null ? nullOrEmpty(options.resultSets()) : null,
+          options != null ? nullOrEmpty(options.tables()) : null);
     }
   }
 
@@ -429,6 +434,18 @@ public class MapperAnnotationBuilder {
   private Class<?> getReturnType(Method method) {
     Class<?> returnType = method.getReturnType();
     Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, type);
+    // CompletableFuture<T> / CompletionStage<T> ，按照 T 解析结果类型
+    if (CompletableFuture.class.equals(returnType) || CompletionStage.class.equals(returnType)) {
+      resolvedReturnType = resolvedReturnType instanceof ParameterizedType
+          ? ((ParameterizedType) resolvedReturnType).getActualTypeArguments()[0] : Object.class;
+      if (resolvedReturnType instanceof ParameterizedType) {
+        returnType = (Class<?>) ((ParameterizedType) resolvedReturnType).getRawType();
+      } else if (Void.class.equals(resolvedReturnType)) {
+        resolvedReturnType = void.class;
+      } else if (!(resolvedReturnType instanceof Class)) {
+        resolvedReturnType = Object.class;
+      }
+    }
     if (resolvedReturnType instanceof Class) {
       returnType = (Class<?>) resolvedReturnType;
       if (returnType.isArray()) {
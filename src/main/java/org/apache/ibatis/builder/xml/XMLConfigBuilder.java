@@ -18,10 +18,12 @@ package org.apache.ibatis.builder.xml;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.Properties;
+import java.util.concurrent.Executor;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.builder.BaseBuilder;
 import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.cache.CacheInvalidationTransport;
 import org.apache.ibatis.datasource.DataSourceFactory;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.loader.ProxyFactory;
@@ -40,8 +42,10 @@ import org.apache.ibatis.reflection.factory.ObjectFactory;
 import org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
+import org.apache.ibatis.session.CacheInvalidationScope;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.LocalCacheEviction;
 import org.apache.ibatis.session.LocalCacheScope;
 import org.apache.ibatis.transaction.TransactionFactory;
 import org.apache.ibatis.type.JdbcType;
@@ -348,15 +352,17 @@ public class XMLConfigBuilder extends BaseBuilder {
     }
   }
 
-  private void settingsElement(Properties props) {
+  private void settingsElement(Properties props) throws Exception {
     configuration.setAutoMappingBehavior(AutoMappingBehavior.valueOf(props.getProperty("autoMappingBehavior", "PARTIAL")));
     configuration.setAutoMappingUnknownColumnBehavior(AutoMappingUnknownColumnBehavior.valueOf(props.getProperty("autoMappingUnknownColumnBehavior", "NONE")));
     configuration.setCacheEnabled(booleanValueOf(props.getProperty("cacheEnabled"), true));
     configuration.setProxyFactory((ProxyFactory) createInstance(props.getProperty("proxyFactory")));
     configuration.setLazyLoadingEnabled(booleanValueOf(props.getProperty("lazyLoadingEnabled"), false));
     configuration.setAggressiveLazyLoading(booleanValueOf(props.getProperty("aggressiveLazyLoading"), false));
+    configuration.setLazyLoadBatchSize(integerValueOf(props.getProperty("lazyLoadBatchSize"), 0));
     configuration.setMultipleResultSetsEnabled(booleanValueOf(props.getProperty("multipleResultSetsEnabled"), true));
     configuration.setUseColumnLabel(booleanValueOf(props.getProperty("useColumnLabel"), true));
+    configuration.setMapColumnsByIndex(booleanValueOf(props.getProperty("mapColumnsByIndex"), false));
     configuration.setUseGeneratedKeys(booleanValueOf(props.getProperty("useGeneratedKeys"), false));
     configuration.setDefaultExecutorType(ExecutorType.valueOf(props.getProperty("defaultExecutorType", "SIMPLE")));
     configuration.setDefaultStatementTimeout(integerValueOf(props.getProperty("defaultStatementTimeout"), null));
@@ -364,6 +370,19 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setMapUnderscoreToCamelCase(booleanValueOf(props.getProperty("mapUnderscoreToCamelCase"), false));
     configuration.setSafeRowBoundsEnabled(booleanValueOf(props.getProperty("safeRowBoundsEnabled"), false));
     configuration.setLocalCacheScope(LocalCacheScope.valueOf(props.getProperty("localCacheScope", "SESSION")));
+    configuration.setLocalCacheMaxEntries(integerValueOf(props.getProperty("localCacheMaxEntries"), 0));
+    configuration.setLocalCacheMaxBytes(Long.parseLong(props.getProperty("localCacheMaxBytes", "0")));
+    configuration.setLocalCacheEviction(LocalCacheEviction.valueOf(props.getProperty("localCacheEviction", "LRU")));
+    configuration.setLocalCacheStreamingQueries(booleanValueOf(props.getProperty("localCacheStreamingQueries"), true));
+    configuration.setCacheInvalidationScope(CacheInvalidationScope.valueOf(props.getProperty("cacheInvalidationScope", "NAMESPACE")));
+    configuration.setCacheInvalidationBatchDelay(Long.parseLong(props.getProperty("cacheInvalidationBatchDelay", "10")));
+    Class<? extends CacheInvalidationTransport> cacheInvalidationTransport = resolveClass(props.getProperty("cacheInvalidationTransport"));
+    if (cacheInvalidationTransport != null) {
+      configuration.setCacheInvalidationTransport(cacheInvalidationTransport.newInstance());
+    }
+    configuration.setCacheMetricsEnabled(booleanValueOf(props.getProperty("cacheMetricsEnabled"), false));
+    configuration.setCacheMetricsImpl(resolveClass(props.getProperty("cacheMetricsImpl")));
+    configuration.setCacheCopyStrategy(resolveClass(props.getProperty("cacheCopyStrategy")));
     configuration.setJdbcTypeForNull(JdbcType.valueOf(props.getProperty("jdbcTypeForNull", "OTHER")));
     configuration.setLazyLoadTriggerMethods(stringSetValueOf(props.getProperty("lazyLoadTriggerMethods"), "equals,clone,hashCode,toString"));
     configuration.setSafeResultHandlerEnabled(booleanValueOf(props.getProperty("safeResultHandlerEnabled"), true));
@@ -372,6 +391,19 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setCallSettersOnNulls(booleanValueOf(props.getProperty("callSettersOnNulls"), false));
     configuration.setUseActualParamName(booleanValueOf(props.getProperty("useActualParamName"), true));
     configuration.setReturnInstanceForEmptyRow(booleanValueOf(props.getProperty("returnInstanceForEmptyRow"), false));
+    configuration.setCompileDynamicSql(booleanValueOf(props.getProperty("compileDynamicSql"), false));
+    configuration.setDynamicSqlCacheSize(integerValueOf(props.getProperty("dynamicSqlCacheSize"), 64));
+    configuration.setAsyncExecutor((Executor) createInstance(props.getProperty("asyncExecutor")));
+    configuration.setBatchGroupingEnabled(booleanValueOf(props.getProperty("batchGroupingEnabled"), false));
+    configuration.setBatchAutoFlushRows(integerValueOf(props.getProperty("batchAutoFlushRows"), 0));
+    configuration.setBatchAutoFlushBytes(integerValueOf(props.getProperty("batchAutoFlushBytes"), 0));
+    configuration.setBatchStatementAutoFlushRows(integerValueOf(props.getProperty("batchStatementAutoFlushRows"), 0));
+    configuration.setBatchInsertRewriteEnabled(booleanValueOf(props.getProperty("batchInsertRewriteEnabled"), false));
+    configuration.setBatchInsertRewriteMaxRows(integerValueOf(props.getProperty("batchInsertRewriteMaxRows"), 100));
+    configuration.setBatchInsertRewriteMaxParameters(integerValueOf(props.getProperty("batchInsertRewriteMaxParameters"), 2000));
+    configuration.setNestedQueryParallelism(integerValueOf(props.getProperty("nestedQueryParallelism"), 0));
+    configuration.setNestedQueryExecutor((Executor) createInstance(props.getProperty("nestedQueryExecutor")));
+    configuration.setNestedQueryBatchSize(integerValueOf(props.getProperty("nestedQueryBatchSize"), 0));
     configuration.setLogPrefix(props.getProperty("logPrefix"));
     configuration.setConfigurationFactory(resolveClass(props.getProperty("configurationFactory")));
   }
@@ -273,8 +273,10 @@ public class XMLMapperBuilder extends BaseBuilder {
       String eviction = context.getStringAttribute("eviction", "LRU");
       Class<? extends Cache> evictionClass = typeAliasRegistry.resolveAlias(eviction);
 
-      // <3> 获得 flushInterval、size、readWrite、blocking 属性
+      // <3> 获得 flushInterval、timeToLive、refreshAhead、size、readWrite、blocking 属性
       Long flushInterval = context.getLongAttribute("flushInterval");
+      Long timeToLive = context.getLongAttribute("timeToLive");
+      Long refreshAhead = context.getLongAttribute("refreshAhead");
       Integer size = context.getIntAttribute("size");
       boolean readWrite = !context.getBooleanAttribute("readOnly", false);
       boolean blocking = context.getBooleanAttribute("blocking", false);
@@ -283,7 +285,7 @@ public class XMLMapperBuilder extends BaseBuilder {
       Properties props = context.getChildrenAsProperties();
 
       // <5> 创建 Cache 对象
-      builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, props);
+      builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, timeToLive, refreshAhead, size, readWrite, blocking, props);
     }
   }
 
@@ -0,0 +1,46 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 缓存对象的编解码器，将缓存对象转换成字节数组，以便存储在堆外内存等非 Java 对象的存储中。
+ *
+ * 实现类需要是线程安全的，并且有无参构造方法。
+ *
+ * @see org.apache.ibatis.cache.impl.CompactCacheCodec
+ * @see org.apache.ibatis.cache.impl.SerializationCacheCodec
+ */
+public interface CacheCodec {
+
+  /**
+   * 编码
+   *
+   * @param value 缓存对象，可能为 null
+   * @return 字节数组
+   * @throws CacheException 无法编码时
+   */
+  byte[] encode(Object value);
+
+  /**
+   * 解码，每次调用返回新的对象
+   *
+   * @param bytes {@link #encode(Object)} 返回的字节数组
+   * @return 缓存对象
+   * @throws CacheException 无法解码时
+   */
+  Object decode(byte[] bytes);
+
+}
@@ -0,0 +1,47 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 可读写缓存的复制策略，被 {@link org.apache.ibatis.cache.decorators.SerializedCache} 使用，
+ * 保证调用方修改添加的对象或者读取到的对象时，不会影响缓存中的对象。
+ *
+ * 实现类需要是线程安全的，并且有无参构造方法，通过 cacheCopyStrategy 设置或者 &lt;property name="copyStrategy"/&gt; 配置。
+ *
+ * @see org.apache.ibatis.cache.impl.CodecCopyStrategy
+ * @see org.apache.ibatis.cache.impl.DeepCopyStrategy
+ */
+public interface CacheCopyStrategy {
+
+  /**
+   * 添加缓存对象时，转换成存储的形式
+   *
+   * @param value 缓存对象，可能为 null
+   * @return 存储的形式，不能与 value 共享可变的对象
+   * @throws CacheException 无法复制时
+   */
+  Object copyForWrite(Object value);
+
+  /**
+   * 读取缓存对象时，从存储的形式复制出调用方独占的对象
+   *
+   * @param stored {@link #copyForWrite(Object)} 的返回值，不为 null
+   * @return 缓存对象，每次调用返回新的对象（不可变的对象除外）
+   * @throws CacheException 无法复制时
+   */
+  Object copyForRead(Object stored);
+
+}
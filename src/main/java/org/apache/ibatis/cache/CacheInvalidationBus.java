@@ -0,0 +1,239 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 二级缓存的失效总线，使多个节点各自的二级缓存保持一致。
+ *
+ * 本节点提交事务时，{@link org.apache.ibatis.cache.decorators.TransactionalCache} 清空的 Cache 、
+ * 以及表级失效模式下被写入的数据表，会发布到总线。总线在 batchDelay 毫秒内合并这些失效操作，
+ * 例如同一个 Cache 的多次清空只发布一次，清空后不再发布其中 KEY 的移除，然后通过 {@link CacheInvalidationTransport}
+ * 一次性发布到其它节点。其它节点收到消息后，直接操作对应的 Cache 和 {@link TableVersions} ，不会再次发布。
+ *
+ * 消息在本节点提交之后异步发布，其它节点在收到消息之前仍然可能读取到旧的缓存对象。
+ */
+public class CacheInvalidationBus {
+
+  private static final Log log = LogFactory.getLog(CacheInvalidationBus.class);
+
+  private final Configuration configuration;
+  private final CacheInvalidationTransport transport;
+
+  /**
+   * 本节点的编号，用于忽略自己发布的消息
+   */
+  private final String nodeId = UUID.randomUUID().toString();
+
+  /**
+   * 合并失效操作的时间，单位：毫秒。小于等于 0 时，在提交的线程中立即发布
+   */
+  private volatile long batchDelay = 10;
+
+  /**
+   * 合并的失效操作达到该数量时，不再等待，立即发布。被合并掉的操作也会计入
+   */
+  private volatile int maxBatchSize = 1000;
+
+  private final Object lock = new Object();
+  private Set<String> clearedCaches = new HashSet<>();
+  private Map<String, Set<Object>> removedKeys = new HashMap<>();
+  private Set<String> tables = new HashSet<>();
+  private int pendingCount;
+  private boolean flushScheduled;
+  private ScheduledExecutorService scheduler;
+
+  public CacheInvalidationBus(Configuration configuration, CacheInvalidationTransport transport) {
+    this.configuration = configuration;
+    this.transport = transport;
+    transport.start(this::receive);
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public CacheInvalidationTransport getTransport() {
+    return transport;
+  }
+
+  public long getBatchDelay() {
+    return batchDelay;
+  }
+
+  public void setBatchDelay(long batchDelay) {
+    this.batchDelay = batchDelay;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public void setMaxBatchSize(int maxBatchSize) {
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  /**
+   * 发布清空 Cache
+   *
+   * @param cacheId Cache 编号
+   */
+  public void publishClear(String cacheId) {
+    synchronized (lock) {
+      if (clearedCaches.add(cacheId)) {
+        removedKeys.remove(cacheId);
+        pendingCount++;
+      }
+    }
+    scheduleFlush();
+  }
+
+  /**
+   * 发布移除 Cache 中的 KEY ，用于应用自行移除的缓存对象
+   *
+   * @param cacheId Cache 编号
+   * @param key KEY ，需要是可序列化的
+   */
+  public void publishRemove(String cacheId, Object key) {
+    synchronized (lock) {
+      if (clearedCaches.contains(cacheId)) {
+        return;
+      }
+      if (removedKeys.computeIfAbsent(cacheId, k -> new HashSet<>()).add(key)) {
+        pendingCount++;
+      }
+    }
+    scheduleFlush();
+  }
+
+  /**
+   * 发布数据表的失效
+   *
+   * @param tables 数据表的集合
+   */
+  public void publishTables(Collection<String> tables) {
+    synchronized (lock) {
+      for (String table : tables) {
+        if (this.tables.add(table)) {
+          pendingCount++;
+        }
+      }
+    }
+    scheduleFlush();
+  }
+
+  /**
+   * 立即发布合并的失效操作
+   */
+  public void flush() {
+    final CacheInvalidationMessage message;
+    synchronized (lock) {
+      flushScheduled = false;
+      if (pendingCount == 0) {
+        return;
+      }
+      message = new CacheInvalidationMessage(nodeId, clearedCaches, removedKeys, tables);
+      clearedCaches = new HashSet<>();
+      removedKeys = new HashMap<>();
+      tables = new HashSet<>();
+      pendingCount = 0;
+    }
+    try {
+      transport.publish(message);
+    } catch (RuntimeException e) {
+      log.warn("Error publishing " + message + ".  Cause: " + e);
+    }
+  }
+
+  /**
+   * 发布剩余的失效操作，然后关闭传输层
+   */
+  public void close() {
+    final ScheduledExecutorService scheduler;
+    synchronized (lock) {
+      scheduler = this.scheduler;
+      this.scheduler = null;
+    }
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    flush();
+    transport.close();
+  }
+
+  private void scheduleFlush() {
+    final long delay = batchDelay;
+    synchronized (lock) {
+      if (delay > 0 && pendingCount < maxBatchSize) {
+        if (!flushScheduled) {
+          if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+              Thread thread = new Thread(r, "mybatis-cache-invalidation");
+              thread.setDaemon(true);
+              return thread;
+            });
+          }
+          scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+          flushScheduled = true;
+        }
+        return;
+      }
+    }
+    flush();
+  }
+
+  /**
+   * 处理其它节点发布的消息
+   */
+  private void receive(CacheInvalidationMessage message) {
+    if (nodeId.equals(message.getOrigin())) {
+      return;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Received " + message);
+    }
+    for (String cacheId : message.getClearedCaches()) {
+      if (configuration.hasCache(cacheId)) {
+        configuration.getCache(cacheId).clear();
+      }
+    }
+    for (Map.Entry<String, Set<Object>> entry : message.getRemovedKeys().entrySet()) {
+      if (configuration.hasCache(entry.getKey())) {
+        final Cache cache = configuration.getCache(entry.getKey());
+        for (Object key : entry.getValue()) {
+          cache.removeObject(key);
+        }
+      }
+    }
+    if (!message.getTables().isEmpty()) {
+      configuration.getTableVersions().invalidate(message.getTables());
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 二级缓存的失效消息，合并了一个节点在一段时间内提交的所有失效操作。
+ *
+ * 移除的 KEY 需要是可序列化的，{@link CacheKey} 中包含的参数也是如此。
+ */
+public class CacheInvalidationMessage implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * 发布消息的节点编号
+   */
+  private final String origin;
+
+  /**
+   * 需要清空的 Cache 编号的集合
+   */
+  private final Set<String> clearedCaches;
+
+  /**
+   * Cache 编号与需要移除的 KEY 的映射
+   */
+  private final Map<String, Set<Object>> removedKeys;
+
+  /**
+   * 需要失效的数据表的集合，见 {@link TableVersions}
+   */
+  private final Set<String> tables;
+
+  public CacheInvalidationMessage(String origin, Set<String> clearedCaches, Map<String, Set<Object>> removedKeys, Set<String> tables) {
+    this.origin = origin;
+    this.clearedCaches = Collections.unmodifiableSet(clearedCaches);
+    this.removedKeys = Collections.unmodifiableMap(removedKeys);
+    this.tables = Collections.unmodifiableSet(tables);
+  }
+
+  public String getOrigin() {
+    return origin;
+  }
+
+  public Set<String> getClearedCaches() {
+    return clearedCaches;
+  }
+
+  public Map<String, Set<Object>> getRemovedKeys() {
+    return removedKeys;
+  }
+
+  public Set<String> getTables() {
+    return tables;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheInvalidationMessage{origin=" + origin + ", clearedCaches=" + clearedCaches
+        + ", removedKeys=" + removedKeys.keySet() + ", tables=" + tables + "}";
+  }
+
+}
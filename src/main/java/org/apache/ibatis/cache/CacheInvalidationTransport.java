@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * 二级缓存失效消息的传输层。
+ *
+ * 多个节点各自持有二级缓存时，通过传输层将本节点提交的失效消息发布到其它节点，
+ * 例如基于消息队列或者 Redis 的发布订阅实现。实现类需要是线程安全的，并且有一个无参的构造方法。
+ * 发布的消息也可能被本节点收到，{@link CacheInvalidationBus} 会忽略。
+ *
+ * 通过 &lt;setting name="cacheInvalidationTransport" value="..."/&gt; 使用。
+ *
+ * @see CacheInvalidationBus
+ * @see org.apache.ibatis.cache.impl.LocalCacheInvalidationTransport
+ */
+public interface CacheInvalidationTransport {
+
+  /**
+   * 开始接收其它节点发布的消息
+   *
+   * @param listener 消息的处理器
+   */
+  void start(Consumer<CacheInvalidationMessage> listener);
+
+  /**
+   * 发布消息到其它节点
+   *
+   * @param message 消息
+   */
+  void publish(CacheInvalidationMessage message);
+
+  /**
+   * 停止接收消息，并释放资源
+   */
+  void close();
+
+}
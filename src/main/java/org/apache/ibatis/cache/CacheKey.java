@@ -15,9 +15,11 @@
  */
 package org.apache.ibatis.cache;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import org.apache.ibatis.reflection.ArrayUtil;
 
@@ -25,49 +27,77 @@ import org.apache.ibatis.reflection.ArrayUtil;
  * 因为 MyBatis 中的缓存键不是一个简单的 String，
  * 而是通过多个对象组成。
  * 所以 CacheKey 可以理解成将多个对象放在一起，计算其缓存键。
+ *
+ * 每次 {@link #update(Object)} 时增量计算 64 位的有序哈希和与顺序无关的校验和，
+ * 组成元素保存在紧凑的数组中。比较时先比较哈希、校验和、数量，全部相同才逐个比较元素。
+ * 第一个元素通常是 MappedStatement 的编号，同一个 Statement 的编号是同一个字符串对象，可以直接按引用短路。
  */
 public class CacheKey implements Cloneable, Serializable {
 
-  private static final long serialVersionUID = 1146682552656046210L;
+  private static final long serialVersionUID = 1146682552656046211L;
 
   public static final CacheKey NULL_CACHE_KEY = new NullCacheKey();
 
-  private static final int DEFAULT_MULTIPLYER = 37;
-  private static final int DEFAULT_HASHCODE = 17;
+  private static final int DEFAULT_CAPACITY = 8;
+  private static final long DEFAULT_HASH = 0x9E3779B97F4A7C15L;
+
+  /**
+   * RowBounds 默认的 offset 和 limit ，预先装箱，避免每次查询都分配 Integer 对象
+   */
+  private static final Integer ZERO = 0;
+  private static final Integer MAX_VALUE = Integer.MAX_VALUE;
 
-  private final int multiplier;
-  private int hashcode;
+  private long hash;
   private long checksum;
   private int count;
-  // 8/21/2017 - Sonarlint flags this as needing to be marked transient.  While true if content is not serializable, this is not always true and thus should not be marked transient.
-  private List<Object> updateList;
+  private transient Object[] updateList;
 
   public CacheKey() {
-    this.hashcode = DEFAULT_HASHCODE;
-    this.multiplier = DEFAULT_MULTIPLYER;
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param expectedUpdates 预计的 update 次数，用于预先分配数组大小
+   */
+  public CacheKey(int expectedUpdates) {
+    this.hash = DEFAULT_HASH;
     this.count = 0;
-    this.updateList = new ArrayList<>();
+    this.updateList = new Object[Math.max(expectedUpdates, 1)];
   }
 
   public CacheKey(Object[] objects) {
-    this();
+    this(objects.length);
     updateAll(objects);
   }
 
   public int getUpdateCount() {
-    return updateList.size();
+    return count;
   }
 
   public void update(Object object) {
     int baseHashCode = object == null ? 1 : ArrayUtil.hashCode(object);
 
-    count++;
-    checksum += baseHashCode;
-    baseHashCode *= count;
+    if (count == updateList.length) {
+      updateList = Arrays.copyOf(updateList, count << 1);
+    }
+    updateList[count++] = object;
 
-    hashcode = multiplier * hashcode + baseHashCode;
+    checksum += baseHashCode;
+    // 位置参与混合，并在合并前旋转，保证哈希与元素顺序有关
+    hash = Long.rotateLeft(hash, 23) ^ mix((baseHashCode & 0xFFFFFFFFL) | ((long) count << 32));
+  }
 
-    updateList.add(object);
+  /**
+   * 对 int 值的重载，对 RowBounds 的默认值复用已装箱的对象
+   */
+  public void update(int value) {
+    if (value == 0) {
+      update((Object) ZERO);
+    } else if (value == Integer.MAX_VALUE) {
+      update((Object) MAX_VALUE);
+    } else {
+      update((Object) value);
+    }
   }
 
   public void updateAll(Object[] objects) {
@@ -76,6 +106,15 @@ public class CacheKey implements Cloneable, Serializable {
     }
   }
 
+  /**
+   * 64 位的混合函数（SplitMix64 的 finalizer）
+   */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
   @Override
   public boolean equals(Object object) {
     if (this == object) {
@@ -87,7 +126,7 @@ public class CacheKey implements Cloneable, Serializable {
 
     final CacheKey cacheKey = (CacheKey) object;
 
-    if (hashcode != cacheKey.hashcode) {
+    if (hash != cacheKey.hash) {
       return false;
     }
     if (checksum != cacheKey.checksum) {
@@ -97,10 +136,11 @@ public class CacheKey implements Cloneable, Serializable {
       return false;
     }
 
-    for (int i = 0; i < updateList.size(); i++) {
-      Object thisObject = updateList.get(i);
-      Object thatObject = cacheKey.updateList.get(i);
-      if (!ArrayUtil.equals(thisObject, thatObject)) {
+    final Object[] thatList = cacheKey.updateList;
+    for (int i = 0; i < count; i++) {
+      Object thisObject = updateList[i];
+      Object thatObject = thatList[i];
+      if (thisObject != thatObject && !ArrayUtil.equals(thisObject, thatObject)) {
         return false;
       }
     }
@@ -109,14 +149,14 @@ public class CacheKey implements Cloneable, Serializable {
 
   @Override
   public int hashCode() {
-    return hashcode;
+    return (int) (hash ^ (hash >>> 32));
   }
 
   @Override
   public String toString() {
-    StringBuilder returnValue = new StringBuilder().append(hashcode).append(':').append(checksum);
-    for (Object object : updateList) {
-      returnValue.append(':').append(ArrayUtil.toString(object));
+    StringBuilder returnValue = new StringBuilder().append(hashCode()).append(':').append(checksum);
+    for (int i = 0; i < count; i++) {
+      returnValue.append(':').append(ArrayUtil.toString(updateList[i]));
     }
     return returnValue.toString();
   }
@@ -124,8 +164,24 @@ public class CacheKey implements Cloneable, Serializable {
   @Override
   public CacheKey clone() throws CloneNotSupportedException {
     CacheKey clonedCacheKey = (CacheKey) super.clone();
-    clonedCacheKey.updateList = new ArrayList<>(updateList);
+    clonedCacheKey.updateList = Arrays.copyOf(updateList, Math.max(count, 1));
     return clonedCacheKey;
   }
 
+  // 只序列化有效的元素。元素不可序列化时，会抛出 NotSerializableException 异常
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    for (int i = 0; i < count; i++) {
+      out.writeObject(updateList[i]);
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    updateList = new Object[Math.max(count, 1)];
+    for (int i = 0; i < count; i++) {
+      updateList[i] = in.readObject();
+    }
+  }
+
 }
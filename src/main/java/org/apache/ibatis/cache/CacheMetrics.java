@@ -0,0 +1,70 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 缓存的统计指标。
+ *
+ * 每个二级缓存（按 Cache 的编号，即命名空间）对应一个 CacheMetrics 对象，另外所有会话的本地缓存（一级缓存）共用一个。
+ * 通过 &lt;setting name="cacheMetricsEnabled" value="true"/&gt; 开启，通过 cacheMetricsImpl 替换实现类，
+ * 例如将指标转发到应用的监控系统。实现类需要是线程安全的，并且有一个以缓存编号为参数的构造方法。
+ *
+ * @see org.apache.ibatis.session.Configuration#getCacheStats(String)
+ * @see org.apache.ibatis.session.Configuration#getLocalCacheStats()
+ * @see org.apache.ibatis.cache.impl.DefaultCacheMetrics
+ */
+public interface CacheMetrics {
+
+  /**
+   * 记录一次命中
+   */
+  void recordHit();
+
+  /**
+   * 记录一次未命中
+   */
+  void recordMiss();
+
+  /**
+   * 记录一次添加
+   */
+  void recordPut();
+
+  /**
+   * 记录一次淘汰，即因为容量或者垃圾回收被移除，不包括清空缓存
+   */
+  void recordEviction();
+
+  /**
+   * 记录一次未命中后，从数据库加载的耗时
+   *
+   * @param nanos 纳秒
+   */
+  void recordLoad(long nanos);
+
+  /**
+   * 记录一次等待其它线程加载同一个 KEY 的耗时，见 {@link org.apache.ibatis.cache.decorators.BlockingCache}
+   *
+   * @param nanos 纳秒
+   */
+  void recordBlockedWait(long nanos);
+
+  /**
+   * @return 当前的统计快照，不包括缓存的数量
+   */
+  CacheStats getStats();
+
+}
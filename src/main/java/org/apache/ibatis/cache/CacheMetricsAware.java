@@ -0,0 +1,30 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 需要记录统计指标的 Cache 实现类，由 {@link org.apache.ibatis.mapping.CacheBuilder} 在创建时注入 CacheMetrics 对象。
+ *
+ * 自定义的 Cache 实现类也可以实现该接口，例如记录淘汰的次数。
+ */
+public interface CacheMetricsAware {
+
+  /**
+   * @param metrics 统计指标，未开启统计时不会调用
+   */
+  void setCacheMetrics(CacheMetrics metrics);
+
+}
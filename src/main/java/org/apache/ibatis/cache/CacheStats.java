@@ -0,0 +1,137 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 缓存统计指标的不可变快照。
+ *
+ * @see CacheMetrics#getStats()
+ */
+public class CacheStats {
+
+  private final long hitCount;
+  private final long missCount;
+  private final long putCount;
+  private final long evictionCount;
+  private final long loadCount;
+  private final long totalLoadTime;
+  private final long blockedWaitCount;
+  private final long totalBlockedWaitTime;
+
+  /**
+   * 缓存的数量，未知时为 -1
+   */
+  private final int size;
+
+  public CacheStats(long hitCount, long missCount, long putCount, long evictionCount, long loadCount,
+                    long totalLoadTime, long blockedWaitCount, long totalBlockedWaitTime, int size) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.putCount = putCount;
+    this.evictionCount = evictionCount;
+    this.loadCount = loadCount;
+    this.totalLoadTime = totalLoadTime;
+    this.blockedWaitCount = blockedWaitCount;
+    this.totalBlockedWaitTime = totalBlockedWaitTime;
+    this.size = size;
+  }
+
+  /**
+   * @param size 缓存的数量
+   * @return 替换了缓存数量的快照
+   */
+  public CacheStats withSize(int size) {
+    return new CacheStats(hitCount, missCount, putCount, evictionCount, loadCount, totalLoadTime,
+        blockedWaitCount, totalBlockedWaitTime, size);
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public long getRequestCount() {
+    return hitCount + missCount;
+  }
+
+  /**
+   * @return 命中率，没有请求时为 0
+   */
+  public double getHitRatio() {
+    final long requests = getRequestCount();
+    return requests == 0 ? 0 : (double) hitCount / requests;
+  }
+
+  public long getPutCount() {
+    return putCount;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public long getLoadCount() {
+    return loadCount;
+  }
+
+  /**
+   * @return 加载的总耗时，单位纳秒
+   */
+  public long getTotalLoadTime() {
+    return totalLoadTime;
+  }
+
+  /**
+   * @return 加载的平均耗时，单位纳秒
+   */
+  public double getAverageLoadTime() {
+    return loadCount == 0 ? 0 : (double) totalLoadTime / loadCount;
+  }
+
+  public long getBlockedWaitCount() {
+    return blockedWaitCount;
+  }
+
+  /**
+   * @return 等待其它线程加载的总耗时，单位纳秒
+   */
+  public long getTotalBlockedWaitTime() {
+    return totalBlockedWaitTime;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStats{hitCount=" + hitCount
+        + ", missCount=" + missCount
+        + ", hitRatio=" + getHitRatio()
+        + ", putCount=" + putCount
+        + ", evictionCount=" + evictionCount
+        + ", loadCount=" + loadCount
+        + ", totalLoadTime=" + totalLoadTime
+        + ", blockedWaitCount=" + blockedWaitCount
+        + ", totalBlockedWaitTime=" + totalBlockedWaitTime
+        + ", size=" + size
+        + "}";
+  }
+
+}
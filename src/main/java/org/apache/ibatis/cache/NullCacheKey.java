@@ -31,6 +31,11 @@ public final class NullCacheKey extends CacheKey {
     throw new CacheException("Not allowed to update a NullCacheKey instance.");
   }
 
+  @Override
+  public void update(int value) {
+    throw new CacheException("Not allowed to update a NullCacheKey instance.");
+  }
+
   @Override
   public void updateAll(Object[] objects) {
     throw new CacheException("Not allowed to update a NullCacheKey instance.");
@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * 依赖数据表的缓存对象
+ *
+ * 表级失效模式下，{@link org.apache.ibatis.executor.CachingExecutor} 将查询结果包装后添加到二级缓存中，
+ * 读取时通过 {@link TableVersions} 判断是否失效。
+ */
+public class TableDependentValue implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * 查询结果
+   */
+  private Object value;
+
+  /**
+   * 依赖的数据表。为 null 时，表示无法确定，依赖所有数据表
+   */
+  private String[] tables;
+
+  /**
+   * 查询开始时的版本号
+   */
+  private long version;
+
+  private TableDependentValue() {
+    // for CompactCacheCodec
+  }
+
+  public TableDependentValue(Object value, Collection<String> tables, long version) {
+    this.value = value;
+    this.tables = tables == null ? null : tables.toArray(new String[0]);
+    this.version = version;
+  }
+
+  public Object getValue() {
+    return value;
+  }
+
+  public String[] getTables() {
+    return tables;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * @param versions 数据表的版本号
+   * @return 依赖的数据表在查询开始后是否失效过
+   */
+  public boolean isStale(TableVersions versions) {
+    if (tables == null) {
+      return versions.getAnyVersion() > version;
+    }
+    for (String table : tables) {
+      if (versions.getVersion(table) > version) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param written 被写入，但是尚未提交的数据表
+   * @return 是否依赖其中的数据表
+   */
+  public boolean dependsOn(Set<String> written) {
+    if (written.isEmpty()) {
+      return false;
+    }
+    if (tables == null) {
+      return true;
+    }
+    for (String table : tables) {
+      if (written.contains(table)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
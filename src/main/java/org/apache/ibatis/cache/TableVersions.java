@@ -0,0 +1,85 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 数据表的版本号
+ *
+ * 表级失效模式下，事务提交时递增被写入的数据表的版本号。缓存对象记录查询开始时的版本号，
+ * 所依赖的数据表的版本号更大时，缓存对象即失效，不需要逐个查找并移除。
+ * 所有 namespace 共享同一个 TableVersions ，因此其它 namespace 的写入也会使缓存对象失效。
+ *
+ * @see TableDependentValue
+ */
+public class TableVersions {
+
+  private final AtomicLong sequence = new AtomicLong();
+
+  /**
+   * 数据表与其最后一次失效时的版本号的映射
+   */
+  private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+  /**
+   * 任意数据表最后一次失效时的版本号，用于依赖的数据表未知的缓存对象
+   */
+  private final AtomicLong anyVersion = new AtomicLong();
+
+  /**
+   * @return 当前的版本号，需要在执行查询前获得
+   */
+  public long currentVersion() {
+    return sequence.get();
+  }
+
+  /**
+   * 使依赖指定数据表的缓存对象失效，需要在数据库事务提交后调用
+   *
+   * @param tables 数据表的集合
+   */
+  public void invalidate(Collection<String> tables) {
+    if (tables.isEmpty()) {
+      return;
+    }
+    final long version = sequence.incrementAndGet();
+    for (String table : tables) {
+      versions.merge(table, version, Math::max);
+    }
+    anyVersion.accumulateAndGet(version, Math::max);
+  }
+
+  /**
+   * @param table 数据表
+   * @return 数据表最后一次失效时的版本号，没有失效过时为 0
+   */
+  public long getVersion(String table) {
+    final Long version = versions.get(table);
+    return version == null ? 0 : version;
+  }
+
+  /**
+   * @return 任意数据表最后一次失效时的版本号
+   */
+  public long getAnyVersion() {
+    return anyVersion.get();
+  }
+
+}
@@ -30,6 +30,19 @@ public class TransactionalCacheManager {
    */
   private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
 
+  /**
+   * 失效总线，可以为 null
+   */
+  private final CacheInvalidationBus invalidationBus;
+
+  public TransactionalCacheManager() {
+    this(null);
+  }
+
+  public TransactionalCacheManager(CacheInvalidationBus invalidationBus) {
+    this.invalidationBus = invalidationBus;
+  }
+
   public void clear(Cache cache) {
     getTransactionalCache(cache).clear();
   }
@@ -55,7 +68,7 @@ public class TransactionalCacheManager {
   }
 
   private TransactionalCache getTransactionalCache(Cache cache) {
-    return transactionalCaches.computeIfAbsent(cache, TransactionalCache::new);
+    return transactionalCaches.computeIfAbsent(cache, c -> new TransactionalCache(c, invalidationBus));
   }
 
 }
@@ -1,5 +1,5 @@
 /**
- *    Copyright 2009-2018 the original author or authors.
+ *    Copyright 2009-2019 the original author or authors.
  *
  *    Licensed under the Apache License, Version 2.0 (the "License");
  *    you may not use this file except in compliance with the License.
@@ -16,40 +16,77 @@
 package org.apache.ibatis.cache.decorators;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
 
 /**
  * 阻塞的 Cache 实现类。
  * 这里的阻塞比较特殊，当线程去获取缓存值时，如果不存在，则会阻塞后续的其他线程去获取该缓存。
  * 因为当线程A获取不到缓存值时，一般会去设置对应的缓存值。
  * 这样就避免其他也需要该缓存的线程B、C等，重复添加缓存。
+ *
+ * 每个正在加载的缓存键对应一个 {@link Flight} 对象，加载完成（添加缓存或者释放）后即移除，所以锁表的大小不超过正在加载的缓存键的数量。
+ * 线程A添加缓存时，等待的线程B、C等直接拿到该值，无需再次查询缓存。
  */
-public class BlockingCache implements Cache {
+public class BlockingCache implements Cache, CacheMetricsAware {
 
   /**
    * 阻塞等待超时时间
    */
   private long timeout;
 
+  /**
+   * 是否将加载者添加的值直接交给等待的线程。
+   * 装饰的 Cache 会复制值时（例如 {@link SerializedCache} ），需要关闭，等待的线程从装饰的 Cache 中获取各自的副本
+   */
+  private boolean handOffValues = true;
+
   /**
    * 装饰的 Cache 对象
    */
   private final Cache delegate;
 
   /**
-   * 缓存键与 ReentrantLock 对象的映射
+   * 正在加载的缓存键与 Flight 对象的映射
    */
-  private final ConcurrentHashMap<Object, ReentrantLock> locks;
+  private final ConcurrentHashMap<Object, Flight> flights;
+
+  /**
+   * 统计指标，可能为 null
+   */
+  private CacheMetrics metrics;
+
+  /**
+   * 一次缓存加载。由未命中缓存的线程创建，添加缓存或者释放时结束
+   */
+  private static final class Flight {
+
+    /**
+     * 加载者线程
+     */
+    private final Thread owner;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /**
+     * 加载者添加的值。为空时，表示加载者没有添加缓存
+     */
+    private volatile Object value;
+
+    private Flight(Thread owner) {
+      this.owner = owner;
+    }
+  }
 
   public BlockingCache(Cache delegate) {
     this.delegate = delegate;
-    this.locks = new ConcurrentHashMap<>();
+    this.flights = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -68,25 +105,50 @@ public class BlockingCache implements Cache {
       // <2.1> 添加缓存
       delegate.putObject(key, value);
     } finally {
-      // 释放锁
-      releaseLock(key);
+      // 释放锁，并将值交给等待的线程
+      releaseLock(key, value);
     }
   }
 
   @Override
   public Object getObject(Object key) {
-    acquireLock(key);
-    Object value = delegate.getObject(key);
-    if (value != null) {
-      releaseLock(key);
+    final Thread current = Thread.currentThread();
+    while (true) {
+      Flight flight = flights.get(key);
+      if (flight == null) {
+        Object value = delegate.getObject(key);
+        if (value != null) {
+          return value;
+        }
+        // 未命中，尝试成为加载者
+        final Flight newFlight = new Flight(current);
+        flight = flights.putIfAbsent(key, newFlight);
+        if (flight == null) {
+          // 再次查询，避免上一个加载者刚刚添加缓存并释放
+          value = delegate.getObject(key);
+          if (value != null) {
+            releaseLock(key, value);
+          }
+          return value;
+        }
+      }
+      if (flight.owner == current) {
+        // 加载者重复获取，不阻塞
+        return delegate.getObject(key);
+      }
+      // 等待加载者
+      awaitFlight(key, flight);
+      if (flight.value != null) {
+        return handOffValues ? flight.value : delegate.getObject(key);
+      }
+      // 加载者没有添加缓存就释放了，重新竞争成为加载者
     }
-    return value;
   }
 
   @Override
   public Object removeObject(Object key) {
     // despite of its name, this method is called only to release locks
-    releaseLock(key);
+    releaseLock(key, null);
     return null;
   }
 
@@ -100,30 +162,33 @@ public class BlockingCache implements Cache {
     return null;
   }
 
-  private ReentrantLock getLockForKey(Object key) {
-    return locks.computeIfAbsent(key, k -> new ReentrantLock());
-  }
-
-  private void acquireLock(Object key) {
-    Lock lock = getLockForKey(key);
-    if (timeout > 0) {
-      try {
-        boolean acquired = lock.tryLock(timeout, TimeUnit.MILLISECONDS);
+  private void awaitFlight(Object key, Flight flight) {
+    final long start = metrics != null ? System.nanoTime() : 0;
+    try {
+      if (timeout > 0) {
+        boolean acquired = flight.done.await(timeout, TimeUnit.MILLISECONDS);
         if (!acquired) {
           throw new CacheException("Couldn't get a lock in " + timeout + " for the key " +  key + " at the cache " + delegate.getId());
         }
-      } catch (InterruptedException e) {
-        throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
+      } else {
+        flight.done.await();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
+    } finally {
+      if (metrics != null) {
+        metrics.recordBlockedWait(System.nanoTime() - start);
       }
-    } else {
-      lock.lock();
     }
   }
 
-  private void releaseLock(Object key) {
-    ReentrantLock lock = locks.get(key);
-    if (lock.isHeldByCurrentThread()) {
-      lock.unlock();
+  private void releaseLock(Object key, Object value) {
+    Flight flight = flights.get(key);
+    if (flight != null && flight.owner == Thread.currentThread()) {
+      flights.remove(key, flight);
+      flight.value = value;
+      flight.done.countDown();
     }
   }
 
@@ -134,4 +199,17 @@ public class BlockingCache implements Cache {
   public void setTimeout(long timeout) {
     this.timeout = timeout;
   }
+
+  public boolean isHandOffValues() {
+    return handOffValues;
+  }
+
+  public void setHandOffValues(boolean handOffValues) {
+    this.handOffValues = handOffValues;
+  }
+
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
 }
@@ -0,0 +1,210 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
+
+/**
+ * 按缓存对象各自的存活时间过期的 Cache 实现类。
+ *
+ * 与 {@link ScheduledCache} 定时清空整个缓存不同，每个缓存对象在添加 timeToLive 毫秒后单独过期，
+ * 不会在同一时刻全部失效，从而避免清空后大量相同的查询同时访问数据库。
+ *
+ * 设置了 refreshAhead 时，缓存对象在过期前 refreshAhead 毫秒内被读取，会请求一次提前刷新：
+ * 读取者仍然得到当前的值，{@link org.apache.ibatis.executor.CachingExecutor} 通过 {@link #pollRefreshRequest()}
+ * 获知请求后，在后台重新执行查询并替换缓存。同一个缓存对象在刷新完成或者过期前，只会请求一次。
+ *
+ * 在 Mapper XML 中，通过 &lt;cache timeToLive="..." refreshAhead="..."/&gt; 使用。
+ */
+public class ExpiringCache implements Cache, CacheMetricsAware {
+
+  /**
+   * 当前线程最近一次读取到的、需要提前刷新的 KEY
+   */
+  private static final ThreadLocal<Object> REFRESH_REQUEST = new ThreadLocal<>();
+
+  private final Cache delegate;
+
+  /**
+   * 存活时间，单位：毫秒
+   */
+  private long timeToLive = 60 * 60 * 1000; // 1 hour
+
+  /**
+   * 过期前多久请求提前刷新，单位：毫秒。小于等于 0 时不刷新
+   */
+  private long refreshAhead;
+
+  /**
+   * KEY 与过期时间的映射
+   */
+  private final Map<Object, Long> expirations = new ConcurrentHashMap<>();
+
+  /**
+   * 已经请求提前刷新的 KEY
+   */
+  private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+  /**
+   * 最后一次清理过期对象的时间，单位：毫秒
+   */
+  private volatile long lastPurge = System.currentTimeMillis();
+
+  /**
+   * 统计指标，可能为 null
+   */
+  private CacheMetrics metrics;
+
+  public ExpiringCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * 获得并清除当前线程的提前刷新请求
+   *
+   * @return 需要提前刷新的 KEY ，没有时返回 null
+   */
+  public static Object pollRefreshRequest() {
+    final Object key = REFRESH_REQUEST.get();
+    if (key != null) {
+      REFRESH_REQUEST.remove();
+    }
+    return key;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    final long now = System.currentTimeMillis();
+    purgeWhenStale(now);
+    delegate.putObject(key, value);
+    expirations.put(key, now + timeToLive);
+    refreshing.remove(key);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    final Long expiration = expirations.get(key);
+    if (expiration == null) {
+      return delegate.getObject(key);
+    }
+    final long now = System.currentTimeMillis();
+    if (now >= expiration) {
+      expire(key, expiration);
+      return null;
+    }
+    final Object value = delegate.getObject(key);
+    if (value == null) {
+      // 已经被装饰的 Cache 淘汰
+      expirations.remove(key, expiration);
+    } else if (refreshAhead > 0 && now >= expiration - refreshAhead && refreshing.add(key)) {
+      REFRESH_REQUEST.set(key);
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    expirations.remove(key);
+    refreshing.remove(key);
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    expirations.clear();
+    refreshing.clear();
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  public void setTimeToLive(long timeToLive) {
+    this.timeToLive = timeToLive;
+  }
+
+  public long getRefreshAhead() {
+    return refreshAhead;
+  }
+
+  public void setRefreshAhead(long refreshAhead) {
+    this.refreshAhead = refreshAhead;
+  }
+
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  private void expire(Object key, Long expiration) {
+    if (expirations.remove(key, expiration)) {
+      refreshing.remove(key);
+      delegate.removeObject(key);
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
+    }
+  }
+
+  /**
+   * 每隔 timeToLive 清理一次过期对象，包括不再被读取的对象
+   */
+  private void purgeWhenStale(long now) {
+    if (now - lastPurge < timeToLive) {
+      return;
+    }
+    lastPurge = now;
+    for (Map.Entry<Object, Long> entry : expirations.entrySet()) {
+      if (now >= entry.getValue()) {
+        expire(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+}
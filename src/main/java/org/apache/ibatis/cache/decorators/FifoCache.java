@@ -20,12 +20,14 @@ import java.util.LinkedList;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
 
 /**
  * 基于先进先出的淘汰机制的 Cache 实现类。
  * 当然，目前 FifoCache 的逻辑实现上，有一定的问题。
  */
-public class FifoCache implements Cache {
+public class FifoCache implements Cache, CacheMetricsAware {
 
   private final Cache delegate;
 
@@ -39,6 +41,11 @@ public class FifoCache implements Cache {
    */
   private int size;
 
+  /**
+   * 统计指标，可能为 null
+   */
+  private CacheMetrics metrics;
+
   public FifoCache(Cache delegate) {
     this.delegate = delegate;
     this.keyList = new LinkedList<>();
@@ -59,6 +66,11 @@ public class FifoCache implements Cache {
     this.size = size;
   }
 
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     cycleKeyList(key);
@@ -91,6 +103,9 @@ public class FifoCache implements Cache {
     if (keyList.size() > size) {
       Object oldestKey = keyList.removeFirst();
       delegate.removeObject(oldestKey);
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
     }
   }
 
@@ -15,16 +15,22 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
 /**
  * 支持打印日志的 Cache 实现类。
+ *
+ * 自身线程安全的缓存（例如 ConcurrentCache）不再被 SynchronizedCache 包装，所以使用 LongAdder 计数，
+ * 再同步到供子类读取的 {@link #requests} 和 {@link #hits} 。
  */
-public class LoggingCache implements Cache {
+public class LoggingCache implements Cache, CacheMetricsAware {
 
   /**
    * MyBatis Log 对象
@@ -39,12 +45,20 @@ public class LoggingCache implements Cache {
   /**
    * 统计请求缓存的次数
    */
-  protected int requests = 0;
+  protected volatile int requests = 0;
 
   /**
    * 统计命中缓存的次数
    */
-  protected int hits = 0;
+  protected volatile int hits = 0;
+
+  private final LongAdder requestCount = new LongAdder();
+  private final LongAdder hitCount = new LongAdder();
+
+  /**
+   * 统计指标，可能为 null 。命中和未命中由 {@link org.apache.ibatis.executor.CachingExecutor} 记录，这里只记录添加
+   */
+  private CacheMetrics metrics;
 
   public LoggingCache(Cache delegate) {
     this.delegate = delegate;
@@ -64,20 +78,25 @@ public class LoggingCache implements Cache {
   @Override
   public void putObject(Object key, Object object) {
     delegate.putObject(key, object);
+    if (metrics != null) {
+      metrics.recordPut();
+    }
   }
 
   @Override
   public Object getObject(Object key) {
 
     // 请求次数 ++
-    requests++;
+    requestCount.increment();
+    requests = requestCount.intValue();
 
     // 获得缓存
     final Object value = delegate.getObject(key);
 
     // 如果命中缓存，则++
     if (value != null) {
-      hits++;
+      hitCount.increment();
+      hits = hitCount.intValue();
     }
     if (log.isDebugEnabled()) {
       log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
@@ -100,6 +119,11 @@ public class LoggingCache implements Cache {
     return null;
   }
 
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public int hashCode() {
     return delegate.hashCode();
@@ -114,7 +138,7 @@ public class LoggingCache implements Cache {
    * @return 命中比率
    */
   private double getHitRatio() {
-    return (double) hits / (double) requests;
+    return (double) hitCount.sum() / (double) requestCount.sum();
   }
 
 }
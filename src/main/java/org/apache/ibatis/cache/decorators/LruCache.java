@@ -20,11 +20,13 @@ import java.util.Map;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
 
 /**
  * 基于最少使用的淘汰机制的 Cache 实现类。
  */
-public class LruCache implements Cache {
+public class LruCache implements Cache, CacheMetricsAware {
 
   private final Cache delegate;
   private Map<Object, Object> keyMap;
@@ -34,6 +36,11 @@ public class LruCache implements Cache {
    */
   private Object eldestKey;
 
+  /**
+   * 统计指标，可能为 null
+   */
+  private CacheMetrics metrics;
+
   public LruCache(Cache delegate) {
     this.delegate = delegate;
     setSize(1024);
@@ -64,6 +71,11 @@ public class LruCache implements Cache {
     };
   }
 
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     delegate.putObject(key, value);
@@ -97,6 +109,9 @@ public class LruCache implements Cache {
     if (eldestKey != null) {
       delegate.removeObject(eldestKey);
       eldestKey = null;
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
     }
   }
 
@@ -22,6 +22,7 @@ import org.apache.ibatis.cache.Cache;
 /**
  * 定时清空整个容器的 Cache 实现类。
  * 每次缓存操作时，都调用 #clearWhenStale() 方法，根据情况，是否清空全部缓存。
+ * 装饰的缓存自身线程安全时，不会再被 SynchronizedCache 包装，所以清空时间使用 volatile ，并且同时只有一个线程清空。
  */
 public class ScheduledCache implements Cache {
 
@@ -30,12 +31,12 @@ public class ScheduledCache implements Cache {
   /**
    * 清空间隔，单位：毫秒
    */
-  protected long clearInterval;
+  protected volatile long clearInterval;
 
   /**
    * 最后清空时间，单位：毫秒
    */
-  protected long lastClear;
+  protected volatile long lastClear;
 
   public ScheduledCache(Cache delegate) {
     this.delegate = delegate;
@@ -98,7 +99,12 @@ public class ScheduledCache implements Cache {
 
   private boolean clearWhenStale() {
     if (System.currentTimeMillis() - lastClear > clearInterval) {
-      clear();
+      synchronized (this) {
+        // 其它线程可能已经清空
+        if (System.currentTimeMillis() - lastClear > clearInterval) {
+          clear();
+        }
+      }
       return true;
     }
     return false;
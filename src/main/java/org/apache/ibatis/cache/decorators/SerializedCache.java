@@ -15,29 +15,41 @@
  */
 package org.apache.ibatis.cache.decorators;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheCopyStrategy;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.impl.CodecCopyStrategy;
 import org.apache.ibatis.io.Resources;
 
 /**
  * 支持序列化值的 Cache 实现类。
+ *
+ * 添加和读取时，通过 {@link CacheCopyStrategy} 复制缓存对象，默认使用 Java 序列化。
  */
 public class SerializedCache implements Cache {
 
   private final Cache delegate;
 
+  private volatile CacheCopyStrategy copyStrategy;
+
   public SerializedCache(Cache delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param delegate 装饰的 Cache
+   * @param copyStrategy 复制策略，为 null 时使用 Java 序列化
+   */
+  public SerializedCache(Cache delegate, CacheCopyStrategy copyStrategy) {
     this.delegate = delegate;
+    this.copyStrategy = copyStrategy == null ? new CodecCopyStrategy() : copyStrategy;
   }
 
   @Override
@@ -53,7 +65,7 @@ public class SerializedCache implements Cache {
   @Override
   public void putObject(Object key, Object object) {
     if (object == null || object instanceof Serializable) {
-      delegate.putObject(key, serialize((Serializable) object));
+      delegate.putObject(key, copyStrategy.copyForWrite(object));
     } else {
       throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
     }
@@ -62,7 +74,7 @@ public class SerializedCache implements Cache {
   @Override
   public Object getObject(Object key) {
     Object object = delegate.getObject(key);
-    return object == null ? null : deserialize((byte[]) object);
+    return object == null ? null : copyStrategy.copyForRead(object);
   }
 
   @Override
@@ -90,26 +102,20 @@ public class SerializedCache implements Cache {
     return delegate.equals(obj);
   }
 
-  private byte[] serialize(Serializable value) {
-    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-         ObjectOutputStream oos = new ObjectOutputStream(bos)) {
-      oos.writeObject(value);
-      oos.flush();
-      return bos.toByteArray();
-    } catch (Exception e) {
-      throw new CacheException("Error serializing object.  Cause: " + e, e);
-    }
+  public CacheCopyStrategy getCopyStrategy() {
+    return copyStrategy;
   }
 
-  private Serializable deserialize(byte[] value) {
-    Serializable result;
-    try (ByteArrayInputStream bis = new ByteArrayInputStream(value);
-         ObjectInputStream ois = new CustomObjectInputStream(bis)) {
-      result = (Serializable) ois.readObject();
+  /**
+   * 设置复制策略的类名，即 &lt;property name="copyStrategy" value="..."/&gt; 。会清空缓存，因为存储的形式可能不同
+   */
+  public void setCopyStrategy(String copyStrategy) {
+    try {
+      this.copyStrategy = (CacheCopyStrategy) Resources.classForName(copyStrategy).getDeclaredConstructor().newInstance();
     } catch (Exception e) {
-      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+      throw new CacheException("Error creating cache copy strategy '" + copyStrategy + "' for cache '" + getId() + "'.  Cause: " + e, e);
     }
-    return result;
+    delegate.clear();
   }
 
   public static class CustomObjectInputStream extends ObjectInputStream {
@@ -22,15 +22,18 @@ import java.util.LinkedList;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
 
 /**
  * 基于 java.lang.ref.SoftReference 的 Cache 实现类。
  */
-public class SoftCache implements Cache {
+public class SoftCache implements Cache, CacheMetricsAware {
   private final Deque<Object> hardLinksToAvoidGarbageCollection;
   private final ReferenceQueue<Object> queueOfGarbageCollectedEntries;
   private final Cache delegate;
   private int numberOfHardLinks;
+  private CacheMetrics metrics;
 
   public SoftCache(Cache delegate) {
     this.delegate = delegate;
@@ -55,6 +58,11 @@ public class SoftCache implements Cache {
     this.numberOfHardLinks = size;
   }
 
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     removeGarbageCollectedItems();
@@ -107,6 +115,9 @@ public class SoftCache implements Cache {
     SoftEntry sv;
     while ((sv = (SoftEntry) queueOfGarbageCollectedEntries.poll()) != null) {
       delegate.removeObject(sv.key);
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
     }
   }
 
@@ -22,6 +22,7 @@ import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheInvalidationBus;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -41,12 +42,21 @@ public class TransactionalCache implements Cache {
   private static final Log log = LogFactory.getLog(TransactionalCache.class);
 
   private final Cache delegate;
+  private final CacheInvalidationBus invalidationBus;
   private boolean clearOnCommit;
   private final Map<Object, Object> entriesToAddOnCommit;
   private final Set<Object> entriesMissedInCache;
 
   public TransactionalCache(Cache delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param invalidationBus 提交时，将清空 Cache 发布到其它节点。可以为 null
+   */
+  public TransactionalCache(Cache delegate, CacheInvalidationBus invalidationBus) {
     this.delegate = delegate;
+    this.invalidationBus = invalidationBus;
     this.clearOnCommit = false;
     this.entriesToAddOnCommit = new HashMap<>();
     this.entriesMissedInCache = new HashSet<>();
@@ -101,6 +111,9 @@ public class TransactionalCache implements Cache {
   public void commit() {
     if (clearOnCommit) {
       delegate.clear();
+      if (invalidationBus != null) {
+        invalidationBus.publishClear(delegate.getId());
+      }
     }
     flushPendingEntries();
     reset();
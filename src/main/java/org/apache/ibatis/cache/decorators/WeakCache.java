@@ -22,15 +22,18 @@ import java.util.LinkedList;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
 
 /**
  * 基于 java.lang.ref.WeakReference 的 Cache 实现类。
  */
-public class WeakCache implements Cache {
+public class WeakCache implements Cache, CacheMetricsAware {
   private final Deque<Object> hardLinksToAvoidGarbageCollection;
   private final ReferenceQueue<Object> queueOfGarbageCollectedEntries;
   private final Cache delegate;
   private int numberOfHardLinks;
+  private CacheMetrics metrics;
 
   public WeakCache(Cache delegate) {
     this.delegate = delegate;
@@ -54,6 +57,11 @@ public class WeakCache implements Cache {
     this.numberOfHardLinks = size;
   }
 
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     removeGarbageCollectedItems();
@@ -101,6 +109,9 @@ public class WeakCache implements Cache {
     WeakEntry sv;
     while ((sv = (WeakEntry) queueOfGarbageCollectedEntries.poll()) != null) {
       delegate.removeObject(sv.key);
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
     }
   }
 
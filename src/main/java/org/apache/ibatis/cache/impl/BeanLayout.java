@@ -0,0 +1,110 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.Externalizable;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可以按字段读写（复制）的结果对象（Bean）的结构，由 {@link CompactCacheCodec} 和 {@link DeepCopyStrategy} 共用。
+ *
+ * 要求实现 Serializable ，有无参构造方法，父类都不是 JDK 的类，并且没有自定义 writeObject / readObject / writeReplace / readResolve 方法，
+ * 这样按字段处理与 Java 序列化的结果相同。transient 字段不处理。
+ */
+final class BeanLayout {
+
+  /**
+   * 不能按字段读写的类
+   */
+  private static final BeanLayout NOT_A_BEAN = new BeanLayout(null, null);
+
+  private static final ClassValue<BeanLayout> LAYOUTS = new ClassValue<BeanLayout>() {
+    @Override
+    protected BeanLayout computeValue(Class<?> type) {
+      return of(type);
+    }
+  };
+
+  final Constructor<?> constructor;
+  final Field[] fields;
+
+  private BeanLayout(Constructor<?> constructor, Field[] fields) {
+    this.constructor = constructor;
+    this.fields = fields;
+  }
+
+  /**
+   * @param type 类
+   * @return 类的结构，不能按字段读写时返回 null
+   */
+  static BeanLayout forClass(Class<?> type) {
+    final BeanLayout layout = LAYOUTS.get(type);
+    return layout == NOT_A_BEAN ? null : layout;
+  }
+
+  private static BeanLayout of(Class<?> type) {
+    if (!Serializable.class.isAssignableFrom(type) || Externalizable.class.isAssignableFrom(type)
+        || type.isArray() || type.isEnum() || Proxy.isProxyClass(type) || type.getName().contains("$$")) {
+      return NOT_A_BEAN;
+    }
+    final List<Field> fields = new ArrayList<>();
+    try {
+      for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+        final String name = current.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.") || hasSerializationMethods(current)) {
+          return NOT_A_BEAN;
+        }
+        for (Field field : current.getDeclaredFields()) {
+          final int modifiers = field.getModifiers();
+          if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)) {
+            field.setAccessible(true);
+            fields.add(field);
+          }
+        }
+      }
+      final Constructor<?> constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      return new BeanLayout(constructor, fields.toArray(new Field[0]));
+    } catch (Exception e) {
+      // 没有无参构造方法，或者无法访问字段
+      return NOT_A_BEAN;
+    }
+  }
+
+  private static boolean hasSerializationMethods(Class<?> type) {
+    for (Method method : type.getDeclaredMethods()) {
+      switch (method.getName()) {
+        case "writeObject":
+        case "readObject":
+        case "readObjectNoData":
+        case "writeReplace":
+        case "readResolve":
+          return true;
+        default:
+          break;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,159 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * 有上限的本地缓存（一级缓存），按数量和（或）估算的字节数限制。
+ *
+ * 添加时不会立即淘汰，而是由 {@link #trim(BiPredicate)} 在调用方认为安全的时机淘汰，
+ * 因为 BaseExecutor 的本地缓存中，正在执行的查询的占位对象、等待延迟加载的结果都不能被移除。
+ * 淘汰的顺序由 LinkedHashMap 决定：按访问顺序时为 LRU ，按添加顺序时为 FIFO 。
+ *
+ * 和 PerpetualCache 一样，不是线程安全的，只在一个会话内使用。
+ *
+ * @see org.apache.ibatis.session.Configuration#newLocalCache(String)
+ */
+public class BoundedLocalCache extends PerpetualCache {
+
+  private final LinkedHashMap<Object, Object> entries;
+
+  /**
+   * 最大数量，0 表示不限制
+   */
+  private final int maxEntries;
+
+  /**
+   * 最大的估算字节数，0 表示不限制
+   */
+  private final long maxBytes;
+
+  /**
+   * 每个 KEY 的估算字节数，只在限制字节数时使用
+   */
+  private final Map<Object, Long> sizes;
+
+  private long bytes;
+
+  private long evictionCount;
+
+  /**
+   * @param id 编号
+   * @param maxEntries 最大数量，0 表示不限制
+   * @param maxBytes 最大的估算字节数，0 表示不限制
+   * @param accessOrder 是否按访问顺序淘汰，即 LRU 。为 false 时按添加顺序淘汰，即 FIFO
+   */
+  public BoundedLocalCache(String id, int maxEntries, long maxBytes, boolean accessOrder) {
+    this(id, new LinkedHashMap<>(16, 0.75f, accessOrder), maxEntries, maxBytes);
+  }
+
+  private BoundedLocalCache(String id, LinkedHashMap<Object, Object> entries, int maxEntries, long maxBytes) {
+    super(id, entries);
+    this.entries = entries;
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.sizes = maxBytes > 0 ? new HashMap<>() : null;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    super.putObject(key, value);
+    if (sizes != null) {
+      final long size = ObjectSizeEstimator.estimate(key) + ObjectSizeEstimator.estimate(value);
+      final Long previous = sizes.put(key, size);
+      bytes += size - (previous == null ? 0 : previous);
+    }
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    if (sizes != null) {
+      final Long size = sizes.remove(key);
+      if (size != null) {
+        bytes -= size;
+      }
+    }
+    return super.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    super.clear();
+    if (sizes != null) {
+      sizes.clear();
+      bytes = 0;
+    }
+  }
+
+  /**
+   * 从最早（最久未访问）的一端开始，淘汰超出上限的缓存对象
+   *
+   * @param pinned 判断一个缓存对象（KEY 和值）是否不能被淘汰，可以为 null
+   * @return 淘汰的数量
+   */
+  public int trim(BiPredicate<Object, Object> pinned) {
+    int evicted = 0;
+    final Iterator<Map.Entry<Object, Object>> iterator = entries.entrySet().iterator();
+    while (isOverflowed() && iterator.hasNext()) {
+      final Map.Entry<Object, Object> entry = iterator.next();
+      if (pinned != null && pinned.test(entry.getKey(), entry.getValue())) {
+        continue;
+      }
+      iterator.remove();
+      if (sizes != null) {
+        final Long size = sizes.remove(entry.getKey());
+        if (size != null) {
+          bytes -= size;
+        }
+      }
+      evicted++;
+    }
+    evictionCount += evicted;
+    return evicted;
+  }
+
+  /**
+   * @return 是否超出上限
+   */
+  public boolean isOverflowed() {
+    return (maxEntries > 0 && entries.size() > maxEntries) || (maxBytes > 0 && bytes > maxBytes);
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * @return 缓存对象的估算字节数之和，不限制字节数时为 0
+   */
+  public long getEstimatedBytes() {
+    return bytes;
+  }
+
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+}
@@ -0,0 +1,53 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import org.apache.ibatis.cache.CacheCodec;
+import org.apache.ibatis.cache.CacheCopyStrategy;
+
+/**
+ * 基于 {@link CacheCodec} 的复制策略，以编码后的字节数组存储，每次读取时解码。
+ *
+ * 默认使用 {@link SerializationCacheCodec} ，即 SerializedCache 原来的行为；
+ * 子类 {@link CompactCopyStrategy} 使用 {@link CompactCacheCodec} ，结果对象按字段编码，解码比 Java 序列化快得多。
+ */
+public class CodecCopyStrategy implements CacheCopyStrategy {
+
+  private final CacheCodec codec;
+
+  public CodecCopyStrategy() {
+    this(new SerializationCacheCodec());
+  }
+
+  public CodecCopyStrategy(CacheCodec codec) {
+    this.codec = codec;
+  }
+
+  @Override
+  public Object copyForWrite(Object value) {
+    return codec.encode(value);
+  }
+
+  @Override
+  public Object copyForRead(Object stored) {
+    return codec.decode((byte[]) stored);
+  }
+
+  public CacheCodec getCodec() {
+    return codec;
+  }
+
+}
@@ -0,0 +1,515 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.CacheCodec;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * 紧凑的 CacheCodec 实现类，编码结果只在同一个 JVM 内有效。
+ *
+ * 常见的结果类型使用各自的紧凑格式：
+ * <ul>
+ *   <li>String 、基本类型的包装类、BigDecimal 、BigInteger 、Date 、java.sql 的日期类型、byte[]</li>
+ *   <li>ArrayList 、LinkedList 、HashMap 、LinkedHashMap 、HashSet 、LinkedHashSet 、枚举</li>
+ *   <li>结果对象（Bean）：实现 Serializable ，有无参构造方法，父类都不是 JDK 的类，
+ *   并且没有自定义 writeObject / readObject / writeReplace / readResolve 方法时，直接按字段读写</li>
+ * </ul>
+ * 其它对象（例如延迟加载的代理对象），使用 Java 序列化。
+ *
+ * 同一个可变对象被多次引用时，只编码一次，解码后仍然是同一个对象。
+ */
+public class CompactCacheCodec implements CacheCodec {
+
+  private static final byte NULL = 0;
+  private static final byte REFERENCE = 1;
+  private static final byte STRING = 2;
+  private static final byte INTEGER = 3;
+  private static final byte LONG = 4;
+  private static final byte SHORT = 5;
+  private static final byte BYTE = 6;
+  private static final byte TRUE = 7;
+  private static final byte FALSE = 8;
+  private static final byte CHARACTER = 9;
+  private static final byte FLOAT = 10;
+  private static final byte DOUBLE = 11;
+  private static final byte BIG_INTEGER = 12;
+  private static final byte BIG_DECIMAL = 13;
+  private static final byte ENUM = 14;
+  private static final byte DATE = 15;
+  private static final byte SQL_DATE = 16;
+  private static final byte SQL_TIME = 17;
+  private static final byte TIMESTAMP = 18;
+  private static final byte BYTES = 19;
+  private static final byte ARRAY_LIST = 20;
+  private static final byte LINKED_LIST = 21;
+  private static final byte HASH_SET = 22;
+  private static final byte LINKED_HASH_SET = 23;
+  private static final byte HASH_MAP = 24;
+  private static final byte LINKED_HASH_MAP = 25;
+  private static final byte BEAN = 26;
+  private static final byte SERIALIZED = 27;
+
+  @Override
+  public byte[] encode(Object value) {
+    final Output output = new Output();
+    try {
+      output.writeValue(value);
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error encoding object.  Cause: " + e, e);
+    }
+    return output.toByteArray();
+  }
+
+  @Override
+  public Object decode(byte[] bytes) {
+    try {
+      return new Input(bytes).readValue();
+    } catch (Exception e) {
+      throw new CacheException("Error decoding object.  Cause: " + e, e);
+    }
+  }
+
+  private static final class Output {
+
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    /**
+     * 已写入的可变对象及其序号
+     */
+    private final Map<Object, Integer> references = new IdentityHashMap<>();
+
+    /**
+     * 已写入的类及其序号，序号从 1 开始
+     */
+    private final Map<Class<?>, Integer> classes = new HashMap<>();
+
+    void writeValue(Object value) throws Exception {
+      if (value == null) {
+        writeByte(NULL);
+        return;
+      }
+      final Class<?> type = value.getClass();
+      if (type == String.class) {
+        writeByte(STRING);
+        writeString((String) value);
+      } else if (type == Integer.class) {
+        writeByte(INTEGER);
+        writeSignedVarLong((Integer) value);
+      } else if (type == Long.class) {
+        writeByte(LONG);
+        writeSignedVarLong((Long) value);
+      } else if (type == Boolean.class) {
+        writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (type == Short.class) {
+        writeByte(SHORT);
+        writeSignedVarLong((Short) value);
+      } else if (type == Byte.class) {
+        writeByte(BYTE);
+        writeByte((Byte) value);
+      } else if (type == Character.class) {
+        writeByte(CHARACTER);
+        writeVarLong((Character) value);
+      } else if (type == Float.class) {
+        writeByte(FLOAT);
+        writeFixed(Float.floatToIntBits((Float) value), 4);
+      } else if (type == Double.class) {
+        writeByte(DOUBLE);
+        writeFixed(Double.doubleToLongBits((Double) value), 8);
+      } else if (type == BigInteger.class) {
+        writeByte(BIG_INTEGER);
+        writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == BigDecimal.class) {
+        writeByte(BIG_DECIMAL);
+        writeSignedVarLong(((BigDecimal) value).scale());
+        writeBytes(((BigDecimal) value).unscaledValue().toByteArray());
+      } else if (value instanceof Enum) {
+        writeByte(ENUM);
+        writeClass(((Enum<?>) value).getDeclaringClass());
+        writeVarLong(((Enum<?>) value).ordinal());
+      } else {
+        writeMutable(type, value);
+      }
+    }
+
+    private void writeMutable(Class<?> type, Object value) throws Exception {
+      final Integer reference = references.get(value);
+      if (reference != null) {
+        writeByte(REFERENCE);
+        writeVarLong(reference);
+        return;
+      }
+      references.put(value, references.size());
+      if (type == Date.class) {
+        writeByte(DATE);
+        writeSignedVarLong(((Date) value).getTime());
+      } else if (type == java.sql.Date.class) {
+        writeByte(SQL_DATE);
+        writeSignedVarLong(((Date) value).getTime());
+      } else if (type == Time.class) {
+        writeByte(SQL_TIME);
+        writeSignedVarLong(((Date) value).getTime());
+      } else if (type == Timestamp.class) {
+        writeByte(TIMESTAMP);
+        writeSignedVarLong(((Timestamp) value).getTime());
+        writeVarLong(((Timestamp) value).getNanos());
+      } else if (type == byte[].class) {
+        writeByte(BYTES);
+        writeBytes((byte[]) value);
+      } else if (type == ArrayList.class) {
+        writeCollection(ARRAY_LIST, (Collection<?>) value);
+      } else if (type == LinkedList.class) {
+        writeCollection(LINKED_LIST, (Collection<?>) value);
+      } else if (type == HashSet.class) {
+        writeCollection(HASH_SET, (Collection<?>) value);
+      } else if (type == LinkedHashSet.class) {
+        writeCollection(LINKED_HASH_SET, (Collection<?>) value);
+      } else if (type == HashMap.class) {
+        writeMap(HASH_MAP, (Map<?, ?>) value);
+      } else if (type == LinkedHashMap.class) {
+        writeMap(LINKED_HASH_MAP, (Map<?, ?>) value);
+      } else {
+        final BeanLayout layout = BeanLayout.forClass(type);
+        if (layout != null) {
+          writeByte(BEAN);
+          writeClass(type);
+          for (Field field : layout.fields) {
+            writeValue(field.get(value));
+          }
+        } else {
+          writeByte(SERIALIZED);
+          writeBytes(serialize(value));
+        }
+      }
+    }
+
+    private void writeCollection(byte tag, Collection<?> collection) throws Exception {
+      writeByte(tag);
+      writeVarLong(collection.size());
+      for (Object element : collection) {
+        writeValue(element);
+      }
+    }
+
+    private void writeMap(byte tag, Map<?, ?> map) throws Exception {
+      writeByte(tag);
+      writeVarLong(map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeValue(entry.getKey());
+        writeValue(entry.getValue());
+      }
+    }
+
+    private byte[] serialize(Object value) throws Exception {
+      if (!(value instanceof Serializable)) {
+        throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + value);
+      }
+      try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+           ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+        oos.writeObject(value);
+        oos.flush();
+        return bos.toByteArray();
+      }
+    }
+
+    private void writeClass(Class<?> type) {
+      final Integer index = classes.get(type);
+      if (index != null) {
+        writeVarLong(index);
+      } else {
+        writeVarLong(0);
+        writeString(type.getName());
+        classes.put(type, classes.size() + 1);
+      }
+    }
+
+    private void writeString(String value) {
+      final int length = value.length();
+      writeVarLong(length);
+      ensureCapacity(length);
+      for (int i = 0; i < length; i++) {
+        final char c = value.charAt(i);
+        if (c < 0x80) {
+          buffer[position++] = (byte) c;
+        } else {
+          writeVarLong(c);
+        }
+      }
+    }
+
+    private void writeBytes(byte[] bytes) {
+      writeVarLong(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    private void writeSignedVarLong(long value) {
+      writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    private void writeFixed(long value, int length) {
+      ensureCapacity(length);
+      for (int i = 0; i < length; i++) {
+        buffer[position++] = (byte) (value >>> (i * 8));
+      }
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    private void ensureCapacity(int length) {
+      if (position + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+  }
+
+  private static final class Input {
+
+    private final byte[] buffer;
+    private int position;
+    private final List<Object> references = new ArrayList<>();
+    private final List<Class<?>> classes = new ArrayList<>();
+
+    Input(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    Object readValue() throws Exception {
+      final byte tag = buffer[position++];
+      switch (tag) {
+        case NULL:
+          return null;
+        case REFERENCE:
+          return references.get((int) readVarLong());
+        case STRING:
+          return readString();
+        case INTEGER:
+          return (int) readSignedVarLong();
+        case LONG:
+          return readSignedVarLong();
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case SHORT:
+          return (short) readSignedVarLong();
+        case BYTE:
+          return buffer[position++];
+        case CHARACTER:
+          return (char) readVarLong();
+        case FLOAT:
+          return Float.intBitsToFloat((int) readFixed(4));
+        case DOUBLE:
+          return Double.longBitsToDouble(readFixed(8));
+        case BIG_INTEGER:
+          return new BigInteger(readBytes());
+        case BIG_DECIMAL: {
+          final int scale = (int) readSignedVarLong();
+          return new BigDecimal(new BigInteger(readBytes()), scale);
+        }
+        case ENUM:
+          return readClass().getEnumConstants()[(int) readVarLong()];
+        case DATE:
+          return register(new Date(readSignedVarLong()));
+        case SQL_DATE:
+          return register(new java.sql.Date(readSignedVarLong()));
+        case SQL_TIME:
+          return register(new Time(readSignedVarLong()));
+        case TIMESTAMP: {
+          final Timestamp timestamp = register(new Timestamp(readSignedVarLong()));
+          timestamp.setNanos((int) readVarLong());
+          return timestamp;
+        }
+        case BYTES:
+          return register(readBytes());
+        case ARRAY_LIST: {
+          final int size = (int) readVarLong();
+          return readElements(register(new ArrayList<>(size)), size);
+        }
+        case LINKED_LIST:
+          return readElements(register(new LinkedList<>()), (int) readVarLong());
+        case HASH_SET: {
+          final int size = (int) readVarLong();
+          return readElements(register(new HashSet<>(capacityFor(size))), size);
+        }
+        case LINKED_HASH_SET: {
+          final int size = (int) readVarLong();
+          return readElements(register(new LinkedHashSet<>(capacityFor(size))), size);
+        }
+        case HASH_MAP: {
+          final int size = (int) readVarLong();
+          return readEntries(register(new HashMap<>(capacityFor(size))), size);
+        }
+        case LINKED_HASH_MAP: {
+          final int size = (int) readVarLong();
+          return readEntries(register(new LinkedHashMap<>(capacityFor(size))), size);
+        }
+        case BEAN:
+          return readBean(readClass());
+        case SERIALIZED:
+          return register(deserialize(readBytes()));
+        default:
+          throw new CacheException("Unknown type tag " + tag + " at position " + (position - 1) + ".");
+      }
+    }
+
+    private Object readBean(Class<?> type) throws Exception {
+      final BeanLayout layout = BeanLayout.forClass(type);
+      if (layout == null) {
+        throw new CacheException("Class " + type.getName() + " can not be decoded field by field.");
+      }
+      final Object bean = register(layout.constructor.newInstance());
+      for (Field field : layout.fields) {
+        field.set(bean, readValue());
+      }
+      return bean;
+    }
+
+    private Collection<Object> readElements(Collection<Object> collection, int size) throws Exception {
+      for (int i = 0; i < size; i++) {
+        collection.add(readValue());
+      }
+      return collection;
+    }
+
+    private Map<Object, Object> readEntries(Map<Object, Object> map, int size) throws Exception {
+      for (int i = 0; i < size; i++) {
+        final Object key = readValue();
+        map.put(key, readValue());
+      }
+      return map;
+    }
+
+    private Object deserialize(byte[] bytes) throws Exception {
+      try (ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
+           ObjectInputStream ois = new SerializedCache.CustomObjectInputStream(bis)) {
+        return ois.readObject();
+      }
+    }
+
+    private <T> T register(T value) {
+      references.add(value);
+      return value;
+    }
+
+    private Class<?> readClass() throws ClassNotFoundException {
+      final int index = (int) readVarLong();
+      if (index > 0) {
+        return classes.get(index - 1);
+      }
+      final Class<?> type = Resources.classForName(readString());
+      classes.add(type);
+      return type;
+    }
+
+    private String readString() {
+      final int length = (int) readVarLong();
+      final char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        final byte b = buffer[position];
+        if (b >= 0) {
+          chars[i] = (char) b;
+          position++;
+        } else {
+          chars[i] = (char) readVarLong();
+        }
+      }
+      return new String(chars);
+    }
+
+    private byte[] readBytes() {
+      final int length = (int) readVarLong();
+      final byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return bytes;
+    }
+
+    private long readSignedVarLong() {
+      final long value = readVarLong();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarLong() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer[position++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      return value;
+    }
+
+    private long readFixed(int length) {
+      long value = 0;
+      for (int i = 0; i < length; i++) {
+        value |= (long) (buffer[position++] & 0xFF) << (i * 8);
+      }
+      return value;
+    }
+
+    private static int capacityFor(int size) {
+      return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+  }
+
+}
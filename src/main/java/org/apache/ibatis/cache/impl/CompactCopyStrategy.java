@@ -0,0 +1,28 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+/**
+ * 使用 {@link CompactCacheCodec} 的复制策略。存储的形式比 Java 序列化小，编码和解码也快得多，
+ * 不能按字段编码的对象仍然使用 Java 序列化。
+ */
+public class CompactCopyStrategy extends CodecCopyStrategy {
+
+  public CompactCopyStrategy() {
+    super(new CompactCacheCodec());
+  }
+
+}
@@ -0,0 +1,555 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 线程安全的 Cache 实现类，用于替代 PerpetualCache + LruCache + SynchronizedCache 的组合。
+ *
+ * 缓存按 KEY 的哈希值分成多个段，每个段有独立的锁，读写只锁定所在的段，而不是整个缓存。
+ * 每个段按各自的容量独立淘汰，所以整体上是近似的淘汰策略：
+ * <ul>
+ *   <li>{@link EvictionPolicy#LRU} ：段内最近最少使用</li>
+ *   <li>{@link EvictionPolicy#TINY_LFU} ：W-TinyLFU ，新对象先进入窗口区，被窗口淘汰后，与主区的淘汰者比较访问频率，频率高者留下</li>
+ * </ul>
+ *
+ * 容量可以按对象数量（size）或估算的字节数（maxBytes）限制。设置 maxBytes 后，以字节数为准。
+ * 按字节数限制时，每个段至少 1MB ，所以 maxBytes 小于 2MB 时只有一个段。
+ * 单个对象估算的字节数超过一个段的容量（maxBytes 除以段的数量）时不会被缓存，同一个 KEY 原来的对象也会被移除。
+ *
+ * 在 Mapper XML 中，通过 &lt;cache eviction="CONCURRENT_LRU"/&gt; 或 &lt;cache eviction="TINY_LFU"/&gt; 使用。
+ *
+ * @see ConcurrentLruCache
+ * @see TinyLfuCache
+ */
+public class ConcurrentCache implements Cache, CacheMetricsAware {
+
+  /**
+   * 淘汰策略
+   */
+  public enum EvictionPolicy {
+    /**
+     * 近似的最近最少使用
+     */
+    LRU,
+    /**
+     * W-TinyLFU
+     */
+    TINY_LFU
+  }
+
+  private static final int MAX_CONCURRENCY_LEVEL = 16;
+
+  /**
+   * 每个段的最小容量，容量较小时，减少段的数量，避免总容量偏差过大
+   */
+  private static final int MIN_SEGMENT_CAPACITY = 32;
+
+  /**
+   * 按字节数限制时，每个段的最小字节数，也就是分段后能缓存的单个对象的下限
+   */
+  private static final long MIN_SEGMENT_BYTES = 1 << 20;
+
+  private static final Log log = LogFactory.getLog(ConcurrentCache.class);
+
+  private final String id;
+
+  private EvictionPolicy evictionPolicy;
+
+  /**
+   * 最大对象数量
+   */
+  private int size = 1024;
+
+  /**
+   * 最大字节数。小于等于 0 时，按对象数量限制
+   */
+  private long maxBytes;
+
+  /**
+   * 段的数量上限
+   */
+  private int concurrencyLevel = MAX_CONCURRENCY_LEVEL;
+
+  private volatile Segment[] segments;
+
+  /**
+   * 统计指标，可能为 null
+   */
+  private CacheMetrics metrics;
+
+  public ConcurrentCache(String id) {
+    this(id, EvictionPolicy.LRU);
+  }
+
+  protected ConcurrentCache(String id, EvictionPolicy evictionPolicy) {
+    this.id = id;
+    this.evictionPolicy = evictionPolicy;
+    rebuild();
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    int count = 0;
+    for (Segment segment : segments) {
+      count += segment.size();
+    }
+    return count;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    final long weight = maxBytes > 0 ? weigh(key, value) : 1;
+    final Segment segment = segmentFor(key);
+    if (weight > segment.capacity) {
+      // 放入后会把整个段清空，而自身也无法保留
+      segment.remove(key);
+      if (log.isDebugEnabled()) {
+        log.debug("Cache '" + id + "' skipped an object of about " + weight + " bytes, larger than the "
+            + segment.capacity + " bytes of a segment.");
+      }
+      return;
+    }
+    final int evicted = segment.put(key, value, weight);
+    if (metrics != null) {
+      for (int i = 0; i < evicted; i++) {
+        metrics.recordEviction();
+      }
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return segmentFor(key).get(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return segmentFor(key).remove(key);
+  }
+
+  @Override
+  public void clear() {
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  public EvictionPolicy getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  /**
+   * 设置淘汰策略。会清空缓存
+   */
+  public void setEvictionPolicy(EvictionPolicy evictionPolicy) {
+    this.evictionPolicy = evictionPolicy;
+    rebuild();
+  }
+
+  public int getMaxSize() {
+    return size;
+  }
+
+  /**
+   * 设置最大对象数量，即 &lt;cache size="..."/&gt; 。会清空缓存
+   */
+  public void setSize(int size) {
+    this.size = size;
+    rebuild();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * 设置最大字节数，即 &lt;property name="maxBytes" value="..."/&gt; 。会清空缓存
+   */
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    rebuild();
+  }
+
+  public int getConcurrencyLevel() {
+    return concurrencyLevel;
+  }
+
+  /**
+   * 设置段的数量上限，会向下取整到 2 的幂。会清空缓存
+   */
+  public void setConcurrencyLevel(int concurrencyLevel) {
+    this.concurrencyLevel = concurrencyLevel;
+    rebuild();
+  }
+
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * 估算缓存对象占用的字节数。只在设置了 maxBytes 时调用
+   *
+   * @param key 键
+   * @param value 值
+   * @return 字节数
+   */
+  protected long weigh(Object key, Object value) {
+    return Math.max(1, ObjectSizeEstimator.estimate(key) + ObjectSizeEstimator.estimate(value));
+  }
+
+  private Segment segmentFor(Object key) {
+    final Segment[] current = segments;
+    int h = key.hashCode();
+    h ^= (h >>> 16);
+    return current[h & (current.length - 1)];
+  }
+
+  private void rebuild() {
+    if (size <= 0 && maxBytes <= 0) {
+      throw new CacheException("Cache '" + id + "' requires a positive size or maxBytes.");
+    }
+    final long capacity = maxBytes > 0 ? maxBytes : size;
+    final long byCapacity = capacity / (maxBytes > 0 ? MIN_SEGMENT_BYTES : MIN_SEGMENT_CAPACITY);
+    final int count = Integer.highestOneBit((int) Math.max(1, Math.min(Math.max(1, concurrencyLevel), byCapacity)));
+    final long segmentCapacity = (capacity + count - 1) / count;
+    final Segment[] newSegments = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      newSegments[i] = evictionPolicy == EvictionPolicy.TINY_LFU
+          ? new TinyLfuSegment(segmentCapacity) : new LruSegment(segmentCapacity);
+    }
+    this.segments = newSegments;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  /**
+   * 缓存节点，同时是所在队列的双向链表节点
+   */
+  private static final class Node {
+    final Object key;
+    Object value;
+    long weight;
+    Queue queue;
+    Node prev;
+    Node next;
+
+    Node(Object key, Object value, long weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * 双向链表实现的队列，头部为最久未使用的节点
+   */
+  private static final class Queue {
+    Node head;
+    Node tail;
+    long weight;
+
+    void addLast(Node node) {
+      node.queue = this;
+      node.prev = tail;
+      node.next = null;
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+      weight += node.weight;
+    }
+
+    void remove(Node node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      node.queue = null;
+      weight -= node.weight;
+    }
+
+    void moveToLast(Node node) {
+      if (tail != node) {
+        remove(node);
+        addLast(node);
+      }
+    }
+
+    void clear() {
+      head = null;
+      tail = null;
+      weight = 0;
+    }
+  }
+
+  /**
+   * 段，通过 synchronized 保证线程安全
+   */
+  private abstract static class Segment {
+
+    final Map<Object, Node> map = new HashMap<>();
+    final long capacity;
+
+    /**
+     * 本次添加淘汰的节点数
+     */
+    int evicted;
+
+    Segment(long capacity) {
+      this.capacity = capacity;
+    }
+
+    synchronized int size() {
+      return map.size();
+    }
+
+    synchronized Object get(Object key) {
+      final Node node = map.get(key);
+      onRead(key, node);
+      return node == null ? null : node.value;
+    }
+
+    /**
+     * @return 淘汰的节点数
+     */
+    synchronized int put(Object key, Object value, long weight) {
+      evicted = 0;
+      Node node = map.get(key);
+      if (node != null) {
+        final Queue queue = node.queue;
+        queue.weight += weight - node.weight;
+        node.value = value;
+        node.weight = weight;
+        onRead(key, node);
+      } else {
+        node = new Node(key, value, weight);
+        map.put(key, node);
+        onInsert(node);
+      }
+      evict();
+      return evicted;
+    }
+
+    synchronized Object remove(Object key) {
+      final Node node = map.remove(key);
+      if (node == null) {
+        return null;
+      }
+      node.queue.remove(node);
+      return node.value;
+    }
+
+    synchronized void clear() {
+      map.clear();
+      clearQueues();
+    }
+
+    void evict(Node node) {
+      map.remove(node.key);
+      node.queue.remove(node);
+      evicted++;
+    }
+
+    abstract void onRead(Object key, Node node);
+
+    abstract void onInsert(Node node);
+
+    abstract void evict();
+
+    abstract void clearQueues();
+  }
+
+  private static final class LruSegment extends Segment {
+
+    private final Queue queue = new Queue();
+
+    LruSegment(long capacity) {
+      super(capacity);
+    }
+
+    @Override
+    void onRead(Object key, Node node) {
+      if (node != null) {
+        queue.moveToLast(node);
+      }
+    }
+
+    @Override
+    void onInsert(Node node) {
+      queue.addLast(node);
+    }
+
+    @Override
+    void evict() {
+      while (queue.weight > capacity && queue.head != null) {
+        evict(queue.head);
+      }
+    }
+
+    @Override
+    void clearQueues() {
+      queue.clear();
+    }
+  }
+
+  /**
+   * W-TinyLFU 的段：窗口区（1%）为 LRU ，主区为分段 LRU ，由观察区（20%）和保护区（80%）组成
+   */
+  private static final class TinyLfuSegment extends Segment {
+
+    private final Queue window = new Queue();
+    private final Queue probation = new Queue();
+    private final Queue protectedQueue = new Queue();
+    private final long windowCapacity;
+    private final long protectedCapacity;
+    private final FrequencySketch sketch;
+
+    TinyLfuSegment(long capacity) {
+      super(capacity);
+      this.windowCapacity = Math.max(1, capacity / 100);
+      this.protectedCapacity = (long) ((capacity - windowCapacity) * 0.8d);
+      // 按字节数限制时，对象数量未知，按每个对象 1KB 估算统计的规模
+      this.sketch = new FrequencySketch(capacity > 1 << 20 ? capacity >>> 10 : capacity);
+    }
+
+    @Override
+    void onRead(Object key, Node node) {
+      sketch.increment(key);
+      if (node == null) {
+        return;
+      }
+      if (node.queue == probation) {
+        // 再次访问，晋升到保护区
+        probation.remove(node);
+        protectedQueue.addLast(node);
+        while (protectedQueue.weight > protectedCapacity && protectedQueue.head != null) {
+          final Node demoted = protectedQueue.head;
+          protectedQueue.remove(demoted);
+          probation.addLast(demoted);
+        }
+      } else {
+        node.queue.moveToLast(node);
+      }
+    }
+
+    @Override
+    void onInsert(Node node) {
+      sketch.increment(node.key);
+      window.addLast(node);
+    }
+
+    @Override
+    void evict() {
+      // 窗口区溢出的节点，作为候选者进入观察区
+      Node firstCandidate = null;
+      while (window.weight > windowCapacity && window.head != null) {
+        final Node candidate = window.head;
+        window.remove(candidate);
+        probation.addLast(candidate);
+        if (firstCandidate == null) {
+          firstCandidate = candidate;
+        }
+      }
+      while (window.weight + probation.weight + protectedQueue.weight > capacity) {
+        Node victim = probation.head;
+        if (victim == null) {
+          victim = protectedQueue.head != null ? protectedQueue.head : window.head;
+          evict(victim);
+          continue;
+        }
+        final Node candidate = firstCandidate;
+        if (candidate == null) {
+          evict(victim);
+          continue;
+        }
+        if (candidate == victim) {
+          firstCandidate = candidate.next;
+          evict(candidate);
+          continue;
+        }
+        // 候选者与淘汰者比较频率，淘汰频率低的
+        if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+          evict(victim);
+        } else {
+          firstCandidate = candidate.next;
+          evict(candidate);
+        }
+      }
+    }
+
+    @Override
+    void clearQueues() {
+      window.clear();
+      probation.clear();
+      protectedQueue.clear();
+    }
+  }
+
+}
@@ -0,0 +1,177 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.apache.ibatis.cache.CacheCodec;
+import org.apache.ibatis.cache.CacheCopyStrategy;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * 直接复制对象图的复制策略，不经过字节数组，存储的形式就是缓存对象的一份副本。
+ *
+ * 不可变的对象（String 、基本类型的包装类、BigDecimal 、BigInteger 、枚举、java.time 的类型）直接共享；
+ * Date 、java.sql 的日期类型、数组、常见的集合类型，以及可以按字段复制的结果对象（规则与 {@link CompactCacheCodec} 相同）逐个复制；
+ * 其它对象（例如延迟加载的代理对象）使用 Java 序列化复制。
+ *
+ * 同一个可变对象被多次引用时，只复制一次，复制后仍然是同一个对象，循环引用也是如此。
+ */
+public class DeepCopyStrategy implements CacheCopyStrategy {
+
+  private final CacheCodec fallback = new SerializationCacheCodec();
+
+  @Override
+  public Object copyForWrite(Object value) {
+    return copy(value);
+  }
+
+  @Override
+  public Object copyForRead(Object stored) {
+    return copy(stored);
+  }
+
+  private Object copy(Object value) {
+    try {
+      return new Copier().copy(value);
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error copying object.  Cause: " + e, e);
+    }
+  }
+
+  private static boolean isImmutable(Class<?> type) {
+    return type == String.class || type == Integer.class || type == Long.class || type == Boolean.class
+        || type == Short.class || type == Byte.class || type == Character.class || type == Float.class
+        || type == Double.class || type == BigDecimal.class || type == BigInteger.class
+        || type.isEnum() || (type.getSuperclass() != null && type.getSuperclass().isEnum())
+        || type.getName().startsWith("java.time.");
+  }
+
+  private final class Copier {
+
+    /**
+     * 已复制的可变对象及其副本
+     */
+    private final Map<Object, Object> copies = new IdentityHashMap<>();
+
+    Object copy(Object value) throws Exception {
+      if (value == null) {
+        return null;
+      }
+      final Class<?> type = value.getClass();
+      if (isImmutable(type)) {
+        return value;
+      }
+      final Object copied = copies.get(value);
+      if (copied != null) {
+        return copied;
+      }
+      if (type == Date.class || type == java.sql.Date.class || type == Time.class || type == Timestamp.class) {
+        return register(value, ((Date) value).clone());
+      } else if (type.isArray()) {
+        return copyArray(type, value);
+      } else if (type == ArrayList.class) {
+        final Collection<?> source = (Collection<?>) value;
+        return copyElements(source, register(value, new ArrayList<>(source.size())));
+      } else if (type == LinkedList.class) {
+        return copyElements((Collection<?>) value, register(value, new LinkedList<>()));
+      } else if (type == HashSet.class) {
+        final Collection<?> source = (Collection<?>) value;
+        return copyElements(source, register(value, new HashSet<>(capacityFor(source.size()))));
+      } else if (type == LinkedHashSet.class) {
+        final Collection<?> source = (Collection<?>) value;
+        return copyElements(source, register(value, new LinkedHashSet<>(capacityFor(source.size()))));
+      } else if (type == HashMap.class) {
+        final Map<?, ?> source = (Map<?, ?>) value;
+        return copyEntries(source, register(value, new HashMap<>(capacityFor(source.size()))));
+      } else if (type == LinkedHashMap.class) {
+        final Map<?, ?> source = (Map<?, ?>) value;
+        return copyEntries(source, register(value, new LinkedHashMap<>(capacityFor(source.size()))));
+      }
+      final BeanLayout layout = BeanLayout.forClass(type);
+      if (layout == null) {
+        return register(value, fallback.decode(fallback.encode(value)));
+      }
+      final Object bean = register(value, layout.constructor.newInstance());
+      for (Field field : layout.fields) {
+        if (field.getType().isPrimitive()) {
+          field.set(bean, field.get(value));
+        } else {
+          field.set(bean, copy(field.get(value)));
+        }
+      }
+      return bean;
+    }
+
+    private Object copyArray(Class<?> type, Object value) throws Exception {
+      final Class<?> componentType = type.getComponentType();
+      if (componentType.isPrimitive()) {
+        final int length = Array.getLength(value);
+        final Object array = Array.newInstance(componentType, length);
+        System.arraycopy(value, 0, array, 0, length);
+        return register(value, array);
+      }
+      final Object[] source = (Object[]) value;
+      final Object[] array = register(value, (Object[]) Array.newInstance(componentType, source.length));
+      for (int i = 0; i < source.length; i++) {
+        array[i] = copy(source[i]);
+      }
+      return array;
+    }
+
+    private Collection<Object> copyElements(Collection<?> source, Collection<Object> target) throws Exception {
+      for (Object element : source) {
+        target.add(copy(element));
+      }
+      return target;
+    }
+
+    private Map<Object, Object> copyEntries(Map<?, ?> source, Map<Object, Object> target) throws Exception {
+      for (Map.Entry<?, ?> entry : source.entrySet()) {
+        final Object key = copy(entry.getKey());
+        target.put(key, copy(entry.getValue()));
+      }
+      return target;
+    }
+
+    private <T> T register(Object value, T copied) {
+      copies.put(value, copied);
+      return copied;
+    }
+
+    private int capacityFor(int size) {
+      return Math.max(16, (int) (size / 0.75f) + 1);
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheStats;
+
+/**
+ * 默认的 CacheMetrics 实现类，基于 LongAdder 在内存中计数。
+ */
+public class DefaultCacheMetrics implements CacheMetrics {
+
+  private final String id;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+  private final LongAdder loadTime = new LongAdder();
+  private final LongAdder blockedWaits = new LongAdder();
+  private final LongAdder blockedWaitTime = new LongAdder();
+
+  public DefaultCacheMetrics(String id) {
+    this.id = id;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public void recordHit() {
+    hits.increment();
+  }
+
+  @Override
+  public void recordMiss() {
+    misses.increment();
+  }
+
+  @Override
+  public void recordPut() {
+    puts.increment();
+  }
+
+  @Override
+  public void recordEviction() {
+    evictions.increment();
+  }
+
+  @Override
+  public void recordLoad(long nanos) {
+    loads.increment();
+    loadTime.add(nanos);
+  }
+
+  @Override
+  public void recordBlockedWait(long nanos) {
+    blockedWaits.increment();
+    blockedWaitTime.add(nanos);
+  }
+
+  @Override
+  public CacheStats getStats() {
+    return new CacheStats(hits.sum(), misses.sum(), puts.sum(), evictions.sum(), loads.sum(), loadTime.sum(),
+        blockedWaits.sum(), blockedWaitTime.sum(), -1);
+  }
+
+  @Override
+  public String toString() {
+    return id + " " + getStats();
+  }
+
+}
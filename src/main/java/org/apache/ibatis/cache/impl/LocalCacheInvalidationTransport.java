@@ -0,0 +1,86 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.CacheCodec;
+import org.apache.ibatis.cache.CacheInvalidationMessage;
+import org.apache.ibatis.cache.CacheInvalidationTransport;
+
+/**
+ * 同一个 JVM 内的 CacheInvalidationTransport 实现类。
+ *
+ * 相同频道的传输层互相发布消息，用于测试，或者同一个 JVM 内的多个 SqlSessionFactory 。
+ * 消息会经过序列化和反序列化，与跨节点的传输层一样，不可序列化的 KEY 会在发布时失败。
+ */
+public class LocalCacheInvalidationTransport implements CacheInvalidationTransport {
+
+  /**
+   * 频道与其订阅者的映射
+   */
+  private static final Map<String, List<Consumer<CacheInvalidationMessage>>> CHANNELS = new ConcurrentHashMap<>();
+
+  private final String channel;
+  private final CacheCodec codec = new SerializationCacheCodec();
+  private volatile Consumer<CacheInvalidationMessage> listener;
+
+  public LocalCacheInvalidationTransport() {
+    this("default");
+  }
+
+  public LocalCacheInvalidationTransport(String channel) {
+    this.channel = channel;
+  }
+
+  public String getChannel() {
+    return channel;
+  }
+
+  @Override
+  public synchronized void start(Consumer<CacheInvalidationMessage> listener) {
+    this.listener = listener;
+    CHANNELS.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(listener);
+  }
+
+  @Override
+  public void publish(CacheInvalidationMessage message) {
+    final List<Consumer<CacheInvalidationMessage>> subscribers = CHANNELS.get(channel);
+    if (subscribers == null) {
+      return;
+    }
+    final byte[] bytes = codec.encode(message);
+    for (Consumer<CacheInvalidationMessage> subscriber : subscribers) {
+      if (subscriber != listener) {
+        subscriber.accept((CacheInvalidationMessage) codec.decode(bytes));
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    final List<Consumer<CacheInvalidationMessage>> subscribers = CHANNELS.get(channel);
+    if (subscribers != null && listener != null) {
+      subscribers.remove(listener);
+    }
+    listener = null;
+  }
+
+}
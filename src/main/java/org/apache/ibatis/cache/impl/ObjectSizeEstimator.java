@@ -0,0 +1,211 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.executor.loader.WriteReplaceInterface;
+
+/**
+ * 对象占用内存的估算器。
+ *
+ * 按 64 位 JVM 开启压缩指针的布局粗略估算：对象头 12 字节、引用 4 字节、按 8 字节对齐。
+ * 每个类的字段布局只计算一次。为了让估算的开销不随对象图的大小增长，集合、Map 和数组只抽样 {@link #SAMPLE} 个元素，
+ * 按元素数量推算；一次估算最多展开 {@link #MAX_VISITED} 个对象，超过后只统计对象自身的大小。
+ * 延迟加载的代理对象只统计结果对象的字段，不统计代理内部引用的 ResultLoaderMap 和 Configuration 。
+ */
+final class ObjectSizeEstimator {
+
+  private static final int OBJECT_HEADER = 12;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+
+  /**
+   * 无法读取字段的 JDK 类型的估算值
+   */
+  private static final int OPAQUE_OBJECT = 32;
+
+  private static final int SAMPLE = 16;
+
+  private static final int MAX_VISITED = 1024;
+
+  private static final ClassValue<Layout> LAYOUTS = new ClassValue<Layout>() {
+    @Override
+    protected Layout computeValue(Class<?> type) {
+      return new Layout(type);
+    }
+  };
+
+  private final Map<Object, Boolean> visited = new IdentityHashMap<>();
+
+  private ObjectSizeEstimator() {
+    // 每次估算使用一个新的对象，记录已经统计过的对象
+  }
+
+  static long estimate(Object root) {
+    return root == null ? 0 : new ObjectSizeEstimator().sizeOf(root);
+  }
+
+  private long sizeOf(Object object) {
+    if (object instanceof String) {
+      return align(OBJECT_HEADER + 12) + align(ARRAY_HEADER + ((String) object).length() * 2L);
+    } else if (object instanceof Number || object instanceof Boolean || object instanceof Character || object instanceof Date) {
+      return 24;
+    }
+    final Class<?> type = object.getClass();
+    if (type.isArray() && type.getComponentType().isPrimitive()) {
+      return align(ARRAY_HEADER + (long) Array.getLength(object) * primitiveSize(type.getComponentType()));
+    }
+    // 已经统计过的对象（包括循环引用）不再统计
+    if (visited.put(object, Boolean.TRUE) != null) {
+      return 0;
+    }
+    final boolean expand = visited.size() <= MAX_VISITED;
+    if (type.isArray()) {
+      final Object[] array = (Object[]) object;
+      return align(ARRAY_HEADER + (long) array.length * REFERENCE) + (expand ? sampledSize(array.length, Arrays.asList(array)) : 0);
+    } else if (object instanceof Collection) {
+      // 集合按元素数量估算自身的结构，元素抽样统计
+      final Collection<?> collection = (Collection<?>) object;
+      final int count = collection.size();
+      return align(OBJECT_HEADER + 16) + align(ARRAY_HEADER + (long) count * REFERENCE)
+          + (object instanceof List ? 0 : count * 32L) + (expand ? sampledSize(count, collection) : 0);
+    } else if (object instanceof Map) {
+      final Map<?, ?> map = (Map<?, ?>) object;
+      final int count = map.size();
+      return align(OBJECT_HEADER + 36) + align(ARRAY_HEADER + (long) count * REFERENCE) + count * 32L
+          + (expand ? sampledSize(count, map.entrySet()) : 0);
+    }
+    final Layout layout = LAYOUTS.get(type);
+    if (layout.opaque) {
+      return OPAQUE_OBJECT;
+    }
+    long size = layout.shallowSize;
+    if (expand) {
+      for (Field field : layout.references) {
+        try {
+          final Object value = field.get(object);
+          if (value != null) {
+            size += sizeOf(value);
+          }
+        } catch (IllegalAccessException e) {
+          // ignore
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * 抽样统计前 {@link #SAMPLE} 个元素，再按元素数量推算
+   */
+  private long sampledSize(int count, Iterable<?> elements) {
+    long size = 0;
+    int sampled = 0;
+    for (Object element : elements) {
+      if (sampled == SAMPLE) {
+        break;
+      }
+      sampled++;
+      if (element instanceof Map.Entry) {
+        final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) element;
+        size += entry.getKey() == null ? 0 : sizeOf(entry.getKey());
+        size += entry.getValue() == null ? 0 : sizeOf(entry.getValue());
+      } else if (element != null) {
+        size += sizeOf(element);
+      }
+    }
+    return sampled == 0 || sampled == count ? size : size * count / sampled;
+  }
+
+  private static int primitiveSize(Class<?> type) {
+    if (type == long.class || type == double.class) {
+      return 8;
+    } else if (type == int.class || type == float.class) {
+      return 4;
+    } else if (type == short.class || type == char.class) {
+      return 2;
+    } else {
+      return 1;
+    }
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+  /**
+   * 一个类的字段布局
+   */
+  private static final class Layout {
+
+    /**
+     * 是否不读取字段，只使用估算值
+     */
+    final boolean opaque;
+
+    /**
+     * 对象自身的大小，不包括引用的对象
+     */
+    final long shallowSize;
+
+    /**
+     * 引用类型的字段
+     */
+    final Field[] references;
+
+    Layout(Class<?> type) {
+      final String name = type.getName();
+      // JDK 内部字段可能无法访问
+      opaque = name.startsWith("java.") || name.startsWith("javax.");
+      // 延迟加载的代理类继承结果类，代理自身的字段（引用 ResultLoaderMap 和 Configuration ）不统计
+      final Class<?> fieldsOf = WriteReplaceInterface.class.isAssignableFrom(type) && type.getSuperclass() != null ? type.getSuperclass() : type;
+      long size = OBJECT_HEADER;
+      final List<Field> fields = new ArrayList<>();
+      for (Class<?> current = fieldsOf; !opaque && current != null && current != Object.class; current = current.getSuperclass()) {
+        for (Field field : current.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          if (field.getType().isPrimitive()) {
+            size += primitiveSize(field.getType());
+            continue;
+          }
+          size += REFERENCE;
+          try {
+            field.setAccessible(true);
+            fields.add(field);
+          } catch (RuntimeException e) {
+            // 无法访问时，只统计引用本身
+          }
+        }
+      }
+      this.shallowSize = align(size);
+      this.references = fields.toArray(new Field[0]);
+    }
+
+  }
+
+}
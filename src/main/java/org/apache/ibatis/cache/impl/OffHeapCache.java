@@ -0,0 +1,393 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheCodec;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * 将缓存对象存储在堆外内存中的 Cache 实现类，适合缓存大量结果，又不希望增加 GC 压力的场景。
+ *
+ * 缓存对象通过 {@link CacheCodec} 编码成字节数组后，存储在直接内存（Direct ByteBuffer）中。
+ * 直接内存按 slabSize 分成多个 slab ，按需分配；每个 slab 再切分成 blockSize 大小的块，
+ * 一个缓存对象占用一个或多个块，空闲的块通过空闲列表复用，所以不会产生碎片。
+ * KEY 和块的索引仍然在堆内。
+ *
+ * 容量按字节数（maxBytes）限制，超出时按最近最少使用的顺序淘汰。大于容量的对象不会被缓存。
+ *
+ * 每次 {@link #getObject(Object)} 都会解码出新的对象，所以不需要 SerializedCache 。
+ * 编码和解码在锁外进行，只有块的分配和复制需要加锁，所以自身是线程安全的。
+ *
+ * 在 Mapper XML 中，通过 &lt;cache type="OFF_HEAP"/&gt; 或 &lt;cache eviction="OFF_HEAP"/&gt; 使用。
+ *
+ * @see CompactCacheCodec
+ */
+public class OffHeapCache implements Cache, CacheMetricsAware {
+
+  private final String id;
+
+  private final Object lock = new Object();
+
+  /**
+   * 最大字节数
+   */
+  private long maxBytes = 64L * 1024 * 1024;
+
+  /**
+   * 块的字节数
+   */
+  private int blockSize = 512;
+
+  /**
+   * slab 的字节数，会向下取整到 blockSize 的倍数，至少为一个块
+   */
+  private int slabSize = 1024 * 1024;
+
+  /**
+   * 是否使用直接内存。为 false 时，slab 分配在堆内，仍然以编码后的形式紧凑存储
+   */
+  private boolean direct = true;
+
+  private volatile CacheCodec codec = new CompactCacheCodec();
+
+  /**
+   * KEY 与块的索引，按访问顺序排列
+   */
+  private final LinkedHashMap<Object, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+
+  private ByteBuffer[] slabs;
+
+  private int blocksPerSlab;
+
+  private int totalBlocks;
+
+  /**
+   * 空闲块的编号
+   */
+  private int[] freeBlocks;
+
+  private int freeCount;
+
+  /**
+   * 下一个从未使用过的块的编号
+   */
+  private int nextBlock;
+
+  private long usedBytes;
+
+  /**
+   * 统计指标，可能为 null
+   */
+  private CacheMetrics metrics;
+
+  public OffHeapCache(String id) {
+    this.id = id;
+    rebuild();
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    synchronized (lock) {
+      return index.size();
+    }
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    final byte[] bytes = codec.encode(value);
+    final int blockCount = (bytes.length + blockSize - 1) / blockSize;
+    synchronized (lock) {
+      release(index.remove(key));
+      if (blockCount > totalBlocks) {
+        // 大于容量的对象不缓存
+        return;
+      }
+      final int[] blocks = new int[blockCount];
+      for (int i = 0; i < blockCount; i++) {
+        blocks[i] = allocateBlock();
+      }
+      write(blocks, bytes);
+      index.put(key, new Entry(blocks, bytes.length));
+      usedBytes += bytes.length;
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    final byte[] bytes;
+    synchronized (lock) {
+      final Entry entry = index.get(key);
+      if (entry == null) {
+        return null;
+      }
+      bytes = read(entry);
+    }
+    return codec.decode(bytes);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    synchronized (lock) {
+      release(index.remove(key));
+    }
+    // 返回值没有被使用，不再解码
+    return null;
+  }
+
+  @Override
+  public void clear() {
+    synchronized (lock) {
+      index.clear();
+      // 保留已分配的 slab ，重新使用
+      freeCount = 0;
+      nextBlock = 0;
+      usedBytes = 0;
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /**
+   * 设置最大字节数，即 &lt;property name="maxBytes" value="..."/&gt; 。会清空缓存
+   */
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+    rebuild();
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * 设置块的字节数。较小的块浪费的空间少，较大的块复制更快。会清空缓存
+   */
+  public void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+    rebuild();
+  }
+
+  public int getSlabSize() {
+    return slabSize;
+  }
+
+  /**
+   * 设置每次分配的直接内存的字节数。会清空缓存
+   */
+  public void setSlabSize(int slabSize) {
+    this.slabSize = slabSize;
+    rebuild();
+  }
+
+  public boolean isDirect() {
+    return direct;
+  }
+
+  /**
+   * 设置是否使用直接内存，即 &lt;property name="direct" value="false"/&gt; 。会清空缓存
+   */
+  public void setDirect(boolean direct) {
+    this.direct = direct;
+    rebuild();
+  }
+
+  public CacheCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * 设置编解码器的类名，即 &lt;property name="codec" value="..."/&gt; 。会清空缓存
+   */
+  public void setCodec(String codec) {
+    final CacheCodec newCodec;
+    try {
+      newCodec = (CacheCodec) Resources.classForName(codec).getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Error creating cache codec '" + codec + "' for cache '" + id + "'.  Cause: " + e, e);
+    }
+    synchronized (lock) {
+      this.codec = newCodec;
+      clear();
+    }
+  }
+
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return 缓存对象编码后的字节数之和
+   */
+  public long getUsedBytes() {
+    synchronized (lock) {
+      return usedBytes;
+    }
+  }
+
+  /**
+   * @return 已分配的直接内存（或者堆内 slab）的字节数
+   */
+  public long getAllocatedBytes() {
+    synchronized (lock) {
+      long allocated = 0;
+      for (ByteBuffer slab : slabs) {
+        if (slab != null) {
+          allocated += slab.capacity();
+        }
+      }
+      return allocated;
+    }
+  }
+
+  private void rebuild() {
+    if (blockSize <= 0 || maxBytes < blockSize) {
+      throw new CacheException("Cache '" + id + "' requires a positive blockSize and a maxBytes not less than blockSize.");
+    }
+    synchronized (lock) {
+      totalBlocks = (int) Math.min(maxBytes / blockSize, Integer.MAX_VALUE);
+      blocksPerSlab = Math.max(1, slabSize / blockSize);
+      slabs = new ByteBuffer[(totalBlocks + blocksPerSlab - 1) / blocksPerSlab];
+      freeBlocks = new int[16];
+      index.clear();
+      freeCount = 0;
+      nextBlock = 0;
+      usedBytes = 0;
+    }
+  }
+
+  private int allocateBlock() {
+    while (true) {
+      if (freeCount > 0) {
+        return freeBlocks[--freeCount];
+      }
+      if (nextBlock < totalBlocks) {
+        final int block = nextBlock++;
+        final int slab = block / blocksPerSlab;
+        if (slabs[slab] == null) {
+          final int blocks = Math.min(blocksPerSlab, totalBlocks - slab * blocksPerSlab);
+          slabs[slab] = direct ? ByteBuffer.allocateDirect(blocks * blockSize) : ByteBuffer.allocate(blocks * blockSize);
+        }
+        return block;
+      }
+      // 淘汰最近最少使用的对象
+      final Iterator<Entry> eldest = index.values().iterator();
+      final Entry entry = eldest.next();
+      eldest.remove();
+      release(entry);
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
+    }
+  }
+
+  private void release(Entry entry) {
+    if (entry == null) {
+      return;
+    }
+    if (freeCount + entry.blocks.length > freeBlocks.length) {
+      freeBlocks = Arrays.copyOf(freeBlocks, Math.max(freeBlocks.length * 2, freeCount + entry.blocks.length));
+    }
+    for (int block : entry.blocks) {
+      freeBlocks[freeCount++] = block;
+    }
+    usedBytes -= entry.length;
+  }
+
+  private void write(int[] blocks, byte[] bytes) {
+    int offset = 0;
+    for (int block : blocks) {
+      final ByteBuffer slab = slabs[block / blocksPerSlab];
+      final int length = Math.min(blockSize, bytes.length - offset);
+      slab.position((block % blocksPerSlab) * blockSize);
+      slab.put(bytes, offset, length);
+      offset += length;
+    }
+  }
+
+  private byte[] read(Entry entry) {
+    final byte[] bytes = new byte[entry.length];
+    int offset = 0;
+    for (int block : entry.blocks) {
+      final ByteBuffer slab = slabs[block / blocksPerSlab];
+      final int length = Math.min(blockSize, bytes.length - offset);
+      slab.position((block % blocksPerSlab) * blockSize);
+      slab.get(bytes, offset, length);
+      offset += length;
+    }
+    return bytes;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  /**
+   * 缓存对象占用的块
+   */
+  private static final class Entry {
+    final int[] blocks;
+    final int length;
+
+    Entry(int[] blocks, int length) {
+      this.blocks = blocks;
+      this.length = length;
+    }
+  }
+
+}
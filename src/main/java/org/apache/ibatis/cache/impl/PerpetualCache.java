@@ -29,10 +29,19 @@ public class PerpetualCache implements Cache {
 
   private final String id;
 
-  private Map<Object, Object> cache = new HashMap<>();
+  private final Map<Object, Object> cache;
 
   public PerpetualCache(String id) {
+    this(id, new HashMap<>());
+  }
+
+  /**
+   * @param id 编号
+   * @param cache 存储缓存对象的 Map ，子类可以指定其它的实现，例如按访问顺序排列的 LinkedHashMap
+   */
+  protected PerpetualCache(String id, Map<Object, Object> cache) {
     this.id = id;
+    this.cache = cache;
   }
 
   @Override
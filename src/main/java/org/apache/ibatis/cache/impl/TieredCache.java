@@ -0,0 +1,436 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheCopyStrategy;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
+import org.apache.ibatis.io.Resources;
+
+/**
+ * 两级的近端缓存（near cache）：在 {@link OffHeapCache} 的前面，加一个很小的堆内 L1 。
+ *
+ * L2 保存所有的缓存对象（编码后的形式，默认在堆外），容量大；L1 只保存频繁访问的对象，且不需要解码。
+ * 一个 KEY 在 L2 中命中 promoteAfter 次后，晋升到 L1 ；L1 满了以后，按最近最少使用的顺序降级，
+ * 在 L1 中超过 demoteAfterIdle 毫秒未被访问的对象也会降级。因为 L2 包含所有对象，降级只需要从 L1 移除。
+ *
+ * 没有设置复制策略时，L1 中的对象是共享的，多次 {@link #getObject(Object)} 返回同一个实例，只适用于只读缓存。
+ * 可读写缓存（readOnly="false"）会使用 {@link CacheCopyStrategy} ，L1 命中时返回复制出来的新对象，
+ * 复制策略为默认的 Java 序列化时，L1 改用 {@link DeepCopyStrategy} ，以保证复制比从 L2 解码快。从 L2 返回的对象总是解码出来的新对象。
+ *
+ * 开启统计时，除了缓存本身的指标，还会以 "namespace.L1" 和 "namespace.L2" 为 ID 分别记录每一级的命中与淘汰，
+ * 见 {@link #setTierMetrics(CacheMetrics, CacheMetrics)} 。
+ *
+ * 在 Mapper XML 中，通过 &lt;cache type="TIERED"/&gt; 或 &lt;cache eviction="TIERED"/&gt; 使用，
+ * L2 的 maxBytes 、blockSize 、slabSize 、codec 、direct 等属性也可以通过 &lt;property/&gt; 设置。
+ *
+ * @see OffHeapCache
+ */
+public class TieredCache implements Cache, CacheMetricsAware {
+
+  private final String id;
+
+  private final Object lock = new Object();
+
+  /**
+   * L2 ，保存所有的缓存对象
+   */
+  private final OffHeapCache l2;
+
+  /**
+   * L1 ，按访问顺序排列
+   */
+  private final LinkedHashMap<Object, L1Entry> l1 = new LinkedHashMap<>(16, 0.75f, true);
+
+  /**
+   * 尚未晋升的 KEY 在 L2 中的命中次数，最多保存 l1Size * 4 个，按访问顺序淘汰
+   */
+  private final LinkedHashMap<Object, Integer> candidates = new LinkedHashMap<Object, Integer>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Object, Integer> eldest) {
+      return size() > l1Size * 4;
+    }
+  };
+
+  /**
+   * L1 的最大数量
+   */
+  private int l1Size = 256;
+
+  /**
+   * 在 L2 中命中多少次后晋升到 L1
+   */
+  private int promoteAfter = 2;
+
+  /**
+   * L1 中的对象多少毫秒未被访问后降级，0 表示不按空闲时间降级
+   */
+  private long demoteAfterIdle;
+
+  private long promotionCount;
+
+  private long demotionCount;
+
+  /**
+   * 每一级的统计指标，可能为 null
+   */
+  private CacheMetrics l1Metrics;
+
+  private CacheMetrics l2Metrics;
+
+  /**
+   * L1 命中时的复制策略，为 null 时共享 L1 中的对象
+   */
+  private CacheCopyStrategy copyStrategy;
+
+  public TieredCache(String id) {
+    this.id = id;
+    this.l2 = new OffHeapCache(id);
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int getSize() {
+    return l2.getSize();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    l2.putObject(key, value);
+    synchronized (lock) {
+      // L1 中的旧对象失效，新对象需要重新晋升
+      l1.remove(key);
+      candidates.remove(key);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    final L1Entry entry;
+    final CacheCopyStrategy copyStrategy;
+    synchronized (lock) {
+      entry = l1.get(key);
+      copyStrategy = this.copyStrategy;
+      if (entry != null) {
+        entry.lastAccess = System.currentTimeMillis();
+      }
+    }
+    if (entry != null) {
+      record(l1Metrics, true);
+      // 复制在锁外进行
+      return copyStrategy == null ? entry.value : copyStrategy.copyForRead(entry.value);
+    }
+    record(l1Metrics, false);
+    // 解码在锁外进行
+    final Object value = l2.getObject(key);
+    record(l2Metrics, value != null);
+    if (value != null) {
+      promoteIfRequired(key);
+    }
+    return value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    synchronized (lock) {
+      l1.remove(key);
+      candidates.remove(key);
+      l2.removeObject(key);
+    }
+    return null;
+  }
+
+  @Override
+  public void clear() {
+    synchronized (lock) {
+      l1.clear();
+      candidates.clear();
+      l2.clear();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  public int getL1Size() {
+    return l1Size;
+  }
+
+  /**
+   * 设置 L1 的最大数量，即 &lt;property name="l1Size" value="..."/&gt;
+   */
+  public void setL1Size(int l1Size) {
+    if (l1Size < 1) {
+      throw new CacheException("The l1Size of cache '" + id + "' must be positive, but was " + l1Size + ".");
+    }
+    synchronized (lock) {
+      this.l1Size = l1Size;
+      while (l1.size() > l1Size) {
+        demoteEldest();
+      }
+    }
+  }
+
+  public int getPromoteAfter() {
+    return promoteAfter;
+  }
+
+  /**
+   * 设置在 L2 中命中多少次后晋升到 L1 ，1 表示第一次命中就晋升
+   */
+  public void setPromoteAfter(int promoteAfter) {
+    if (promoteAfter < 1) {
+      throw new CacheException("The promoteAfter of cache '" + id + "' must be positive, but was " + promoteAfter + ".");
+    }
+    this.promoteAfter = promoteAfter;
+  }
+
+  public long getDemoteAfterIdle() {
+    return demoteAfterIdle;
+  }
+
+  /**
+   * 设置 L1 中的对象多少毫秒未被访问后降级，0 表示不按空闲时间降级
+   */
+  public void setDemoteAfterIdle(long demoteAfterIdle) {
+    this.demoteAfterIdle = demoteAfterIdle;
+  }
+
+  public CacheCopyStrategy getCopyStrategy() {
+    synchronized (lock) {
+      return copyStrategy;
+    }
+  }
+
+  /**
+   * 设置 L1 命中时的复制策略，为 null 时共享 L1 中的对象。会清空 L1 ，因为存储的形式可能不同
+   */
+  public void useCopyStrategy(CacheCopyStrategy copyStrategy) {
+    synchronized (lock) {
+      this.copyStrategy = copyStrategy;
+      l1.clear();
+      candidates.clear();
+    }
+  }
+
+  /**
+   * 设置复制策略的类名，即 &lt;property name="copyStrategy" value="..."/&gt;
+   */
+  public void setCopyStrategy(String copyStrategy) {
+    try {
+      useCopyStrategy((CacheCopyStrategy) Resources.classForName(copyStrategy).getDeclaredConstructor().newInstance());
+    } catch (Exception e) {
+      throw new CacheException("Error creating cache copy strategy '" + copyStrategy + "' for cache '" + id + "'.  Cause: " + e, e);
+    }
+  }
+
+  public void setMaxBytes(long maxBytes) {
+    l2.setMaxBytes(maxBytes);
+    clearL1();
+  }
+
+  public void setBlockSize(int blockSize) {
+    l2.setBlockSize(blockSize);
+    clearL1();
+  }
+
+  public void setSlabSize(int slabSize) {
+    l2.setSlabSize(slabSize);
+    clearL1();
+  }
+
+  public void setCodec(String codec) {
+    l2.setCodec(codec);
+    clearL1();
+  }
+
+  public void setDirect(boolean direct) {
+    l2.setDirect(direct);
+    clearL1();
+  }
+
+  /**
+   * L2 的淘汰记录到缓存本身的统计指标中
+   */
+  @Override
+  public void setCacheMetrics(CacheMetrics metrics) {
+    l2.setCacheMetrics(metrics);
+  }
+
+  /**
+   * 设置每一级的统计指标
+   *
+   * @param l1Metrics L1 的统计指标，记录 L1 的命中、未命中与降级，可以为 null
+   * @param l2Metrics L2 的统计指标，记录 L1 未命中后 L2 的命中与未命中，可以为 null
+   */
+  public void setTierMetrics(CacheMetrics l1Metrics, CacheMetrics l2Metrics) {
+    this.l1Metrics = l1Metrics;
+    this.l2Metrics = l2Metrics;
+  }
+
+  public OffHeapCache getL2() {
+    return l2;
+  }
+
+  /**
+   * @return L1 中的数量
+   */
+  public int getL1Count() {
+    synchronized (lock) {
+      return l1.size();
+    }
+  }
+
+  public long getPromotionCount() {
+    synchronized (lock) {
+      return promotionCount;
+    }
+  }
+
+  public long getDemotionCount() {
+    synchronized (lock) {
+      return demotionCount;
+    }
+  }
+
+  private void promoteIfRequired(Object key) {
+    synchronized (lock) {
+      final Integer hits = candidates.get(key);
+      final int count = hits == null ? 1 : hits + 1;
+      if (count < promoteAfter) {
+        candidates.put(key, count);
+        return;
+      }
+      candidates.remove(key);
+      // 重新从 L2 解码一个对象放入 L1 ，返回给调用方的对象仍然由调用方独占。
+      // 在锁内读取，保证不会晋升一个已经被 putObject 或 removeObject 替换的对象
+      final Object value = l2.getObject(key);
+      if (value == null) {
+        return;
+      }
+      final long now = System.currentTimeMillis();
+      l1.put(key, new L1Entry(copyStrategy == null ? value : copyStrategy.copyForWrite(value), now));
+      promotionCount++;
+      demoteIdle(now);
+      while (l1.size() > l1Size) {
+        demoteEldest();
+      }
+    }
+  }
+
+  /**
+   * 从最久未访问的一端开始，降级空闲超时的对象
+   */
+  private void demoteIdle(long now) {
+    if (demoteAfterIdle <= 0) {
+      return;
+    }
+    final Iterator<L1Entry> iterator = l1.values().iterator();
+    while (iterator.hasNext()) {
+      final L1Entry entry = iterator.next();
+      if (now - entry.lastAccess < demoteAfterIdle) {
+        break;
+      }
+      iterator.remove();
+      demoted();
+    }
+  }
+
+  private void demoteEldest() {
+    final Iterator<L1Entry> iterator = l1.values().iterator();
+    iterator.next();
+    iterator.remove();
+    demoted();
+  }
+
+  private void demoted() {
+    demotionCount++;
+    if (l1Metrics != null) {
+      l1Metrics.recordEviction();
+    }
+  }
+
+  private void clearL1() {
+    synchronized (lock) {
+      l1.clear();
+      candidates.clear();
+    }
+  }
+
+  private static void record(CacheMetrics metrics, boolean hit) {
+    if (metrics == null) {
+      return;
+    }
+    if (hit) {
+      metrics.recordHit();
+    } else {
+      metrics.recordMiss();
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  /**
+   * L1 中的对象
+   */
+  private static final class L1Entry {
+    final Object value;
+    long lastAccess;
+
+    L1Entry(Object value, long lastAccess) {
+      this.value = value;
+      this.lastAccess = lastAccess;
+    }
+  }
+
+}
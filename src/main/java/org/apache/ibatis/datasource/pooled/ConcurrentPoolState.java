@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link PoolEngine#CONCURRENT_BAG} 引擎使用的 {@link PoolState}。
+ *
+ * 统计数据通过 {@link LongAdder} 累加，避免为了记录统计而重新引入全局锁；
+ * 活动与空闲连接数则直接从 {@link ConnectionBag} 中读取。
+ */
+class ConcurrentPoolState extends PoolState {
+
+  private final ConnectionBag bag;
+
+  final LongAdder requests = new LongAdder();
+  final LongAdder requestTime = new LongAdder();
+  final LongAdder checkoutTime = new LongAdder();
+  final LongAdder claimedOverdue = new LongAdder();
+  final LongAdder overdueCheckoutTime = new LongAdder();
+  final LongAdder waitTime = new LongAdder();
+  final LongAdder hadToWait = new LongAdder();
+  final LongAdder badConnections = new LongAdder();
+
+  ConcurrentPoolState(PooledDataSource dataSource, ConnectionBag bag) {
+    super(dataSource);
+    this.bag = bag;
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requests.sum();
+  }
+
+  @Override
+  public long getAverageRequestTime() {
+    long count = requests.sum();
+    return count == 0 ? 0 : requestTime.sum() / count;
+  }
+
+  @Override
+  public long getAverageWaitTime() {
+    long count = hadToWait.sum();
+    return count == 0 ? 0 : waitTime.sum() / count;
+  }
+
+  @Override
+  public long getHadToWaitCount() {
+    return hadToWait.sum();
+  }
+
+  @Override
+  public long getBadConnectionCount() {
+    return badConnections.sum();
+  }
+
+  @Override
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdue.sum();
+  }
+
+  @Override
+  public long getAverageOverdueCheckoutTime() {
+    long count = claimedOverdue.sum();
+    return count == 0 ? 0 : overdueCheckoutTime.sum() / count;
+  }
+
+  @Override
+  public long getAverageCheckoutTime() {
+    long count = requests.sum();
+    return count == 0 ? 0 : checkoutTime.sum() / count;
+  }
+
+  @Override
+  public int getIdleConnectionCount() {
+    return bag.getIdleCount();
+  }
+
+  @Override
+  public int getActiveConnectionCount() {
+    return bag.getActiveCount();
+  }
+
+}
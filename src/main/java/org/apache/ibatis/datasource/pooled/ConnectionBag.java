@@ -0,0 +1,438 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * {@link PoolEngine#CONCURRENT_BAG} 引擎的实现，借出与归还都不需要获取全局锁。
+ *
+ * 1. 每个真实连接对应一个 {@link BagEntry}，通过 CAS 修改其状态完成借出
+ * 2. 归还的连接会记录在当前线程的 ThreadLocal 中，同一个线程再次借出时优先复用
+ * 3. 池满时，借出线程在公平的 {@link SynchronousQueue} 上排队，归还线程直接把连接交给等待最久的线程
+ *
+ * 每次借出都会创建新的 {@link PooledConnection} 包装真实连接，归还后旧的代理对象失效，这一点与默认引擎一致。
+ */
+class ConnectionBag {
+
+  private static final Log log = LogFactory.getLog(ConnectionBag.class);
+
+  static final int STATE_REMOVED = -1;
+  static final int STATE_FREE = 0;
+  static final int STATE_IN_USE = 1;
+  static final int STATE_RESERVED = 2;
+
+  /**
+   * 每个线程最多记住的连接数
+   */
+  private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+
+  /**
+   * 单次在交接队列上等待的最长时间。单位：毫秒
+   * 超时后重新检查是否可以创建新连接或者回收超时的连接
+   */
+  private static final long MAX_HANDOFF_WAIT = 100L;
+
+  private final PooledDataSource pooledDataSource;
+  private final UnpooledDataSource dataSource;
+  private final ConcurrentPoolState state;
+
+  private final CopyOnWriteArrayList<BagEntry> sharedList = new CopyOnWriteArrayList<>();
+  private final ThreadLocal<List<WeakReference<BagEntry>>> threadList = ThreadLocal.withInitial(ArrayList::new);
+  private final SynchronousQueue<BagEntry> handoffQueue = new SynchronousQueue<>(true);
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final AtomicInteger totalCount = new AtomicInteger();
+  private final AtomicInteger idleCount = new AtomicInteger();
+
+  ConnectionBag(PooledDataSource pooledDataSource, UnpooledDataSource dataSource) {
+    this.pooledDataSource = pooledDataSource;
+    this.dataSource = dataSource;
+    this.state = new ConcurrentPoolState(pooledDataSource, this);
+  }
+
+  PoolState getPoolState() {
+    return state;
+  }
+
+  int getIdleCount() {
+    return idleCount.get();
+  }
+
+  int getActiveCount() {
+    return Math.max(0, totalCount.get() - idleCount.get());
+  }
+
+  PooledConnection borrow(String username, String password) throws SQLException {
+    // 标记，获取连接时，是否进行了等待
+    boolean countedWait = false;
+    long t = System.currentTimeMillis();
+    // 记录当前方法，获取到坏连接的次数
+    int localBadConnectionCount = 0;
+
+    while (true) {
+      // 优先复用当前线程上次归还的连接
+      BagEntry entry = pollThreadLocal();
+      if (entry == null) {
+        waiters.incrementAndGet();
+        try {
+          entry = pollShared();
+          if (entry == null) {
+            entry = createEntry();
+          }
+          if (entry == null) {
+            entry = claimOverdueEntry();
+          }
+          if (entry == null) {
+            if (!countedWait) {
+              state.hadToWait.increment();
+              countedWait = true;
+            }
+            long wt = System.currentTimeMillis();
+            try {
+              entry = awaitHandoff();
+            } finally {
+              state.waitTime.add(System.currentTimeMillis() - wt);
+            }
+          }
+        } finally {
+          waiters.decrementAndGet();
+        }
+      }
+      if (entry == null) {
+        continue;
+      }
+
+      PooledConnection conn = activate(entry, username, password);
+      if (conn != null) {
+        state.requests.increment();
+        state.requestTime.add(System.currentTimeMillis() - t);
+        return conn;
+      }
+      localBadConnectionCount++;
+      if (localBadConnectionCount > (pooledDataSource.poolMaximumIdleConnections + pooledDataSource.poolMaximumLocalBadConnectionTolerance)) {
+        if (log.isDebugEnabled()) {
+          log.debug("PooledDataSource: Could not get a good connection to the database.");
+        }
+        throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+      }
+    }
+  }
+
+  void requite(PooledConnection conn) throws SQLException {
+    BagEntry entry = conn.getBagEntry();
+    if (!release(entry, conn)) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.badConnections.increment();
+      return;
+    }
+    state.checkoutTime.add(conn.getCheckoutTime());
+
+    if (!conn.isValid()) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      conn.invalidate();
+      state.badConnections.increment();
+      remove(entry);
+      return;
+    }
+
+    try {
+      if (!entry.realConnection.getAutoCommit()) {
+        entry.realConnection.rollback();
+      }
+    } catch (SQLException e) {
+      conn.invalidate();
+      remove(entry);
+      throw e;
+    }
+    conn.invalidate();
+    entry.lastUsedTimestamp = conn.getLastUsedTimestamp();
+    entry.owner = null;
+
+    if (conn.getConnectionTypeCode() != pooledDataSource.getExpectedConnectionTypeCode()
+        || (waiters.get() == 0 && idleCount.get() >= pooledDataSource.poolMaximumIdleConnections)) {
+      remove(entry);
+      if (log.isDebugEnabled()) {
+        log.debug("Closed connection " + conn.getRealHashCode() + ".");
+      }
+      return;
+    }
+
+    if (!entry.state.compareAndSet(STATE_RESERVED, STATE_FREE)) {
+      // forceCloseAll 已经移除了该连接
+      return;
+    }
+    idleCount.incrementAndGet();
+    if (log.isDebugEnabled()) {
+      log.debug("Returned connection " + conn.getRealHashCode() + " to pool.");
+    }
+
+    // 有线程在等待时，直接把连接交给它
+    for (int i = 0; waiters.get() > 0; i++) {
+      if (entry.state.get() != STATE_FREE || handoffQueue.offer(entry)) {
+        return;
+      } else if ((i & 0xff) == 0xff) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+      } else {
+        Thread.yield();
+      }
+    }
+
+    List<WeakReference<BagEntry>> entries = threadList.get();
+    if (entries.size() < MAX_THREAD_LOCAL_ENTRIES) {
+      entries.add(new WeakReference<>(entry));
+    }
+  }
+
+  void closeAll() {
+    for (BagEntry entry : sharedList) {
+      int previous = entry.state.getAndSet(STATE_REMOVED);
+      if (previous == STATE_REMOVED) {
+        continue;
+      }
+      if (previous == STATE_FREE) {
+        idleCount.decrementAndGet();
+      }
+      sharedList.remove(entry);
+      totalCount.decrementAndGet();
+      PooledConnection owner = entry.owner;
+      if (owner != null) {
+        owner.invalidate();
+      }
+      closeQuietly(entry.realConnection);
+    }
+  }
+
+  private BagEntry pollThreadLocal() {
+    List<WeakReference<BagEntry>> entries = threadList.get();
+    for (int i = entries.size() - 1; i >= 0; i--) {
+      BagEntry entry = entries.remove(i).get();
+      if (entry != null && reserve(entry)) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private BagEntry pollShared() {
+    for (BagEntry entry : sharedList) {
+      if (reserve(entry)) {
+        if (log.isDebugEnabled()) {
+          log.debug("Checked out connection " + entry.realConnection.hashCode() + " from pool.");
+        }
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  private BagEntry createEntry() throws SQLException {
+    int count;
+    do {
+      count = totalCount.get();
+      if (count >= pooledDataSource.poolMaximumActiveConnections) {
+        return null;
+      }
+    } while (!totalCount.compareAndSet(count, count + 1));
+
+    Connection connection;
+    try {
+      connection = dataSource.getConnection();
+    } catch (SQLException | RuntimeException e) {
+      totalCount.decrementAndGet();
+      throw e;
+    }
+    BagEntry entry = new BagEntry(connection);
+    sharedList.add(entry);
+    if (log.isDebugEnabled()) {
+      log.debug("Created connection " + connection.hashCode() + ".");
+    }
+    return entry;
+  }
+
+  private BagEntry claimOverdueEntry() {
+    for (BagEntry entry : sharedList) {
+      PooledConnection owner = entry.owner;
+      if (owner == null || owner.getCheckoutTime() <= pooledDataSource.poolMaximumCheckoutTime) {
+        continue;
+      }
+      if (!entry.state.compareAndSet(STATE_IN_USE, STATE_RESERVED)) {
+        continue;
+      }
+      if (entry.owner != owner) {
+        // 在 CAS 之前已经被归还并重新借出
+        entry.state.set(STATE_IN_USE);
+        continue;
+      }
+      long longestCheckoutTime = owner.getCheckoutTime();
+      state.claimedOverdue.increment();
+      state.overdueCheckoutTime.add(longestCheckoutTime);
+      state.checkoutTime.add(longestCheckoutTime);
+      owner.invalidate();
+      entry.owner = null;
+      try {
+        if (!entry.realConnection.getAutoCommit()) {
+          entry.realConnection.rollback();
+        }
+      } catch (SQLException e) {
+        // 与默认引擎一致，交由后续的有效性检测丢弃坏连接
+        log.debug("Bad connection. Could not roll back");
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Claimed overdue connection " + entry.realConnection.hashCode() + ".");
+      }
+      return entry;
+    }
+    return null;
+  }
+
+  private BagEntry awaitHandoff() throws SQLException {
+    long timeout = Math.min(pooledDataSource.poolTimeToWait, MAX_HANDOFF_WAIT);
+    if (log.isDebugEnabled()) {
+      log.debug("Waiting as long as " + timeout + " milliseconds for connection.");
+    }
+    try {
+      BagEntry entry = handoffQueue.poll(Math.max(timeout, 1L), TimeUnit.MILLISECONDS);
+      return entry != null && reserve(entry) ? entry : null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("PooledDataSource: Interrupted while waiting for a connection.", e);
+    }
+  }
+
+  private PooledConnection activate(BagEntry entry, String username, String password) throws SQLException {
+    PooledConnection conn = new PooledConnection(entry.realConnection, pooledDataSource);
+    conn.setBagEntry(entry);
+    if (entry.statementCache == null && pooledDataSource.poolStatementCacheSize > 0) {
+      entry.statementCache = new PreparedStatementCache(pooledDataSource, pooledDataSource.poolStatementCacheSize);
+    }
+    conn.setStatementCache(entry.statementCache);
+    conn.setCreatedTimestamp(entry.createdTimestamp);
+    conn.setLastUsedTimestamp(entry.lastUsedTimestamp);
+    // 通过 ping 来测试连接是否有效
+    if (conn.isValid()) {
+      if (!entry.realConnection.getAutoCommit()) {
+        entry.realConnection.rollback();
+      }
+      conn.setConnectionTypeCode(pooledDataSource.assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+      conn.setCheckoutTimestamp(System.currentTimeMillis());
+      conn.setLastUsedTimestamp(System.currentTimeMillis());
+      entry.owner = conn;
+      if (entry.state.compareAndSet(STATE_RESERVED, STATE_IN_USE)) {
+        return conn;
+      }
+      // forceCloseAll 已经移除了该连接
+      conn.invalidate();
+      return null;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+    }
+    state.badConnections.increment();
+    conn.invalidate();
+    remove(entry);
+    return null;
+  }
+
+  /**
+   * 将当前线程持有的连接标记为归还中
+   *
+   * @return 如果 conn 已经不是该连接的持有者（被回收，或者被 forceCloseAll 关闭），返回 false
+   */
+  private boolean release(BagEntry entry, PooledConnection conn) {
+    if (entry == null || entry.owner != conn || !entry.state.compareAndSet(STATE_IN_USE, STATE_RESERVED)) {
+      return false;
+    }
+    if (entry.owner != conn) {
+      // CAS 之前连接已经被其它线程回收，并重新借出
+      entry.state.set(STATE_IN_USE);
+      return false;
+    }
+    return true;
+  }
+
+  private boolean reserve(BagEntry entry) {
+    if (entry.state.compareAndSet(STATE_FREE, STATE_RESERVED)) {
+      idleCount.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  private void remove(BagEntry entry) {
+    if (entry.state.compareAndSet(STATE_RESERVED, STATE_REMOVED)) {
+      sharedList.remove(entry);
+      totalCount.decrementAndGet();
+      if (entry.statementCache != null) {
+        entry.statementCache.closeAll();
+      }
+      closeQuietly(entry.realConnection);
+    }
+  }
+
+  private void closeQuietly(Connection realConnection) {
+    try {
+      if (!realConnection.getAutoCommit()) {
+        realConnection.rollback();
+      }
+      realConnection.close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
+  static class BagEntry {
+
+    private final AtomicInteger state = new AtomicInteger(STATE_RESERVED);
+    private final Connection realConnection;
+    private final long createdTimestamp;
+    private volatile long lastUsedTimestamp;
+
+    /**
+     * 当前借出该连接的 PooledConnection，空闲时为 null
+     */
+    private volatile PooledConnection owner;
+
+    /**
+     * 物理连接上的 PreparedStatement 缓存，在每次借出时交给新的 PooledConnection
+     */
+    private PreparedStatementCache statementCache;
+
+    BagEntry(Connection realConnection) {
+      this.realConnection = realConnection;
+      this.createdTimestamp = System.currentTimeMillis();
+      this.lastUsedTimestamp = this.createdTimestamp;
+    }
+
+  }
+
+}
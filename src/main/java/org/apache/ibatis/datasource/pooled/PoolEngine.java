@@ -0,0 +1,31 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * {@link PooledDataSource} 的连接池引擎，可通过 poolEngine 属性进行选择。
+ */
+public enum PoolEngine {
+  /**
+   * 默认引擎，所有的借出与归还都在 synchronized(state) 中完成，并通过 wait/notifyAll 等待空闲连接
+   */
+  SYNCHRONIZED,
+  /**
+   * 基于 {@link ConnectionBag} 的无锁引擎，借出时优先复用当前线程上次归还的连接，
+   * 池满时由归还线程直接交给公平排队的等待线程
+   */
+  CONCURRENT_BAG
+}
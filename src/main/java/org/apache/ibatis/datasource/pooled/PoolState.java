@@ -74,6 +74,18 @@ public class PoolState {
   }
 
 
+  public long getStatementCacheHitCount() {
+    return dataSource.statementCacheHits.sum();
+  }
+
+  public long getStatementCacheMissCount() {
+    return dataSource.statementCacheMisses.sum();
+  }
+
+  public long getStatementCacheEvictionCount() {
+    return dataSource.statementCacheEvictions.sum();
+  }
+
   public synchronized int getIdleConnectionCount() {
     return idleConnections.size();
   }
@@ -97,6 +109,8 @@ public class PoolState {
     builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
     builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
     builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+    builder.append("\n poolEngine                     ").append(dataSource.poolEngine);
+    builder.append("\n poolStatementCacheSize         ").append(dataSource.poolStatementCacheSize);
     builder.append("\n ---STATUS-----------------------------------------------------");
     builder.append("\n activeConnections              ").append(getActiveConnectionCount());
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -107,6 +121,9 @@ public class PoolState {
     builder.append("\n averageOverdueCheckoutTime     ").append(getAverageOverdueCheckoutTime());
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
+    builder.append("\n statementCacheHits             ").append(getStatementCacheHitCount());
+    builder.append("\n statementCacheMisses           ").append(getStatementCacheMissCount());
+    builder.append("\n statementCacheEvictions        ").append(getStatementCacheEvictionCount());
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
     builder.append("\n===============================================================");
     return builder.toString();
@@ -29,6 +29,7 @@ import org.apache.ibatis.reflection.ExceptionUtil;
 class PooledConnection implements InvocationHandler {
 
   private static final String CLOSE = "close";
+  private static final String PREPARE_STATEMENT = "prepareStatement";
   private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
 
   private final int hashCode;
@@ -40,6 +41,8 @@ class PooledConnection implements InvocationHandler {
   private long lastUsedTimestamp;
   private int connectionTypeCode;
   private boolean valid;
+  private ConnectionBag.BagEntry bagEntry;
+  private PreparedStatementCache statementCache;
 
   /**
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in
@@ -199,6 +202,42 @@ class PooledConnection implements InvocationHandler {
     return System.currentTimeMillis() - checkoutTimestamp;
   }
 
+  /**
+   * Getter for the {@link ConnectionBag} entry this connection was borrowed from
+   *
+   * @return the entry, or null if the connection is managed by the synchronized engine
+   */
+  ConnectionBag.BagEntry getBagEntry() {
+    return bagEntry;
+  }
+
+  /**
+   * Setter for the {@link ConnectionBag} entry this connection was borrowed from
+   *
+   * @param bagEntry - the entry
+   */
+  void setBagEntry(ConnectionBag.BagEntry bagEntry) {
+    this.bagEntry = bagEntry;
+  }
+
+  /**
+   * Getter for the prepared statement cache of the real connection
+   *
+   * @return the cache, or null if no statement has been cached yet
+   */
+  PreparedStatementCache getStatementCache() {
+    return statementCache;
+  }
+
+  /**
+   * Setter for the prepared statement cache, handed over when the real connection is wrapped again
+   *
+   * @param statementCache - the cache of the real connection
+   */
+  void setStatementCache(PreparedStatementCache statementCache) {
+    this.statementCache = statementCache;
+  }
+
   @Override
   public int hashCode() {
     return hashCode;
@@ -236,6 +275,14 @@ class PooledConnection implements InvocationHandler {
       dataSource.pushConnection(this);
       return null;
     }
+    if (PREPARE_STATEMENT.hashCode() == methodName.hashCode() && PREPARE_STATEMENT.equals(methodName)
+        && dataSource.poolStatementCacheSize > 0) {
+      checkConnection();
+      if (statementCache == null) {
+        statementCache = new PreparedStatementCache(dataSource, dataSource.poolStatementCacheSize);
+      }
+      return statementCache.prepareStatement(this, method, args);
+    }
     try {
       if (!Object.class.equals(method.getDeclaringClass())) {
         // issue #579 toString() should never fail
@@ -23,6 +23,7 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -42,7 +43,12 @@ public class PooledDataSource implements DataSource {
   /**
    * PoolState 对象，记录池化的状态
    */
-  private final PoolState state = new PoolState(this);
+  private volatile PoolState state = new PoolState(this);
+
+  /**
+   * ConnectionBag 对象，仅在 poolEngine 为 {@link PoolEngine#CONCURRENT_BAG} 时存在
+   */
+  private volatile ConnectionBag connectionBag;
 
   /**
    * UnpooledDataSource 对象
@@ -96,10 +102,28 @@ public class PooledDataSource implements DataSource {
    */
   protected int poolPingConnectionsNotUsedFor;
 
+  /**
+   * 连接池引擎，默认为 {@link PoolEngine#SYNCHRONIZED}
+   */
+  protected PoolEngine poolEngine = PoolEngine.SYNCHRONIZED;
+
+  /**
+   * 每个物理连接缓存的 PreparedStatement 数量，缓存在多个 SqlSession 之间共享。
+   * 默认值：0（即不缓存）
+   */
+  protected int poolStatementCacheSize;
+
+  /**
+   * PreparedStatement 缓存的统计
+   */
+  final LongAdder statementCacheHits = new LongAdder();
+  final LongAdder statementCacheMisses = new LongAdder();
+  final LongAdder statementCacheEvictions = new LongAdder();
+
   /**
    * 期望 Connection 的类型编码，通过 {@link #assembleConnectionTypeCode(String, String, String)} 计算。
    */
-  private int expectedConnectionTypeCode;
+  private volatile int expectedConnectionTypeCode;
 
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
@@ -131,11 +155,15 @@ public class PooledDataSource implements DataSource {
 
   @Override
   public Connection getConnection() throws SQLException {
-    return popConnection(dataSource.getUsername(), dataSource.getPassword()).getProxyConnection();
+    return getConnection(dataSource.getUsername(), dataSource.getPassword());
   }
 
   @Override
   public Connection getConnection(String username, String password) throws SQLException {
+    ConnectionBag bag = connectionBag;
+    if (bag != null) {
+      return bag.borrow(username, password).getProxyConnection();
+    }
     return popConnection(username, password).getProxyConnection();
   }
 
@@ -280,6 +308,23 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * The engine used to borrow and return connections
+   *
+   * @param poolEngine The pool engine
+   */
+  public void setPoolEngine(PoolEngine poolEngine) {
+    forceCloseAll();
+    this.poolEngine = poolEngine;
+    if (poolEngine == PoolEngine.CONCURRENT_BAG) {
+      connectionBag = new ConnectionBag(this, dataSource);
+      state = connectionBag.getPoolState();
+    } else {
+      connectionBag = null;
+      state = new PoolState(this);
+    }
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -340,6 +385,25 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  public PoolEngine getPoolEngine() {
+    return poolEngine;
+  }
+
+  /**
+   * The number of prepared statements cached per physical connection and reused across sessions.
+   * Zero disables the cache.
+   *
+   * @param poolStatementCacheSize The maximum number of idle statements kept per connection
+   */
+  public void setPoolStatementCacheSize(int poolStatementCacheSize) {
+    this.poolStatementCacheSize = poolStatementCacheSize;
+    forceCloseAll();
+  }
+
+  public int getPoolStatementCacheSize() {
+    return poolStatementCacheSize;
+  }
+
   /*
    * Closes all active and idle connections in the pool
    */
@@ -364,6 +428,9 @@ public class PooledDataSource implements DataSource {
         try {
           PooledConnection conn = state.idleConnections.remove(i - 1);
           conn.invalidate();
+          if (conn.getStatementCache() != null) {
+            conn.getStatementCache().closeAll();
+          }
 
           Connection realConn = conn.getRealConnection();
           if (!realConn.getAutoCommit()) {
@@ -375,6 +442,10 @@ public class PooledDataSource implements DataSource {
         }
       }
     }
+    ConnectionBag bag = connectionBag;
+    if (bag != null) {
+      bag.closeAll();
+    }
     if (log.isDebugEnabled()) {
       log.debug("PooledDataSource forcefully closed/removed all connections.");
     }
@@ -384,12 +455,25 @@ public class PooledDataSource implements DataSource {
     return state;
   }
 
-  private int assembleConnectionTypeCode(String url, String username, String password) {
+  int assembleConnectionTypeCode(String url, String username, String password) {
     return ("" + url + username + password).hashCode();
   }
 
+  int getExpectedConnectionTypeCode() {
+    return expectedConnectionTypeCode;
+  }
+
   protected void pushConnection(PooledConnection conn) throws SQLException {
 
+    // 由 ConnectionBag 借出的连接，同样归还给 ConnectionBag
+    if (conn.getBagEntry() != null) {
+      ConnectionBag bag = connectionBag;
+      if (bag != null) {
+        bag.requite(conn);
+      }
+      return;
+    }
+
     synchronized (state) {
       state.activeConnections.remove(conn);
       if (conn.isValid()) {
@@ -399,6 +483,7 @@ public class PooledDataSource implements DataSource {
             conn.getRealConnection().rollback();
           }
           PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+          newConn.setStatementCache(conn.getStatementCache());
           state.idleConnections.add(newConn);
           newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
           newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
@@ -412,6 +497,9 @@ public class PooledDataSource implements DataSource {
           if (!conn.getRealConnection().getAutoCommit()) {
             conn.getRealConnection().rollback();
           }
+          if (conn.getStatementCache() != null) {
+            conn.getStatementCache().closeAll();
+          }
           conn.getRealConnection().close();
           if (log.isDebugEnabled()) {
             log.debug("Closed connection " + conn.getRealHashCode() + ".");
@@ -485,6 +573,7 @@ public class PooledDataSource implements DataSource {
                 }
               }
               conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
+              conn.setStatementCache(oldestActiveConnection.getStatementCache());
               conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
               conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
               oldestActiveConnection.invalidate();
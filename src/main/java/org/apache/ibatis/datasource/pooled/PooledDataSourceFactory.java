@@ -32,6 +32,8 @@ import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
  * poolPingQuery – 发送到数据库的侦测查询，用来检验连接是否正常工作并准备接受请求。默认是“NO PING QUERY SET”，这会导致多数数据库驱动失败时带有一个恰当的错误消息。
  * poolPingEnabled – 是否启用侦测查询。若开启，需要设置 poolPingQuery 属性为一个可执行的 SQL 语句（最好是一个速度非常快的 SQL 语句），默认值：false。
  * poolPingConnectionsNotUsedFor – 配置 poolPingQuery 的频率。可以被设置为和数据库连接超时时间一样，来避免不必要的侦测，默认值：0（即所有连接每一时刻都被侦测 — 当然仅当 poolPingEnabled 为 true 时适用）。
+ * poolEngine – 连接池引擎。SYNCHRONIZED 在同一把锁上完成借出与归还；CONCURRENT_BAG 使用无锁的借出、公平的等待队列以及线程亲和的连接复用，适合高并发场景，默认值：SYNCHRONIZED。
+ * poolStatementCacheSize – 每个物理连接缓存的 PreparedStatement 数量。同一物理连接上的多个 SqlSession 复用已预编译的语句，超过数量时按 LRU 关闭，默认值：0（即不缓存）。
  */
 public class PooledDataSourceFactory extends UnpooledDataSourceFactory {
 
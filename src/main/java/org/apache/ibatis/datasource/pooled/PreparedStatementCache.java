@@ -0,0 +1,291 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 物理连接上的 PreparedStatement 缓存。
+ *
+ * 随物理连接在多个 {@link PooledConnection} 之间传递，所以同一物理连接上的多个 SqlSession 可以复用已预编译的语句。
+ * 缓存中只保存空闲的语句：prepareStatement 时取出，调用方 close 时放回。
+ * 超过容量时，按 LRU 淘汰并真正关闭语句。
+ */
+class PreparedStatementCache {
+
+  private static final Log log = LogFactory.getLog(PreparedStatementCache.class);
+
+  private static final Class<?>[] IFACES = new Class<?>[] { PreparedStatement.class };
+
+  private final PooledDataSource dataSource;
+  private final int maxSize;
+
+  /**
+   * 空闲的语句，按访问顺序排列
+   */
+  private final LinkedHashMap<StatementKey, PreparedStatement> idleStatements = new LinkedHashMap<>(16, 0.75f, true);
+
+  PreparedStatementCache(PooledDataSource dataSource, int maxSize) {
+    this.dataSource = dataSource;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * 通过缓存执行 Connection#prepareStatement 方法
+   *
+   * @param owner 当前借出连接的 PooledConnection
+   * @param method prepareStatement 方法
+   * @param args 方法参数
+   * @return 语句的代理对象，close 时放回缓存
+   */
+  PreparedStatement prepareStatement(PooledConnection owner, Method method, Object[] args) throws Throwable {
+    final StatementKey key = new StatementKey(args);
+    PreparedStatement statement = take(key);
+    if (statement != null && !statement.isClosed()) {
+      dataSource.statementCacheHits.increment();
+    } else {
+      dataSource.statementCacheMisses.increment();
+      try {
+        statement = (PreparedStatement) method.invoke(owner.getRealConnection(), args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    }
+    return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), IFACES,
+        new CachedStatement(this, key, statement, owner.getProxyConnection()));
+  }
+
+  synchronized int size() {
+    return idleStatements.size();
+  }
+
+  /**
+   * 关闭所有空闲的语句
+   */
+  void closeAll() {
+    final List<PreparedStatement> statements;
+    synchronized (this) {
+      statements = new ArrayList<>(idleStatements.values());
+      idleStatements.clear();
+    }
+    for (PreparedStatement statement : statements) {
+      closeQuietly(statement);
+    }
+  }
+
+  private synchronized PreparedStatement take(StatementKey key) {
+    return idleStatements.remove(key);
+  }
+
+  private void release(StatementKey key, PreparedStatement statement) {
+    PreparedStatement evicted = null;
+    synchronized (this) {
+      if (idleStatements.containsKey(key)) {
+        // 同一 SQL 同时打开了多个语句，只保留一个
+        evicted = statement;
+      } else {
+        idleStatements.put(key, statement);
+        if (idleStatements.size() > maxSize) {
+          Iterator<PreparedStatement> iterator = idleStatements.values().iterator();
+          evicted = iterator.next();
+          iterator.remove();
+        }
+      }
+    }
+    if (evicted != null) {
+      dataSource.statementCacheEvictions.increment();
+      closeQuietly(evicted);
+    }
+  }
+
+  private static void closeQuietly(PreparedStatement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      log.debug("Error closing cached statement: " + e);
+    }
+  }
+
+  /**
+   * 缓存的 KEY ，即 prepareStatement 方法的参数
+   */
+  private static final class StatementKey {
+
+    private final Object[] args;
+    private final int hashCode;
+
+    StatementKey(Object[] args) {
+      this.args = args.clone();
+      this.hashCode = Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return this == o || (o instanceof StatementKey && Arrays.deepEquals(args, ((StatementKey) o).args));
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * 借出中的语句。close 时重置语句的状态，并放回缓存
+   */
+  private static final class CachedStatement implements InvocationHandler {
+
+    private static final String CLOSE = "close";
+
+    private final PreparedStatementCache cache;
+    private final StatementKey key;
+    private final PreparedStatement statement;
+    private final Connection connection;
+    private boolean closed;
+    private boolean batched;
+
+    /**
+     * 执行过程中返回的 ResultSet ，放回缓存前关闭
+     */
+    private List<ResultSet> resultSets;
+
+    /**
+     * 被修改前的设置，放回缓存前恢复。为 null 时，表示没有修改过
+     */
+    private Map<String, Object> originalSettings;
+
+    CachedStatement(PreparedStatementCache cache, StatementKey key, PreparedStatement statement, Connection connection) {
+      this.cache = cache;
+      this.key = key;
+      this.statement = statement;
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      final String methodName = method.getName();
+      if (Object.class.equals(method.getDeclaringClass())) {
+        if ("equals".equals(methodName)) {
+          return proxy == args[0];
+        } else if ("hashCode".equals(methodName)) {
+          return System.identityHashCode(proxy);
+        }
+        return "CachedStatement[" + statement + "]";
+      }
+      if (CLOSE.equals(methodName)) {
+        close();
+        return null;
+      } else if ("isClosed".equals(methodName)) {
+        return closed || statement.isClosed();
+      }
+      if (closed) {
+        throw new SQLException("Statement is closed.");
+      }
+      if ("getConnection".equals(methodName)) {
+        return connection;
+      } else if ("addBatch".equals(methodName)) {
+        batched = true;
+      } else if (methodName.startsWith("set") && args != null && args.length == 1 && isSetting(methodName)) {
+        saveOriginalSettings();
+      }
+      final Object result;
+      try {
+        result = method.invoke(statement, args);
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+      if (result instanceof ResultSet) {
+        if (resultSets == null) {
+          resultSets = new ArrayList<>(1);
+        }
+        resultSets.add((ResultSet) result);
+      }
+      return result;
+    }
+
+    private void close() throws SQLException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        passivate();
+      } catch (SQLException e) {
+        // 无法重置的语句，直接关闭
+        statement.close();
+        return;
+      }
+      cache.release(key, statement);
+    }
+
+    private void passivate() throws SQLException {
+      if (resultSets != null) {
+        for (ResultSet resultSet : resultSets) {
+          if (!resultSet.isClosed()) {
+            resultSet.close();
+          }
+        }
+      }
+      if (batched) {
+        statement.clearBatch();
+      }
+      statement.clearParameters();
+      statement.clearWarnings();
+      if (originalSettings != null) {
+        statement.setQueryTimeout((Integer) originalSettings.get("queryTimeout"));
+        statement.setFetchSize((Integer) originalSettings.get("fetchSize"));
+        statement.setMaxRows((Integer) originalSettings.get("maxRows"));
+        statement.setMaxFieldSize((Integer) originalSettings.get("maxFieldSize"));
+        statement.setFetchDirection((Integer) originalSettings.get("fetchDirection"));
+      }
+    }
+
+    private static boolean isSetting(String methodName) {
+      return "setQueryTimeout".equals(methodName) || "setFetchSize".equals(methodName)
+          || "setMaxRows".equals(methodName) || "setLargeMaxRows".equals(methodName)
+          || "setMaxFieldSize".equals(methodName) || "setFetchDirection".equals(methodName);
+    }
+
+    private void saveOriginalSettings() throws SQLException {
+      if (originalSettings == null) {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("queryTimeout", statement.getQueryTimeout());
+        settings.put("fetchSize", statement.getFetchSize());
+        settings.put("maxRows", statement.getMaxRows());
+        settings.put("maxFieldSize", statement.getMaxFieldSize());
+        settings.put("fetchDirection", statement.getFetchDirection());
+        originalSettings = settings;
+      }
+    }
+  }
+
+}
@@ -88,8 +88,15 @@ public class UnpooledDataSourceFactory implements DataSourceFactory {
       convertedValue = Long.valueOf(value);
     } else if (targetType == Boolean.class || targetType == boolean.class) {
       convertedValue = Boolean.valueOf(value);
+    } else if (targetType.isEnum()) {
+      convertedValue = convertEnumValue(targetType, value);
     }
     return convertedValue;
   }
 
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private Object convertEnumValue(Class<?> targetType, String value) {
+    return Enum.valueOf((Class<? extends Enum>) targetType, value);
+  }
+
 }
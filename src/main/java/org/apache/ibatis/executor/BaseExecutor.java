@@ -17,13 +17,17 @@ package org.apache.ibatis.executor;
 
 import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOLDER;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.impl.BoundedLocalCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.statement.StatementUtil;
@@ -73,10 +77,15 @@ public abstract class BaseExecutor implements Executor {
   protected ConcurrentLinkedQueue<DeferredLoad> deferredLoads;
 
   /**
-   * 本地缓存，即一级缓存
+   * 本地缓存，即一级缓存。设置了上限时为 {@link BoundedLocalCache}
    */
   protected PerpetualCache localCache;
 
+  /**
+   * 本地缓存的统计指标，未开启统计时为 null
+   */
+  private final CacheMetrics localCacheMetrics;
+
   /**
    * 本地输出类型的参数的缓存
    */
@@ -88,6 +97,11 @@ public abstract class BaseExecutor implements Executor {
    */
   protected int queryStack;
 
+  /**
+   * 正在执行的、不在本地缓存中保存结果的流式查询的层级，见 {@link Configuration#isLocalCacheStreamingQueries()}
+   */
+  private int streamingDepth;
+
   /**
    * 是否关闭
    */
@@ -96,13 +110,21 @@ public abstract class BaseExecutor implements Executor {
   protected BaseExecutor(Configuration configuration, Transaction transaction) {
     this.transaction = transaction;
     this.deferredLoads = new ConcurrentLinkedQueue<>();
-    this.localCache = new PerpetualCache("LocalCache");
-    this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
+    this.localCache = newLocalCache(configuration, "LocalCache");
+    this.localOutputParameterCache = newLocalCache(configuration, "LocalOutputParameterCache");
     this.closed = false;
     this.configuration = configuration;
+    this.localCacheMetrics = configuration == null ? null : configuration.getLocalCacheMetrics();
     this.wrapper = this;
   }
 
+  /**
+   * 创建本地缓存。反序列化后的延迟加载使用的 ClosedExecutor 没有 Configuration，此时退回到不限大小的 PerpetualCache
+   */
+  private static PerpetualCache newLocalCache(Configuration configuration, String id) {
+    return configuration == null ? new PerpetualCache(id) : configuration.newLocalCache(id);
+  }
+
   @Override
   public Transaction getTransaction() {
     if (closed) {
@@ -187,12 +209,24 @@ public abstract class BaseExecutor implements Executor {
       clearLocalCache();
     }
     List<E> list;
+    // 使用 ResultHandler 的查询及其嵌套查询，可以不在本地缓存中保存结果
+    final boolean streaming = resultHandler != null && !configuration.isLocalCacheStreamingQueries();
     try {
       // <3> queryStack + 1
       queryStack++;
+      if (streaming) {
+        streamingDepth++;
+      }
       // <4.1> 从一级缓存中，获取查询结果
       list = resultHandler == null ? (List<E>) localCache.getObject(key) : null;
 
+      if (localCacheMetrics != null && resultHandler == null) {
+        if (list != null) {
+          localCacheMetrics.recordHit();
+        } else {
+          localCacheMetrics.recordMiss();
+        }
+      }
       // <4.2> 获取到，则进行处理
       if (list != null) {
         handleLocallyCachedOutputParameters(ms, key, parameter, boundSql);
@@ -203,6 +237,9 @@ public abstract class BaseExecutor implements Executor {
     } finally {
       // <5> queryStack - 1
       queryStack--;
+      if (streaming) {
+        streamingDepth--;
+      }
     }
     if (queryStack == 0) {
 
@@ -212,6 +249,7 @@ public abstract class BaseExecutor implements Executor {
       }
       // <6.2> 清空 deferredLoads
       deferredLoads.clear();
+      trimLocalCache();
 
       // <7> 如果缓存级别是 LocalCacheScope.STATEMENT ，则进行清理
       if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
@@ -224,7 +262,9 @@ public abstract class BaseExecutor implements Executor {
   @Override
   public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
     BoundSql boundSql = ms.getBoundSql(parameter);
-    return doQueryCursor(ms, parameter, rowBounds, boundSql);
+    final Cursor<E> cursor = doQueryCursor(ms, parameter, rowBounds, boundSql);
+    // 遍历 Cursor 时执行的嵌套查询，可以不在本地缓存中保存结果
+    return configuration.isLocalCacheStreamingQueries() ? cursor : new StreamingCursor<>(cursor);
   }
 
   @Override
@@ -246,8 +286,9 @@ public abstract class BaseExecutor implements Executor {
     if (closed) {
       throw new ExecutorException("Executor was closed.");
     }
-    // <1> 创建 CacheKey 对象
-    CacheKey cacheKey = new CacheKey();
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    // <1> 创建 CacheKey 对象，按 id、offset、limit、sql、参数和 Environment.id 的数量预先分配大小
+    CacheKey cacheKey = new CacheKey(parameterMappings.size() + 5);
     // <2> 设置 id、offset、limit、sql 到 CacheKey 对象中
     cacheKey.update(ms.getId());
     cacheKey.update(rowBounds.getOffset());
@@ -255,7 +296,6 @@ public abstract class BaseExecutor implements Executor {
     cacheKey.update(boundSql.getSql());
 
     // <3> 设置 ParameterMapping 数组的元素对应的每个 value 到 CacheKey 对象中
-    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
     TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
     // mimic DefaultParameterHandler logic
     for (ParameterMapping parameterMapping : parameterMappings) {
@@ -374,6 +414,7 @@ public abstract class BaseExecutor implements Executor {
     List<E> list;
     // <1> 在缓存中，添加占位对象。此处的占位符，和延迟加载有关，可见 `DeferredLoad#canLoad()` 方法
     localCache.putObject(key, EXECUTION_PLACEHOLDER);
+    final long start = localCacheMetrics != null ? System.nanoTime() : 0;
     try {
       // <2> 执行读操作
       list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
@@ -381,15 +422,54 @@ public abstract class BaseExecutor implements Executor {
       // <3> 从缓存中，移除占位对象
       localCache.removeObject(key);
     }
-    // <4> 添加到缓存中
-    localCache.putObject(key, list);
-    // <5> 暂时忽略，存储过程相关
-    if (ms.getStatementType() == StatementType.CALLABLE) {
-      localOutputParameterCache.putObject(key, parameter);
+    if (localCacheMetrics != null) {
+      localCacheMetrics.recordLoad(System.nanoTime() - start);
+    }
+    // <4> 添加到缓存中。流式查询不保存结果，除非有等待该结果的延迟加载
+    if (streamingDepth == 0 || isDeferred(key)) {
+      localCache.putObject(key, list);
+      if (localCacheMetrics != null) {
+        localCacheMetrics.recordPut();
+      }
+      // <5> 暂时忽略，存储过程相关
+      if (ms.getStatementType() == StatementType.CALLABLE) {
+        localOutputParameterCache.putObject(key, parameter);
+      }
+      trimLocalCache();
     }
     return list;
   }
 
+  /**
+   * 本地缓存超出上限时，淘汰缓存对象。正在执行的查询的占位对象，和等待延迟加载的结果不会被淘汰
+   */
+  private void trimLocalCache() {
+    if (localCache instanceof BoundedLocalCache && ((BoundedLocalCache) localCache).isOverflowed()) {
+      final int evicted = ((BoundedLocalCache) localCache).trim(
+          (key, value) -> value == EXECUTION_PLACEHOLDER || isDeferred(key));
+      if (localCacheMetrics != null) {
+        for (int i = 0; i < evicted; i++) {
+          localCacheMetrics.recordEviction();
+        }
+      }
+    }
+    if (localOutputParameterCache instanceof BoundedLocalCache) {
+      ((BoundedLocalCache) localOutputParameterCache).trim(null);
+    }
+  }
+
+  /**
+   * @return 是否有等待 key 的查询结果的延迟加载
+   */
+  private boolean isDeferred(Object key) {
+    for (DeferredLoad deferredLoad : deferredLoads) {
+      if (deferredLoad.key.equals(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   protected Connection getConnection(Log statementLog) throws SQLException {
     Connection connection = transaction.getConnection();
 
@@ -406,6 +486,64 @@ public abstract class BaseExecutor implements Executor {
     this.wrapper = wrapper;
   }
 
+  /**
+   * 遍历时，其中执行的嵌套查询不在本地缓存中保存结果的 Cursor
+   */
+  private class StreamingCursor<T> implements Cursor<T> {
+
+    private final Cursor<T> delegate;
+
+    StreamingCursor(Cursor<T> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return delegate.isOpen();
+    }
+
+    @Override
+    public boolean isConsumed() {
+      return delegate.isConsumed();
+    }
+
+    @Override
+    public int getCurrentIndex() {
+      return delegate.getCurrentIndex();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      final Iterator<T> iterator = delegate.iterator();
+      return new Iterator<T>() {
+        @Override
+        public boolean hasNext() {
+          streamingDepth++;
+          try {
+            return iterator.hasNext();
+          } finally {
+            streamingDepth--;
+          }
+        }
+
+        @Override
+        public T next() {
+          streamingDepth++;
+          try {
+            return iterator.next();
+          } finally {
+            streamingDepth--;
+          }
+        }
+      };
+    }
+  }
+
   private static class DeferredLoad {
 
     private final MetaObject resultObject;
@@ -17,11 +17,15 @@ package org.apache.ibatis.executor;
 
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
@@ -30,6 +34,11 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -50,6 +59,13 @@ import org.apache.ibatis.transaction.Transaction;
  * 番茄蓝里装了很多番茄，
  * 最后，再统一倒进仓库。（可以是Statement或PrepareStatement对象）
  * 今天安装新环境，明天再来学习
+ *
+ * 默认只有连续执行相同的 MappedStatement 和 SQL 时才复用 Statement 。
+ * 开启 {@link Configuration#isBatchGroupingEnabled()} 后，按照 (MappedStatement, SQL) 分组，交替执行的语句也会合并到同一个桶里。
+ * 开启 {@link Configuration#getBatchAutoFlushRows()} 或 {@link Configuration#getBatchAutoFlushBytes()} 后，累计到上限时自动执行批处理。
+ * 开启 {@link Configuration#getBatchStatementAutoFlushRows()} 后，单个语句累计到上限时，执行该语句及之前语句的批处理，Statement 继续复用。
+ * 设置了 {@link BatchResultHandler} 后，每次执行的结果都回调给它，不再保留到下次 flushStatements 。
+ * 开启 {@link Configuration#isBatchInsertRewriteEnabled()} 后，同一个 INSERT 语句的多次执行，会改写成多行 INSERT 语句执行。
  */
 public class BatchExecutor extends BaseExecutor {
 
@@ -57,9 +73,43 @@ public class BatchExecutor extends BaseExecutor {
 
   private final List<Statement> statementList = new ArrayList<>();
   private final List<BatchResult> batchResultList = new ArrayList<>();
+  /**
+   * 改写成多行 INSERT 的批处理。与 statementList 一一对应，不改写时为 null ；改写时 statementList 中为 null
+   */
+  private final List<InsertBatch> insertBatchList = new ArrayList<>();
+  /**
+   * SQL 与多行 INSERT 模板的映射。不能改写时为 null
+   */
+  private final Map<String, MultiRowInsertTemplate> insertTemplates = new HashMap<>();
   private String currentSql;
   private MappedStatement currentStatement;
 
+  /**
+   * 分组模式下，(MappedStatement, SQL) 与 statementList 中下标的映射
+   */
+  private final Map<StatementKey, Integer> statementIndexes = new HashMap<>();
+  /**
+   * 最后一个非 INSERT 语句在 statementList 中的下标
+   */
+  private int lastNonInsertIndex = -1;
+
+  /**
+   * 未执行的行数
+   */
+  private int pendingRows;
+  /**
+   * 未执行的参数的估算字节数
+   */
+  private long pendingBytes;
+  /**
+   * 自动执行的批处理结果，在下次 {@link #doFlushStatements(boolean)} 时一起返回
+   */
+  private final List<BatchResult> autoFlushedResults = new ArrayList<>();
+  /**
+   * 批处理结果的处理器
+   */
+  private BatchResultHandler batchResultHandler;
+
   public BatchExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
   }
@@ -71,26 +121,186 @@ public class BatchExecutor extends BaseExecutor {
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
     final Statement stmt;
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-      int last = statementList.size() - 1;
-      stmt = statementList.get(last);
+    // <1> 获得可以加入的批处理
+    int index = indexOfBatch(ms, sql);
+    final MultiRowInsertTemplate insertTemplate = getInsertTemplate(ms, boundSql);
+    Object[] parameterValues = null;
+    if (insertTemplate != null) {
+      // <1.1> 改写成多行 INSERT 时，只记录参数值，执行时再创建 Statement
+      parameterValues = getParameterValues(boundSql, parameterObject);
+      if (index < 0) {
+        index = addBatch(ms, sql, null, new InsertBatch(insertTemplate));
+      }
+      insertBatchList.get(index).add(boundSql.getParameterMappings(), parameterValues);
+      batchResultList.get(index).addParameterObject(parameterObject);
+    } else if (index >= 0) {
+      stmt = statementList.get(index);
       applyTransactionTimeout(stmt);
       handler.parameterize(stmt);//fix Issues 322
-      BatchResult batchResult = batchResultList.get(last);
+      BatchResult batchResult = batchResultList.get(index);
       batchResult.addParameterObject(parameterObject);
+      handler.batch(stmt);
     } else {
       Connection connection = getConnection(ms.getStatementLog());
       stmt = handler.prepare(connection, transaction.getTimeout());
       handler.parameterize(stmt);    //fix Issues 322
-      currentSql = sql;
-      currentStatement = ms;
-      statementList.add(stmt);
-      batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      index = addBatch(ms, sql, stmt, null);
+      batchResultList.get(index).addParameterObject(parameterObject);
+      handler.batch(stmt);
     }
-    handler.batch(stmt);
+    // <2> 达到上限时，自动执行批处理
+    autoFlushIfNecessary(index, boundSql, parameterObject, parameterValues);
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private int addBatch(MappedStatement ms, String sql, Statement stmt, InsertBatch insertBatch) {
+    currentSql = sql;
+    currentStatement = ms;
+    statementList.add(stmt);
+    batchResultList.add(new BatchResult(ms, sql));
+    insertBatchList.add(insertBatch);
+    int index = statementList.size() - 1;
+    if (configuration.isBatchGroupingEnabled()) {
+      statementIndexes.put(new StatementKey(ms, sql), index);
+    }
+    if (ms.getSqlCommandType() != SqlCommandType.INSERT) {
+      lastNonInsertIndex = index;
+    }
+    return index;
+  }
+
+  /**
+   * 获得多行 INSERT 模板，不能改写时返回 null 。
+   *
+   * 只改写 PREPARED 类型的 INSERT 语句，并且参数都是 IN 类型；
+   * 主键生成器只支持 Jdbc3KeyGenerator 和 NoKeyGenerator ，因为 SelectKeyGenerator 需要每行执行一次。
+   */
+  private MultiRowInsertTemplate getInsertTemplate(MappedStatement ms, BoundSql boundSql) {
+    if (!configuration.isBatchInsertRewriteEnabled()
+        || ms.getSqlCommandType() != SqlCommandType.INSERT
+        || ms.getStatementType() != StatementType.PREPARED) {
+      return null;
+    }
+    Class<?> keyGeneratorClass = ms.getKeyGenerator().getClass();
+    if (!Jdbc3KeyGenerator.class.equals(keyGeneratorClass) && !NoKeyGenerator.class.equals(keyGeneratorClass)) {
+      return null;
+    }
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    for (ParameterMapping parameterMapping : parameterMappings) {
+      if (parameterMapping.getMode() != ParameterMode.IN) {
+        return null;
+      }
+    }
+    String sql = boundSql.getSql();
+    if (insertTemplates.containsKey(sql)) {
+      return insertTemplates.get(sql);
+    }
+    MultiRowInsertTemplate insertTemplate = MultiRowInsertTemplate.parse(sql, parameterMappings.size());
+    insertTemplates.put(sql, insertTemplate);
+    return insertTemplate;
+  }
+
+  @Override
+  public void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    this.batchResultHandler = batchResultHandler;
+  }
+
+  /**
+   * 获得可以加入的批处理在 statementList 中的下标，没有时返回 -1 。
+   *
+   * 分组模式下，只要不改变和其它语句的相对顺序就可以加入：
+   * 要么是最后一个批处理，要么是 INSERT 并且之后都是 INSERT 。
+   * 即 INSERT 之间按照首次执行的顺序执行，例如先执行的父表 INSERT 仍在子表 INSERT 之前执行；
+   * 而 UPDATE / DELETE 与其它语句之间的顺序保持不变。
+   */
+  private int indexOfBatch(MappedStatement ms, String sql) {
+    int last = statementList.size() - 1;
+    if (!configuration.isBatchGroupingEnabled()) {
+      return sql.equals(currentSql) && ms.equals(currentStatement) ? last : -1;
+    }
+    Integer index = statementIndexes.get(new StatementKey(ms, sql));
+    if (index == null) {
+      return -1;
+    }
+    if (index == last || (ms.getSqlCommandType() == SqlCommandType.INSERT && index > lastNonInsertIndex)) {
+      return index;
+    }
+    return -1;
+  }
+
+  private void autoFlushIfNecessary(int index, BoundSql boundSql, Object parameterObject, Object[] parameterValues) throws SQLException {
+    int maxRows = configuration.getBatchAutoFlushRows();
+    int maxBytes = configuration.getBatchAutoFlushBytes();
+    int maxStatementRows = configuration.getBatchStatementAutoFlushRows();
+    if (maxRows <= 0 && maxBytes <= 0 && maxStatementRows <= 0) {
+      return;
+    }
+    pendingRows++;
+    if (maxBytes > 0) {
+      if (parameterValues == null) {
+        parameterValues = getParameterValues(boundSql, parameterObject);
+      }
+      for (Object value : parameterValues) {
+        pendingBytes += sizeOf(value);
+      }
+    }
+    List<BatchResult> results = batchResultHandler == null ? autoFlushedResults : null;
+    if ((maxRows > 0 && pendingRows >= maxRows) || (maxBytes > 0 && pendingBytes >= maxBytes)) {
+      // 执行所有的批处理，并关闭 Statement
+      try {
+        executeBatches(statementList.size(), results, true);
+      } finally {
+        clearBatches();
+      }
+    } else if (maxStatementRows > 0 && batchResultList.get(index).getParameterObjects().size() >= maxStatementRows) {
+      // 执行该语句及之前语句的批处理，保持相对顺序。Statement 继续复用
+      int executedRows = executeBatches(index + 1, results, false);
+      pendingBytes -= pendingBytes * executedRows / pendingRows;
+      pendingRows -= executedRows;
+    }
+  }
+
+  /**
+   * 获得参数值。与 DefaultParameterHandler 获得参数值的方式一致
+   */
+  private Object[] getParameterValues(BoundSql boundSql, Object parameterObject) {
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    Object[] values = new Object[parameterMappings.size()];
+    MetaObject metaObject = null;
+    for (int i = 0; i < values.length; i++) {
+      String propertyName = parameterMappings.get(i).getProperty();
+      Object value;
+      if (boundSql.hasAdditionalParameter(propertyName)) {
+        value = boundSql.getAdditionalParameter(propertyName);
+      } else if (parameterObject == null) {
+        value = null;
+      } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+        value = parameterObject;
+      } else {
+        if (metaObject == null) {
+          metaObject = configuration.newMetaObject(parameterObject);
+        }
+        value = metaObject.getValue(propertyName);
+      }
+      values[i] = value;
+    }
+    return values;
+  }
+
+  // 估算参数值占用的字节数
+  private static long sizeOf(Object value) {
+    if (value == null) {
+      return 0;
+    } else if (value instanceof CharSequence) {
+      return 2L * ((CharSequence) value).length();
+    } else if (value instanceof byte[]) {
+      return ((byte[]) value).length;
+    } else if (value instanceof char[]) {
+      return 2L * ((char[]) value).length;
+    }
+    return 8;
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
@@ -123,18 +333,43 @@ public class BatchExecutor extends BaseExecutor {
   @Override
   public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
     try {
-      List<BatchResult> results = new ArrayList<>();
       if (isRollback) {
         return Collections.emptyList();
       }
-      for (int i = 0, n = statementList.size(); i < n; i++) {
-        Statement stmt = statementList.get(i);
-        applyTransactionTimeout(stmt);
-        BatchResult batchResult = batchResultList.get(i);
-        try {
+      List<BatchResult> results = new ArrayList<>(autoFlushedResults);
+      executeBatches(statementList.size(), results, true);
+      return results;
+    } finally {
+      autoFlushedResults.clear();
+      clearBatches();
+    }
+  }
+
+  /**
+   * 按顺序执行前 count 个批处理，返回执行的行数。
+   *
+   * 每个结果回调给 {@link #batchResultHandler} ，results 非空时添加到 results 中。
+   * close 为 false 时，保留 Statement ，并替换成空的 BatchResult ，释放参数对象。
+   */
+  private int executeBatches(int count, List<BatchResult> results, boolean close) throws SQLException {
+    int executedRows = 0;
+    for (int i = 0; i < count; i++) {
+      Statement stmt = statementList.get(i);
+      BatchResult batchResult = batchResultList.get(i);
+      // 已经执行过，并且之后没有新的行
+      if (batchResult.getParameterObjects().isEmpty()) {
+        continue;
+      }
+      InsertBatch insertBatch = insertBatchList.get(i);
+      try {
+        MappedStatement ms = batchResult.getMappedStatement();
+        List<Object> parameterObjects = batchResult.getParameterObjects();
+        if (insertBatch != null) {
+          // 改写成多行 INSERT 执行
+          batchResult.setUpdateCounts(executeInsertBatch(ms, insertBatch, parameterObjects));
+        } else {
+          applyTransactionTimeout(stmt);
           batchResult.setUpdateCounts(stmt.executeBatch());
-          MappedStatement ms = batchResult.getMappedStatement();
-          List<Object> parameterObjects = batchResult.getParameterObjects();
           KeyGenerator keyGenerator = ms.getKeyGenerator();
           if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
             Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
@@ -144,32 +379,189 @@ public class BatchExecutor extends BaseExecutor {
               keyGenerator.processAfter(this, ms, stmt, parameter);
             }
           }
+        }
+        if (close) {
           // Close statement to close cursor #1109
           closeStatement(stmt);
-        } catch (BatchUpdateException e) {
-          StringBuilder message = new StringBuilder();
-          message.append(batchResult.getMappedStatement().getId())
-              .append(" (batch index #")
-              .append(i + 1)
-              .append(")")
-              .append(" failed.");
-          if (i > 0) {
-            message.append(" ")
-                .append(i)
-                .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+        } else {
+          batchResultList.set(i, new BatchResult(ms, batchResult.getSql()));
+          if (insertBatch != null) {
+            insertBatch.clear();
           }
-          throw new BatchExecutorException(message.toString(), e, results, batchResult);
         }
+      } catch (BatchUpdateException e) {
+        StringBuilder message = new StringBuilder();
+        message.append(batchResult.getMappedStatement().getId())
+            .append(" (batch index #")
+            .append(i + 1)
+            .append(")")
+            .append(" failed.");
+        if (i > 0) {
+          message.append(" ")
+              .append(i)
+              .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+        }
+        throw new BatchExecutorException(message.toString(), e,
+            results != null ? results : Collections.emptyList(), batchResult);
+      }
+      executedRows += batchResult.getParameterObjects().size();
+      if (batchResultHandler != null) {
+        batchResultHandler.handleResult(batchResult);
+      }
+      if (results != null) {
         results.add(batchResult);
       }
-      return results;
+    }
+    return executedRows;
+  }
+
+  /**
+   * 按照行数和参数数量的上限分块，每块执行一条多行 INSERT 语句，返回每一行的更新数
+   */
+  private int[] executeInsertBatch(MappedStatement ms, InsertBatch insertBatch, List<Object> parameterObjects) throws SQLException {
+    int rows = insertBatch.size();
+    int parametersPerRow = insertBatch.parameterMappings.get(0).size();
+    int chunkSize = configuration.getBatchInsertRewriteMaxRows() > 0 ? configuration.getBatchInsertRewriteMaxRows() : rows;
+    if (configuration.getBatchInsertRewriteMaxParameters() > 0 && parametersPerRow > 0) {
+      chunkSize = Math.min(chunkSize, Math.max(1, configuration.getBatchInsertRewriteMaxParameters() / parametersPerRow));
+    }
+    int[] updateCounts = new int[rows];
+    KeyGenerator keyGenerator = ms.getKeyGenerator();
+    Statement stmt = null;
+    int stmtRows = 0;
+    try {
+      for (int from = 0; from < rows; from += chunkSize) {
+        int to = Math.min(rows, from + chunkSize);
+        BoundSql boundSql = insertBatch.toBoundSql(ms.getConfiguration(), from, to, parameterObjects.get(from));
+        StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObjects.get(from), RowBounds.DEFAULT, null, boundSql);
+        // 行数相同时，SQL 也相同，复用 Statement
+        if (stmt == null || stmtRows != to - from) {
+          closeStatement(stmt);
+          stmt = handler.prepare(getConnection(ms.getStatementLog()), transaction.getTimeout());
+          stmtRows = to - from;
+        } else {
+          applyTransactionTimeout(stmt);
+        }
+        handler.parameterize(stmt);
+        int updateCount;
+        try {
+          ((PreparedStatement) stmt).execute();
+          updateCount = stmt.getUpdateCount();
+        } catch (SQLException e) {
+          throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), Arrays.copyOf(updateCounts, from), e);
+        }
+        // 无法区分每一行的更新数时，使用 SUCCESS_NO_INFO
+        Arrays.fill(updateCounts, from, to, updateCount == to - from ? 1 : Statement.SUCCESS_NO_INFO);
+        if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+          ((Jdbc3KeyGenerator) keyGenerator).processBatch(ms, stmt, parameterObjects.subList(from, to));
+        }
+      }
     } finally {
-      for (Statement stmt : statementList) {
-        closeStatement(stmt);
+      closeStatement(stmt);
+    }
+    return updateCounts;
+  }
+
+  private void clearBatches() {
+    for (Statement stmt : statementList) {
+      closeStatement(stmt);
+    }
+    currentSql = null;
+    statementList.clear();
+    batchResultList.clear();
+    insertBatchList.clear();
+    insertTemplates.clear();
+    statementIndexes.clear();
+    lastNonInsertIndex = -1;
+    pendingRows = 0;
+    pendingBytes = 0;
+  }
+
+  /**
+   * 改写成多行 INSERT 的批处理，记录每一行的参数
+   */
+  private static final class InsertBatch {
+
+    private final MultiRowInsertTemplate template;
+    private final List<List<ParameterMapping>> parameterMappings = new ArrayList<>();
+    private final List<Object[]> parameterValues = new ArrayList<>();
+
+    InsertBatch(MultiRowInsertTemplate template) {
+      this.template = template;
+    }
+
+    void add(List<ParameterMapping> rowParameterMappings, Object[] rowParameterValues) {
+      parameterMappings.add(rowParameterMappings);
+      parameterValues.add(rowParameterValues);
+    }
+
+    int size() {
+      return parameterValues.size();
+    }
+
+    void clear() {
+      parameterMappings.clear();
+      parameterValues.clear();
+    }
+
+    /**
+     * 创建 [from, to) 行的多行 INSERT 语句。每个参数重命名为附加参数 __row{行}_{序号} ，值为记录的参数值
+     */
+    BoundSql toBoundSql(Configuration configuration, int from, int to, Object parameterObject) {
+      List<ParameterMapping> mappings = new ArrayList<>();
+      List<String> properties = new ArrayList<>();
+      for (int row = from; row < to; row++) {
+        List<ParameterMapping> rowParameterMappings = parameterMappings.get(row);
+        for (int i = 0; i < rowParameterMappings.size(); i++) {
+          ParameterMapping parameterMapping = rowParameterMappings.get(i);
+          String property = "__row" + (row - from) + "_" + i;
+          mappings.add(new ParameterMapping.Builder(configuration, property, parameterMapping.getTypeHandler())
+              .javaType(parameterMapping.getJavaType())
+              .jdbcType(parameterMapping.getJdbcType())
+              .numericScale(parameterMapping.getNumericScale())
+              .build());
+          properties.add(property);
+        }
+      }
+      BoundSql boundSql = new BoundSql(configuration, template.toSql(to - from), mappings, parameterObject);
+      int index = 0;
+      for (int row = from; row < to; row++) {
+        for (Object value : parameterValues.get(row)) {
+          boundSql.setAdditionalParameter(properties.get(index++), value);
+        }
       }
-      currentSql = null;
-      statementList.clear();
-      batchResultList.clear();
+      return boundSql;
+    }
+  }
+
+  /**
+   * 批处理的分组键
+   */
+  private static final class StatementKey {
+
+    private final MappedStatement mappedStatement;
+    private final String sql;
+
+    StatementKey(MappedStatement mappedStatement, String sql) {
+      this.mappedStatement = mappedStatement;
+      this.sql = sql;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof StatementKey)) {
+        return false;
+      }
+      StatementKey that = (StatementKey) o;
+      return mappedStatement.equals(that.mappedStatement) && sql.equals(that.sql);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * mappedStatement.hashCode() + sql.hashCode();
     }
   }
 
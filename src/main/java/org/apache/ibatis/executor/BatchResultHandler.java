@@ -0,0 +1,36 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+/**
+ * 批处理结果的处理器。
+ *
+ * BATCH 执行器每执行一次批处理（包括自动执行），回调一次，传入这次执行的 {@link BatchResult} 。
+ * 设置了处理器后，自动执行的批处理结果不再保留到下次 flushStatements ，参数对象随之释放。
+ *
+ * @see org.apache.ibatis.session.SqlSession#setBatchResultHandler(BatchResultHandler)
+ */
+@FunctionalInterface
+public interface BatchResultHandler {
+
+  /**
+   * 处理一次批处理的结果
+   *
+   * @param batchResult 执行的语句、参数对象和每一行的更新数
+   */
+  void handleResult(BatchResult batchResult);
+
+}
@@ -16,18 +16,34 @@
 package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheInvalidationBus;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.TableDependentValue;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.decorators.ExpiringCache;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.parsing.SqlTableParser;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.CacheInvalidationScope;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
@@ -37,6 +53,8 @@ import org.apache.ibatis.transaction.Transaction;
  */
 public class CachingExecutor implements Executor {
 
+  private static final Log log = LogFactory.getLog(CachingExecutor.class);
+
   /**
    * 被委托的 Executor 对象
    */
@@ -47,10 +65,35 @@ public class CachingExecutor implements Executor {
    * 因为二级缓存是支持跨 Session 进行共享，此处需要考虑事务，
    * 那么，必然需要做到事务提交时，才将当前事务中查询时产生的缓存，同步到二级缓存中。
    */
-  private final TransactionalCacheManager tcm = new TransactionalCacheManager();
+  private final TransactionalCacheManager tcm;
+
+  /**
+   * 失效总线，可以为 null
+   */
+  private final CacheInvalidationBus invalidationBus;
+
+  /**
+   * 当前事务中被写入的数据表，事务提交时使依赖它们的缓存对象失效。
+   * 仅在 cacheInvalidationScope 为 TABLE 时使用
+   */
+  private final Set<String> writtenTables = new HashSet<>();
+
+  /**
+   * 被写入的数据表所属的 TableVersions
+   */
+  private TableVersions tableVersions;
 
   public CachingExecutor(Executor delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param invalidationBus 提交时，将缓存的失效发布到其它节点。可以为 null
+   */
+  public CachingExecutor(Executor delegate, CacheInvalidationBus invalidationBus) {
     this.delegate = delegate;
+    this.invalidationBus = invalidationBus;
+    this.tcm = new TransactionalCacheManager(invalidationBus);
     delegate.setExecutorWrapper(this);
   }
 
@@ -64,8 +107,10 @@ public class CachingExecutor implements Executor {
     try {
       //issues #499, #524 and #573
       if (forceRollback) {
+        writtenTables.clear();
         tcm.rollback();
       } else {
+        invalidateWrittenTables();
         tcm.commit();
       }
     } finally {
@@ -80,7 +125,7 @@ public class CachingExecutor implements Executor {
 
   @Override
   public int update(MappedStatement ms, Object parameterObject) throws SQLException {
-    flushCacheIfRequired(ms);
+    flushCacheIfRequired(ms, parameterObject);
     return delegate.update(ms, parameterObject);
   }
 
@@ -108,10 +153,28 @@ public class CachingExecutor implements Executor {
         ensureNoOutParams(ms, boundSql);
         @SuppressWarnings("unchecked")
         // <2.3> 从二级缓存中，获取结果
-        List<E> list = (List<E>) tcm.getObject(cache, key);
+        List<E> list = (List<E>) fromCacheValue(ms.getConfiguration(), tcm.getObject(cache, key));
+        // 即将过期的缓存对象，需要在后台提前刷新，见 ExpiringCache
+        final boolean refreshRequested = ExpiringCache.pollRefreshRequest() != null;
+        final CacheMetrics metrics = ms.getConfiguration().getCacheMetrics(cache.getId());
         if (list == null) {
+          if (metrics != null) {
+            metrics.recordMiss();
+          }
+          final long start = metrics != null ? System.nanoTime() : 0;
+          final long version = ms.getConfiguration().getTableVersions().currentVersion();
           list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
-          tcm.putObject(cache, key, list); // issue #578 and #116
+          tcm.putObject(cache, key, toCacheValue(ms, boundSql, list, version)); // issue #578 and #116
+          if (metrics != null) {
+            metrics.recordLoad(System.nanoTime() - start);
+          }
+        } else {
+          if (metrics != null) {
+            metrics.recordHit();
+          }
+          if (refreshRequested) {
+            refreshAhead(cache, ms, parameterObject, rowBounds, key, boundSql);
+          }
         }
         return list;
       }
@@ -124,9 +187,15 @@ public class CachingExecutor implements Executor {
     return delegate.flushStatements();
   }
 
+  @Override
+  public void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    delegate.setBatchResultHandler(batchResultHandler);
+  }
+
   @Override
   public void commit(boolean required) throws SQLException {
     delegate.commit(required);
+    invalidateWrittenTables();
     tcm.commit();
   }
 
@@ -136,11 +205,84 @@ public class CachingExecutor implements Executor {
       delegate.rollback(required);
     } finally {
       if (required) {
+        writtenTables.clear();
         tcm.rollback();
       }
     }
   }
 
+  /**
+   * 在后台重新执行查询，替换即将过期的缓存对象。
+   * 查询使用独立的连接和 SimpleExecutor ，不经过当前会话的事务和插件，结果直接添加到二级缓存中
+   */
+  private void refreshAhead(Cache cache, MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key, BoundSql boundSql) {
+    final Configuration configuration = ms.getConfiguration();
+    final Environment environment = configuration.getEnvironment();
+    if (environment == null || environment.getDataSource() == null) {
+      return;
+    }
+    // 调用方可能在返回后修改参数对象，所以在当前线程读取参数值，后台查询不再访问参数对象
+    final BoundSql snapshot = snapshotParameters(configuration, parameterObject, boundSql);
+    try {
+      configuration.getAsyncExecutor().execute(() -> {
+        final Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, false);
+        final Executor executor = new SimpleExecutor(configuration, tx);
+        try {
+          final long version = configuration.getTableVersions().currentVersion();
+          List<Object> list = executor.query(ms, null, rowBounds, Executor.NO_RESULT_HANDLER, key, snapshot);
+          cache.putObject(key, toCacheValue(ms, snapshot, list, version));
+        } catch (Exception e) {
+          log.warn("Error refreshing cache entry of '" + ms.getId() + "' ahead of expiry.  Cause: " + e);
+        } finally {
+          executor.close(false);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // 执行器已关闭或者已满，缓存对象到期后按未命中处理
+      log.debug("Refresh ahead of '" + ms.getId() + "' rejected.  Cause: " + e);
+    }
+  }
+
+  /**
+   * 按照 {@link org.apache.ibatis.scripting.defaults.DefaultParameterHandler} 的规则读取每个参数的值，
+   * 创建一个参数值都保存在附加参数中、不引用参数对象的 BoundSql 对象
+   */
+  private static BoundSql snapshotParameters(Configuration configuration, Object parameterObject, BoundSql boundSql) {
+    final List<ParameterMapping> parameterMappings = new ArrayList<>(boundSql.getParameterMappings().size());
+    final List<Object> values = new ArrayList<>(boundSql.getParameterMappings().size());
+    MetaObject metaObject = null;
+    for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+      final String propertyName = parameterMapping.getProperty();
+      final Object value;
+      if (boundSql.hasAdditionalParameter(propertyName)) {
+        value = boundSql.getAdditionalParameter(propertyName);
+      } else if (parameterObject == null) {
+        value = null;
+      } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+        value = parameterObject;
+      } else {
+        if (metaObject == null) {
+          metaObject = configuration.newMetaObject(parameterObject);
+        }
+        value = metaObject.getValue(propertyName);
+      }
+      // 重命名参数，避免属性名中的 . 和 [] 被附加参数的 MetaObject 解析
+      parameterMappings.add(new ParameterMapping.Builder(configuration, "__refresh" + values.size(), parameterMapping.getTypeHandler())
+          .javaType(parameterMapping.getJavaType())
+          .jdbcType(parameterMapping.getJdbcType())
+          .jdbcTypeName(parameterMapping.getJdbcTypeName())
+          .numericScale(parameterMapping.getNumericScale())
+          .mode(parameterMapping.getMode())
+          .build());
+      values.add(value);
+    }
+    final BoundSql snapshot = new BoundSql(configuration, boundSql.getSql(), parameterMappings, null);
+    for (int i = 0; i < values.size(); i++) {
+      snapshot.setAdditionalParameter("__refresh" + i, values.get(i));
+    }
+    return snapshot;
+  }
+
   private void ensureNoOutParams(MappedStatement ms, BoundSql boundSql) {
     if (ms.getStatementType() == StatementType.CALLABLE) {
       for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
@@ -178,6 +320,59 @@ public class CachingExecutor implements Executor {
     }
   }
 
+  /**
+   * 写入语句的缓存清理。表级失效时，记录被写入的数据表，在事务提交时使依赖它们的缓存对象失效，
+   * 包括其它 namespace 的缓存对象；无法确定写入的数据表时，仍然清空整个缓存
+   */
+  private void flushCacheIfRequired(MappedStatement ms, Object parameterObject) {
+    if (ms.isFlushCacheRequired() && ms.getSqlCommandType() != SqlCommandType.SELECT
+        && ms.getConfiguration().getCacheInvalidationScope() == CacheInvalidationScope.TABLE) {
+      final Set<String> tables = ms.getTables() != null ? ms.getTables()
+          : SqlTableParser.parseWrittenTables(ms.getBoundSql(parameterObject).getSql());
+      if (tables != null) {
+        tableVersions = ms.getConfiguration().getTableVersions();
+        writtenTables.addAll(tables);
+        return;
+      }
+    }
+    flushCacheIfRequired(ms);
+  }
+
+  private void invalidateWrittenTables() {
+    if (!writtenTables.isEmpty()) {
+      tableVersions.invalidate(writtenTables);
+      if (invalidationBus != null) {
+        invalidationBus.publishTables(writtenTables);
+      }
+      writtenTables.clear();
+    }
+  }
+
+  /**
+   * 表级失效时，将查询结果和其依赖的数据表一起添加到二级缓存
+   */
+  private Object toCacheValue(MappedStatement ms, BoundSql boundSql, List<?> list, long version) {
+    if (ms.getConfiguration().getCacheInvalidationScope() != CacheInvalidationScope.TABLE) {
+      return list;
+    }
+    final Set<String> tables = ms.getTables() != null ? ms.getTables() : SqlTableParser.parseReadTables(boundSql.getSql());
+    return new TableDependentValue(list, tables, version);
+  }
+
+  /**
+   * 获得缓存对象中的查询结果。依赖的数据表已经失效，或者在当前事务中被写入时，返回 null
+   */
+  private Object fromCacheValue(Configuration configuration, Object value) {
+    if (value instanceof TableDependentValue) {
+      final TableDependentValue dependent = (TableDependentValue) value;
+      if (dependent.dependsOn(writtenTables) || dependent.isStale(configuration.getTableVersions())) {
+        return null;
+      }
+      return dependent.getValue();
+    }
+    return value;
+  }
+
   @Override
   public void setExecutorWrapper(Executor executor) {
     throw new UnsupportedOperationException("This method should not be called");
@@ -57,6 +57,10 @@ public interface Executor {
   // 刷入批处理语句
   List<BatchResult> flushStatements() throws SQLException;
 
+  // 设置批处理结果的处理器，只有 BATCH 执行器会回调。默认什么都不做，兼容已有的 Executor 实现
+  default void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+  }
+
   // 提交事务
   void commit(boolean required) throws SQLException;
   // 回滚事务
@@ -0,0 +1,143 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.Locale;
+
+/**
+ * 单行 INSERT 语句的模板，用于改写成多行 INSERT 语句。
+ *
+ * 只支持 {@code INSERT ... VALUES (...)} 形式，并且所有 ? 占位符都在 VALUES 后的括号中。例如：
+ * {@code insert into t (a, b) values (?, ?)} 可以改写成 {@code insert into t (a, b) values (?, ?), (?, ?)} 。
+ *
+ * @see BatchExecutor
+ */
+final class MultiRowInsertTemplate {
+
+  private static final String VALUES = "values";
+
+  /**
+   * VALUES 及之前的部分，包括 VALUES 后的空白
+   */
+  private final String prefix;
+  /**
+   * 一行的值，即 VALUES 后的括号
+   */
+  private final String row;
+
+  private MultiRowInsertTemplate(String prefix, String row) {
+    this.prefix = prefix;
+    this.row = row;
+  }
+
+  /**
+   * 解析 SQL ，不能改写时返回 null
+   *
+   * @param sql 单行 INSERT 语句
+   * @param parameterCount 参数数量，需要与 VALUES 后括号中 ? 的数量一致
+   */
+  static MultiRowInsertTemplate parse(String sql, int parameterCount) {
+    if (!sql.trim().toLowerCase(Locale.ENGLISH).startsWith("insert")) {
+      return null;
+    }
+    String lowerSql = sql.toLowerCase(Locale.ENGLISH);
+    int depth = 0;
+    int rowStart = -1;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = skipQuoted(sql, i);
+        if (i < 0) {
+          return null;
+        }
+      } else if (c == '?') {
+        // VALUES 之前或者子查询中有参数
+        return null;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (depth == 0 && lowerSql.startsWith(VALUES, i) && isWordBoundary(sql, i - 1)
+          && isWordBoundary(sql, i + VALUES.length())) {
+        rowStart = i + VALUES.length();
+        while (rowStart < sql.length() && Character.isWhitespace(sql.charAt(rowStart))) {
+          rowStart++;
+        }
+        break;
+      }
+    }
+    if (rowStart < 0 || rowStart >= sql.length() || sql.charAt(rowStart) != '(') {
+      return null;
+    }
+    // 找到对应的右括号，并统计 ? 的数量
+    int placeholders = 0;
+    int rowEnd = -1;
+    depth = 0;
+    for (int i = rowStart; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (c == '\'' || c == '"') {
+        i = skipQuoted(sql, i);
+        if (i < 0) {
+          return null;
+        }
+      } else if (c == '?') {
+        placeholders++;
+      } else if (c == '(') {
+        depth++;
+      } else if (c == ')' && --depth == 0) {
+        rowEnd = i + 1;
+        break;
+      }
+    }
+    // 括号后面只能是空白，例如不支持 ON DUPLICATE KEY UPDATE 、RETURNING 和已经是多行的语句
+    if (rowEnd < 0 || !sql.substring(rowEnd).trim().isEmpty() || placeholders != parameterCount) {
+      return null;
+    }
+    return new MultiRowInsertTemplate(sql.substring(0, rowStart), sql.substring(rowStart, rowEnd));
+  }
+
+  /**
+   * 生成 rows 行的 INSERT 语句
+   */
+  String toSql(int rows) {
+    StringBuilder sql = new StringBuilder(prefix.length() + (row.length() + 2) * rows);
+    sql.append(prefix).append(row);
+    for (int i = 1; i < rows; i++) {
+      sql.append(", ").append(row);
+    }
+    return sql.toString();
+  }
+
+  // 返回引号结束的位置，没有结束时返回 -1 。两个连续的引号是转义
+  private static int skipQuoted(String sql, int start) {
+    char quote = sql.charAt(start);
+    for (int i = start + 1; i < sql.length(); i++) {
+      if (sql.charAt(i) == quote) {
+        if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+          i++;
+        } else {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isWordBoundary(String sql, int index) {
+    return index < 0 || index >= sql.length() || !Character.isLetterOrDigit(sql.charAt(index)) && sql.charAt(index) != '_';
+  }
+
+}
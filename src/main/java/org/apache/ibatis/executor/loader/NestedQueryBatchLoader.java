@@ -0,0 +1,274 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * 嵌套查询的批量加载器。
+ *
+ * 将同一个嵌套查询 {@code select ... from table where key = ?} 的多个参数，合并成
+ * {@code select ... from table where key in (?, ?, ...)} 查询，
+ * 再按照结果中 key 字段的值，分配查询结果。默认每条查询最多包含 {@link Configuration#getNestedQueryBatchSize()} 个参数。
+ *
+ * 只支持单表、单个参数、查询字段包含 key 字段（或 *）、并且 ResultMap 没有内嵌 ResultMap 的嵌套查询。
+ */
+public class NestedQueryBatchLoader {
+
+  private static final Pattern NESTED_QUERY_PATTERN = Pattern.compile(
+      "^\\s*(select\\s+(.+?)\\s+from\\s+[\\w.]+(?:\\s+(?:as\\s+)?\\w+)?\\s+where\\s+)([\\w.]+)\\s*=\\s*\\?((?:\\s+order\\s+by\\s+[^?]*)?)\\s*$",
+      Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+  private static final String KEY_PARAMETER_PREFIX = "__key";
+
+  private final Configuration configuration;
+  private final Executor executor;
+  private final MappedStatement mappedStatement;
+  private final ParameterMapping parameterMapping;
+
+  /**
+   * IN 列表之前的 SQL ，包括 key 字段
+   */
+  private final String sqlPrefix;
+
+  /**
+   * IN 列表之后的 SQL ，例如 order by 子句
+   */
+  private final String sqlSuffix;
+
+  /**
+   * 结果中 key 字段的名字
+   */
+  private final String keyColumn;
+
+  /**
+   * 每条查询最多包含的参数数量
+   */
+  private final int batchSize;
+
+  private final Set<Object> keys = new LinkedHashSet<>();
+
+  private NestedQueryBatchLoader(Configuration configuration, Executor executor, MappedStatement mappedStatement,
+      ParameterMapping parameterMapping, String sqlPrefix, String sqlSuffix, String keyColumn, int batchSize) {
+    this.configuration = configuration;
+    this.batchSize = Math.max(1, batchSize);
+    this.executor = executor;
+    this.mappedStatement = mappedStatement;
+    this.parameterMapping = parameterMapping;
+    this.sqlPrefix = sqlPrefix;
+    this.sqlSuffix = sqlSuffix;
+    this.keyColumn = keyColumn;
+  }
+
+  /**
+   * 创建 NestedQueryBatchLoader 对象
+   *
+   * @param executor 执行查询的执行器
+   * @param nestedQuery 嵌套查询
+   * @param boundSql 嵌套查询的一个 BoundSql 对象。SQL 不同的 BoundSql ，需要使用不同的 NestedQueryBatchLoader 对象
+   * @return NestedQueryBatchLoader 对象。如果嵌套查询无法合并，则返回 null
+   */
+  public static NestedQueryBatchLoader newInstance(Executor executor, MappedStatement nestedQuery, BoundSql boundSql) {
+    return newInstance(executor, nestedQuery, boundSql, nestedQuery.getConfiguration().getNestedQueryBatchSize());
+  }
+
+  /**
+   * 创建 NestedQueryBatchLoader 对象
+   *
+   * @param executor 执行查询的执行器
+   * @param nestedQuery 嵌套查询
+   * @param boundSql 嵌套查询的一个 BoundSql 对象
+   * @param batchSize 每条查询最多包含的参数数量
+   * @return NestedQueryBatchLoader 对象。如果嵌套查询无法合并，则返回 null
+   */
+  public static NestedQueryBatchLoader newInstance(Executor executor, MappedStatement nestedQuery, BoundSql boundSql, int batchSize) {
+    if (nestedQuery.getStatementType() != StatementType.PREPARED
+        || nestedQuery.getSqlCommandType() != SqlCommandType.SELECT
+        || nestedQuery.getResultSets() != null
+        || nestedQuery.getResultMaps().size() != 1) {
+      return null;
+    }
+    final ResultMap resultMap = nestedQuery.getResultMaps().get(0);
+    if (resultMap.hasNestedResultMaps() || resultMap.getDiscriminator() != null) {
+      return null;
+    }
+    final List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    if (parameterMappings.size() != 1 || parameterMappings.get(0).getMode() != ParameterMode.IN) {
+      return null;
+    }
+    final String sql = boundSql.getSql();
+    if (sql.indexOf('?') != sql.lastIndexOf('?')) {
+      return null;
+    }
+    final Matcher matcher = NESTED_QUERY_PATTERN.matcher(sql);
+    if (!matcher.matches()) {
+      return null;
+    }
+    final String keyColumn = matcher.group(3);
+    final String keyLabel = keyColumn.substring(keyColumn.lastIndexOf('.') + 1);
+    if (!selectsColumn(matcher.group(2), keyColumn, keyLabel)) {
+      return null;
+    }
+    return new NestedQueryBatchLoader(nestedQuery.getConfiguration(), executor, nestedQuery, parameterMappings.get(0),
+        matcher.group(1) + keyColumn, matcher.group(4), keyLabel, batchSize);
+  }
+
+  // 判断查询字段中，是否包含 key 字段
+  private static boolean selectsColumn(String columns, String keyColumn, String keyLabel) {
+    if (columns.indexOf('(') >= 0) {
+      return false;
+    }
+    final String qualifiedLabel = "." + keyLabel.toLowerCase(Locale.ENGLISH);
+    for (String column : columns.split(",")) {
+      final String trimmed = column.trim();
+      if (trimmed.equals("*") || trimmed.endsWith(".*")
+          || trimmed.equalsIgnoreCase(keyColumn) || trimmed.equalsIgnoreCase(keyLabel)
+          || trimmed.toLowerCase(Locale.ENGLISH).endsWith(qualifiedLabel) && trimmed.indexOf(' ') < 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * 添加需要加载的参数
+   *
+   * @param key 参数
+   * @return 是否添加成功。如果参数不是简单类型，则返回 false
+   */
+  public boolean addKey(Object key) {
+    if (!acceptsKey(key)) {
+      return false;
+    }
+    if (!keys.isEmpty() && keys.iterator().next().getClass() != key.getClass()) {
+      return false;
+    }
+    keys.add(key);
+    return true;
+  }
+
+  /**
+   * 判断参数是否可以合并查询，即是否是有 TypeHandler 的简单类型
+   *
+   * @param key 参数
+   * @return 是否可以合并查询
+   */
+  public boolean acceptsKey(Object key) {
+    return key != null && configuration.getTypeHandlerRegistry().hasTypeHandler(key.getClass());
+  }
+
+  /**
+   * 执行合并后的查询
+   *
+   * @return 每个参数对应的查询结果。没有结果的参数，对应空的 List
+   */
+  public Map<Object, List<Object>> load() throws SQLException {
+    final Map<Object, List<Object>> results = new HashMap<>();
+    if (keys.isEmpty()) {
+      return results;
+    }
+    final List<Object> keyList = new ArrayList<>(keys);
+    final TypeHandler<?> keyTypeHandler = configuration.getTypeHandlerRegistry().getTypeHandler(keyList.get(0).getClass());
+    for (int from = 0; from < keyList.size(); from += batchSize) {
+      final BoundSql boundSql = toBoundSql(keyList.subList(from, Math.min(from + batchSize, keyList.size())));
+      final CacheKey cacheKey = executor.createCacheKey(mappedStatement, null, RowBounds.DEFAULT, boundSql);
+      executor.query(mappedStatement, null, RowBounds.DEFAULT, new KeyedResultHandler(keyTypeHandler, keyColumn, results), cacheKey, boundSql);
+    }
+    for (Object key : keyList) {
+      results.computeIfAbsent(key, k -> new ArrayList<>());
+    }
+    return results;
+  }
+
+  private BoundSql toBoundSql(List<Object> chunk) {
+    // 只有一个参数时，也使用 in (?) 的形式。如果与未合并的 SQL 相同，两者的 CacheKey 也相同，
+    // 而使用 ResultHandler 的查询会在本地缓存中保存空的 List ，导致之后的普通查询返回空结果
+    final StringBuilder sql = new StringBuilder(sqlPrefix).append(" in (");
+    final List<ParameterMapping> parameterMappings = new ArrayList<>(chunk.size());
+    for (int i = 0; i < chunk.size(); i++) {
+      if (i > 0) {
+        sql.append(", ");
+      }
+      sql.append('?');
+      parameterMappings.add(new ParameterMapping.Builder(configuration, KEY_PARAMETER_PREFIX + i, parameterMapping.getTypeHandler())
+          .javaType(parameterMapping.getJavaType())
+          .jdbcType(parameterMapping.getJdbcType())
+          .numericScale(parameterMapping.getNumericScale())
+          .build());
+    }
+    sql.append(')').append(sqlSuffix);
+    final BoundSql boundSql = new BoundSql(configuration, sql.toString(), parameterMappings, null);
+    for (int i = 0; i < chunk.size(); i++) {
+      boundSql.setAdditionalParameter(KEY_PARAMETER_PREFIX + i, chunk.get(i));
+    }
+    return boundSql;
+  }
+
+  /**
+   * 按照 key 字段的值，分组结果的 ResultHandler 。
+   *
+   * 在处理每一行结果之前，{@link org.apache.ibatis.executor.resultset.DefaultResultSetHandler} 会调用 {@link #readKey(ResultSet)} 方法，读取当前行的 key
+   */
+  public static class KeyedResultHandler implements ResultHandler<Object> {
+
+    private final TypeHandler<?> keyTypeHandler;
+    private final String keyColumn;
+    private final Map<Object, List<Object>> results;
+    private Object key;
+
+    KeyedResultHandler(TypeHandler<?> keyTypeHandler, String keyColumn, Map<Object, List<Object>> results) {
+      this.keyTypeHandler = keyTypeHandler;
+      this.keyColumn = keyColumn;
+      this.results = results;
+    }
+
+    public void readKey(ResultSet rs) throws SQLException {
+      key = keyTypeHandler.getResult(rs, keyColumn);
+    }
+
+    @Override
+    public void handleResult(ResultContext<?> context) {
+      results.computeIfAbsent(key, k -> new ArrayList<>()).add(context.getResultObject());
+    }
+
+  }
+
+}
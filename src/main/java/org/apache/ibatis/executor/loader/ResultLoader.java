@@ -116,7 +116,7 @@ public class ResultLoader {
     }
   }
 
-  private Executor newExecutor() {
+  Executor newExecutor() {
     // 校验 environment
     final Environment environment = configuration.getEnvironment();
     if (environment == null) {
@@ -0,0 +1,159 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+
+/**
+ * 同一个结果集中，延迟加载同一个属性的 ResultLoader 分组。
+ *
+ * 首次加载其中一个结果对象的属性时，使用 {@link NestedQueryBatchLoader} 一次查询该对象，以及它之后最多 batchSize - 1 个尚未加载的兄弟对象的属性。
+ * 分组会持有所有兄弟对象，直到它们都不再被引用。
+ *
+ * @see org.apache.ibatis.session.Configuration#getLazyLoadBatchSize()
+ */
+public class ResultLoaderGroup {
+
+  private final MappedStatement mappedStatement;
+  private final BoundSql boundSql;
+  private final String property;
+  private final int batchSize;
+
+  /**
+   * 用于校验参数是否可以合并查询
+   */
+  private final NestedQueryBatchLoader keyValidator;
+
+  private final List<Member> members = new ArrayList<>();
+
+  private ResultLoaderGroup(MappedStatement mappedStatement, BoundSql boundSql, String property, int batchSize, NestedQueryBatchLoader keyValidator) {
+    this.mappedStatement = mappedStatement;
+    this.boundSql = boundSql;
+    this.property = property;
+    this.batchSize = batchSize;
+    this.keyValidator = keyValidator;
+  }
+
+  /**
+   * 创建 ResultLoaderGroup 对象
+   *
+   * @param executor 执行器
+   * @param nestedQuery 嵌套查询
+   * @param boundSql 嵌套查询的一个 BoundSql 对象。SQL 不同的 BoundSql ，需要使用不同的分组
+   * @param property 延迟加载的属性
+   * @param batchSize 一次加载的最大对象数
+   * @return ResultLoaderGroup 对象。如果嵌套查询无法合并，则返回 null
+   */
+  public static ResultLoaderGroup newInstance(Executor executor, MappedStatement nestedQuery, BoundSql boundSql, String property, int batchSize) {
+    final NestedQueryBatchLoader keyValidator = NestedQueryBatchLoader.newInstance(executor, nestedQuery, boundSql, batchSize);
+    return keyValidator == null ? null : new ResultLoaderGroup(nestedQuery, boundSql, property, batchSize, keyValidator);
+  }
+
+  /**
+   * 判断 ResultLoader 是否可以加入分组
+   *
+   * @param resultLoader ResultLoader 对象
+   * @return 是否可以加入
+   */
+  public boolean accepts(ResultLoader resultLoader) {
+    return keyValidator.acceptsKey(resultLoader.parameterObject);
+  }
+
+  synchronized Member add(MetaObject metaResultObject, ResultLoader resultLoader) {
+    final Member member = new Member(metaResultObject, resultLoader);
+    members.add(member);
+    return member;
+  }
+
+  /**
+   * 加载成员的属性值。同时加载的兄弟对象，在释放锁后设置属性值，避免和兄弟对象的代理互相等待
+   *
+   * @param member 成员
+   * @return 属性值
+   */
+  Object load(Member member) throws SQLException {
+    final List<Member> siblings = new ArrayList<>();
+    final Object value;
+    synchronized (this) {
+      if (!member.loaded) {
+        final List<Member> batch = new ArrayList<>();
+        batch.add(member);
+        final int index = members.indexOf(member);
+        for (int i = 1; i < members.size() && batch.size() < batchSize; i++) {
+          final Member sibling = members.get((index + i) % members.size());
+          if (!sibling.loaded) {
+            batch.add(sibling);
+          }
+        }
+        loadBatch(batch);
+        siblings.addAll(batch.subList(1, batch.size()));
+      }
+      value = member.value;
+    }
+    for (Member sibling : siblings) {
+      sibling.metaResultObject.setValue(property, sibling.value);
+    }
+    return value;
+  }
+
+  private void loadBatch(List<Member> batch) throws SQLException {
+    final ResultLoader resultLoader = batch.get(0).resultLoader;
+    // 与 ResultLoader 相同，不在创建线程，或者执行器已关闭时，使用新的执行器
+    Executor executor = resultLoader.executor;
+    if (Thread.currentThread().getId() != resultLoader.creatorThreadId || executor.isClosed()) {
+      executor = resultLoader.newExecutor();
+    }
+    try {
+      final NestedQueryBatchLoader loader = NestedQueryBatchLoader.newInstance(executor, mappedStatement, boundSql, batchSize);
+      for (Member member : batch) {
+        loader.addKey(member.resultLoader.parameterObject);
+      }
+      final Map<Object, List<Object>> results = loader.load();
+      for (Member member : batch) {
+        member.value = member.resultLoader.resultExtractor.extractObjectFromList(results.get(member.resultLoader.parameterObject), member.resultLoader.targetType);
+        member.loaded = true;
+      }
+    } finally {
+      if (executor != resultLoader.executor) {
+        executor.close(false);
+      }
+    }
+  }
+
+  /**
+   * 分组中的一个结果对象
+   */
+  static final class Member {
+    private final MetaObject metaResultObject;
+    private final ResultLoader resultLoader;
+    private boolean loaded;
+    private Object value;
+
+    private Member(MetaObject metaResultObject, ResultLoader resultLoader) {
+      this.metaResultObject = metaResultObject;
+      this.resultLoader = resultLoader;
+    }
+  }
+
+}
@@ -52,6 +52,13 @@ public class ResultLoaderMap {
   private final Map<String, LoadPair> loaderMap = new HashMap<>();
 
   public void addLoader(String property, MetaObject metaResultObject, ResultLoader resultLoader) {
+    addLoader(property, metaResultObject, resultLoader, null);
+  }
+
+  /**
+   * 添加 ResultLoader 。如果 group 非空，首次加载时，同时加载分组中兄弟对象的该属性
+   */
+  public void addLoader(String property, MetaObject metaResultObject, ResultLoader resultLoader, ResultLoaderGroup group) {
     String upperFirst = getUppercaseFirstProperty(property);
     if (!upperFirst.equalsIgnoreCase(property) && loaderMap.containsKey(upperFirst)) {
       throw new ExecutorException("Nested lazy loaded result property '" + property +
@@ -59,7 +66,12 @@ public class ResultLoaderMap {
               " already exists in the result map. The leftmost property of all lazy loaded properties must be unique within a result map.");
     }
     // 创建 LoadPair 对象，添加到 loaderMap 中
-    loaderMap.put(upperFirst, new LoadPair(property, metaResultObject, resultLoader));
+    LoadPair pair = new LoadPair(property, metaResultObject, resultLoader);
+    if (group != null) {
+      pair.group = group;
+      pair.groupMember = group.add(metaResultObject, resultLoader);
+    }
+    loaderMap.put(upperFirst, pair);
   }
 
   public final Map<String, LoadPair> getProperties() {
@@ -152,6 +164,11 @@ public class ResultLoaderMap {
      * Parameter of the sql statement.
      */
     private Serializable mappedParameter;
+    /**
+     * 所在的分组。为空时，单独加载
+     */
+    private transient ResultLoaderGroup group;
+    private transient ResultLoaderGroup.Member groupMember;
 
     private LoadPair(final String property, MetaObject metaResultObject, ResultLoader resultLoader) {
       this.property = property;
@@ -225,6 +242,11 @@ public class ResultLoaderMap {
                 old.parameterObject, old.targetType, old.cacheKey, old.boundSql);
       }
 
+      if (this.group != null) {
+        this.metaResultObject.setValue(property, this.group.load(this.groupMember));
+        return;
+      }
+
       this.metaResultObject.setValue(property, this.resultLoader.loadResult());
     }
 
@@ -23,12 +23,16 @@ import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.ResultExtractor;
+import org.apache.ibatis.executor.loader.NestedQueryBatchLoader;
 import org.apache.ibatis.executor.loader.ResultLoader;
+import org.apache.ibatis.executor.loader.ResultLoaderGroup;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
 import org.apache.ibatis.executor.result.ResultMapException;
+import org.apache.ibatis.executor.resultset.ResultMappingPlan.ColumnMapping;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.Discriminator;
 import org.apache.ibatis.mapping.MappedStatement;
@@ -40,6 +44,8 @@ import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.ReflectorFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.wrapper.BeanWrapper;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
@@ -57,10 +63,14 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 默认的 ResultSetHandler 实现类。
@@ -95,35 +105,55 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<>();
 
   /**
-   * 自动映射的缓存
-   *
-   * KEY：{@link ResultMap#getId()} + ":" +  columnPrefix
-   *
-   * @see #createRowKeyForUnmappedProperties(ResultMap, ResultSetWrapper, CacheKey, String)
+   * 是否使用构造方法创建该结果对象
    */
-  private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<>();
+  private boolean useConstructorMappings;
 
   /**
-   * 是否使用构造方法创建该结果对象
+   * 等待并发执行的嵌套查询。为空时，嵌套查询串行执行
    */
-  private boolean useConstructorMappings;
+  private Map<CacheKey, PendingNestedQuery> pendingNestedQueries;
+
+  /**
+   * 等待合并执行的嵌套查询，KEY 为嵌套查询的编号和 SQL 。VALUE 为空时，表示该嵌套查询无法合并
+   */
+  private Map<String, PendingNestedQueryBatch> pendingNestedQueryBatches;
+
+  /**
+   * 延迟加载的分组，KEY 为嵌套查询的编号、属性和 SQL 。VALUE 为空时，表示该嵌套查询无法合并
+   */
+  private Map<String, ResultLoaderGroup> resultLoaderGroups;
 
   private static class PendingRelation {
     public MetaObject metaObject;
     public ResultMapping propertyMapping;
   }
 
-  private static class UnMappedColumnAutoMapping {
-    private final String column;
-    private final String property;
-    private final TypeHandler<?> typeHandler;
-    private final boolean primitive;
+  /**
+   * 待执行的嵌套查询，及需要设置其结果的属性。相同 CacheKey 的嵌套查询只执行一次
+   */
+  private static class PendingNestedQuery {
+    private final FutureTask<Object> task;
+    private final List<MetaObject> metaObjects = new ArrayList<>();
+    private final List<String> properties = new ArrayList<>();
 
-    public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler, boolean primitive) {
-      this.column = column;
-      this.property = property;
-      this.typeHandler = typeHandler;
-      this.primitive = primitive;
+    PendingNestedQuery(ResultLoader resultLoader) {
+      this.task = new FutureTask<>(resultLoader::loadResult);
+    }
+  }
+
+  /**
+   * 待合并执行的嵌套查询，及需要设置其结果的属性
+   */
+  private static class PendingNestedQueryBatch {
+    private final NestedQueryBatchLoader loader;
+    private final List<Object> keys = new ArrayList<>();
+    private final List<MetaObject> metaObjects = new ArrayList<>();
+    private final List<String> properties = new ArrayList<>();
+    private final List<Class<?>> targetTypes = new ArrayList<>();
+
+    PendingNestedQueryBatch(NestedQueryBatchLoader loader) {
+      this.loader = loader;
     }
   }
 
@@ -210,6 +240,20 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
     // <3.1> 校验
     validateResultMapsCount(rsw, resultMapCount);
+
+    // <3.2> 开启并行嵌套查询时，收集非延迟加载的嵌套查询。自定义 ResultHandler 会在行处理时就拿到结果对象，所以不收集
+    if (resultHandler == null && configuration.getNestedQueryParallelism() > 0) {
+      pendingNestedQueries = new LinkedHashMap<>();
+    }
+    // <3.3> 开启延迟加载合并时，将同一个结果集中，延迟加载同一个属性的对象分组
+    if (configuration.getLazyLoadBatchSize() > 0) {
+      resultLoaderGroups = new HashMap<>();
+    }
+    // <3.4> 开启嵌套查询合并时，收集可以合并的嵌套查询。合并后的嵌套查询中的嵌套查询，也可以继续合并
+    if ((resultHandler == null || resultHandler instanceof NestedQueryBatchLoader.KeyedResultHandler)
+        && configuration.getNestedQueryBatchSize() > 0) {
+      pendingNestedQueryBatches = new LinkedHashMap<>();
+    }
     while (rsw != null && resultMapCount > resultSetCount) {
 
       // <4.1> 获得 ResultMap 对象
@@ -242,7 +286,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       }
     }
 
-    // <6> 如果是 multipleResults 单元素，则取首元素返回
+    // <6> 合并执行、并发执行收集的嵌套查询，并将结果设置到结果对象中
+    resultLoaderGroups = null;
+    loadPendingNestedQueryBatches();
+    loadPendingNestedQueries();
+
+    // <7> 如果是 multipleResults 单元素，则取首元素返回
     return collapseSingleResultList(multipleResults);
   }
 
@@ -417,6 +466,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     if (parentMapping != null) {
       linkToParents(rs, parentMapping, rowValue);
     } else {
+      if (resultHandler instanceof NestedQueryBatchLoader.KeyedResultHandler) {
+        // 合并执行的嵌套查询，读取当前行的 key ，用于分配结果
+        ((NestedQueryBatchLoader.KeyedResultHandler) resultHandler).readKey(rs);
+      }
       callResultHandler(resultHandler, resultContext, rowValue);
     }
   }
@@ -468,14 +521,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       // <5> foundValues 代表，是否成功映射任一属性。若成功，则为 true ，若失败，则为 false
       boolean foundValues = this.useConstructorMappings;
 
-      // <6.1> 判断是否开启自动映射功能
-      if (shouldApplyAutomaticMappings(resultMap, false)) {
+      // <6.1> 判断是否开启自动映射功能，并获得预编译的结果映射计划
+      final boolean autoMapping = shouldApplyAutomaticMappings(resultMap, false);
+      final ResultMappingPlan plan = getMappingPlan(rsw, resultMap, metaObject, columnPrefix, autoMapping);
+      if (autoMapping) {
         // <6.2> 自动映射未明确的列
-        foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
+        foundValues = applyAutomaticMappings(rsw, plan, metaObject) || foundValues;
       }
 
       // <7> 映射 ResultMap 中明确映射的列
-      foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
+      foundValues = applyPropertyMappings(rsw, plan, metaObject, lazyLoader, columnPrefix) || foundValues;
       // <8> ↑↑↑ 至此，当前 ResultSet 的该行记录的数据，已经完全映射到结果对象 rowValue 的对应属性中
 
       foundValues = lazyLoader.size() > 0 || foundValues;
@@ -503,39 +558,145 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   }
 
   //
-  // PROPERTY MAPPINGS
+  // MAPPING PLANS
   //
 
-  private boolean applyPropertyMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, ResultLoaderMap lazyLoader, String columnPrefix)
+  /**
+   * 获得结果映射计划。
+   * 先从 ResultSetWrapper 中获取，再从 MappedStatement 中获取，都不存在时进行编译，并缓存到两者中。
+   */
+  private ResultMappingPlan getMappingPlan(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix, boolean autoMapping)
       throws SQLException {
+    ResultMappingPlan plan = rsw.getMappingPlan(resultMap, columnPrefix);
+    if (plan == null || plan.isAutoMapping() != autoMapping) {
+      // 影响编译结果的配置项，也需要作为 KEY 的一部分
+      final String planKey = resultMap.getId() + ":" + columnPrefix + ":" + autoMapping
+          + ":" + configuration.isMapUnderscoreToCamelCase() + ":" + configuration.isUseColumnLabel()
+          + ":" + configuration.isMapColumnsByIndex()
+          + ":" + configuration.getAutoMappingUnknownColumnBehavior() + ":" + rsw.getColumnSignature();
+      plan = mappedStatement.getResultMappingPlan(planKey);
+      if (plan == null) {
+        plan = new ResultMappingPlan(metaObject.getOriginalObject().getClass(), autoMapping,
+            autoMapping ? compileAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) : new ColumnMapping[0],
+            compilePropertyMappings(rsw, resultMap, metaObject, columnPrefix));
+        mappedStatement.putResultMappingPlan(planKey, plan);
+      }
+      rsw.putMappingPlan(resultMap, columnPrefix, plan);
+    }
+    return plan;
+  }
+
+  private ColumnMapping[] compilePropertyMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
     final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
-    boolean foundValues = false;
     final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
-    for (ResultMapping propertyMapping : propertyMappings) {
+    final ColumnMapping[] mappings = new ColumnMapping[propertyMappings.size()];
+    for (int i = 0; i < mappings.length; i++) {
+      final ResultMapping propertyMapping = propertyMappings.get(i);
       String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
       if (propertyMapping.getNestedResultMapId() != null) {
         // the user added a column attribute to a nested result map, ignore it
         column = null;
       }
-      if (propertyMapping.isCompositeResult()
+      final boolean present = propertyMapping.isCompositeResult()
           || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
-          || propertyMapping.getResultSet() != null) {
-        Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
-        // issue #541 make property optional
-        final String property = propertyMapping.getProperty();
-        if (property == null) {
-          continue;
-        } else if (value == DEFERRED) {
-          foundValues = true;
+          || propertyMapping.getResultSet() != null;
+      final String property = propertyMapping.getProperty();
+      mappings[i] = new ColumnMapping(propertyMapping, column, getColumnIndex(rsw, column), property, propertyMapping.getTypeHandler(),
+          false, resolveSetter(metaObject, property), present);
+    }
+    return mappings;
+  }
+
+  private ColumnMapping[] compileAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
+    final List<ColumnMapping> autoMapping = new ArrayList<>();
+    final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
+    for (String columnName : unmappedColumnNames) {
+      String propertyName = columnName;
+      if (columnPrefix != null && !columnPrefix.isEmpty()) {
+        // When columnPrefix is specified,
+        // ignore columns without the prefix.
+        if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
+          propertyName = columnName.substring(columnPrefix.length());
+        } else {
           continue;
         }
-        if (value != null) {
-          foundValues = true;
+      }
+      final String property = metaObject.findProperty(propertyName, configuration.isMapUnderscoreToCamelCase());
+      if (property != null && metaObject.hasSetter(property)) {
+        if (resultMap.getMappedProperties().contains(property)) {
+          continue;
         }
-        if (value != null || (configuration.isCallSettersOnNulls() && !metaObject.getSetterType(property).isPrimitive())) {
-          // gcode issue #377, call setter on nulls (value is not 'found')
-          metaObject.setValue(property, value);
+        final Class<?> propertyType = metaObject.getSetterType(property);
+        if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
+          final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
+          autoMapping.add(new ColumnMapping(null, columnName, getColumnIndex(rsw, columnName), property, typeHandler,
+              propertyType.isPrimitive(), resolveSetter(metaObject, property), true));
+        } else {
+          configuration.getAutoMappingUnknownColumnBehavior()
+              .doAction(mappedStatement, columnName, property, propertyType);
         }
+      } else {
+        configuration.getAutoMappingUnknownColumnBehavior()
+            .doAction(mappedStatement, columnName, (property != null) ? property : propertyName, null);
+      }
+    }
+    return autoMapping.toArray(new ColumnMapping[0]);
+  }
+
+  /**
+   * 获得字段的位置。未开启 mapColumnsByIndex 时，按字段名读取，TypeHandler 只会被调用按字段名读取的方法；
+   * 未使用字段别名时，字段名与 ResultSet 中的 label 可能不一致，也按字段名读取
+   */
+  private int getColumnIndex(ResultSetWrapper rsw, String column) {
+    return column != null && configuration.isMapColumnsByIndex() && configuration.isUseColumnLabel() ? rsw.getColumnIndex(column) : 0;
+  }
+
+  /**
+   * 解析属性的 setting 方法。只有普通对象的简单属性，才能跳过 MetaObject 直接调用
+   */
+  private Invoker resolveSetter(MetaObject metaObject, String property) {
+    if (property == null || metaObject.getObjectWrapper().getClass() != BeanWrapper.class
+        || property.indexOf('.') >= 0 || property.indexOf('[') >= 0) {
+      return null;
+    }
+    final MetaClass metaClass = MetaClass.forClass(metaObject.getOriginalObject().getClass(), reflectorFactory);
+    return metaClass.hasSetter(property) ? metaClass.getSetInvoker(property) : null;
+  }
+
+  //
+  // PROPERTY MAPPINGS
+  //
+
+  private boolean applyPropertyMappings(ResultSetWrapper rsw, ResultMappingPlan plan, MetaObject metaObject, ResultLoaderMap lazyLoader, String columnPrefix)
+      throws SQLException {
+    final ResultSet rs = rsw.getResultSet();
+    boolean foundValues = false;
+    for (ColumnMapping mapping : plan.getPropertyMappings()) {
+      if (!mapping.present) {
+        continue;
+      }
+      final ResultMapping propertyMapping = mapping.resultMapping;
+      final Object value;
+      if (propertyMapping.getNestedQueryId() == null && propertyMapping.getResultSet() == null) {
+        // 普通的字段，按位置读取
+        value = mapping.getResult(rs);
+      } else {
+        value = getPropertyMappingValue(rs, metaObject, propertyMapping, lazyLoader, columnPrefix);
+      }
+      // issue #541 make property optional
+      final String property = mapping.property;
+      if (property == null) {
+        continue;
+      } else if (value == DEFERRED) {
+        foundValues = true;
+        continue;
+      }
+      if (value != null) {
+        foundValues = true;
+      }
+      if (value != null || (configuration.isCallSettersOnNulls() && !metaObject.getSetterType(property).isPrimitive())) {
+        // gcode issue #377, call setter on nulls (value is not 'found')
+        plan.setValue(metaObject, mapping, value);
       }
     }
     return foundValues;
@@ -555,59 +716,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     }
   }
 
-  private List<UnMappedColumnAutoMapping> createAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
-    final String mapKey = resultMap.getId() + ":" + columnPrefix;
-    List<UnMappedColumnAutoMapping> autoMapping = autoMappingsCache.get(mapKey);
-    if (autoMapping == null) {
-      autoMapping = new ArrayList<>();
-      final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
-      for (String columnName : unmappedColumnNames) {
-        String propertyName = columnName;
-        if (columnPrefix != null && !columnPrefix.isEmpty()) {
-          // When columnPrefix is specified,
-          // ignore columns without the prefix.
-          if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
-            propertyName = columnName.substring(columnPrefix.length());
-          } else {
-            continue;
-          }
-        }
-        final String property = metaObject.findProperty(propertyName, configuration.isMapUnderscoreToCamelCase());
-        if (property != null && metaObject.hasSetter(property)) {
-          if (resultMap.getMappedProperties().contains(property)) {
-            continue;
-          }
-          final Class<?> propertyType = metaObject.getSetterType(property);
-          if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
-            final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
-            autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive()));
-          } else {
-            configuration.getAutoMappingUnknownColumnBehavior()
-                .doAction(mappedStatement, columnName, property, propertyType);
-          }
-        } else {
-          configuration.getAutoMappingUnknownColumnBehavior()
-              .doAction(mappedStatement, columnName, (property != null) ? property : propertyName, null);
-        }
-      }
-      autoMappingsCache.put(mapKey, autoMapping);
-    }
-    return autoMapping;
-  }
-
-  private boolean applyAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
-    List<UnMappedColumnAutoMapping> autoMapping = createAutomaticMappings(rsw, resultMap, metaObject, columnPrefix);
+  private boolean applyAutomaticMappings(ResultSetWrapper rsw, ResultMappingPlan plan, MetaObject metaObject) throws SQLException {
+    final ResultSet rs = rsw.getResultSet();
     boolean foundValues = false;
-    if (!autoMapping.isEmpty()) {
-      for (UnMappedColumnAutoMapping mapping : autoMapping) {
-        final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
-        if (value != null) {
-          foundValues = true;
-        }
-        if (value != null || (configuration.isCallSettersOnNulls() && !mapping.primitive)) {
-          // gcode issue #377, call setter on nulls (value is not 'found')
-          metaObject.setValue(mapping.property, value);
-        }
+    for (ColumnMapping mapping : plan.getAutoMappings()) {
+      final Object value = mapping.getResult(rs);
+      if (value != null) {
+        foundValues = true;
+      }
+      if (value != null || (configuration.isCallSettersOnNulls() && !mapping.primitive)) {
+        // gcode issue #377, call setter on nulls (value is not 'found')
+        plan.setValue(metaObject, mapping, value);
       }
     }
     return foundValues;
@@ -868,7 +987,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
         // <x> 如果要求延迟加载，则延迟加载
         if (propertyMapping.isLazy()) {
-          lazyLoader.addLoader(property, metaResultObject, resultLoader);
+          lazyLoader.addLoader(property, metaResultObject, resultLoader, getResultLoaderGroup(nestedQuery, nestedBoundSql, property, resultLoader));
+          value = DEFERRED;
+        } else if (pendingNestedQueryBatches != null
+            && addPendingNestedQueryBatch(nestedQuery, nestedBoundSql, nestedQueryParameterObject, metaResultObject, property, targetType)) {
+          // 开启嵌套查询合并时，延后到结果集处理完成后合并执行
+          value = DEFERRED;
+        } else if (pendingNestedQueries != null) {
+          // 开启并行嵌套查询时，延后到结果集处理完成后执行
+          PendingNestedQuery pendingNestedQuery = pendingNestedQueries.computeIfAbsent(key, k -> new PendingNestedQuery(resultLoader));
+          pendingNestedQuery.metaObjects.add(metaResultObject);
+          pendingNestedQuery.properties.add(property);
           value = DEFERRED;
         } else {
           value = resultLoader.loadResult();
@@ -878,6 +1007,121 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return value;
   }
 
+  private ResultLoaderGroup getResultLoaderGroup(MappedStatement nestedQuery, BoundSql nestedBoundSql, String property, ResultLoader resultLoader) {
+    if (resultLoaderGroups == null) {
+      return null;
+    }
+    final String groupId = nestedQuery.getId() + ':' + property + ':' + nestedBoundSql.getSql();
+    ResultLoaderGroup group = resultLoaderGroups.get(groupId);
+    if (group == null && !resultLoaderGroups.containsKey(groupId)) {
+      group = ResultLoaderGroup.newInstance(executor, nestedQuery, nestedBoundSql, property, configuration.getLazyLoadBatchSize());
+      resultLoaderGroups.put(groupId, group);
+    }
+    return group != null && group.accepts(resultLoader) ? group : null;
+  }
+
+  private boolean addPendingNestedQueryBatch(MappedStatement nestedQuery, BoundSql nestedBoundSql, Object key,
+      MetaObject metaResultObject, String property, Class<?> targetType) {
+    final String batchId = nestedQuery.getId() + ':' + nestedBoundSql.getSql();
+    PendingNestedQueryBatch batch = pendingNestedQueryBatches.get(batchId);
+    if (batch == null) {
+      if (pendingNestedQueryBatches.containsKey(batchId)) {
+        return false;
+      }
+      final NestedQueryBatchLoader loader = NestedQueryBatchLoader.newInstance(executor, nestedQuery, nestedBoundSql);
+      batch = loader == null ? null : new PendingNestedQueryBatch(loader);
+      pendingNestedQueryBatches.put(batchId, batch);
+      if (batch == null) {
+        return false;
+      }
+    }
+    if (!batch.loader.addKey(key)) {
+      return false;
+    }
+    batch.keys.add(key);
+    batch.metaObjects.add(metaResultObject);
+    batch.properties.add(property);
+    batch.targetTypes.add(targetType);
+    return true;
+  }
+
+  // 合并执行收集的嵌套查询，再按照参数分配结果
+  private void loadPendingNestedQueryBatches() throws SQLException {
+    if (pendingNestedQueryBatches == null) {
+      return;
+    }
+    final List<PendingNestedQueryBatch> batches = new ArrayList<>(pendingNestedQueryBatches.values());
+    pendingNestedQueryBatches = null;
+    final ResultExtractor resultExtractor = new ResultExtractor(configuration, objectFactory);
+    for (PendingNestedQueryBatch batch : batches) {
+      if (batch == null) {
+        continue;
+      }
+      final Map<Object, List<Object>> results = batch.loader.load();
+      for (int i = 0; i < batch.keys.size(); i++) {
+        final Object value = resultExtractor.extractObjectFromList(results.get(batch.keys.get(i)), batch.targetTypes.get(i));
+        setNestedQueryValue(batch.metaObjects.get(i), batch.properties.get(i), value);
+      }
+    }
+  }
+
+  private void setNestedQueryValue(MetaObject metaObject, String property, Object value) {
+    if (value != null || (configuration.isCallSettersOnNulls() && !metaObject.getSetterType(property).isPrimitive())) {
+      metaObject.setValue(property, value);
+    }
+  }
+
+  // 并发执行收集的嵌套查询。当前线程按顺序执行尚未被线程池领取的查询，所以即使线程池已满（例如嵌套查询中又有嵌套查询），也不会死锁
+  private void loadPendingNestedQueries() throws SQLException {
+    if (pendingNestedQueries == null) {
+      return;
+    }
+    final List<PendingNestedQuery> queries = new ArrayList<>(pendingNestedQueries.values());
+    pendingNestedQueries = null;
+    try {
+      // 第一个查询由当前线程执行，无需提交
+      for (int i = 1; i < queries.size(); i++) {
+        try {
+          configuration.getNestedQueryExecutor().execute(queries.get(i).task);
+        } catch (RejectedExecutionException e) {
+          // 由当前线程执行
+          break;
+        }
+      }
+      for (PendingNestedQuery query : queries) {
+        // 如果已被线程池中的线程领取，则什么也不做
+        query.task.run();
+        final Object value = getNestedQueryResult(query.task);
+        for (int i = 0; i < query.metaObjects.size(); i++) {
+          setNestedQueryValue(query.metaObjects.get(i), query.properties.get(i), value);
+        }
+      }
+    } finally {
+      for (PendingNestedQuery query : queries) {
+        query.task.cancel(false);
+      }
+    }
+  }
+
+  private Object getNestedQueryResult(FutureTask<Object> task) throws SQLException {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ExecutorException("Interrupted while waiting for a nested query.", e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof SQLException) {
+        throw (SQLException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new ExecutorException("Error executing a nested query. Cause: " + cause, cause);
+    }
+  }
+
   private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     if (resultMapping.isCompositeResult()) {
       return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
@@ -1022,10 +1266,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (rowValue != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
         final MetaObject metaObject = configuration.newMetaObject(rowValue);
         boolean foundValues = this.useConstructorMappings;
-        if (shouldApplyAutomaticMappings(resultMap, true)) {
-          foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
+        final boolean autoMapping = shouldApplyAutomaticMappings(resultMap, true);
+        final ResultMappingPlan plan = getMappingPlan(rsw, resultMap, metaObject, columnPrefix, autoMapping);
+        if (autoMapping) {
+          foundValues = applyAutomaticMappings(rsw, plan, metaObject) || foundValues;
         }
-        foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
+        foundValues = applyPropertyMappings(rsw, plan, metaObject, lazyLoader, columnPrefix) || foundValues;
         putAncestor(rowValue, resultMapId);
         foundValues = applyNestedResultMappings(rsw, resultMap, metaObject, columnPrefix, combinedKey, true) || foundValues;
         ancestorObjects.remove(resultMapId);
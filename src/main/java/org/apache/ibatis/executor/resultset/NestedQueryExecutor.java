@@ -0,0 +1,62 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 默认的并行嵌套查询执行器。
+ *
+ * 线程数固定为 {@link org.apache.ibatis.session.Configuration#getNestedQueryParallelism()} ，空闲的线程会被回收。
+ *
+ * @see org.apache.ibatis.session.Configuration#getNestedQueryExecutor()
+ */
+public class NestedQueryExecutor implements Executor {
+
+  private final ThreadPoolExecutor delegate;
+
+  public NestedQueryExecutor(int parallelism) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Nested query parallelism must be greater than zero but was " + parallelism);
+    }
+    AtomicInteger threadNumber = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "mybatis-nested-query-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    this.delegate = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+    this.delegate.allowCoreThreadTimeOut(true);
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    delegate.execute(command);
+  }
+
+  /**
+   * 关闭执行器。已提交的任务仍会执行完成
+   */
+  public void shutdown() {
+    delegate.shutdown();
+  }
+
+}
@@ -0,0 +1,148 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * 预编译的结果映射计划。
+ *
+ * 对于同一个 ResultMap 、同一个字段前缀、同一组字段（字段签名），
+ * 自动映射和明确映射所需要的字段位置、TypeHandler 以及属性的 setting 方法都是固定的，
+ * 因此只需要解析一次，缓存在 {@link org.apache.ibatis.mapping.MappedStatement} 中，被后续的每一次查询复用。
+ *
+ * @see DefaultResultSetHandler
+ */
+public class ResultMappingPlan {
+
+  /**
+   * 解析 setting 方法时，结果对象的类型。
+   * 只有结果对象的类型与之相同时，才直接调用 {@link ColumnMapping#setter} ，否则通过 MetaObject 设置属性。
+   */
+  private final Class<?> resultClass;
+
+  /**
+   * 是否包含自动映射
+   */
+  private final boolean autoMapping;
+
+  /**
+   * 自动映射的字段
+   */
+  private final ColumnMapping[] autoMappings;
+
+  /**
+   * 明确映射的属性，与 {@link org.apache.ibatis.mapping.ResultMap#getPropertyResultMappings()} 一一对应
+   */
+  private final ColumnMapping[] propertyMappings;
+
+  ResultMappingPlan(Class<?> resultClass, boolean autoMapping, ColumnMapping[] autoMappings, ColumnMapping[] propertyMappings) {
+    this.resultClass = resultClass;
+    this.autoMapping = autoMapping;
+    this.autoMappings = autoMappings;
+    this.propertyMappings = propertyMappings;
+  }
+
+  public boolean isAutoMapping() {
+    return autoMapping;
+  }
+
+  ColumnMapping[] getAutoMappings() {
+    return autoMappings;
+  }
+
+  ColumnMapping[] getPropertyMappings() {
+    return propertyMappings;
+  }
+
+  /**
+   * 设置结果对象的属性值
+   */
+  void setValue(MetaObject metaObject, ColumnMapping mapping, Object value) {
+    final Object object = metaObject.getOriginalObject();
+    if (mapping.setter == null || object.getClass() != resultClass) {
+      metaObject.setValue(mapping.property, value);
+      return;
+    }
+    try {
+      try {
+        mapping.setter.invoke(object, new Object[] {value});
+      } catch (Throwable t) {
+        throw ExceptionUtil.unwrapThrowable(t);
+      }
+    } catch (Throwable t) {
+      throw new ReflectionException("Could not set property '" + mapping.property + "' of '" + object.getClass() + "' with value '" + value + "' Cause: " + t.toString(), t);
+    }
+  }
+
+  static class ColumnMapping {
+
+    /**
+     * 明确映射时的 ResultMapping 对象，自动映射时为 null
+     */
+    final ResultMapping resultMapping;
+
+    /**
+     * 字段名，已拼接前缀
+     */
+    final String column;
+
+    /**
+     * 字段的位置，从 1 开始。为 0 时，按字段名读取
+     */
+    final int columnIndex;
+
+    final String property;
+    final TypeHandler<?> typeHandler;
+    final boolean primitive;
+
+    /**
+     * 属性的 setting 方法，无法直接调用时为 null
+     */
+    final Invoker setter;
+
+    /**
+     * 明确映射时，该映射在当前 ResultSet 中是否需要处理
+     */
+    final boolean present;
+
+    ColumnMapping(ResultMapping resultMapping, String column, int columnIndex, String property, TypeHandler<?> typeHandler,
+        boolean primitive, Invoker setter, boolean present) {
+      this.resultMapping = resultMapping;
+      this.column = column;
+      this.columnIndex = columnIndex;
+      this.property = property;
+      this.typeHandler = typeHandler;
+      this.primitive = primitive;
+      this.setter = setter;
+      this.present = present;
+    }
+
+    Object getResult(ResultSet rs) throws SQLException {
+      return columnIndex > 0 ? typeHandler.getResult(rs, columnIndex) : typeHandler.getResult(rs, column);
+    }
+
+  }
+
+}
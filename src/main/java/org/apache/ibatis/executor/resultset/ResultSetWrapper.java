@@ -85,6 +85,19 @@ public class ResultSetWrapper {
    */
   private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<>();
 
+  /**
+   * 当前 ResultSet 使用的结果映射计划
+   *
+   * KEY1：ResultMap 对象
+   * KEY2：字段前缀
+   */
+  private final Map<ResultMap, Map<String, ResultMappingPlan>> mappingPlans = new HashMap<>();
+
+  /**
+   * 字段签名，由字段的名字、JdbcType 、Java Type 拼接而成
+   */
+  private String columnSignature;
+
   public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
     super();
     this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
@@ -116,6 +129,46 @@ public class ResultSetWrapper {
     return jdbcTypes;
   }
 
+  /**
+   * 获得指定字段名的位置，忽略大小写，与 {@link ResultSet#findColumn(String)} 一致，取第一个匹配的字段
+   *
+   * @param columnName 字段名
+   * @return 位置，从 1 开始。如果不存在，返回 0
+   */
+  public int getColumnIndex(String columnName) {
+    for (int i = 0; i < columnNames.size(); i++) {
+      if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+        return i + 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * 获得字段签名。字段签名相同的 ResultSet ，可以复用同一个 {@link ResultMappingPlan}
+   *
+   * @return 字段签名
+   */
+  public String getColumnSignature() {
+    if (columnSignature == null) {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < columnNames.size(); i++) {
+        builder.append(columnNames.get(i)).append(':').append(jdbcTypes.get(i)).append(':').append(classNames.get(i)).append(',');
+      }
+      columnSignature = builder.toString();
+    }
+    return columnSignature;
+  }
+
+  ResultMappingPlan getMappingPlan(ResultMap resultMap, String columnPrefix) {
+    Map<String, ResultMappingPlan> plans = mappingPlans.get(resultMap);
+    return plans == null ? null : plans.get(columnPrefix);
+  }
+
+  void putMappingPlan(ResultMap resultMap, String columnPrefix, ResultMappingPlan plan) {
+    mappingPlans.computeIfAbsent(resultMap, k -> new HashMap<>()).put(columnPrefix, plan);
+  }
+
   public JdbcType getJdbcType(String columnName) {
     for (int i = 0 ; i < columnNames.size(); i++) {
       if (columnNames.get(i).equalsIgnoreCase(columnName)) {
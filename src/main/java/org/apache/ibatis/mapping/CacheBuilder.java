@@ -20,17 +20,30 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.Function;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheCopyStrategy;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheMetricsAware;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.ExpiringCache;
+import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.CodecCopyStrategy;
+import org.apache.ibatis.cache.impl.DeepCopyStrategy;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.impl.TieredCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
 
@@ -43,9 +56,14 @@ public class CacheBuilder {
   private final List<Class<? extends Cache>> decorators;
   private Integer size;
   private Long clearInterval;
+  private Long timeToLive;
+  private Long refreshAhead;
   private boolean readWrite;
   private Properties properties;
   private boolean blocking;
+  private CacheMetrics metrics;
+  private Function<String, CacheMetrics> tierMetrics;
+  private CacheCopyStrategy copyStrategy;
 
   public CacheBuilder(String id) {
     this.id = id;
@@ -74,6 +92,22 @@ public class CacheBuilder {
     return this;
   }
 
+  /**
+   * 设置每个缓存对象的存活时间，单位：毫秒
+   */
+  public CacheBuilder timeToLive(Long timeToLive) {
+    this.timeToLive = timeToLive;
+    return this;
+  }
+
+  /**
+   * 设置过期前多久在后台提前刷新缓存对象，单位：毫秒。需要同时设置 timeToLive
+   */
+  public CacheBuilder refreshAhead(Long refreshAhead) {
+    this.refreshAhead = refreshAhead;
+    return this;
+  }
+
   public CacheBuilder readWrite(boolean readWrite) {
     this.readWrite = readWrite;
     return this;
@@ -89,19 +123,56 @@ public class CacheBuilder {
     return this;
   }
 
+  /**
+   * 设置统计指标，注入到实现了 {@link CacheMetricsAware} 的 Cache 对象中
+   */
+  public CacheBuilder metrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * 设置每一级缓存的统计指标的工厂，参数为每一级的 ID ，见 {@link TieredCache#setTierMetrics(CacheMetrics, CacheMetrics)}
+   */
+  public CacheBuilder tierMetrics(Function<String, CacheMetrics> tierMetrics) {
+    this.tierMetrics = tierMetrics;
+    return this;
+  }
+
+  /**
+   * 设置可读写缓存的复制策略，为 null 时使用 Java 序列化。可以被 &lt;property name="copyStrategy"/&gt; 覆盖
+   */
+  public CacheBuilder copyStrategy(CacheCopyStrategy copyStrategy) {
+    this.copyStrategy = copyStrategy;
+    return this;
+  }
+
   public Cache build() {
     setDefaultImplementations();
     Cache cache = newBaseCacheInstance(implementation, id);
     setCacheProperties(cache);
+    setCacheMetrics(cache);
+    setTierMetrics(cache);
     // issue #352, do not apply decorators to custom caches
-    if (PerpetualCache.class.equals(cache.getClass())) {
+    if (PerpetualCache.class.equals(cache.getClass()) || cache instanceof ConcurrentCache || storesEncoded(cache.getClass())) {
+      // 没有其它装饰器时，ConcurrentCache 、OffHeapCache 和 TieredCache 自身是线程安全的，不需要 SynchronizedCache
+      final boolean synchronizedRequired = PerpetualCache.class.equals(cache.getClass()) || !decorators.isEmpty();
+      // OffHeapCache 每次读取都会解码出新的对象，不需要 SerializedCache ；TieredCache 在 L1 命中时自己复制对象
+      final boolean copyRequired = readWrite && !storesEncoded(cache.getClass());
+      if (readWrite && cache instanceof TieredCache && ((TieredCache) cache).getCopyStrategy() == null) {
+        // 默认的 Java 序列化比从 L2 解码还慢，L1 改为直接复制对象
+        ((TieredCache) cache).useCopyStrategy(copyStrategy == null || copyStrategy.getClass() == CodecCopyStrategy.class
+            ? new DeepCopyStrategy() : copyStrategy);
+      }
       for (Class<? extends Cache> decorator : decorators) {
         cache = newCacheDecoratorInstance(decorator, cache);
         setCacheProperties(cache);
+        setCacheMetrics(cache);
       }
-      cache = setStandardDecorators(cache);
+      cache = setStandardDecorators(cache, synchronizedRequired, copyRequired);
     } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
       cache = new LoggingCache(cache);
+      setCacheMetrics(cache);
     }
     return cache;
   }
@@ -113,9 +184,32 @@ public class CacheBuilder {
         decorators.add(LruCache.class);
       }
     }
+    // 以 ConcurrentCache 、OffHeapCache 或 TieredCache 作为淘汰策略时（例如 eviction="TINY_LFU"），它同时负责存储，替代 PerpetualCache
+    if (PerpetualCache.class.equals(implementation)) {
+      for (Class<? extends Cache> decorator : decorators) {
+        if (ConcurrentCache.class.isAssignableFrom(decorator) || storesEncoded(decorator)) {
+          implementation = decorator;
+          decorators.remove(decorator);
+          break;
+        }
+      }
+    }
+    // OffHeapCache 和 TieredCache 自身按字节数淘汰，堆内的淘汰策略不再适用（例如 type="OFF_HEAP" 时默认的 LRU）
+    if (storesEncoded(implementation)) {
+      decorators.removeIf(decorator -> LruCache.class.equals(decorator) || FifoCache.class.equals(decorator)
+          || SoftCache.class.equals(decorator) || WeakCache.class.equals(decorator)
+          || ConcurrentCache.class.isAssignableFrom(decorator));
+    }
   }
 
-  private Cache setStandardDecorators(Cache cache) {
+  /**
+   * @return 是否以编码后的形式存储缓存对象
+   */
+  private static boolean storesEncoded(Class<? extends Cache> type) {
+    return OffHeapCache.class.isAssignableFrom(type) || TieredCache.class.isAssignableFrom(type);
+  }
+
+  private Cache setStandardDecorators(Cache cache, boolean synchronizedRequired, boolean copyRequired) {
     try {
       MetaObject metaCache = SystemMetaObject.forObject(cache);
       if (size != null && metaCache.hasSetter("size")) {
@@ -125,13 +219,28 @@ public class CacheBuilder {
         cache = new ScheduledCache(cache);
         ((ScheduledCache) cache).setClearInterval(clearInterval);
       }
-      if (readWrite) {
-        cache = new SerializedCache(cache);
+      if (timeToLive != null) {
+        cache = new ExpiringCache(cache);
+        ((ExpiringCache) cache).setTimeToLive(timeToLive);
+        if (refreshAhead != null) {
+          ((ExpiringCache) cache).setRefreshAhead(refreshAhead);
+        }
+        setCacheMetrics(cache);
+      }
+      if (copyRequired) {
+        cache = new SerializedCache(cache, copyStrategy);
+        setCacheProperties(cache);
       }
       cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
+      setCacheMetrics(cache);
+      if (synchronizedRequired) {
+        cache = new SynchronizedCache(cache);
+      }
       if (blocking) {
         cache = new BlockingCache(cache);
+        // 读写缓存中，每个线程需要获取各自的副本
+        ((BlockingCache) cache).setHandOffValues(!readWrite);
+        setCacheMetrics(cache);
       }
       return cache;
     } catch (Exception e) {
@@ -186,6 +295,18 @@ public class CacheBuilder {
     }
   }
 
+  private void setCacheMetrics(Cache cache) {
+    if (metrics != null && cache instanceof CacheMetricsAware) {
+      ((CacheMetricsAware) cache).setCacheMetrics(metrics);
+    }
+  }
+
+  private void setTierMetrics(Cache cache) {
+    if (tierMetrics != null && cache instanceof TieredCache) {
+      ((TieredCache) cache).setTierMetrics(tierMetrics.apply(id + ".L1"), tierMetrics.apply(id + ".L2"));
+    }
+  }
+
   private Cache newBaseCacheInstance(Class<? extends Cache> cacheClass, String id) {
     Constructor<? extends Cache> cacheConstructor = getBaseCacheConstructor(cacheClass);
     try {
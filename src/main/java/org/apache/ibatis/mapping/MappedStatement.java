@@ -16,15 +16,22 @@
 package org.apache.ibatis.mapping;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.resultset.ResultMappingPlan;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.parsing.SqlTableParser;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 
@@ -36,6 +43,12 @@ import org.apache.ibatis.session.Configuration;
  */
 public final class MappedStatement {
 
+  /**
+   * 结果映射计划的最大缓存数量。
+   * 对于返回字段不固定的语句（例如 select ${columns}），超过该数量后不再缓存新的计划
+   */
+  private static final int MAX_RESULT_MAPPING_PLANS = 64;
+
   private String resource;
   private Configuration configuration;
   private String id;
@@ -71,6 +84,18 @@ public final class MappedStatement {
   private LanguageDriver lang;
   private String[] resultSets;
 
+  /**
+   * 声明的查询语句读取、写入语句写入的数据表，用于二级缓存的表级失效。未声明时为 null ，从 SQL 中解析
+   */
+  private Set<String> tables;
+
+  /**
+   * 结果映射计划的缓存
+   *
+   * KEY：ResultMap 编号 + 字段前缀 + 字段签名等，由 DefaultResultSetHandler 生成
+   */
+  private final ConcurrentMap<String, ResultMappingPlan> resultMappingPlans = new ConcurrentHashMap<>();
+
   MappedStatement() {
     // constructor disabled
   }
@@ -188,6 +213,20 @@ public final class MappedStatement {
       return this;
     }
 
+    public Builder tables(String tables) {
+      final String[] names = delimitedStringToArray(tables);
+      if (names == null) {
+        mappedStatement.tables = null;
+      } else {
+        final Set<String> set = new LinkedHashSet<>();
+        for (String name : names) {
+          set.add(SqlTableParser.normalize(name));
+        }
+        mappedStatement.tables = Collections.unmodifiableSet(set);
+      }
+      return this;
+    }
+
     /** @deprecated Use {@link #resultSets} */
     @Deprecated
     public Builder resulSets(String resultSet) {
@@ -297,12 +336,30 @@ public final class MappedStatement {
     return resultSets;
   }
 
+  public Set<String> getTables() {
+    return tables;
+  }
+
   /** @deprecated Use {@link #getResultSets()} */
   @Deprecated
   public String[] getResulSets() {
     return resultSets;
   }
 
+  public Collection<ResultMappingPlan> getResultMappingPlans() {
+    return Collections.unmodifiableCollection(resultMappingPlans.values());
+  }
+
+  public ResultMappingPlan getResultMappingPlan(String key) {
+    return resultMappingPlans.get(key);
+  }
+
+  public void putResultMappingPlan(String key, ResultMappingPlan plan) {
+    if (resultMappingPlans.size() < MAX_RESULT_MAPPING_PLANS) {
+      resultMappingPlans.put(key, plan);
+    }
+  }
+
   public BoundSql getBoundSql(Object parameterObject) {
     BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
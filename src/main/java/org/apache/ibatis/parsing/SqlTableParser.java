@@ -0,0 +1,265 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * SQL 数据表解析器
+ *
+ * 从 SQL 中解析语句读取、写入的数据表，用于二级缓存的表级失效。
+ * 只做词法层面的解析，不校验 SQL 的语法：多解析出的数据表只会导致多余的失效，
+ * 无法确定数据表时返回 null ，由调用方退回到清空整个缓存。少解析出写入的数据表会留下过期的缓存，
+ * 所以多表的 update 、delete 一律视为无法确定。
+ *
+ * 数据表名统一转换成小写，并去掉引号和 schema 前缀。
+ */
+public final class SqlTableParser {
+
+  /**
+   * 不能作为数据表名或者别名的关键字
+   */
+  private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+      "select", "from", "where", "group", "order", "having", "limit", "offset", "fetch", "for", "union", "intersect",
+      "except", "minus", "join", "inner", "left", "right", "full", "outer", "cross", "natural", "on", "using", "as",
+      "window", "set", "values", "into", "lateral", "with", "start", "connect", "returning", "and", "or", "not",
+      "when", "then", "else", "end", "only", "ignore", "low_priority", "quick", "delayed", "high_priority", "table",
+      "straight_join"));
+
+  /**
+   * 多表连接的关键字
+   */
+  private static final Set<String> JOIN_KEYWORDS = new HashSet<>(Arrays.asList(
+      "join", "inner", "left", "right", "full", "outer", "cross", "natural", "straight_join"));
+
+  private SqlTableParser() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * 解析查询语句读取的数据表
+   *
+   * @param sql SQL
+   * @return 数据表的集合。无法确定时，返回 null
+   */
+  public static Set<String> parseReadTables(String sql) {
+    final List<String> tokens = tokenize(sql);
+    final Set<String> tables = new LinkedHashSet<>();
+    int i = 0;
+    while (i < tokens.size()) {
+      final String token = tokens.get(i++);
+      if ("from".equals(token) || "join".equals(token)) {
+        i = readTableList(tokens, i, tables, "from".equals(token));
+      }
+    }
+    return tables.isEmpty() ? null : Collections.unmodifiableSet(tables);
+  }
+
+  /**
+   * 解析 insert、update、delete 等语句写入的数据表
+   *
+   * @param sql SQL
+   * @return 数据表的集合。无法确定时，例如存储过程、DDL 、多表的 update 和 delete ，返回 null
+   */
+  public static Set<String> parseWrittenTables(String sql) {
+    final List<String> tokens = tokenize(sql);
+    final Set<String> tables = new LinkedHashSet<>();
+    int start = 0;
+    while (start < tokens.size()) {
+      // 多条语句时，以 ; 分隔
+      final int end = nextSemicolon(tokens, start);
+      if (end > start && !parseWrittenTable(tokens.subList(start, end), tables)) {
+        return null;
+      }
+      start = end + 1;
+    }
+    return tables.isEmpty() ? null : Collections.unmodifiableSet(tables);
+  }
+
+  /**
+   * 将声明的数据表名，转换成与解析结果相同的格式
+   */
+  public static String normalize(String table) {
+    final List<String> tokens = tokenize(table);
+    return tokens.size() == 1 && isIdentifier(tokens.get(0)) ? tokens.get(0) : table.trim().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static int nextSemicolon(List<String> tokens, int start) {
+    for (int i = start; i < tokens.size(); i++) {
+      if (";".equals(tokens.get(i))) {
+        return i;
+      }
+    }
+    return tokens.size();
+  }
+
+  private static boolean parseWrittenTable(List<String> tokens, Set<String> tables) {
+    final String command = tokens.get(0);
+    if ("insert".equals(command) || "replace".equals(command) || "merge".equals(command)) {
+      // Oracle 的 insert all 会有多个 into
+      boolean found = false;
+      for (int i = 1; i < tokens.size() - 1; i++) {
+        if ("into".equals(tokens.get(i)) && isTable(tokens.get(i + 1))) {
+          tables.add(tokens.get(i + 1));
+          found = true;
+        }
+      }
+      return found;
+    }
+    if ("update".equals(command) || "delete".equals(command) || "truncate".equals(command)) {
+      // 跳过 from、only、ignore、table 等关键字
+      int i = 1;
+      boolean from = false;
+      while (i < tokens.size() && KEYWORDS.contains(tokens.get(i))) {
+        from |= "from".equals(tokens.get(i));
+        i++;
+      }
+      if (i >= tokens.size() || !isTable(tokens.get(i))) {
+        return false;
+      }
+      final String table = tokens.get(i++);
+      // 跳过别名
+      if (i < tokens.size() && "as".equals(tokens.get(i))) {
+        i++;
+      }
+      if (i < tokens.size() && isTable(tokens.get(i))) {
+        i++;
+      }
+      if (i < tokens.size()) {
+        final String next = tokens.get(i);
+        // 多表的 update 、delete ：t1, t2 或 t1 join t2 ，以及 MySQL 在 from 之前列出被删除数据表的 delete t1 from ...
+        if (",".equals(next) || JOIN_KEYWORDS.contains(next) || ("delete".equals(command) && !from && "from".equals(next))) {
+          return false;
+        }
+      }
+      tables.add(table);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * 读取 from 或 join 之后的数据表，from 之后可以是以 , 分隔的多个数据表
+   *
+   * @return 下一个 token 的位置
+   */
+  private static int readTableList(List<String> tokens, int i, Set<String> tables, boolean list) {
+    while (i < tokens.size()) {
+      final String table = tokens.get(i);
+      // 子查询，其中的 from 会被单独解析
+      if (!isTable(table)) {
+        return i;
+      }
+      tables.add(table);
+      i++;
+      // 跳过别名
+      if (i < tokens.size() && "as".equals(tokens.get(i))) {
+        i++;
+      }
+      if (i < tokens.size() && isTable(tokens.get(i))) {
+        i++;
+      }
+      if (!list || i >= tokens.size() || !",".equals(tokens.get(i))) {
+        return i;
+      }
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isTable(String token) {
+    return isIdentifier(token) && !KEYWORDS.contains(token);
+  }
+
+  private static boolean isIdentifier(String token) {
+    final char c = token.charAt(0);
+    return Character.isLetter(c) || c == '_' || c == '$' || c == '#' || c == '@';
+  }
+
+  /**
+   * 将 SQL 拆分成 token 。忽略注释和字符串常量，标识符只保留最后一段并转换成小写
+   */
+  private static List<String> tokenize(String sql) {
+    final List<String> tokens = new ArrayList<>();
+    final int length = sql.length();
+    int i = 0;
+    while (i < length) {
+      final char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        i = skipTo(sql, i + 2, "\n");
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        i = skipTo(sql, i + 2, "*/");
+      } else if (c == '\'') {
+        // 字符串常量，'' 为转义
+        i = skipTo(sql, i + 1, "'");
+        while (i < length && sql.charAt(i) == '\'') {
+          i = skipTo(sql, i + 1, "'");
+        }
+        tokens.add("'");
+      } else if (isIdentifierStart(c)) {
+        // 标识符，可能是 schema.table 或 "schema"."table"
+        String part = null;
+        do {
+          if (part != null) {
+            i++; // .
+          }
+          final int begin = i;
+          final char quote = i < length ? sql.charAt(i) : 0;
+          if (quote == '"' || quote == '`' || quote == '[') {
+            i = skipTo(sql, i + 1, quote == '[' ? "]" : String.valueOf(quote));
+            part = sql.substring(begin + 1, Math.max(begin + 1, i - 1));
+          } else {
+            while (i < length && isIdentifierPart(sql.charAt(i))) {
+              i++;
+            }
+            part = sql.substring(begin, i);
+          }
+        } while (i + 1 < length && sql.charAt(i) == '.' && isIdentifierStart(sql.charAt(i + 1)));
+        tokens.add(part.isEmpty() ? "\"" : part.toLowerCase(Locale.ENGLISH));
+      } else {
+        tokens.add(String.valueOf(c));
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * @return end 之后的位置，找不到时为 SQL 的长度
+   */
+  private static int skipTo(String sql, int from, String end) {
+    final int index = sql.indexOf(end, from);
+    return index < 0 ? sql.length() : index + end.length();
+  }
+
+  private static boolean isIdentifierStart(char c) {
+    return isIdentifierPart(c) || c == '"' || c == '`' || c == '[';
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '@';
+  }
+
+}
@@ -18,11 +18,28 @@ package org.apache.ibatis.reflection;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.apache.ibatis.reflection.invoker.InvokerFactory;
+import org.apache.ibatis.reflection.invoker.ReflectionInvokerFactory;
+
 public class DefaultReflectorFactory implements ReflectorFactory {
   private boolean classCacheEnabled = true;
   private final ConcurrentMap<Class<?>, Reflector> reflectorMap = new ConcurrentHashMap<>();
 
+  /**
+   * Invoker 工厂，用于创建 Reflector 中的调用器
+   */
+  private final InvokerFactory invokerFactory;
+
   public DefaultReflectorFactory() {
+    this(new ReflectionInvokerFactory());
+  }
+
+  public DefaultReflectorFactory(InvokerFactory invokerFactory) {
+    this.invokerFactory = invokerFactory;
+  }
+
+  public InvokerFactory getInvokerFactory() {
+    return invokerFactory;
   }
 
   @Override
@@ -40,11 +57,15 @@ public class DefaultReflectorFactory implements ReflectorFactory {
 
     // 开启缓存，则从 reflectorMap 中获取
     if (classCacheEnabled) {
-      return reflectorMap.computeIfAbsent(type, Reflector::new);
+      return reflectorMap.computeIfAbsent(type, this::newReflector);
     } else {
       // 如果是关闭缓存，则创建 Reflector 对象
-      return new Reflector(type);
+      return newReflector(type);
     }
   }
 
+  private Reflector newReflector(Class<?> type) {
+    return new Reflector(type, invokerFactory);
+  }
+
 }
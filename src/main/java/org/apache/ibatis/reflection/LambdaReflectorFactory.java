@@ -0,0 +1,35 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection;
+
+import org.apache.ibatis.reflection.invoker.LambdaInvokerFactory;
+
+/**
+ * 使用 {@link LambdaInvokerFactory} 的 ReflectorFactory 实现类。
+ *
+ * getting/setting 方法通过 LambdaMetafactory 生成的函数对象调用，而不是反射。可在 mybatis-config.xml 中配置：
+ *
+ * <pre>
+ * &lt;reflectorFactory type="org.apache.ibatis.reflection.LambdaReflectorFactory"/&gt;
+ * </pre>
+ */
+public class LambdaReflectorFactory extends DefaultReflectorFactory {
+
+  public LambdaReflectorFactory() {
+    super(new LambdaInvokerFactory());
+  }
+
+}
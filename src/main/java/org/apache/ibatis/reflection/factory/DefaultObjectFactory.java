@@ -38,6 +38,20 @@ public class DefaultObjectFactory implements ObjectFactory, Serializable {
 
   private static final long serialVersionUID = -8855120656740914948L;
 
+  /**
+   * 每个类的无参构造方法，避免每次创建对象时查找。没有无参构造方法时为 null
+   */
+  private static final ClassValue<Constructor<?>> DEFAULT_CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+    @Override
+    protected Constructor<?> computeValue(Class<?> type) {
+      try {
+        return type.getDeclaredConstructor();
+      } catch (NoSuchMethodException e) {
+        return null;
+      }
+    }
+  };
+
   @Override
   public <T> T create(Class<T> type) {
     return create(type, null, null);
@@ -59,13 +73,18 @@ public class DefaultObjectFactory implements ObjectFactory, Serializable {
     // no props for default
   }
 
+  @SuppressWarnings("unchecked")
   private  <T> T instantiateClass(Class<T> type, List<Class<?>> constructorArgTypes, List<Object> constructorArgs) {
     try {
       Constructor<T> constructor;
 
       // <x1> 通过无参构造方法，创建指定类的对象
       if (constructorArgTypes == null || constructorArgs == null) {
-        constructor = type.getDeclaredConstructor();
+        constructor = (Constructor<T>) DEFAULT_CONSTRUCTORS.get(type);
+        if (constructor == null) {
+          // 抛出 NoSuchMethodException
+          constructor = type.getDeclaredConstructor();
+        }
         try {
           return constructor.newInstance();
         } catch (IllegalAccessException e) {
@@ -0,0 +1,52 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Invoker 工厂接口，用于创建 Reflector 中的调用器
+ *
+ * @see org.apache.ibatis.reflection.Reflector
+ */
+public interface InvokerFactory {
+
+  /**
+   * 创建方法的调用器
+   *
+   * @param method getting 或 setting 方法
+   * @return 调用器
+   */
+  Invoker createMethodInvoker(Method method);
+
+  /**
+   * 创建读取 Field 的调用器
+   *
+   * @param field Field
+   * @return 调用器
+   */
+  Invoker createGetFieldInvoker(Field field);
+
+  /**
+   * 创建设置 Field 的调用器
+   *
+   * @param field Field
+   * @return 调用器
+   */
+  Invoker createSetFieldInvoker(Field field);
+
+}
@@ -0,0 +1,186 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 基于 {@link LambdaMetafactory} 的 Invoker 工厂。
+ *
+ * 对 public 类的 public getting/setting 方法，生成直接调用的函数对象，避免 {@link Method#invoke(Object, Object...)} 的反射开销。
+ * 不满足条件的方法（非 public 、类对 MyBatis 的 ClassLoader 不可见等）及 Field ，使用 {@link ReflectionInvokerFactory} 创建。
+ *
+ * @see org.apache.ibatis.reflection.LambdaReflectorFactory
+ */
+public class LambdaInvokerFactory implements InvokerFactory {
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  private final InvokerFactory fallback;
+
+  public LambdaInvokerFactory() {
+    this(new ReflectionInvokerFactory());
+  }
+
+  public LambdaInvokerFactory(InvokerFactory fallback) {
+    this.fallback = fallback;
+  }
+
+  @Override
+  public Invoker createMethodInvoker(Method method) {
+    final Class<?> declaringClass = method.getDeclaringClass();
+    final Class<?>[] parameterTypes = method.getParameterTypes();
+    if (Modifier.isPublic(method.getModifiers()) && !Modifier.isStatic(method.getModifiers())
+        && isAccessible(declaringClass) && parameterTypes.length <= 1) {
+      try {
+        if (parameterTypes.length == 0) {
+          // getting 方法
+          final Class<?> returnType = method.getReturnType();
+          if (returnType != void.class && isVisible(returnType)) {
+            return new GetterInvoker(method, createGetter(method, declaringClass, returnType));
+          }
+        } else if (isVisible(parameterTypes[0])) {
+          // setting 方法
+          return new SetterInvoker(method, createSetter(method, declaringClass, parameterTypes[0]));
+        }
+      } catch (Throwable e) {
+        // 无法生成时，使用反射
+      }
+    }
+    return fallback.createMethodInvoker(method);
+  }
+
+  @Override
+  public Invoker createGetFieldInvoker(Field field) {
+    return fallback.createGetFieldInvoker(field);
+  }
+
+  @Override
+  public Invoker createSetFieldInvoker(Field field) {
+    return fallback.createSetFieldInvoker(field);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Function<Object, Object> createGetter(Method method, Class<?> declaringClass, Class<?> returnType) throws Throwable {
+    final MethodHandle handle = LOOKUP.unreflect(method);
+    final CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply",
+        MethodType.methodType(Function.class),
+        MethodType.methodType(Object.class, Object.class),
+        handle,
+        MethodType.methodType(handle.type().wrap().returnType(), declaringClass));
+    return (Function<Object, Object>) site.getTarget().invokeWithArguments();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BiConsumer<Object, Object> createSetter(Method method, Class<?> declaringClass, Class<?> parameterType) throws Throwable {
+    final MethodHandle handle = LOOKUP.unreflect(method);
+    final CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+        MethodType.methodType(BiConsumer.class),
+        MethodType.methodType(void.class, Object.class, Object.class),
+        handle,
+        MethodType.methodType(void.class, declaringClass, MethodType.methodType(parameterType).wrap().returnType()));
+    return (BiConsumer<Object, Object>) site.getTarget().invokeWithArguments();
+  }
+
+  /**
+   * 判断类及其外部类都是 public 的，且对 MyBatis 的 ClassLoader 可见
+   */
+  private static boolean isAccessible(Class<?> type) {
+    for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+      if (!Modifier.isPublic(current.getModifiers())) {
+        return false;
+      }
+    }
+    return isVisible(type);
+  }
+
+  /**
+   * 生成的函数对象由 MyBatis 的 ClassLoader 解析类型，所以涉及的类型都必须对其可见
+   */
+  private static boolean isVisible(Class<?> type) {
+    while (type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+    try {
+      return Class.forName(type.getName(), false, LambdaInvokerFactory.class.getClassLoader()) == type;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * 继承 MethodInvoker ，以便 {@link org.apache.ibatis.reflection.MetaClass} 获得方法的泛型信息
+   */
+  private static final class GetterInvoker extends MethodInvoker {
+
+    private final Function<Object, Object> getter;
+
+    GetterInvoker(Method method, Function<Object, Object> getter) {
+      super(method);
+      this.getter = getter;
+    }
+
+    @Override
+    public Object invoke(Object target, Object[] args) throws InvocationTargetException {
+      try {
+        return getter.apply(target);
+      } catch (Throwable e) {
+        // 与 Method#invoke 的行为保持一致
+        throw new InvocationTargetException(e);
+      }
+    }
+  }
+
+  private static final class SetterInvoker extends MethodInvoker {
+
+    private final BiConsumer<Object, Object> setter;
+    private final Class<?> wrappedType;
+
+    SetterInvoker(Method method, BiConsumer<Object, Object> setter) {
+      super(method);
+      this.setter = setter;
+      this.wrappedType = MethodType.methodType(getType()).wrap().returnType();
+    }
+
+    @Override
+    public Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
+      final Object value = args[0];
+      if (value == null ? getType().isPrimitive() : !wrappedType.isInstance(value)) {
+        // 类型不一致时（例如基本类型的宽化、null 值），交给反射处理，与 Method#invoke 的行为保持一致
+        return super.invoke(target, args);
+      }
+      try {
+        setter.accept(target, value);
+      } catch (Throwable e) {
+        throw new InvocationTargetException(e);
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.scripting.xmltags.SqlNodeCompiler.CompiledSqlNode;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 编译后的动态 SqlSource 实现类。
+ *
+ * 由 {@link XMLLanguageDriver} 在开启 compileDynamicSql 时，将 {@link DynamicSqlSource} 编译而来。
+ * 与 DynamicSqlSource 生成相同的 SQL 和 ParameterMapping ，但表达式已经预先编译，也不再需要 SqlSourceBuilder 解析一遍 SQL 。
+ */
+public class CompiledSqlSource implements SqlSource {
+
+  private final Configuration configuration;
+  private final CompiledSqlNode rootSqlNode;
+  private final SqlSourceBuilder sqlSourceBuilder;
+
+  CompiledSqlSource(Configuration configuration, CompiledSqlNode rootSqlNode) {
+    this.configuration = configuration;
+    this.rootSqlNode = rootSqlNode;
+    this.sqlSourceBuilder = new SqlSourceBuilder(configuration);
+  }
+
+  @Override
+  public BoundSql getBoundSql(Object parameterObject) {
+    // <1> 应用 rootSqlNode ，生成 SQL 并记录占位符
+    RenderContext context = new RenderContext(configuration, parameterObject);
+    rootSqlNode.apply(context);
+    Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
+
+    // <2> 为记录的占位符创建 ParameterMapping 数组
+    List<ParameterMapping> parameterMappings = sqlSourceBuilder.buildParameterMappings(
+        context.getContents(), context.getExpressions(), parameterType, context.getBindings());
+
+    // <3> 创建 BoundSql 对象，并添加附加参数
+    BoundSql boundSql = new BoundSql(configuration, context.getSql(), parameterMappings, parameterObject);
+    for (Map.Entry<String, Object> entry : context.getBindings().entrySet()) {
+      boundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
+    }
+    return boundSql;
+  }
+
+}
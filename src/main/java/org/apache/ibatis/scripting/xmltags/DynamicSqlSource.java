@@ -15,21 +15,46 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.property.PropertyTokenizer;
 import org.apache.ibatis.session.Configuration;
 
 /**
  * 动态的 SqlSource 实现类。
+ *
+ * 每个 MappedStatement 有自己的 DynamicSqlSource 。对于生成的相同 SQL（#{} 替换前），
+ * 缓存 SqlSourceBuilder 的解析结果，命中时直接复用 SQL 和 ParameterMapping 数组，不再解析。
+ * 缓存数量由 {@link Configuration#getDynamicSqlCacheSize()} 限制，超过时淘汰最近最少使用的解析结果。
  */
 public class DynamicSqlSource implements SqlSource {
 
   private final Configuration configuration;
   private final SqlNode rootSqlNode;
 
+  /**
+   * 生成的 SQL 与解析结果的映射，按访问顺序排列。读写时需要锁住该对象
+   */
+  private final LinkedHashMap<String, ParsedSql> parsedSqlCache = new LinkedHashMap<String, ParsedSql>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, ParsedSql> eldest) {
+      return size() > configuration.getDynamicSqlCacheSize();
+    }
+  };
+
   public DynamicSqlSource(Configuration configuration, SqlNode rootSqlNode) {
     this.configuration = configuration;
     this.rootSqlNode = rootSqlNode;
@@ -41,11 +66,10 @@ public class DynamicSqlSource implements SqlSource {
     // <1> 应用 rootSqlNode 相当于生成动态 SQL 。
     DynamicContext context = new DynamicContext(configuration, parameterObject);
     rootSqlNode.apply(context);
-    SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
     Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
 
-    // <2> 解析出 SqlSource 对象
-    SqlSource sqlSource = sqlSourceParser.parse(context.getSql(), parameterType, context.getBindings());
+    // <2> 解析出 SqlSource 对象。相同的 SQL 复用缓存的解析结果
+    StaticSqlSource sqlSource = parse(context.getSql(), parameterType, context.getBindings());
 
     // <3> 获得 BoundSql 对象
     BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
@@ -57,4 +81,137 @@ public class DynamicSqlSource implements SqlSource {
     return boundSql;
   }
 
+  private StaticSqlSource parse(String sql, Class<?> parameterType, Map<String, Object> bindings) {
+    if (configuration.getDynamicSqlCacheSize() <= 0) {
+      return (StaticSqlSource) new SqlSourceBuilder(configuration).parse(sql, parameterType, bindings);
+    }
+    ParsedSql parsedSql;
+    synchronized (parsedSqlCache) {
+      parsedSql = parsedSqlCache.get(sql);
+    }
+    if (parsedSql != null && parsedSql.matches(parameterType, bindings, configuration)) {
+      return parsedSql.sqlSource;
+    }
+    StaticSqlSource sqlSource = (StaticSqlSource) new SqlSourceBuilder(configuration).parse(sql, parameterType, bindings);
+    parsedSql = new ParsedSql(sqlSource, parameterType, bindings, configuration);
+    synchronized (parsedSqlCache) {
+      // 超过上限时，淘汰最近最少使用的一个，避免 ${} 等生成大量不同的 SQL 时无限增长
+      parsedSqlCache.put(sql, parsedSql);
+    }
+    return sqlSource;
+  }
+
+  int getParsedSqlCount() {
+    synchronized (parsedSqlCache) {
+      return parsedSqlCache.size();
+    }
+  }
+
+  SqlNode getRootSqlNode() {
+    return rootSqlNode;
+  }
+
+  /**
+   * 缓存的解析结果。
+   *
+   * ParameterMapping 的 javaType 取决于参数类型，以及附加参数（例如 &lt;foreach /&gt; 的元素）在执行时的类型，
+   * 所以复用前需要确认这些类型与解析时相同。需要确认的附加参数在解析时确定，命中时只比较它们的值的类型。
+   */
+  private static final class ParsedSql {
+
+    private final StaticSqlSource sqlSource;
+    private final Class<?> parameterType;
+
+    /**
+     * ParameterMapping 引用的附加参数的名字
+     */
+    private final String[] boundNames;
+
+    /**
+     * 解析时，这些附加参数的值的类型
+     */
+    private final Class<?>[] boundTypes;
+
+    /**
+     * ParameterMapping 引用的、解析时不在附加参数中的名字，从参数对象中读取
+     */
+    private final String[] unboundNames;
+
+    /**
+     * 值为 Map 时，嵌套属性的类型取决于 Map 中的值，需要按完整的属性确认类型。没有时为空数组
+     */
+    private final String[] mapProperties;
+
+    private final Class<?>[] mapPropertyTypes;
+
+    ParsedSql(StaticSqlSource sqlSource, Class<?> parameterType, Map<String, Object> bindings, Configuration configuration) {
+      this.sqlSource = sqlSource;
+      this.parameterType = parameterType;
+      final Map<String, Class<?>> bound = new LinkedHashMap<>();
+      final Set<String> unbound = new LinkedHashSet<>();
+      final List<String> properties = new ArrayList<>();
+      for (ParameterMapping parameterMapping : sqlSource.getParameterMappings()) {
+        final String property = parameterMapping.getProperty();
+        if (property == null) {
+          continue;
+        }
+        final PropertyTokenizer prop = new PropertyTokenizer(property);
+        if (!bindings.containsKey(prop.getName())) {
+          unbound.add(prop.getName());
+          continue;
+        }
+        final Object value = bindings.get(prop.getName());
+        bound.put(prop.getName(), typeOf(value));
+        if (prop.hasNext() && value instanceof Map && !properties.contains(property)) {
+          properties.add(property);
+        }
+      }
+      this.boundNames = bound.keySet().toArray(new String[0]);
+      this.boundTypes = bound.values().toArray(new Class<?>[0]);
+      this.unboundNames = unbound.toArray(new String[0]);
+      this.mapProperties = properties.toArray(new String[0]);
+      this.mapPropertyTypes = new Class<?>[mapProperties.length];
+      if (mapProperties.length > 0) {
+        final MetaObject metaParameters = configuration.newMetaObject(bindings);
+        for (int i = 0; i < mapProperties.length; i++) {
+          mapPropertyTypes[i] = getterType(metaParameters, mapProperties[i]);
+        }
+      }
+    }
+
+    boolean matches(Class<?> parameterType, Map<String, Object> bindings, Configuration configuration) {
+      if (this.parameterType != parameterType) {
+        return false;
+      }
+      for (int i = 0; i < boundNames.length; i++) {
+        if (!bindings.containsKey(boundNames[i]) || boundTypes[i] != typeOf(bindings.get(boundNames[i]))) {
+          return false;
+        }
+      }
+      for (String name : unboundNames) {
+        if (bindings.containsKey(name)) {
+          return false;
+        }
+      }
+      if (mapProperties.length > 0) {
+        final MetaObject metaParameters = configuration.newMetaObject(bindings);
+        for (int i = 0; i < mapProperties.length; i++) {
+          if (mapPropertyTypes[i] != getterType(metaParameters, mapProperties[i])) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    private static Class<?> typeOf(Object value) {
+      return value == null ? null : value.getClass();
+    }
+
+    // 与 SqlSourceBuilder 中判断属性类型的第一步一致
+    private static Class<?> getterType(MetaObject metaParameters, String property) {
+      return metaParameters.hasGetter(property) ? metaParameters.getGetterType(property) : null;
+    }
+  }
+
 }
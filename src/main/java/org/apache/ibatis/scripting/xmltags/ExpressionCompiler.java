@@ -0,0 +1,351 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+
+import ognl.ASTChain;
+import ognl.ASTConst;
+import ognl.ASTMethod;
+import ognl.ASTProperty;
+import ognl.Node;
+import ognl.Ognl;
+import ognl.OgnlException;
+import ognl.OgnlOps;
+
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+
+/**
+ * OGNL 表达式编译器。
+ *
+ * 在启动时将动态 SQL 中常见的表达式（属性导航、常量、比较、and / or / not 以及 size()、isEmpty() 等方法），
+ * 根据 OGNL 的语法树编译成 {@link CompiledExpression} ，执行时不再经过 OGNL 的解释。
+ * 其它表达式，或者执行时遇到编译版本不能处理的情况（例如导航到 null 、集合的属性等），都交给 {@link OgnlCache} 执行，
+ * 保证结果与 OGNL 一致。
+ */
+final class ExpressionCompiler {
+
+  /**
+   * Map 上这些属性名在 OGNL 中有特殊含义，交给 OGNL 处理
+   */
+  private static final Set<String> SPECIAL_PROPERTY_NAMES = new HashSet<>(Arrays.asList("size", "isEmpty", "keys", "keySet", "values", "iterator"));
+  private static final Set<String> SUPPORTED_METHOD_NAMES = new HashSet<>(Arrays.asList("size", "isEmpty", "length", "trim"));
+
+  private static final DynamicContext.ContextAccessor CONTEXT_ACCESSOR = new DynamicContext.ContextAccessor();
+
+  private ExpressionCompiler() {
+    // Prevent Instantiation of Static Class
+  }
+
+  static CompiledExpression compile(String expression, ReflectorFactory reflectorFactory) {
+    Evaluator evaluator;
+    try {
+      evaluator = compileNode((Node) Ognl.parseExpression(expression), reflectorFactory, true);
+    } catch (OgnlException e) {
+      // 语法错误在执行时由 OGNL 抛出，与解释执行保持一致
+      evaluator = null;
+    }
+    return new CompiledExpression(expression, evaluator);
+  }
+
+  private static Evaluator compileNode(Node node, ReflectorFactory reflectorFactory, boolean root) {
+    String type = node.getClass().getSimpleName();
+    int size = node.jjtGetNumChildren();
+    if (node instanceof ASTConst) {
+      final Object value = ((ASTConst) node).getValue();
+      return bindings -> value;
+    }
+    if (node instanceof ASTProperty) {
+      String name = propertyName((ASTProperty) node);
+      return root && name != null ? new RootProperty(name) : null;
+    }
+    if (node instanceof ASTChain) {
+      return compileChain(node, reflectorFactory);
+    }
+    if (("ASTAnd".equals(type) || "ASTOr".equals(type)) && size > 0) {
+      Evaluator[] children = compileChildren(node, reflectorFactory);
+      return children == null ? null : new Logical(children, "ASTOr".equals(type));
+    }
+    if ("ASTNot".equals(type) && size == 1) {
+      Evaluator[] children = compileChildren(node, reflectorFactory);
+      return children == null ? null : bindings -> OgnlOps.booleanValue(children[0].getValue(bindings)) ? Boolean.FALSE : Boolean.TRUE;
+    }
+    if (size == 2) {
+      Evaluator[] children = compileChildren(node, reflectorFactory);
+      if (children == null) {
+        return null;
+      }
+      final Evaluator left = children[0];
+      final Evaluator right = children[1];
+      switch (type) {
+        case "ASTEq":
+          return bindings -> OgnlOps.equal(left.getValue(bindings), right.getValue(bindings));
+        case "ASTNotEq":
+          return bindings -> !OgnlOps.equal(left.getValue(bindings), right.getValue(bindings));
+        case "ASTLess":
+          return bindings -> OgnlOps.less(left.getValue(bindings), right.getValue(bindings));
+        case "ASTGreater":
+          return bindings -> OgnlOps.greater(left.getValue(bindings), right.getValue(bindings));
+        case "ASTLessEq":
+          return bindings -> !OgnlOps.greater(left.getValue(bindings), right.getValue(bindings));
+        case "ASTGreaterEq":
+          return bindings -> !OgnlOps.less(left.getValue(bindings), right.getValue(bindings));
+        default:
+          return null;
+      }
+    }
+    return null;
+  }
+
+  private static Evaluator[] compileChildren(Node node, ReflectorFactory reflectorFactory) {
+    Evaluator[] children = new Evaluator[node.jjtGetNumChildren()];
+    for (int i = 0; i < children.length; i++) {
+      children[i] = compileNode(node.jjtGetChild(i), reflectorFactory, true);
+      if (children[i] == null) {
+        return null;
+      }
+    }
+    return children;
+  }
+
+  private static Evaluator compileChain(Node chain, ReflectorFactory reflectorFactory) {
+    int size = chain.jjtGetNumChildren();
+    if (size < 2 || !(chain.jjtGetChild(0) instanceof ASTProperty)) {
+      return null;
+    }
+    String rootName = propertyName((ASTProperty) chain.jjtGetChild(0));
+    if (rootName == null) {
+      return null;
+    }
+    Step[] steps = new Step[size - 1];
+    for (int i = 1; i < size; i++) {
+      Node node = chain.jjtGetChild(i);
+      if (node instanceof ASTProperty) {
+        String name = propertyName((ASTProperty) node);
+        if (name == null || SPECIAL_PROPERTY_NAMES.contains(name)) {
+          return null;
+        }
+        steps[i - 1] = new PropertyStep(name, reflectorFactory);
+      } else if (node instanceof ASTMethod && node.jjtGetNumChildren() == 0
+          && SUPPORTED_METHOD_NAMES.contains(((ASTMethod) node).getMethodName())) {
+        steps[i - 1] = new MethodStep(((ASTMethod) node).getMethodName());
+      } else {
+        return null;
+      }
+    }
+    return new Chain(new RootProperty(rootName), steps);
+  }
+
+  private static String propertyName(ASTProperty property) {
+    if (property.isIndexedAccess() || property.jjtGetNumChildren() != 1 || !(property.jjtGetChild(0) instanceof ASTConst)) {
+      return null;
+    }
+    Object name = ((ASTConst) property.jjtGetChild(0)).getValue();
+    return name instanceof String ? (String) name : null;
+  }
+
+  /**
+   * 编译后的表达式
+   */
+  static final class CompiledExpression {
+
+    private final String expression;
+    private final Evaluator evaluator;
+
+    CompiledExpression(String expression, Evaluator evaluator) {
+      this.expression = expression;
+      this.evaluator = evaluator;
+    }
+
+    Object getValue(Map<String, Object> bindings) {
+      if (evaluator != null) {
+        try {
+          return evaluator.getValue(bindings);
+        } catch (RuntimeException e) {
+          // 包括 FallbackException ，交给 OGNL 重新执行，由它给出相同的结果或者异常
+        }
+      }
+      return OgnlCache.getValue(expression, bindings);
+    }
+
+    boolean isCompiled() {
+      return evaluator != null;
+    }
+
+  }
+
+  interface Evaluator {
+    Object getValue(Map<String, Object> bindings);
+  }
+
+  private interface Step {
+    Object apply(Object target);
+  }
+
+  /**
+   * 编译版本无法处理时抛出，不填充堆栈
+   */
+  private static final class FallbackException extends RuntimeException {
+    private static final long serialVersionUID = 4196826734567283310L;
+    private static final FallbackException INSTANCE = new FallbackException();
+
+    private FallbackException() {
+      super(null, null, false, false);
+    }
+  }
+
+  private static final class RootProperty implements Evaluator {
+    private final String name;
+
+    RootProperty(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Object getValue(Map<String, Object> bindings) {
+      return CONTEXT_ACCESSOR.getProperty(null, bindings, name);
+    }
+  }
+
+  private static final class Chain implements Evaluator {
+    private final Evaluator root;
+    private final Step[] steps;
+
+    Chain(Evaluator root, Step[] steps) {
+      this.root = root;
+      this.steps = steps;
+    }
+
+    @Override
+    public Object getValue(Map<String, Object> bindings) {
+      Object value = root.getValue(bindings);
+      for (Step step : steps) {
+        if (value == null) {
+          throw FallbackException.INSTANCE;
+        }
+        value = step.apply(value);
+      }
+      return value;
+    }
+  }
+
+  private static final class PropertyStep implements Step {
+    private final String name;
+    private final ReflectorFactory reflectorFactory;
+
+    PropertyStep(String name, ReflectorFactory reflectorFactory) {
+      this.name = name;
+      this.reflectorFactory = reflectorFactory;
+    }
+
+    @Override
+    public Object apply(Object target) {
+      if (target instanceof Map) {
+        return ((Map<?, ?>) target).get(name);
+      }
+      if (target instanceof Collection || target instanceof Iterator || target instanceof Enumeration
+          || target.getClass().isArray()) {
+        throw FallbackException.INSTANCE;
+      }
+      Reflector reflector = reflectorFactory.findForClass(target.getClass());
+      if (!reflector.hasGetter(name)) {
+        throw FallbackException.INSTANCE;
+      }
+      try {
+        return reflector.getGetInvoker(name).invoke(target, null);
+      } catch (Exception e) {
+        throw FallbackException.INSTANCE;
+      }
+    }
+  }
+
+  private static final class MethodStep implements Step {
+    private final String name;
+
+    MethodStep(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Object apply(Object target) {
+      switch (name) {
+        case "size":
+          if (target instanceof Collection) {
+            return ((Collection<?>) target).size();
+          } else if (target instanceof Map) {
+            return ((Map<?, ?>) target).size();
+          }
+          break;
+        case "isEmpty":
+          if (target instanceof Collection) {
+            return ((Collection<?>) target).isEmpty();
+          } else if (target instanceof Map) {
+            return ((Map<?, ?>) target).isEmpty();
+          } else if (target instanceof String) {
+            return ((String) target).isEmpty();
+          }
+          break;
+        case "length":
+          if (target instanceof String) {
+            return ((String) target).length();
+          }
+          break;
+        case "trim":
+          if (target instanceof String) {
+            return ((String) target).trim();
+          }
+          break;
+        default:
+          break;
+      }
+      throw FallbackException.INSTANCE;
+    }
+  }
+
+  /**
+   * and / or 。与 OGNL 一致，返回最后一个被计算的值，而不是 Boolean
+   */
+  private static final class Logical implements Evaluator {
+    private final Evaluator[] children;
+    private final boolean or;
+
+    Logical(Evaluator[] children, boolean or) {
+      this.children = children;
+      this.or = or;
+    }
+
+    @Override
+    public Object getValue(Map<String, Object> bindings) {
+      Object result = null;
+      int last = children.length - 1;
+      for (int i = 0; i <= last; i++) {
+        result = children[i].getValue(bindings);
+        if (i != last && OgnlOps.booleanValue(result) == or) {
+          break;
+        }
+      }
+      return result;
+    }
+  }
+
+}
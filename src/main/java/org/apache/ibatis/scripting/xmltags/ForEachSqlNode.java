@@ -115,7 +115,7 @@ public class ForEachSqlNode implements SqlNode {
     }
   }
 
-  private static String itemizeItem(String item, int i) {
+  static String itemizeItem(String item, int i) {
     return ITEM_PREFIX + item + "_" + i;
   }
 
@@ -215,4 +215,32 @@ public class ForEachSqlNode implements SqlNode {
     }
   }
 
+  String getCollectionExpression() {
+    return collectionExpression;
+  }
+
+  SqlNode getContents() {
+    return contents;
+  }
+
+  String getOpen() {
+    return open;
+  }
+
+  String getClose() {
+    return close;
+  }
+
+  String getSeparator() {
+    return separator;
+  }
+
+  String getItem() {
+    return item;
+  }
+
+  String getIndex() {
+    return index;
+  }
+
 }
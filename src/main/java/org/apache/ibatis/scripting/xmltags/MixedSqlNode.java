@@ -34,4 +34,9 @@ public class MixedSqlNode implements SqlNode {
     }
     return true;
   }
+
+  List<SqlNode> getContents() {
+    return contents;
+  }
+
 }
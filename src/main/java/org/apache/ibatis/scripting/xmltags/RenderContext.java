@@ -0,0 +1,196 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 编译后的动态 SQL 每次执行时的上下文，对应解释执行时的 {@link DynamicContext} 。
+ *
+ * 区别在于 #{} 占位符在输出时直接替换成 ? ，同时记录占位符的内容，不需要再由 SqlSourceBuilder 扫描一遍 SQL 。
+ * &lt;foreach /&gt; 中对 item 和 index 的改名，也在记录占位符时完成。
+ */
+class RenderContext {
+
+  private final Map<String, Object> bindings;
+  private final StringBuilder sqlBuilder = new StringBuilder();
+  private final List<String> contents = new ArrayList<>();
+  private final List<Map<String, String>> expressions = new ArrayList<>();
+  private Sink sink = new RootSink();
+  private Frame frame;
+  private int uniqueNumber = 0;
+
+  RenderContext(Configuration configuration, Object parameterObject) {
+    this.bindings = new DynamicContext(configuration, parameterObject).getBindings();
+  }
+
+  Map<String, Object> getBindings() {
+    return bindings;
+  }
+
+  void bind(String name, Object value) {
+    bindings.put(name, value);
+  }
+
+  int getUniqueNumber() {
+    return uniqueNumber++;
+  }
+
+  void appendSql(String sql) {
+    sink.appendSql(sql);
+  }
+
+  /**
+   * 记录一个 #{} 占位符，调用方负责在 SQL 中输出对应的 ?
+   */
+  void addParameter(String content, Map<String, String> expression) {
+    String property = expression.get("property");
+    if (property != null && frame != null) {
+      String itemized = property;
+      for (Frame f = frame; f != null; f = f.parent) {
+        itemized = f.itemize(itemized);
+      }
+      if (!itemized.equals(property)) {
+        expression = new HashMap<>(expression);
+        expression.put("property", itemized);
+      }
+    }
+    contents.add(content);
+    expressions.add(expression);
+  }
+
+  String getSql() {
+    return sqlBuilder.toString().trim();
+  }
+
+  List<String> getContents() {
+    return contents;
+  }
+
+  List<Map<String, String>> getExpressions() {
+    return expressions;
+  }
+
+  // ========== 对应 TrimSqlNode.FilteredDynamicContext ==========
+
+  StringBuilder pushTrim() {
+    TrimSink trimSink = new TrimSink(sink);
+    sink = trimSink;
+    return trimSink.buffer;
+  }
+
+  void popTrim(String trimmedSql) {
+    sink = ((TrimSink) sink).delegate;
+    sink.appendSql(trimmedSql);
+  }
+
+  // ========== 对应 ForEachSqlNode.PrefixedContext 和 FilteredDynamicContext ==========
+
+  void pushIteration(String prefix, Pattern itemPattern, String item, Pattern indexPattern, String index, int number) {
+    sink = new PrefixedSink(sink, prefix);
+    frame = new Frame(frame, itemPattern, item, indexPattern, index, number);
+  }
+
+  /**
+   * @return 前缀是否已经输出
+   */
+  boolean popIteration() {
+    PrefixedSink prefixedSink = (PrefixedSink) sink;
+    sink = prefixedSink.delegate;
+    frame = frame.parent;
+    return prefixedSink.prefixApplied;
+  }
+
+  private interface Sink {
+    void appendSql(String sql);
+  }
+
+  private class RootSink implements Sink {
+    @Override
+    public void appendSql(String sql) {
+      sqlBuilder.append(sql);
+      sqlBuilder.append(" ");
+    }
+  }
+
+  private static final class TrimSink implements Sink {
+    private final Sink delegate;
+    private final StringBuilder buffer = new StringBuilder();
+
+    TrimSink(Sink delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void appendSql(String sql) {
+      buffer.append(sql);
+    }
+  }
+
+  private static final class PrefixedSink implements Sink {
+    private final Sink delegate;
+    private final String prefix;
+    private boolean prefixApplied;
+
+    PrefixedSink(Sink delegate, String prefix) {
+      this.delegate = delegate;
+      this.prefix = prefix;
+    }
+
+    @Override
+    public void appendSql(String sql) {
+      if (!prefixApplied && sql != null && sql.trim().length() > 0) {
+        delegate.appendSql(prefix);
+        prefixApplied = true;
+      }
+      delegate.appendSql(sql);
+    }
+  }
+
+  /**
+   * 一次 &lt;foreach /&gt; 迭代，负责把占位符中的 item 和 index 改成 __frch_ 开头的唯一名字
+   */
+  private static final class Frame {
+    private final Frame parent;
+    private final Pattern itemPattern;
+    private final String itemizedItem;
+    private final Pattern indexPattern;
+    private final String itemizedIndex;
+
+    Frame(Frame parent, Pattern itemPattern, String item, Pattern indexPattern, String index, int number) {
+      this.parent = parent;
+      this.itemPattern = itemPattern;
+      this.itemizedItem = ForEachSqlNode.itemizeItem(item, number);
+      this.indexPattern = indexPattern;
+      this.itemizedIndex = index == null ? null : ForEachSqlNode.itemizeItem(index, number);
+    }
+
+    String itemize(String property) {
+      String newProperty = itemPattern.matcher(property).replaceFirst(itemizedItem);
+      if (indexPattern != null && newProperty.equals(property)) {
+        newProperty = indexPattern.matcher(property).replaceFirst(itemizedIndex);
+      }
+      return newProperty;
+    }
+  }
+
+}
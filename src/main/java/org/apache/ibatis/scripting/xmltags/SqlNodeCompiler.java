@@ -0,0 +1,423 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.parsing.GenericTokenParser;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.scripting.ScriptingException;
+import org.apache.ibatis.scripting.xmltags.ExpressionCompiler.CompiledExpression;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.SimpleTypeRegistry;
+
+/**
+ * SqlNode 编译器。在启动时把 SqlNode 树编译成 {@link CompiledSqlNode} 树：
+ *
+ * 1. 表达式通过 {@link ExpressionCompiler} 预先编译
+ * 2. 静态文本中的 #{} 占位符预先解析，执行时直接输出 ? 并记录占位符
+ *
+ * 遇到自定义的 SqlNode ，或者只有和其它节点拼接后才能确定含义的文本（例如转义的 \#{ ），返回 null ，继续使用解释执行。
+ */
+final class SqlNodeCompiler {
+
+  private final ReflectorFactory reflectorFactory;
+
+  private SqlNodeCompiler(Configuration configuration) {
+    this.reflectorFactory = configuration.getReflectorFactory();
+  }
+
+  /**
+   * @return CompiledSqlSource 对象。如果无法编译，返回 null
+   */
+  static CompiledSqlSource compile(Configuration configuration, SqlNode rootSqlNode) {
+    CompiledSqlNode compiled = new SqlNodeCompiler(configuration).compileNode(rootSqlNode);
+    return compiled == null ? null : new CompiledSqlSource(configuration, compiled);
+  }
+
+  private CompiledSqlNode compileNode(SqlNode node) {
+    if (node == null) {
+      return null;
+    }
+    Class<?> type = node.getClass();
+    if (type == MixedSqlNode.class) {
+      return compileMixed((MixedSqlNode) node);
+    } else if (type == StaticTextSqlNode.class) {
+      return compileStaticText(((StaticTextSqlNode) node).getText());
+    } else if (type == TextSqlNode.class) {
+      return compileText((TextSqlNode) node);
+    } else if (type == IfSqlNode.class) {
+      return compileIf((IfSqlNode) node);
+    } else if (type == ChooseSqlNode.class) {
+      return compileChoose((ChooseSqlNode) node);
+    } else if (type == TrimSqlNode.class || type == WhereSqlNode.class || type == SetSqlNode.class) {
+      return compileTrim((TrimSqlNode) node);
+    } else if (type == ForEachSqlNode.class) {
+      return compileForEach((ForEachSqlNode) node);
+    } else if (type == VarDeclSqlNode.class) {
+      VarDeclSqlNode varDecl = (VarDeclSqlNode) node;
+      return new VarDecl(varDecl.getName(), compileExpression(varDecl.getExpression()));
+    }
+    return null;
+  }
+
+  private CompiledExpression compileExpression(String expression) {
+    return ExpressionCompiler.compile(expression, reflectorFactory);
+  }
+
+  private CompiledSqlNode compileMixed(MixedSqlNode node) {
+    List<SqlNode> contents = node.getContents();
+    CompiledSqlNode[] compiled = new CompiledSqlNode[contents.size()];
+    for (int i = 0; i < compiled.length; i++) {
+      compiled[i] = compileNode(contents.get(i));
+      if (compiled[i] == null) {
+        return null;
+      }
+    }
+    return new Mixed(compiled);
+  }
+
+  private CompiledSqlNode compileStaticText(String text) {
+    List<String> contents = new ArrayList<>();
+    String sql = new GenericTokenParser("#{", "}", content -> {
+      contents.add(content);
+      return "?";
+    }).parse(text);
+    // 转义的 \#{ 或者没有闭合的 #{ ，需要和其它节点的内容拼接后才能确定含义
+    if (sql.contains("#{")) {
+      return null;
+    }
+    List<Map<String, String>> expressions = new ArrayList<>(contents.size());
+    for (String content : contents) {
+      expressions.add(SqlSourceBuilder.parseParameterExpression(content));
+    }
+    return new StaticText(sql, contents, expressions);
+  }
+
+  private CompiledSqlNode compileText(TextSqlNode node) {
+    Map<String, CompiledExpression> expressions = new HashMap<>();
+    new GenericTokenParser("${", "}", content -> {
+      expressions.computeIfAbsent(content, this::compileExpression);
+      return "";
+    }).parse(node.getText());
+    return new Text(node.getText(), node.getInjectionFilter(), expressions);
+  }
+
+  private CompiledSqlNode compileIf(IfSqlNode node) {
+    CompiledSqlNode contents = compileNode(node.getContents());
+    return contents == null ? null : new If(compileExpression(node.getTest()), contents);
+  }
+
+  private CompiledSqlNode compileChoose(ChooseSqlNode node) {
+    List<SqlNode> ifSqlNodes = node.getIfSqlNodes();
+    CompiledSqlNode[] compiled = new CompiledSqlNode[ifSqlNodes.size()];
+    for (int i = 0; i < compiled.length; i++) {
+      compiled[i] = compileNode(ifSqlNodes.get(i));
+      if (compiled[i] == null) {
+        return null;
+      }
+    }
+    CompiledSqlNode defaultSqlNode = null;
+    if (node.getDefaultSqlNode() != null) {
+      defaultSqlNode = compileNode(node.getDefaultSqlNode());
+      if (defaultSqlNode == null) {
+        return null;
+      }
+    }
+    return new Choose(compiled, defaultSqlNode);
+  }
+
+  private CompiledSqlNode compileTrim(TrimSqlNode node) {
+    // 执行时缓冲区中是 ? 而不是 #{...} ，覆盖的前后缀如果涉及占位符，结果可能不同
+    if (isPlaceholderRelated(node.getPrefixesToOverride()) || isPlaceholderRelated(node.getSuffixesToOverride())
+        || containsPlaceholder(node.getPrefix()) || containsPlaceholder(node.getSuffix())) {
+      return null;
+    }
+    CompiledSqlNode contents = compileNode(node.getContents());
+    return contents == null ? null : new Trim(node, contents);
+  }
+
+  private CompiledSqlNode compileForEach(ForEachSqlNode node) {
+    if (containsPlaceholder(node.getOpen()) || containsPlaceholder(node.getClose()) || containsPlaceholder(node.getSeparator())) {
+      return null;
+    }
+    CompiledSqlNode contents = compileNode(node.getContents());
+    if (contents == null) {
+      return null;
+    }
+    Pattern itemPattern;
+    Pattern indexPattern;
+    try {
+      // 与 ForEachSqlNode.FilteredDynamicContext 中的正则一致
+      itemPattern = Pattern.compile("^\\s*" + node.getItem() + "(?![^.,:\\s])");
+      indexPattern = node.getIndex() == null ? null : Pattern.compile("^\\s*" + node.getIndex() + "(?![^.,:\\s])");
+    } catch (PatternSyntaxException e) {
+      return null;
+    }
+    return new ForEach(node, compileExpression(node.getCollectionExpression()), contents, itemPattern, indexPattern);
+  }
+
+  private static boolean isPlaceholderRelated(List<String> overrides) {
+    if (overrides != null) {
+      for (String override : overrides) {
+        if (override.indexOf('?') >= 0 || override.indexOf('#') >= 0 || override.indexOf('{') >= 0 || override.indexOf('}') >= 0) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean containsPlaceholder(String text) {
+    return text != null && text.contains("#{");
+  }
+
+  /**
+   * 编译后的 SqlNode
+   */
+  interface CompiledSqlNode {
+    boolean apply(RenderContext context);
+  }
+
+  private static final class Mixed implements CompiledSqlNode {
+    private final CompiledSqlNode[] contents;
+
+    Mixed(CompiledSqlNode[] contents) {
+      this.contents = contents;
+    }
+
+    @Override
+    public boolean apply(RenderContext context) {
+      for (CompiledSqlNode sqlNode : contents) {
+        sqlNode.apply(context);
+      }
+      return true;
+    }
+  }
+
+  private static final class StaticText implements CompiledSqlNode {
+    private final String sql;
+    private final List<String> contents;
+    private final List<Map<String, String>> expressions;
+
+    StaticText(String sql, List<String> contents, List<Map<String, String>> expressions) {
+      this.sql = sql;
+      this.contents = contents;
+      this.expressions = expressions;
+    }
+
+    @Override
+    public boolean apply(RenderContext context) {
+      for (int i = 0; i < contents.size(); i++) {
+        context.addParameter(contents.get(i), expressions.get(i));
+      }
+      context.appendSql(sql);
+      return true;
+    }
+  }
+
+  /**
+   * 对应 TextSqlNode 。${} 的结果只有在执行时才知道，替换后再解析其中的 #{} 占位符
+   */
+  private static final class Text implements CompiledSqlNode {
+    private final String text;
+    private final Pattern injectionFilter;
+    private final Map<String, CompiledExpression> expressions;
+
+    Text(String text, Pattern injectionFilter, Map<String, CompiledExpression> expressions) {
+      this.text = text;
+      this.injectionFilter = injectionFilter;
+      this.expressions = expressions;
+    }
+
+    @Override
+    public boolean apply(RenderContext context) {
+      Map<String, Object> bindings = context.getBindings();
+      String sql = new GenericTokenParser("${", "}", content -> {
+        Object parameter = bindings.get("_parameter");
+        if (parameter == null) {
+          bindings.put("value", null);
+        } else if (SimpleTypeRegistry.isSimpleType(parameter.getClass())) {
+          bindings.put("value", parameter);
+        }
+        CompiledExpression expression = expressions.get(content);
+        Object value = expression == null ? OgnlCache.getValue(content, bindings) : expression.getValue(bindings);
+        String srtValue = value == null ? "" : String.valueOf(value); // issue #274 return "" instead of "null"
+        if (injectionFilter != null && !injectionFilter.matcher(srtValue).matches()) {
+          throw new ScriptingException("Invalid input. Please conform to regex" + injectionFilter.pattern());
+        }
+        return srtValue;
+      }).parse(text);
+      if (sql.contains("#{")) {
+        sql = new GenericTokenParser("#{", "}", content -> {
+          context.addParameter(content, SqlSourceBuilder.parseParameterExpression(content));
+          return "?";
+        }).parse(sql);
+      }
+      context.appendSql(sql);
+      return true;
+    }
+  }
+
+  private static final class If implements CompiledSqlNode {
+    private final CompiledExpression test;
+    private final CompiledSqlNode contents;
+
+    If(CompiledExpression test, CompiledSqlNode contents) {
+      this.test = test;
+      this.contents = contents;
+    }
+
+    @Override
+    public boolean apply(RenderContext context) {
+      if (ExpressionEvaluator.booleanValue(test.getValue(context.getBindings()))) {
+        contents.apply(context);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private static final class Choose implements CompiledSqlNode {
+    private final CompiledSqlNode[] ifSqlNodes;
+    private final CompiledSqlNode defaultSqlNode;
+
+    Choose(CompiledSqlNode[] ifSqlNodes, CompiledSqlNode defaultSqlNode) {
+      this.ifSqlNodes = ifSqlNodes;
+      this.defaultSqlNode = defaultSqlNode;
+    }
+
+    @Override
+    public boolean apply(RenderContext context) {
+      for (CompiledSqlNode sqlNode : ifSqlNodes) {
+        if (sqlNode.apply(context)) {
+          return true;
+        }
+      }
+      if (defaultSqlNode != null) {
+        defaultSqlNode.apply(context);
+        return true;
+      }
+      return false;
+    }
+  }
+
+  private static final class Trim implements CompiledSqlNode {
+    private final TrimSqlNode node;
+    private final CompiledSqlNode contents;
+
+    Trim(TrimSqlNode node, CompiledSqlNode contents) {
+      this.node = node;
+      this.contents = contents;
+    }
+
+    @Override
+    public boolean apply(RenderContext context) {
+      StringBuilder buffer = context.pushTrim();
+      boolean result = contents.apply(context);
+      context.popTrim(node.applyOverrides(buffer));
+      return result;
+    }
+  }
+
+  private static final class ForEach implements CompiledSqlNode {
+    private final ForEachSqlNode node;
+    private final CompiledExpression collection;
+    private final CompiledSqlNode contents;
+    private final Pattern itemPattern;
+    private final Pattern indexPattern;
+
+    ForEach(ForEachSqlNode node, CompiledExpression collection, CompiledSqlNode contents, Pattern itemPattern, Pattern indexPattern) {
+      this.node = node;
+      this.collection = collection;
+      this.contents = contents;
+      this.itemPattern = itemPattern;
+      this.indexPattern = indexPattern;
+    }
+
+    @Override
+    public boolean apply(RenderContext context) {
+      Map<String, Object> bindings = context.getBindings();
+      final Iterable<?> iterable = ExpressionEvaluator.iterableValue(node.getCollectionExpression(), collection.getValue(bindings));
+      if (!iterable.iterator().hasNext()) {
+        return true;
+      }
+      String item = node.getItem();
+      String index = node.getIndex();
+      String separator = node.getSeparator();
+      boolean first = true;
+      if (node.getOpen() != null) {
+        context.appendSql(node.getOpen());
+      }
+      int i = 0;
+      for (Object o : iterable) {
+        int uniqueNumber = context.getUniqueNumber();
+        // Issue #709
+        if (o instanceof Map.Entry) {
+          Map.Entry<?, ?> mapEntry = (Map.Entry<?, ?>) o;
+          bind(context, index, mapEntry.getKey(), uniqueNumber);
+          bind(context, item, mapEntry.getValue(), uniqueNumber);
+        } else {
+          bind(context, index, i, uniqueNumber);
+          bind(context, item, o, uniqueNumber);
+        }
+        context.pushIteration(first || separator == null ? "" : separator, itemPattern, item, indexPattern, index, uniqueNumber);
+        contents.apply(context);
+        boolean prefixApplied = context.popIteration();
+        if (first) {
+          first = !prefixApplied;
+        }
+        i++;
+      }
+      if (node.getClose() != null) {
+        context.appendSql(node.getClose());
+      }
+      bindings.remove(item);
+      bindings.remove(index);
+      return true;
+    }
+
+    private static void bind(RenderContext context, String name, Object value, int uniqueNumber) {
+      if (name != null) {
+        context.bind(name, value);
+        context.bind(ForEachSqlNode.itemizeItem(name, uniqueNumber), value);
+      }
+    }
+  }
+
+  private static final class VarDecl implements CompiledSqlNode {
+    private final String name;
+    private final CompiledExpression expression;
+
+    VarDecl(String name, CompiledExpression expression) {
+      this.name = name;
+      this.expression = expression;
+    }
+
+    @Override
+    public boolean apply(RenderContext context) {
+      context.bind(name, expression.getValue(context.getBindings()));
+      return true;
+    }
+  }
+
+}
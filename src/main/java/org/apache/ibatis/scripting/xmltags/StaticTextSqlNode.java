@@ -31,4 +31,8 @@ public class StaticTextSqlNode implements SqlNode {
     return true;
   }
 
-}
\ No newline at end of file
+  String getText() {
+    return text;
+  }
+
+}
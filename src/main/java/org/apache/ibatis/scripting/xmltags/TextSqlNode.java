@@ -106,4 +106,12 @@ public class TextSqlNode implements SqlNode {
     }
   }
 
+  String getText() {
+    return text;
+  }
+
+  Pattern getInjectionFilter() {
+    return injectionFilter;
+  }
+
 }
@@ -57,6 +57,71 @@ public class TrimSqlNode implements SqlNode {
     return result;
   }
 
+  String getPrefix() {
+    return prefix;
+  }
+
+  String getSuffix() {
+    return suffix;
+  }
+
+  List<String> getPrefixesToOverride() {
+    return prefixesToOverride;
+  }
+
+  List<String> getSuffixesToOverride() {
+    return suffixesToOverride;
+  }
+
+  SqlNode getContents() {
+    return contents;
+  }
+
+  /**
+   * 对收集到的 SQL 去除首尾空白，覆盖需要覆盖的前后缀，再添加前后缀
+   */
+  String applyOverrides(CharSequence sql) {
+    StringBuilder sqlBuffer = new StringBuilder(sql.toString().trim());
+    String trimmedUppercaseSql = sqlBuffer.toString().toUpperCase(Locale.ENGLISH);
+    if (trimmedUppercaseSql.length() > 0) {
+      applyPrefix(sqlBuffer, trimmedUppercaseSql);
+      applySuffix(sqlBuffer, trimmedUppercaseSql);
+    }
+    return sqlBuffer.toString();
+  }
+
+  private void applyPrefix(StringBuilder sql, String trimmedUppercaseSql) {
+    if (prefixesToOverride != null) {
+      for (String toRemove : prefixesToOverride) {
+        if (trimmedUppercaseSql.startsWith(toRemove)) {
+          sql.delete(0, toRemove.trim().length());
+          break;
+        }
+      }
+    }
+    if (prefix != null) {
+      sql.insert(0, " ");
+      sql.insert(0, prefix);
+    }
+  }
+
+  private void applySuffix(StringBuilder sql, String trimmedUppercaseSql) {
+    if (suffixesToOverride != null) {
+      for (String toRemove : suffixesToOverride) {
+        if (trimmedUppercaseSql.endsWith(toRemove) || trimmedUppercaseSql.endsWith(toRemove.trim())) {
+          int start = sql.length() - toRemove.trim().length();
+          int end = sql.length();
+          sql.delete(start, end);
+          break;
+        }
+      }
+    }
+    if (suffix != null) {
+      sql.append(" ");
+      sql.append(suffix);
+    }
+  }
+
   private static List<String> parseOverrides(String overrides) {
     if (overrides != null) {
       final StringTokenizer parser = new StringTokenizer(overrides, "|", false);
@@ -71,26 +136,16 @@ public class TrimSqlNode implements SqlNode {
 
   private class FilteredDynamicContext extends DynamicContext {
     private DynamicContext delegate;
-    private boolean prefixApplied;
-    private boolean suffixApplied;
     private StringBuilder sqlBuffer;
 
     public FilteredDynamicContext(DynamicContext delegate) {
       super(configuration, null);
       this.delegate = delegate;
-      this.prefixApplied = false;
-      this.suffixApplied = false;
       this.sqlBuffer = new StringBuilder();
     }
 
     public void applyAll() {
-      sqlBuffer = new StringBuilder(sqlBuffer.toString().trim());
-      String trimmedUppercaseSql = sqlBuffer.toString().toUpperCase(Locale.ENGLISH);
-      if (trimmedUppercaseSql.length() > 0) {
-        applyPrefix(sqlBuffer, trimmedUppercaseSql);
-        applySuffix(sqlBuffer, trimmedUppercaseSql);
-      }
-      delegate.appendSql(sqlBuffer.toString());
+      delegate.appendSql(applyOverrides(sqlBuffer));
     }
 
     @Override
@@ -118,44 +173,6 @@ public class TrimSqlNode implements SqlNode {
       return delegate.getSql();
     }
 
-    private void applyPrefix(StringBuilder sql, String trimmedUppercaseSql) {
-      if (!prefixApplied) {
-        prefixApplied = true;
-        if (prefixesToOverride != null) {
-          for (String toRemove : prefixesToOverride) {
-            if (trimmedUppercaseSql.startsWith(toRemove)) {
-              sql.delete(0, toRemove.trim().length());
-              break;
-            }
-          }
-        }
-        if (prefix != null) {
-          sql.insert(0, " ");
-          sql.insert(0, prefix);
-        }
-      }
-    }
-
-    private void applySuffix(StringBuilder sql, String trimmedUppercaseSql) {
-      if (!suffixApplied) {
-        suffixApplied = true;
-        if (suffixesToOverride != null) {
-          for (String toRemove : suffixesToOverride) {
-            if (trimmedUppercaseSql.endsWith(toRemove) || trimmedUppercaseSql.endsWith(toRemove.trim())) {
-              int start = sql.length() - toRemove.trim().length();
-              int end = sql.length();
-              sql.delete(start, end);
-              break;
-            }
-          }
-        }
-        if (suffix != null) {
-          sql.append(" ");
-          sql.append(suffix);
-        }
-      }
-    }
-
   }
 
 }
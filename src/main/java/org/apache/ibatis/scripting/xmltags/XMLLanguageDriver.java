@@ -41,7 +41,7 @@ public class XMLLanguageDriver implements LanguageDriver {
   @Override
   public SqlSource createSqlSource(Configuration configuration, XNode script, Class<?> parameterType) {
     XMLScriptBuilder builder = new XMLScriptBuilder(configuration, script, parameterType);
-    return builder.parseScriptNode();
+    return compile(configuration, builder.parseScriptNode());
   }
 
   @Override
@@ -59,11 +59,25 @@ public class XMLLanguageDriver implements LanguageDriver {
       TextSqlNode textSqlNode = new TextSqlNode(script);
       // <2.3.1> 如果是动态 SQL ，则创建 DynamicSqlSource 对象
       if (textSqlNode.isDynamic()) {
-        return new DynamicSqlSource(configuration, textSqlNode);
+        return compile(configuration, new DynamicSqlSource(configuration, textSqlNode));
       } else { // <2.3.2> 如果非动态 SQL ，则创建 RawSqlSource 对象
         return new RawSqlSource(configuration, script, parameterType);
       }
     }
   }
 
+  /**
+   * 开启 compileDynamicSql 时，将 DynamicSqlSource 编译成 CompiledSqlSource 。
+   * 包含无法编译的节点（例如自定义的 SqlNode ）时，继续使用 DynamicSqlSource 。
+   */
+  protected SqlSource compile(Configuration configuration, SqlSource sqlSource) {
+    if (configuration.isCompileDynamicSql() && sqlSource instanceof DynamicSqlSource) {
+      CompiledSqlSource compiled = SqlNodeCompiler.compile(configuration, ((DynamicSqlSource) sqlSource).getRootSqlNode());
+      if (compiled != null) {
+        return compiled;
+      }
+    }
+    return sqlSource;
+  }
+
 }
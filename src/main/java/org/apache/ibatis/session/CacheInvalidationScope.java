@@ -0,0 +1,30 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * 二级缓存的失效范围
+ */
+public enum CacheInvalidationScope {
+  /**
+   * Namespace 级，写入语句清空所在 namespace 的整个缓存
+   */
+  NAMESPACE,
+  /**
+   * 数据表级，只失效依赖被写入的数据表的缓存对象。无法确定写入的数据表时，退回到 Namespace 级
+   */
+  TABLE
+}
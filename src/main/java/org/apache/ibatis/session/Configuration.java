@@ -25,8 +25,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
+import org.apache.ibatis.binding.AsyncMapperExecutor;
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
 import org.apache.ibatis.builder.IncompleteElementException;
@@ -34,11 +37,27 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheCopyStrategy;
+import org.apache.ibatis.cache.CacheInvalidationBus;
+import org.apache.ibatis.cache.CacheInvalidationTransport;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheStats;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.BoundedLocalCache;
+import org.apache.ibatis.cache.impl.CodecCopyStrategy;
+import org.apache.ibatis.cache.impl.CompactCopyStrategy;
+import org.apache.ibatis.cache.impl.ConcurrentLruCache;
+import org.apache.ibatis.cache.impl.DefaultCacheMetrics;
+import org.apache.ibatis.cache.impl.DeepCopyStrategy;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.impl.TieredCache;
+import org.apache.ibatis.cache.impl.TinyLfuCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
@@ -53,6 +72,7 @@ import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.NestedQueryExecutor;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
@@ -119,18 +139,170 @@ public class Configuration {
    * 当开启时，任何方法的调用都会加载该对象的所有属性。否则，每个属性会按需加载（参考lazyLoadTriggerMethods)
    */
   protected boolean aggressiveLazyLoading;
+
+  /**
+   * 大于 0 时，同一个结果集中的结果对象，首次延迟加载某个属性时，使用一条 IN 列表查询，同时加载最多该数量的兄弟对象的该属性。小于等于 0 时，每个对象单独加载
+   *
+   * @see org.apache.ibatis.executor.loader.ResultLoaderGroup
+   */
+  protected int lazyLoadBatchSize;
   protected boolean multipleResultSetsEnabled = true;
   protected boolean useGeneratedKeys;
   protected boolean useColumnLabel = true;
+
+  /**
+   * 预编译的结果映射计划是否按字段位置调用 {@link org.apache.ibatis.type.TypeHandler#getResult(java.sql.ResultSet, int)} 读取字段。
+   * 默认关闭，与其它映射路径一样按字段名读取
+   */
+  protected boolean mapColumnsByIndex;
   protected boolean cacheEnabled = true;
   protected boolean callSettersOnNulls;
   protected boolean useActualParamName = true;
   protected boolean returnInstanceForEmptyRow;
 
+  /**
+   * 是否在启动时将动态 SQL 编译成 CompiledSqlSource ，执行时不再解释 SqlNode 树
+   */
+  protected boolean compileDynamicSql;
+
+  /**
+   * 每个动态语句缓存的 SQL 解析结果的数量上限。小于等于 0 时不缓存
+   */
+  protected int dynamicSqlCacheSize = 64;
+
+  /**
+   * 执行返回 CompletableFuture / CompletionStage 的 Mapper 方法的执行器。为空时，首次使用时创建 {@link AsyncMapperExecutor}
+   */
+  protected volatile java.util.concurrent.Executor asyncExecutor;
+
+  /**
+   * BATCH 执行器是否按照 (MappedStatement, SQL) 对交替执行的语句分组，合并到同一个 Statement 的批处理中
+   */
+  protected boolean batchGroupingEnabled;
+
+  /**
+   * BATCH 执行器累计的行数达到该值时，自动执行批处理。小于等于 0 时不限制
+   */
+  protected int batchAutoFlushRows;
+
+  /**
+   * BATCH 执行器累计的参数的估算字节数达到该值时，自动执行批处理。小于等于 0 时不限制
+   */
+  protected int batchAutoFlushBytes;
+
+  /**
+   * BATCH 执行器中单个语句累计的行数达到该值时，自动执行该语句（以及在它之前创建的语句）的批处理。小于等于 0 时不限制
+   */
+  protected int batchStatementAutoFlushRows;
+
+  /**
+   * BATCH 执行器是否将同一个 INSERT 语句的多次执行改写成多行 INSERT 语句
+   */
+  protected boolean batchInsertRewriteEnabled;
+
+  /**
+   * 改写后的每条 INSERT 语句最多包含的行数。小于等于 0 时不限制
+   */
+  protected int batchInsertRewriteMaxRows = 100;
+
+  /**
+   * 改写后的每条 INSERT 语句最多包含的参数数量。小于等于 0 时不限制
+   */
+  protected int batchInsertRewriteMaxParameters = 2000;
+
+  /**
+   * 非延迟加载的嵌套查询（{@code select} 属性的 association / collection）的并行度。大于 0 时，
+   * 结果集中的嵌套查询在结果集处理完成后，通过 {@link #getNestedQueryExecutor()} 并发执行，每个查询使用独立的连接。小于等于 0 时串行执行
+   */
+  protected int nestedQueryParallelism;
+
+  /**
+   * 并发执行嵌套查询的执行器。为空时，首次使用时创建线程数为 {@link #nestedQueryParallelism} 的 {@link NestedQueryExecutor}
+   */
+  protected volatile java.util.concurrent.Executor nestedQueryExecutor;
+
+  /**
+   * 大于 0 时，将结果集中参数不同的同一个嵌套查询 {@code where key = ?} ，合并成 {@code where key in (...)} 查询执行，每条查询最多包含该数量的参数。
+   * 小于等于 0 时不合并
+   *
+   * @see org.apache.ibatis.executor.loader.NestedQueryBatchLoader
+   */
+  protected int nestedQueryBatchSize;
+
   protected String logPrefix;
   protected Class <? extends Log> logImpl;
   protected Class <? extends VFS> vfsImpl;
   protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+
+  /**
+   * 本地缓存的最大数量，0 表示不限制
+   */
+  protected int localCacheMaxEntries;
+
+  /**
+   * 本地缓存的最大的估算字节数，0 表示不限制
+   */
+  protected long localCacheMaxBytes;
+
+  /**
+   * 本地缓存超出上限时的淘汰策略
+   */
+  protected LocalCacheEviction localCacheEviction = LocalCacheEviction.LRU;
+
+  /**
+   * 是否在本地缓存中保存流式查询的结果，即使用 ResultHandler 的查询，以及遍历 Cursor 时执行的嵌套查询
+   */
+  protected boolean localCacheStreamingQueries = true;
+
+  /**
+   * 二级缓存的失效范围
+   */
+  protected CacheInvalidationScope cacheInvalidationScope = CacheInvalidationScope.NAMESPACE;
+
+  /**
+   * 数据表的版本号，cacheInvalidationScope 为 TABLE 时使用
+   */
+  protected final TableVersions tableVersions = new TableVersions();
+
+  /**
+   * 二级缓存的失效总线，将本节点提交的缓存失效发布到其它节点。为 null 时不发布
+   */
+  protected CacheInvalidationBus cacheInvalidationBus;
+
+  /**
+   * 失效总线合并失效操作的时间，单位：毫秒
+   */
+  protected long cacheInvalidationBatchDelay = 10;
+
+  /**
+   * 是否统计缓存指标，包括每个二级缓存和本地缓存。需要在解析 Mapper 之前设置
+   *
+   * @see #getCacheStats(String)
+   * @see #getLocalCacheStats()
+   */
+  protected boolean cacheMetricsEnabled;
+
+  /**
+   * 缓存指标的实现类，需要有一个以缓存编号为参数的构造方法
+   */
+  protected Class<? extends CacheMetrics> cacheMetricsImpl = DefaultCacheMetrics.class;
+
+  /**
+   * 可读写的二级缓存使用的复制策略，需要有无参构造方法
+   *
+   * @see org.apache.ibatis.cache.decorators.SerializedCache
+   */
+  protected Class<? extends CacheCopyStrategy> cacheCopyStrategy = CodecCopyStrategy.class;
+
+  /**
+   * 缓存编号与缓存指标的映射
+   */
+  protected final Map<String, CacheMetrics> cacheMetrics = new ConcurrentHashMap<>();
+
+  /**
+   * 所有会话的本地缓存共用的缓存指标
+   */
+  protected volatile CacheMetrics localCacheMetrics;
   protected JdbcType jdbcTypeForNull = JdbcType.OTHER;
 
   /**
@@ -217,6 +389,14 @@ public class Configuration {
     typeAliasRegistry.registerAlias("LRU", LruCache.class);
     typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
     typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
+    typeAliasRegistry.registerAlias("CONCURRENT_LRU", ConcurrentLruCache.class);
+    typeAliasRegistry.registerAlias("TINY_LFU", TinyLfuCache.class);
+    typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
+    typeAliasRegistry.registerAlias("TIERED", TieredCache.class);
+
+    typeAliasRegistry.registerAlias("SERIALIZED_COPY", CodecCopyStrategy.class);
+    typeAliasRegistry.registerAlias("COMPACT_COPY", CompactCopyStrategy.class);
+    typeAliasRegistry.registerAlias("DEEP_COPY", DeepCopyStrategy.class);
 
     typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
@@ -294,6 +474,130 @@ public class Configuration {
     this.returnInstanceForEmptyRow = returnEmptyInstance;
   }
 
+  public boolean isCompileDynamicSql() {
+    return compileDynamicSql;
+  }
+
+  public void setCompileDynamicSql(boolean compileDynamicSql) {
+    this.compileDynamicSql = compileDynamicSql;
+  }
+
+  public int getDynamicSqlCacheSize() {
+    return dynamicSqlCacheSize;
+  }
+
+  public void setDynamicSqlCacheSize(int dynamicSqlCacheSize) {
+    this.dynamicSqlCacheSize = dynamicSqlCacheSize;
+  }
+
+  public java.util.concurrent.Executor getAsyncExecutor() {
+    java.util.concurrent.Executor executor = asyncExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        executor = asyncExecutor;
+        if (executor == null) {
+          executor = new AsyncMapperExecutor();
+          asyncExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  public void setAsyncExecutor(java.util.concurrent.Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  public boolean isBatchGroupingEnabled() {
+    return batchGroupingEnabled;
+  }
+
+  public void setBatchGroupingEnabled(boolean batchGroupingEnabled) {
+    this.batchGroupingEnabled = batchGroupingEnabled;
+  }
+
+  public int getBatchAutoFlushRows() {
+    return batchAutoFlushRows;
+  }
+
+  public void setBatchAutoFlushRows(int batchAutoFlushRows) {
+    this.batchAutoFlushRows = batchAutoFlushRows;
+  }
+
+  public int getBatchAutoFlushBytes() {
+    return batchAutoFlushBytes;
+  }
+
+  public void setBatchAutoFlushBytes(int batchAutoFlushBytes) {
+    this.batchAutoFlushBytes = batchAutoFlushBytes;
+  }
+
+  public int getBatchStatementAutoFlushRows() {
+    return batchStatementAutoFlushRows;
+  }
+
+  public void setBatchStatementAutoFlushRows(int batchStatementAutoFlushRows) {
+    this.batchStatementAutoFlushRows = batchStatementAutoFlushRows;
+  }
+
+  public boolean isBatchInsertRewriteEnabled() {
+    return batchInsertRewriteEnabled;
+  }
+
+  public void setBatchInsertRewriteEnabled(boolean batchInsertRewriteEnabled) {
+    this.batchInsertRewriteEnabled = batchInsertRewriteEnabled;
+  }
+
+  public int getBatchInsertRewriteMaxRows() {
+    return batchInsertRewriteMaxRows;
+  }
+
+  public void setBatchInsertRewriteMaxRows(int batchInsertRewriteMaxRows) {
+    this.batchInsertRewriteMaxRows = batchInsertRewriteMaxRows;
+  }
+
+  public int getBatchInsertRewriteMaxParameters() {
+    return batchInsertRewriteMaxParameters;
+  }
+
+  public void setBatchInsertRewriteMaxParameters(int batchInsertRewriteMaxParameters) {
+    this.batchInsertRewriteMaxParameters = batchInsertRewriteMaxParameters;
+  }
+
+  public int getNestedQueryParallelism() {
+    return nestedQueryParallelism;
+  }
+
+  public void setNestedQueryParallelism(int nestedQueryParallelism) {
+    this.nestedQueryParallelism = nestedQueryParallelism;
+  }
+
+  public java.util.concurrent.Executor getNestedQueryExecutor() {
+    java.util.concurrent.Executor executor = nestedQueryExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        executor = nestedQueryExecutor;
+        if (executor == null) {
+          executor = new NestedQueryExecutor(nestedQueryParallelism);
+          nestedQueryExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  public void setNestedQueryExecutor(java.util.concurrent.Executor nestedQueryExecutor) {
+    this.nestedQueryExecutor = nestedQueryExecutor;
+  }
+
+  public int getNestedQueryBatchSize() {
+    return nestedQueryBatchSize;
+  }
+
+  public void setNestedQueryBatchSize(int nestedQueryBatchSize) {
+    this.nestedQueryBatchSize = nestedQueryBatchSize;
+  }
+
   public String getDatabaseId() {
     return databaseId;
   }
@@ -400,6 +704,14 @@ public class Configuration {
     this.aggressiveLazyLoading = aggressiveLazyLoading;
   }
 
+  public int getLazyLoadBatchSize() {
+    return lazyLoadBatchSize;
+  }
+
+  public void setLazyLoadBatchSize(int lazyLoadBatchSize) {
+    this.lazyLoadBatchSize = lazyLoadBatchSize;
+  }
+
   public boolean isMultipleResultSetsEnabled() {
     return multipleResultSetsEnabled;
   }
@@ -470,6 +782,14 @@ public class Configuration {
     this.useColumnLabel = useColumnLabel;
   }
 
+  public boolean isMapColumnsByIndex() {
+    return mapColumnsByIndex;
+  }
+
+  public void setMapColumnsByIndex(boolean mapColumnsByIndex) {
+    this.mapColumnsByIndex = mapColumnsByIndex;
+  }
+
   public LocalCacheScope getLocalCacheScope() {
     return localCacheScope;
   }
@@ -478,6 +798,219 @@ public class Configuration {
     this.localCacheScope = localCacheScope;
   }
 
+  public int getLocalCacheMaxEntries() {
+    return localCacheMaxEntries;
+  }
+
+  public void setLocalCacheMaxEntries(int localCacheMaxEntries) {
+    this.localCacheMaxEntries = localCacheMaxEntries;
+  }
+
+  public long getLocalCacheMaxBytes() {
+    return localCacheMaxBytes;
+  }
+
+  public void setLocalCacheMaxBytes(long localCacheMaxBytes) {
+    this.localCacheMaxBytes = localCacheMaxBytes;
+  }
+
+  public LocalCacheEviction getLocalCacheEviction() {
+    return localCacheEviction;
+  }
+
+  public void setLocalCacheEviction(LocalCacheEviction localCacheEviction) {
+    this.localCacheEviction = localCacheEviction;
+  }
+
+  public boolean isLocalCacheStreamingQueries() {
+    return localCacheStreamingQueries;
+  }
+
+  public void setLocalCacheStreamingQueries(boolean localCacheStreamingQueries) {
+    this.localCacheStreamingQueries = localCacheStreamingQueries;
+  }
+
+  /**
+   * 创建会话的本地缓存。设置了 localCacheMaxEntries 或 localCacheMaxBytes 时，返回 {@link BoundedLocalCache}
+   *
+   * @param id 缓存编号
+   * @return 本地缓存
+   */
+  public PerpetualCache newLocalCache(String id) {
+    if (localCacheMaxEntries <= 0 && localCacheMaxBytes <= 0) {
+      return new PerpetualCache(id);
+    }
+    return new BoundedLocalCache(id, Math.max(0, localCacheMaxEntries), Math.max(0, localCacheMaxBytes),
+        localCacheEviction == LocalCacheEviction.LRU);
+  }
+
+  public CacheInvalidationScope getCacheInvalidationScope() {
+    return cacheInvalidationScope;
+  }
+
+  public void setCacheInvalidationScope(CacheInvalidationScope cacheInvalidationScope) {
+    this.cacheInvalidationScope = cacheInvalidationScope;
+  }
+
+  public TableVersions getTableVersions() {
+    return tableVersions;
+  }
+
+  public CacheInvalidationBus getCacheInvalidationBus() {
+    return cacheInvalidationBus;
+  }
+
+  public CacheInvalidationTransport getCacheInvalidationTransport() {
+    return cacheInvalidationBus == null ? null : cacheInvalidationBus.getTransport();
+  }
+
+  /**
+   * 设置失效消息的传输层，并创建失效总线。需要在创建 SqlSession 之前设置
+   *
+   * @param cacheInvalidationTransport 传输层。为 null 时，不在节点之间发布缓存的失效
+   */
+  public void setCacheInvalidationTransport(CacheInvalidationTransport cacheInvalidationTransport) {
+    if (cacheInvalidationBus != null) {
+      cacheInvalidationBus.close();
+      cacheInvalidationBus = null;
+    }
+    if (cacheInvalidationTransport != null) {
+      cacheInvalidationBus = new CacheInvalidationBus(this, cacheInvalidationTransport);
+      cacheInvalidationBus.setBatchDelay(cacheInvalidationBatchDelay);
+    }
+  }
+
+  public long getCacheInvalidationBatchDelay() {
+    return cacheInvalidationBatchDelay;
+  }
+
+  public void setCacheInvalidationBatchDelay(long cacheInvalidationBatchDelay) {
+    this.cacheInvalidationBatchDelay = cacheInvalidationBatchDelay;
+    if (cacheInvalidationBus != null) {
+      cacheInvalidationBus.setBatchDelay(cacheInvalidationBatchDelay);
+    }
+  }
+
+  public boolean isCacheMetricsEnabled() {
+    return cacheMetricsEnabled;
+  }
+
+  public void setCacheMetricsEnabled(boolean cacheMetricsEnabled) {
+    this.cacheMetricsEnabled = cacheMetricsEnabled;
+  }
+
+  public Class<? extends CacheMetrics> getCacheMetricsImpl() {
+    return cacheMetricsImpl;
+  }
+
+  public void setCacheMetricsImpl(Class<? extends CacheMetrics> cacheMetricsImpl) {
+    if (cacheMetricsImpl != null) {
+      this.cacheMetricsImpl = cacheMetricsImpl;
+    }
+  }
+
+  public Class<? extends CacheCopyStrategy> getCacheCopyStrategy() {
+    return cacheCopyStrategy;
+  }
+
+  public void setCacheCopyStrategy(Class<? extends CacheCopyStrategy> cacheCopyStrategy) {
+    if (cacheCopyStrategy != null) {
+      this.cacheCopyStrategy = cacheCopyStrategy;
+    }
+  }
+
+  /**
+   * @return 新的复制策略的对象，见 {@link #setCacheCopyStrategy(Class)}
+   */
+  public CacheCopyStrategy newCacheCopyStrategy() {
+    try {
+      return cacheCopyStrategy.getDeclaredConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Error creating cache copy strategy (" + cacheCopyStrategy + ").  Cause: " + e, e);
+    }
+  }
+
+  /**
+   * 获得指定缓存的统计指标，不存在时创建
+   *
+   * @param cacheId 缓存编号，即命名空间
+   * @return 统计指标。未开启统计时，返回 null
+   */
+  public CacheMetrics newCacheMetrics(String cacheId) {
+    if (!cacheMetricsEnabled) {
+      return null;
+    }
+    return cacheMetrics.computeIfAbsent(cacheId, this::createCacheMetrics);
+  }
+
+  /**
+   * @param cacheId 缓存编号，即命名空间
+   * @return 统计指标，未开启统计或者缓存不存在时，返回 null
+   */
+  public CacheMetrics getCacheMetrics(String cacheId) {
+    return cacheMetrics.get(cacheId);
+  }
+
+  /**
+   * @param cacheId 缓存编号，即命名空间
+   * @return 统计快照，包括缓存的数量。未开启统计或者缓存不存在时，返回 null
+   */
+  public CacheStats getCacheStats(String cacheId) {
+    final CacheMetrics metrics = cacheMetrics.get(cacheId);
+    if (metrics == null) {
+      return null;
+    }
+    final Cache cache = caches.containsKey(cacheId) ? caches.get(cacheId) : null;
+    return cache == null ? metrics.getStats() : metrics.getStats().withSize(cache.getSize());
+  }
+
+  /**
+   * @return 所有二级缓存的统计快照，KEY 为缓存编号
+   */
+  public Map<String, CacheStats> getCacheStats() {
+    final Map<String, CacheStats> stats = new TreeMap<>();
+    for (String cacheId : cacheMetrics.keySet()) {
+      stats.put(cacheId, getCacheStats(cacheId));
+    }
+    return stats;
+  }
+
+  /**
+   * @return 所有会话的本地缓存共用的统计指标，未开启统计时返回 null
+   */
+  public CacheMetrics getLocalCacheMetrics() {
+    if (!cacheMetricsEnabled) {
+      return null;
+    }
+    CacheMetrics metrics = localCacheMetrics;
+    if (metrics == null) {
+      synchronized (this) {
+        metrics = localCacheMetrics;
+        if (metrics == null) {
+          metrics = createCacheMetrics("LocalCache");
+          localCacheMetrics = metrics;
+        }
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * @return 所有会话的本地缓存的统计快照，不包括缓存的数量。未开启统计时返回 null
+   */
+  public CacheStats getLocalCacheStats() {
+    final CacheMetrics metrics = getLocalCacheMetrics();
+    return metrics == null ? null : metrics.getStats();
+  }
+
+  private CacheMetrics createCacheMetrics(String cacheId) {
+    try {
+      return cacheMetricsImpl.getConstructor(String.class).newInstance(cacheId);
+    } catch (Exception e) {
+      throw new CacheException("Error creating cache metrics (" + cacheMetricsImpl + ") for '" + cacheId + "'.  Cause: " + e, e);
+    }
+  }
+
   public JdbcType getJdbcTypeForNull() {
     return jdbcTypeForNull;
   }
@@ -625,7 +1158,7 @@ public class Configuration {
 
     // <3> 如果开启缓存，创建 CachingExecutor 对象，进行包装
     if (cacheEnabled) {
-      executor = new CachingExecutor(executor);
+      executor = new CachingExecutor(executor, cacheInvalidationBus);
     }
 
     // <4> 应用插件
@@ -0,0 +1,33 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * 本地缓存（一级缓存）超出上限时的淘汰策略
+ *
+ * @see Configuration#setLocalCacheMaxEntries(int)
+ * @see Configuration#setLocalCacheMaxBytes(long)
+ */
+public enum LocalCacheEviction {
+  /**
+   * 移除最近最少使用的对象
+   */
+  LRU,
+  /**
+   * 移除最早添加的对象
+   */
+  FIFO
+}
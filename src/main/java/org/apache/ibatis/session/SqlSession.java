@@ -22,6 +22,7 @@ import java.util.Map;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.BatchResultHandler;
 
 /**
  * SQL Session 接口。
@@ -84,6 +85,13 @@ public interface SqlSession extends Closeable {
 
   List<BatchResult> flushStatements();
 
+  /**
+   * 设置批处理结果的处理器。BATCH 执行器每执行一次批处理（包括达到上限时自动执行）都会回调；其它执行器不回调。
+   * 默认什么都不做，兼容已有的 SqlSession 实现
+   */
+  default void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+  }
+
   @Override
   void close();
 
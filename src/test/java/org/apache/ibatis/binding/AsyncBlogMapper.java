@@ -0,0 +1,63 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import org.apache.ibatis.annotations.Flush;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.domain.blog.Blog;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ResultHandler;
+
+public interface AsyncBlogMapper {
+
+  @Select("select id, title from blog where id = #{id}")
+  CompletableFuture<Blog> selectBlog(int id);
+
+  @Select("select id, title from blog where id = #{id}")
+  CompletableFuture<Optional<Blog>> selectOptionalBlog(int id);
+
+  @Select("select id, title from blog order by id")
+  CompletionStage<List<Blog>> selectBlogs();
+
+  @Select("select id, title from blog order by id")
+  CompletableFuture<Blog[]> selectBlogsAsArray();
+
+  @Select("select id, title from blog order by id")
+  @ResultType(Blog.class)
+  CompletableFuture<Void> selectBlogsWithHandler(ResultHandler<Blog> handler);
+
+  @Select("select id, title from blog order by id")
+  CompletableFuture<Cursor<Blog>> selectBlogsAsCursor();
+
+  @Select("select id, title from no_such_table")
+  CompletableFuture<List<Blog>> selectFromMissingTable();
+
+  @Update("update blog set title = #{title} where id = #{id}")
+  CompletableFuture<Integer> updateTitle(@Param("id") int id, @Param("title") String title);
+
+  @Flush
+  CompletableFuture<List<BatchResult>> flush();
+
+}
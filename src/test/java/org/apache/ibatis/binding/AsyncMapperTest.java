@@ -0,0 +1,135 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.domain.blog.Blog;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class AsyncMapperTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private final AtomicInteger executions = new AtomicInteger();
+
+  @BeforeEach
+  public void setup() throws Exception {
+    DataSource dataSource = BaseDataTest.createBlogDataSource();
+    Configuration configuration = new Configuration(new Environment("Production", new JdbcTransactionFactory(), dataSource));
+    Executor executor = new AsyncMapperExecutor();
+    configuration.setAsyncExecutor(command -> {
+      executions.incrementAndGet();
+      executor.execute(command);
+    });
+    configuration.addMapper(AsyncBlogMapper.class);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  @Test
+  public void shouldSelectOnAsyncExecutor() throws Exception {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      AsyncBlogMapper mapper = session.getMapper(AsyncBlogMapper.class);
+      CompletableFuture<Blog> blog = mapper.selectBlog(1);
+      CompletableFuture<Optional<Blog>> missing = mapper.selectOptionalBlog(-1);
+      List<Blog> blogs = mapper.selectBlogs().toCompletableFuture().get();
+      Blog[] array = mapper.selectBlogsAsArray().get();
+
+      assertEquals("Jim Business", blog.get().getTitle());
+      assertFalse(missing.get().isPresent());
+      assertEquals(2, blogs.size());
+      assertEquals(2, array.length);
+      assertEquals("Bally Slog", array[1].getTitle());
+      assertEquals(4, executions.get());
+    }
+  }
+
+  @Test
+  public void shouldPassRowsToResultHandler() throws Exception {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      List<Object> titles = new ArrayList<>();
+      CompletableFuture<Void> future = session.getMapper(AsyncBlogMapper.class)
+          .selectBlogsWithHandler(context -> titles.add(((Blog) context.getResultObject()).getTitle()));
+      future.get();
+      assertEquals(2, titles.size());
+    }
+  }
+
+  @Test
+  public void shouldCommitUpdateInOwnSession() throws Exception {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      AsyncBlogMapper mapper = session.getMapper(AsyncBlogMapper.class);
+      assertEquals(1, mapper.updateTitle(2, "Async Slog").get().intValue());
+    }
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      assertEquals("Async Slog", session.getMapper(AsyncBlogMapper.class).selectBlog(2).get().getTitle());
+    }
+  }
+
+  @Test
+  public void shouldCompleteExceptionallyWhenStatementFails() {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      CompletableFuture<List<Blog>> future = session.getMapper(AsyncBlogMapper.class).selectFromMissingTable();
+      ExecutionException e = assertThrows(ExecutionException.class, future::get);
+      assertTrue(e.getCause() instanceof PersistenceException);
+    }
+  }
+
+  @Test
+  public void shouldRunIndependentQueriesConcurrently() throws Exception {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      AsyncBlogMapper mapper = session.getMapper(AsyncBlogMapper.class);
+      List<CompletableFuture<Blog>> futures = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        futures.add(mapper.selectBlog(i % 2 + 1));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+      assertEquals(1, futures.get(0).get().getId());
+      assertEquals(2, futures.get(9).get().getId());
+    }
+  }
+
+  @Test
+  public void shouldRejectCursorAndFlush() {
+    try (SqlSession session = sqlSessionFactory.openSession()) {
+      AsyncBlogMapper mapper = session.getMapper(AsyncBlogMapper.class);
+      assertThrows(BindingException.class, mapper::selectBlogsAsCursor);
+      assertThrows(BindingException.class, mapper::flush);
+    }
+  }
+
+}
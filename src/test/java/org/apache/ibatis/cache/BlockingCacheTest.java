@@ -0,0 +1,115 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.DefaultCacheMetrics;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+public class BlockingCacheTest {
+
+  @Test
+  public void shouldHandOffLoadedValueToWaitingThreads() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> cache.getObject("key"));
+    Thread.sleep(100);
+    assertEquals(false, waiter.isDone());
+    Object value = new Object();
+    cache.putObject("key", value);
+    assertSame(value, waiter.get(5, TimeUnit.SECONDS));
+    assertSame(value, cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldLetWaitingThreadLoadWhenOwnerReleasesWithoutValue() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> {
+      Object value = cache.getObject("key");
+      cache.putObject("key", "loaded by waiter");
+      return value;
+    });
+    Thread.sleep(100);
+    cache.removeObject("key");
+    assertNull(waiter.get(5, TimeUnit.SECONDS));
+    assertEquals("loaded by waiter", cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldNotBlockOwnerOnRepeatedMiss() {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    assertNull(cache.getObject("key"));
+    assertNull(cache.getObject("key"));
+    cache.putObject("key", "value");
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldTimeoutWhileWaitingForOwner() {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    cache.setTimeout(50);
+    assertNull(cache.getObject("key"));
+    CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> cache.getObject("key"));
+    Exception e = assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS));
+    assertEquals(CacheException.class, e.getCause().getClass());
+    cache.removeObject("key");
+  }
+
+  @Test
+  public void shouldReadCopiesWhenHandOffIsDisabled() throws Exception {
+    BlockingCache cache = new BlockingCache(new SerializedCache(new PerpetualCache("default")));
+    cache.setHandOffValues(false);
+    assertNull(cache.getObject("key"));
+    CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> cache.getObject("key"));
+    Thread.sleep(100);
+    ArrayList<String> value = new ArrayList<>();
+    value.add("a");
+    cache.putObject("key", value);
+    Object copy = waiter.get(5, TimeUnit.SECONDS);
+    assertEquals(value, copy);
+    assertNotSame(value, copy);
+  }
+
+  @Test
+  public void shouldRecordBlockedWaitTime() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    DefaultCacheMetrics metrics = new DefaultCacheMetrics("default");
+    cache.setCacheMetrics(metrics);
+    assertNull(cache.getObject("key"));
+    CompletableFuture<Object> waiter = CompletableFuture.supplyAsync(() -> cache.getObject("key"));
+    Thread.sleep(100);
+    cache.putObject("key", "value");
+    assertEquals("value", waiter.get(5, TimeUnit.SECONDS));
+    CacheStats stats = metrics.getStats();
+    assertEquals(1, stats.getBlockedWaitCount());
+    assertTrue(stats.getTotalBlockedWaitTime() >= TimeUnit.MILLISECONDS.toNanos(50), stats.toString());
+  }
+
+}
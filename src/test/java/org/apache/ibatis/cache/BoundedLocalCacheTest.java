@@ -0,0 +1,102 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.cache.impl.BoundedLocalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheEviction;
+import org.junit.jupiter.api.Test;
+
+public class BoundedLocalCacheTest {
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntries() {
+    BoundedLocalCache cache = new BoundedLocalCache("local", 2, 0, true);
+    cache.putObject(1, 1);
+    cache.putObject(2, 2);
+    cache.getObject(1);
+    cache.putObject(3, 3);
+    assertTrue(cache.isOverflowed());
+    assertEquals(1, cache.trim(null));
+    assertFalse(cache.isOverflowed());
+    assertEquals(1, cache.getObject(1));
+    assertNull(cache.getObject(2));
+    assertEquals(3, cache.getObject(3));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void shouldEvictFirstAddedEntries() {
+    BoundedLocalCache cache = new BoundedLocalCache("local", 2, 0, false);
+    cache.putObject(1, 1);
+    cache.putObject(2, 2);
+    cache.getObject(1);
+    cache.putObject(3, 3);
+    cache.trim(null);
+    assertNull(cache.getObject(1));
+    assertEquals(2, cache.getObject(2));
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  public void shouldNotEvictPinnedEntries() {
+    BoundedLocalCache cache = new BoundedLocalCache("local", 1, 0, true);
+    cache.putObject(1, "pinned");
+    cache.putObject(2, 2);
+    cache.putObject(3, 3);
+    assertEquals(2, cache.trim((key, value) -> "pinned".equals(value)));
+    assertEquals("pinned", cache.getObject(1));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldEvictByEstimatedBytes() {
+    BoundedLocalCache cache = new BoundedLocalCache("local", 0, 4096, true);
+    for (int i = 0; i < 10; i++) {
+      List<String> rows = new ArrayList<>();
+      for (int j = 0; j < 10; j++) {
+        rows.add("row " + i + "-" + j);
+      }
+      cache.putObject(i, rows);
+      cache.trim(null);
+    }
+    assertTrue(cache.getEstimatedBytes() <= 4096, String.valueOf(cache.getEstimatedBytes()));
+    assertTrue(cache.getSize() < 10);
+    assertNotNull(cache.getObject(9));
+    assertNull(cache.getObject(0));
+    cache.removeObject(9);
+    cache.clear();
+    assertEquals(0, cache.getEstimatedBytes());
+  }
+
+  @Test
+  public void shouldBeCreatedOnlyWhenBounded() {
+    Configuration configuration = new Configuration();
+    assertEquals(PerpetualCache.class, configuration.newLocalCache("LocalCache").getClass());
+    configuration.setLocalCacheMaxEntries(100);
+    configuration.setLocalCacheEviction(LocalCacheEviction.FIFO);
+    BoundedLocalCache cache = (BoundedLocalCache) configuration.newLocalCache("LocalCache");
+    assertEquals(100, cache.getMaxEntries());
+    assertEquals(0, cache.getMaxBytes());
+  }
+
+}
@@ -0,0 +1,177 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.CodecCopyStrategy;
+import org.apache.ibatis.cache.impl.CompactCopyStrategy;
+import org.apache.ibatis.cache.impl.DeepCopyStrategy;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.domain.blog.ImmutableAuthor;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+public class CacheCopyStrategyTest {
+
+  @Test
+  public void shouldUseJavaSerializationByDefault() {
+    SerializedCache cache = new SerializedCache(new PerpetualCache("default"));
+    assertEquals(CodecCopyStrategy.class, cache.getCopyStrategy().getClass());
+    cache.putObject("key", new ArrayList<>(Arrays.asList("a", "b")));
+    assertTrue(cache.getObject("key") instanceof ArrayList);
+  }
+
+  @Test
+  public void shouldIsolateCallersForEveryStrategy() {
+    for (CacheCopyStrategy strategy : Arrays.asList(new CodecCopyStrategy(), new CompactCopyStrategy(), new DeepCopyStrategy())) {
+      Cache cache = new SerializedCache(new PerpetualCache("default"), strategy);
+      Author author = new Author(1, "jim");
+      author.posts.add(new Post(10, "first", author));
+      cache.putObject("key", author);
+      author.name = "changed";
+
+      Author first = (Author) cache.getObject("key");
+      Author second = (Author) cache.getObject("key");
+      assertEquals("jim", first.name, strategy.getClass().getName());
+      assertNotSame(first, second);
+      assertNotSame(first.posts, second.posts);
+      assertSame(first, first.posts.get(0).author);
+      first.posts.clear();
+      assertEquals(1, ((Author) cache.getObject("key")).posts.size());
+    }
+  }
+
+  @Test
+  public void shouldShareImmutableValuesAndCopyMutableOnes() {
+    CacheCopyStrategy strategy = new DeepCopyStrategy();
+    String name = new String("jim");
+    BigDecimal amount = new BigDecimal("1.50");
+    LocalDate day = LocalDate.of(2019, 1, 1);
+    Date date = new Date(0L);
+    Object[] row = {name, amount, day, date, Section.NEWS, new int[] {1, 2}};
+    Object[] copy = (Object[]) strategy.copyForRead(strategy.copyForWrite(row));
+    assertNotSame(row, copy);
+    assertSame(name, copy[0]);
+    assertSame(amount, copy[1]);
+    assertSame(day, copy[2]);
+    assertNotSame(date, copy[3]);
+    assertEquals(date, copy[3]);
+    assertSame(Section.NEWS, copy[4]);
+    assertNotSame(row[5], copy[5]);
+    assertTrue(Arrays.equals((int[]) row[5], (int[]) copy[5]));
+  }
+
+  @Test
+  public void shouldFallBackToSerializationForObjectsWithoutDefaultConstructor() {
+    CacheCopyStrategy strategy = new DeepCopyStrategy();
+    ImmutableAuthor author = new ImmutableAuthor(1, "jim", "pwd", "jim@example.com", "bio", Section.NEWS);
+    List<ImmutableAuthor> list = new ArrayList<>();
+    list.add(author);
+    @SuppressWarnings("unchecked")
+    List<ImmutableAuthor> copy = (List<ImmutableAuthor>) strategy.copyForRead(strategy.copyForWrite(list));
+    assertNotSame(author, copy.get(0));
+    assertEquals("jim@example.com", copy.get(0).getEmail());
+    assertEquals(Section.NEWS, copy.get(0).getFavouriteSection());
+  }
+
+  @Test
+  public void shouldRejectNonSerializableValues() {
+    for (CacheCopyStrategy strategy : Arrays.asList(new CodecCopyStrategy(), new CompactCopyStrategy(), new DeepCopyStrategy())) {
+      Cache cache = new SerializedCache(new PerpetualCache("default"), strategy);
+      assertThrows(CacheException.class, () -> cache.putObject("key", new Object()));
+      assertThrows(CacheException.class, () -> cache.putObject("key", new ArrayList<>(Arrays.asList(new Object()))));
+    }
+  }
+
+  @Test
+  public void shouldSelectStrategyFromConfigurationAndCacheProperty() {
+    Configuration configuration = new Configuration();
+    configuration.setCacheCopyStrategy(configuration.getTypeAliasRegistry().resolveAlias("DEEP_COPY"));
+    Cache cache = new CacheBuilder("copy")
+        .readWrite(true)
+        .copyStrategy(configuration.newCacheCopyStrategy())
+        .build();
+    assertEquals(DeepCopyStrategy.class, findSerializedCache(cache).getCopyStrategy().getClass());
+
+    Properties props = new Properties();
+    props.setProperty("copyStrategy", CompactCopyStrategy.class.getName());
+    Cache overridden = new CacheBuilder("copy")
+        .readWrite(true)
+        .copyStrategy(configuration.newCacheCopyStrategy())
+        .properties(props)
+        .build();
+    assertEquals(CompactCopyStrategy.class, findSerializedCache(overridden).getCopyStrategy().getClass());
+
+    Properties unknown = new Properties();
+    unknown.setProperty("copyStrategy", "org.example.Missing");
+    assertThrows(CacheException.class, () -> new CacheBuilder("copy").readWrite(true).properties(unknown).build());
+  }
+
+  private SerializedCache findSerializedCache(Cache cache) {
+    while (!(cache instanceof SerializedCache)) {
+      MetaObject metaCache = SystemMetaObject.forObject(cache);
+      cache = (Cache) metaCache.getValue("delegate");
+    }
+    return (SerializedCache) cache;
+  }
+
+  static class Author implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private int id;
+    private String name;
+    private List<Post> posts = new ArrayList<>();
+
+    Author() {
+    }
+
+    Author(int id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  static class Post implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private int id;
+    private String title;
+    private Author author;
+
+    Post() {
+    }
+
+    Post(int id, String title, Author author) {
+      this.id = id;
+      this.title = title;
+      this.author = author;
+    }
+  }
+
+}
@@ -0,0 +1,158 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.impl.LocalCacheInvalidationTransport;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+public class CacheInvalidationBusTest {
+
+  @Test
+  public void shouldClearCacheOfOtherNodes() {
+    Configuration node1 = newNode();
+    Configuration node2 = newNode();
+    CacheInvalidationBus bus1 = newBus(node1, "clear");
+    CacheInvalidationBus bus2 = newBus(node2, "clear");
+    try {
+      node1.getCache("ns").putObject("key", "value");
+      node2.getCache("ns").putObject("key", "value");
+      bus1.publishClear("ns");
+      assertNull(node2.getCache("ns").getObject("key"));
+      assertEquals("value", node1.getCache("ns").getObject("key"));
+    } finally {
+      bus1.close();
+      bus2.close();
+    }
+  }
+
+  @Test
+  public void shouldRemoveKeysAndInvalidateTablesOfOtherNodes() {
+    Configuration node1 = newNode();
+    Configuration node2 = newNode();
+    CacheInvalidationBus bus1 = newBus(node1, "keys");
+    CacheInvalidationBus bus2 = newBus(node2, "keys");
+    try {
+      CacheKey key = new CacheKey(new Object[] {"select", 1});
+      node2.getCache("ns").putObject(key, "value");
+      node2.getCache("ns").putObject("other", "value");
+      bus1.publishRemove("ns", new CacheKey(new Object[] {"select", 1}));
+      bus1.publishTables(Collections.singleton("users"));
+      assertNull(node2.getCache("ns").getObject(key));
+      assertNotNull(node2.getCache("ns").getObject("other"));
+      assertEquals(1, node2.getTableVersions().getVersion("users"));
+      assertEquals(0, node1.getTableVersions().getVersion("users"));
+    } finally {
+      bus1.close();
+      bus2.close();
+    }
+  }
+
+  @Test
+  public void shouldCoalesceInvalidationsIntoOneMessage() throws Exception {
+    RecordingTransport transport = new RecordingTransport();
+    CacheInvalidationBus bus = new CacheInvalidationBus(newNode(), transport);
+    bus.setBatchDelay(50);
+    bus.publishRemove("ns", "key1");
+    bus.publishRemove("ns", "key2");
+    bus.publishClear("ns");
+    bus.publishClear("ns");
+    bus.publishRemove("ns", "key3");
+    bus.publishRemove("other", "key1");
+    bus.publishTables(Collections.singleton("users"));
+    bus.publishTables(Collections.singleton("users"));
+    assertTrue(transport.messages.isEmpty());
+    for (int i = 0; i < 40 && transport.messages.isEmpty(); i++) {
+      Thread.sleep(25);
+    }
+    assertEquals(1, transport.messages.size());
+    CacheInvalidationMessage message = transport.messages.get(0);
+    assertEquals(bus.getNodeId(), message.getOrigin());
+    assertEquals(Collections.singleton("ns"), message.getClearedCaches());
+    assertEquals(Collections.singletonMap("other", Collections.singleton("key1")), message.getRemovedKeys());
+    assertEquals(Collections.singleton("users"), message.getTables());
+    bus.close();
+    assertEquals(1, transport.messages.size());
+  }
+
+  @Test
+  public void shouldPublishImmediatelyWhenBatchIsFull() {
+    RecordingTransport transport = new RecordingTransport();
+    CacheInvalidationBus bus = new CacheInvalidationBus(newNode(), transport);
+    bus.setBatchDelay(60000);
+    bus.setMaxBatchSize(2);
+    bus.publishClear("ns1");
+    assertTrue(transport.messages.isEmpty());
+    bus.publishClear("ns2");
+    assertEquals(1, transport.messages.size());
+    assertEquals(2, transport.messages.get(0).getClearedCaches().size());
+    bus.close();
+  }
+
+  @Test
+  public void shouldNotFailCommitWhenPublishFails() {
+    CacheInvalidationBus bus1 = newBus(newNode(), "failure");
+    CacheInvalidationBus bus2 = newBus(newNode(), "failure");
+    try {
+      // 不可序列化的 KEY
+      bus1.publishRemove("ns", new Object());
+    } finally {
+      bus1.close();
+      bus2.close();
+    }
+  }
+
+  private static Configuration newNode() {
+    Configuration configuration = new Configuration();
+    configuration.addCache(new PerpetualCache("ns"));
+    return configuration;
+  }
+
+  private static CacheInvalidationBus newBus(Configuration configuration, String channel) {
+    CacheInvalidationBus bus = new CacheInvalidationBus(configuration, new LocalCacheInvalidationTransport(channel));
+    bus.setBatchDelay(0);
+    return bus;
+  }
+
+  private static class RecordingTransport implements CacheInvalidationTransport {
+    private final List<CacheInvalidationMessage> messages = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void start(Consumer<CacheInvalidationMessage> listener) {
+    }
+
+    @Override
+    public void publish(CacheInvalidationMessage message) {
+      messages.add(message);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+}
@@ -103,6 +103,47 @@ public class CacheKeyTest {
     Assertions.assertEquals(cacheKey, serialize(cacheKey));
   }
 
+  @Test
+  public void shouldGrowBeyondInitialCapacity() throws Exception {
+    CacheKey key1 = new CacheKey(1);
+    CacheKey key2 = new CacheKey();
+    for (int i = 0; i < 100; i++) {
+      key1.update("value" + i);
+      key2.update("value" + i);
+    }
+    assertEquals(100, key1.getUpdateCount());
+    assertEquals(key1, key2);
+    assertEquals(key1.hashCode(), key2.hashCode());
+    assertEquals(key1, serialize(key1));
+  }
+
+  @Test
+  public void shouldTreatIntUpdatesLikeBoxedValues() {
+    CacheKey key1 = new CacheKey();
+    key1.update(0);
+    key1.update(Integer.MAX_VALUE);
+    key1.update(1000);
+    CacheKey key2 = new CacheKey(new Object[] { 0, Integer.MAX_VALUE, 1000 });
+    assertEquals(key1, key2);
+    assertEquals(key1.toString(), key2.toString());
+  }
+
+  @Test
+  public void shouldNotShareComponentsWithClone() throws Exception {
+    CacheKey key = new CacheKey(new Object[] { "id", 1 });
+    CacheKey clone = key.clone();
+    assertEquals(key, clone);
+    clone.update("parent");
+    assertNotEquals(key, clone);
+    assertEquals(2, key.getUpdateCount());
+    assertEquals(3, clone.getUpdateCount());
+  }
+
+  @Test
+  public void shouldNotAllowUpdatingNullCacheKey() {
+    Assertions.assertThrows(CacheException.class, () -> CacheKey.NULL_CACHE_KEY.update(1));
+  }
+
   private static <T> T serialize(T object) throws Exception {
       ByteArrayOutputStream baos = new ByteArrayOutputStream();
       new ObjectOutputStream(baos).writeObject(object);
@@ -0,0 +1,149 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.ibatis.cache.impl.CompactCacheCodec;
+import org.apache.ibatis.cache.impl.SerializationCacheCodec;
+import org.junit.jupiter.api.Test;
+
+public class CompactCacheCodecTest {
+
+  private final CacheCodec codec = new CompactCacheCodec();
+
+  @Test
+  public void shouldRoundTripSimpleValues() {
+    Timestamp timestamp = new Timestamp(1546300800123L);
+    timestamp.setNanos(123456789);
+    List<Object> values = Arrays.asList(null, "", "ascii", "\u4e2d\u6587 \ud83d\ude00", 0, -1, Integer.MIN_VALUE, Long.MAX_VALUE,
+        (short) -7, (byte) 3, 'x', true, false, 1.5f, -2.25d, new BigDecimal("-12345678901234567890.123"),
+        new java.math.BigInteger("98765432109876543210"), new Date(1546300800000L), new java.sql.Date(0L),
+        timestamp, Thread.State.BLOCKED, UUID.fromString("123e4567-e89b-12d3-a456-426655440000"));
+    for (Object value : values) {
+      assertEquals(value, codec.decode(codec.encode(value)));
+    }
+    assertTrue(Arrays.equals(new byte[] {1, 2, 3}, (byte[]) codec.decode(codec.encode(new byte[] {1, 2, 3}))));
+  }
+
+  @Test
+  public void shouldCopyBeansAndCollections() {
+    Author author = new Author(1, "jim");
+    Post first = new Post(10, "first", author);
+    Post second = new Post(11, "second", author);
+    author.posts.add(first);
+    author.posts.add(second);
+    Map<String, Object> row = new LinkedHashMap<>();
+    row.put("author", author);
+    row.put("count", 2L);
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> copy = (Map<String, Object>) codec.decode(codec.encode(row));
+    assertEquals(LinkedHashMap.class, copy.getClass());
+    assertEquals(Arrays.asList("author", "count"), new ArrayList<>(copy.keySet()));
+    Author authorCopy = (Author) copy.get("author");
+    assertNotSame(author, authorCopy);
+    assertEquals("jim", authorCopy.name);
+    assertEquals(2, authorCopy.posts.size());
+    assertEquals("second", authorCopy.posts.get(1).title);
+    // shared and cyclic references are kept
+    assertSame(authorCopy, authorCopy.posts.get(0).author);
+    assertSame(authorCopy, authorCopy.posts.get(1).author);
+  }
+
+  @Test
+  public void shouldBeSmallerThanJavaSerialization() {
+    List<Post> posts = new ArrayList<>();
+    Author author = new Author(1, "jim");
+    for (int i = 0; i < 100; i++) {
+      posts.add(new Post(i, "title " + i, author));
+    }
+    int compact = codec.encode(posts).length;
+    int serialized = new SerializationCacheCodec().encode(posts).length;
+    assertTrue(compact < serialized, compact + " vs " + serialized);
+  }
+
+  @Test
+  public void shouldFallBackToSerializationForCustomSerializationMethods() {
+    Custom custom = new Custom();
+    custom.value = "a";
+    assertEquals("a!", ((Custom) codec.decode(codec.encode(custom))).value);
+  }
+
+  @Test
+  public void shouldRejectNonSerializableValues() {
+    assertThrows(CacheException.class, () -> codec.encode(new Object()));
+    assertThrows(CacheException.class, () -> codec.encode(Arrays.asList(new Object())));
+  }
+
+  static class Author implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int id;
+    private String name;
+    private List<Post> posts = new ArrayList<>();
+
+    Author() {
+      this(0, null);
+    }
+
+    Author(int id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  static class Post implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private int id;
+    private String title;
+    private Author author;
+    private transient String ignored = "ignored";
+
+    Post() {
+    }
+
+    Post(int id, String title, Author author) {
+      this.id = id;
+      this.title = title;
+      this.author = author;
+    }
+  }
+
+  static class Custom implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String value;
+
+    private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+      out.writeUTF(value + "!");
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException {
+      value = in.readUTF();
+    }
+  }
+
+}
@@ -0,0 +1,289 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.cache.impl.ConcurrentLruCache;
+import org.apache.ibatis.cache.impl.DefaultCacheMetrics;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.impl.TinyLfuCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentCacheTest {
+
+  @Test
+  public void shouldRemoveLeastRecentlyUsedItemInBeyondFiveEntries() {
+    ConcurrentCache cache = new ConcurrentLruCache("default");
+    cache.setSize(5);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(0, cache.getObject(0));
+    cache.putObject(5, 5);
+    assertNull(cache.getObject(1));
+    assertEquals(0, cache.getObject(0));
+    assertEquals(5, cache.getSize());
+  }
+
+  @Test
+  public void shouldKeepFrequentlyUsedItemsDuringScan() {
+    ConcurrentCache cache = new TinyLfuCache("default");
+    cache.setSize(100);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+    }
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 100; i++) {
+        cache.getObject(i);
+      }
+    }
+    // a scan of one-time keys must not flush the hot entries
+    for (int i = 1000; i < 2000; i++) {
+      cache.putObject(i, i);
+    }
+    int hits = 0;
+    for (int i = 0; i < 100; i++) {
+      if (cache.getObject(i) != null) {
+        hits++;
+      }
+    }
+    assertTrue(hits >= 90, "hot entries evicted by scan: " + hits);
+    assertTrue(cache.getSize() <= 100);
+  }
+
+  @Test
+  public void shouldBoundByEstimatedBytes() {
+    ConcurrentCache cache = new ConcurrentLruCache("default");
+    cache.setMaxBytes(64 * 1024);
+    for (int i = 0; i < 1000; i++) {
+      cache.putObject(i, new byte[1024]);
+    }
+    assertTrue(cache.getSize() < 64, "size was " + cache.getSize());
+    assertTrue(cache.getSize() > 16, "size was " + cache.getSize());
+    assertNotNull(cache.getObject(999));
+  }
+
+  @Test
+  public void shouldKeepSegmentsLargeEnoughForBigEntries() {
+    ConcurrentCache cache = new ConcurrentLruCache("default");
+    cache.setMaxBytes(4 * 1024 * 1024);
+    cache.putObject("big", new byte[512 * 1024]);
+    assertNotNull(cache.getObject("big"));
+
+    cache.putObject("small", new byte[16]);
+    cache.putObject("small", new byte[8 * 1024 * 1024]);
+    assertNull(cache.getObject("small"));
+    assertNotNull(cache.getObject("big"));
+  }
+
+  @Test
+  public void shouldEstimateLargeValuesFromASample() {
+    WeighingCache cache = new WeighingCache();
+    long small = cache.weigh(rows(1000));
+    long large = cache.weigh(rows(100000));
+    assertTrue(large > small * 90 && large < small * 110, small + " / " + large);
+  }
+
+  @Test
+  public void shouldRemoveItemOnDemand() {
+    Cache cache = new TinyLfuCache("default");
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    assertEquals(0, cache.removeObject(0));
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldFlushAllItemsOnDemand() {
+    Cache cache = new TinyLfuCache("default");
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+  }
+
+  @Test
+  public void shouldStayWithinBoundsUnderConcurrentAccess() throws Exception {
+    final ConcurrentCache cache = new TinyLfuCache("default");
+    cache.setSize(512);
+    final int threads = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        final int seed = t;
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int i = 0; i < 20000; i++) {
+            Integer key = (i * 31 + seed) % 2048;
+            Object value = cache.getObject(key);
+            if (value == null) {
+              cache.putObject(key, key);
+            } else {
+              assertEquals(key, value);
+            }
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(cache.getSize() <= 512, "size was " + cache.getSize());
+  }
+
+  @Test
+  public void shouldBeSelectedByEvictionWithoutSynchronizedCache() {
+    Configuration configuration = new Configuration();
+    Properties props = new Properties();
+    props.setProperty("maxBytes", "1048576");
+    Cache cache = new CacheBuilder("tinylfu")
+        .implementation(PerpetualCache.class)
+        .addDecorator(configuration.getTypeAliasRegistry().resolveAlias("TINY_LFU"))
+        .size(100)
+        .properties(props)
+        .build();
+    assertEquals(LoggingCache.class, cache.getClass());
+    cache.putObject("a", "b");
+    assertEquals("b", cache.getObject("a"));
+
+    Cache lru = new CacheBuilder("lru").build();
+    assertEquals(SynchronizedCache.class, lru.getClass());
+  }
+
+  @Test
+  public void shouldCountRequestsWithoutSynchronizedCache() throws Exception {
+    Cache cache = new CacheBuilder("counting")
+        .implementation(ConcurrentLruCache.class)
+        .clearInterval(60000L)
+        .size(100)
+        .build();
+    assertEquals(LoggingCache.class, cache.getClass());
+    cache.putObject("a", "b");
+    final int threads = 8;
+    final int reads = 20000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int i = 0; i < reads; i++) {
+            cache.getObject(i % 2 == 0 ? "a" : "missing");
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    MetaObject metaCache = SystemMetaObject.forObject(cache);
+    assertEquals(threads * reads, ((LongAdder) metaCache.getValue("requestCount")).sum());
+    assertEquals(threads * reads / 2, ((LongAdder) metaCache.getValue("hitCount")).sum());
+  }
+
+  @Test
+  public void shouldRecordPutsAndEvictionsThroughBuilder() {
+    DefaultCacheMetrics metrics = new DefaultCacheMetrics("metrics");
+    Cache cache = new CacheBuilder("metrics")
+        .implementation(PerpetualCache.class)
+        .addDecorator(ConcurrentLruCache.class)
+        .size(5)
+        .metrics(metrics)
+        .build();
+    for (int i = 0; i < 8; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(8, metrics.getStats().getPutCount());
+    assertEquals(3, metrics.getStats().getEvictionCount());
+
+    DefaultCacheMetrics lruMetrics = new DefaultCacheMetrics("lru");
+    Cache lru = new CacheBuilder("lru").size(5).metrics(lruMetrics).build();
+    for (int i = 0; i < 8; i++) {
+      lru.putObject(i, i);
+    }
+    assertEquals(3, lruMetrics.getStats().getEvictionCount());
+  }
+
+  @Test
+  public void shouldBeEqualToDecoratedCaches() {
+    ConcurrentCache cache = new ConcurrentLruCache("test_cache");
+    assertTrue(cache.equals(new LoggingCache(cache)));
+    assertEquals(cache.hashCode(), new LoggingCache(cache).hashCode());
+  }
+
+  private static List<Row> rows(int count) {
+    List<Row> rows = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      rows.add(new Row(i, "row" + (100000 + i)));
+    }
+    return rows;
+  }
+
+  private static class Row {
+    private final int id;
+    private final String name;
+
+    Row(int id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+  }
+
+  private static class WeighingCache extends ConcurrentLruCache {
+    WeighingCache() {
+      super("weighing");
+    }
+
+    long weigh(Object value) {
+      return weigh("key", value);
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.ibatis.cache.decorators.ExpiringCache;
+import org.apache.ibatis.cache.impl.DefaultCacheMetrics;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class ExpiringCacheTest {
+
+  @AfterEach
+  public void clearRefreshRequest() {
+    ExpiringCache.pollRefreshRequest();
+  }
+
+  @Test
+  public void shouldExpireEachEntryAfterItsOwnTimeToLive() throws Exception {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(300);
+    cache.putObject(0, 0);
+    Thread.sleep(200);
+    cache.putObject(1, 1);
+    Thread.sleep(200);
+    assertNull(cache.getObject(0));
+    assertEquals(1, cache.getObject(1));
+    Thread.sleep(200);
+    assertNull(cache.getObject(1));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldRequestRefreshOnceWithinRefreshWindow() throws Exception {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(1000);
+    cache.setRefreshAhead(800);
+    cache.putObject(0, 0);
+    assertEquals(0, cache.getObject(0));
+    assertNull(ExpiringCache.pollRefreshRequest());
+    Thread.sleep(300);
+    assertEquals(0, cache.getObject(0));
+    assertEquals(0, ExpiringCache.pollRefreshRequest());
+    assertNull(ExpiringCache.pollRefreshRequest());
+    assertEquals(0, cache.getObject(0));
+    assertNull(ExpiringCache.pollRefreshRequest());
+    // 刷新后重新计算存活时间，并且可以再次请求刷新
+    cache.putObject(0, 1);
+    assertEquals(1, cache.getObject(0));
+    assertNull(ExpiringCache.pollRefreshRequest());
+  }
+
+  @Test
+  public void shouldPurgeEntriesThatAreNoLongerRead() throws Exception {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(200);
+    DefaultCacheMetrics metrics = new DefaultCacheMetrics("DefaultCache");
+    cache.setCacheMetrics(metrics);
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, i);
+    }
+    Thread.sleep(300);
+    cache.putObject(10, 10);
+    assertEquals(1, cache.getSize());
+    assertEquals(10, metrics.getStats().getEvictionCount());
+  }
+
+  @Test
+  public void shouldRemoveAndClearOnDemand() {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.putObject(0, 0);
+    cache.putObject(1, 1);
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+    cache.clear();
+    assertNull(cache.getObject(1));
+  }
+
+  @Test
+  public void shouldBeAddedByBuilderWhenTimeToLiveIsSet() throws Exception {
+    Cache cache = new CacheBuilder("test").timeToLive(200L).build();
+    cache.putObject(0, 0);
+    assertEquals(0, cache.getObject(0));
+    Thread.sleep(300);
+    assertNull(cache.getObject(0));
+  }
+
+}
@@ -0,0 +1,171 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.impl.SerializationCacheCodec;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+public class OffHeapCacheTest {
+
+  @Test
+  public void shouldReturnCopiesOfCachedObjects() {
+    OffHeapCache cache = new OffHeapCache("default");
+    List<String> value = new ArrayList<>();
+    value.add("a");
+    cache.putObject("key", value);
+    value.add("b");
+    @SuppressWarnings("unchecked")
+    List<String> copy = (List<String>) cache.getObject("key");
+    assertEquals(1, copy.size());
+    assertNotSame(copy, cache.getObject("key"));
+    assertNull(cache.getObject("missing"));
+  }
+
+  @Test
+  public void shouldStoreValuesSpanningSeveralBlocks() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(64);
+    cache.setSlabSize(256);
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      builder.append(i % 10);
+    }
+    cache.putObject(1, builder.toString());
+    cache.putObject(2, "short");
+    assertEquals(builder.toString(), cache.getObject(1));
+    assertEquals("short", cache.getObject(2));
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntriesBeyondMaxBytes() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(32);
+    cache.setMaxBytes(32 * 5);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(0, cache.getObject(0));
+    cache.putObject(5, 5);
+    assertNull(cache.getObject(1));
+    assertEquals(0, cache.getObject(0));
+    assertEquals(5, cache.getSize());
+    assertEquals(32 * 5, cache.getAllocatedBytes());
+  }
+
+  @Test
+  public void shouldNotCacheValuesLargerThanCapacity() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(32);
+    cache.setMaxBytes(64);
+    cache.putObject("key", "small");
+    cache.putObject("key", new String(new char[100]));
+    assertNull(cache.getObject("key"));
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  public void shouldRemoveAndClearItems() {
+    OffHeapCache cache = new OffHeapCache("default");
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+    assertEquals(4, cache.getSize());
+    cache.clear();
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getUsedBytes());
+    cache.putObject(1, 1);
+    assertEquals(1, cache.getObject(1));
+  }
+
+  @Test
+  public void shouldStayConsistentUnderConcurrentAccess() throws Exception {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setBlockSize(16);
+    cache.setMaxBytes(16 * 200);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        final int thread = t;
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 5000; i++) {
+            int key = (i * 31 + thread) % 500;
+            cache.putObject(key, "value-" + key + "-" + key);
+            Object value = cache.getObject(key);
+            if (value != null && !value.equals("value-" + key + "-" + key)) {
+              throw new AssertionError("corrupted value " + value + " for " + key);
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertTrue(cache.getUsedBytes() <= 16 * 200);
+  }
+
+  @Test
+  public void shouldBeSelectedByTypeWithoutCopyingDecorators() {
+    Configuration configuration = new Configuration();
+    Properties props = new Properties();
+    props.setProperty("maxBytes", "1048576");
+    props.setProperty("codec", SerializationCacheCodec.class.getName());
+    Cache cache = new CacheBuilder("offheap")
+        .implementation(configuration.getTypeAliasRegistry().resolveAlias("OFF_HEAP"))
+        .addDecorator(configuration.getTypeAliasRegistry().resolveAlias("LRU"))
+        .readWrite(true)
+        .properties(props)
+        .build();
+    assertEquals(LoggingCache.class, cache.getClass());
+    cache.putObject("a", "b");
+    assertEquals("b", cache.getObject("a"));
+
+    Cache byEviction = new CacheBuilder("offheap")
+        .implementation(PerpetualCache.class)
+        .addDecorator(configuration.getTypeAliasRegistry().resolveAlias("OFF_HEAP"))
+        .build();
+    assertEquals(LoggingCache.class, byEviction.getClass());
+  }
+
+  @Test
+  public void shouldRejectUnknownCodec() {
+    OffHeapCache cache = new OffHeapCache("default");
+    assertThrows(CacheException.class, () -> cache.setCodec("org.example.Missing"));
+  }
+
+}
@@ -0,0 +1,190 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.impl.CompactCopyStrategy;
+import org.apache.ibatis.cache.impl.DeepCopyStrategy;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.impl.TieredCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+public class TieredCacheTest {
+
+  @Test
+  public void shouldPromoteAfterRepeatedHitsAndShareTheL1Instance() {
+    TieredCache cache = new TieredCache("default");
+    List<String> value = new ArrayList<>();
+    value.add("a");
+    cache.putObject("key", value);
+    Object first = cache.getObject("key");
+    assertEquals(0, cache.getL1Count());
+    Object second = cache.getObject("key");
+    assertNotSame(first, second);
+    assertEquals(1, cache.getL1Count());
+    assertEquals(1, cache.getPromotionCount());
+    Object third = cache.getObject("key");
+    assertSame(third, cache.getObject("key"));
+    assertEquals(value, third);
+    assertNull(cache.getObject("missing"));
+  }
+
+  @Test
+  public void shouldInvalidateL1OnPutAndRemove() {
+    TieredCache cache = new TieredCache("default");
+    cache.setPromoteAfter(1);
+    cache.putObject("key", "a");
+    cache.getObject("key");
+    assertEquals(1, cache.getL1Count());
+    cache.putObject("key", "b");
+    assertEquals(0, cache.getL1Count());
+    assertEquals("b", cache.getObject("key"));
+    assertEquals("b", cache.getObject("key"));
+    cache.removeObject("key");
+    assertNull(cache.getObject("key"));
+    cache.putObject("other", "c");
+    cache.getObject("other");
+    cache.clear();
+    assertEquals(0, cache.getL1Count());
+    assertEquals(0, cache.getSize());
+    assertNull(cache.getObject("other"));
+  }
+
+  @Test
+  public void shouldDemoteLeastRecentlyUsedEntriesFromL1() {
+    TieredCache cache = new TieredCache("default");
+    cache.setPromoteAfter(1);
+    cache.setL1Size(2);
+    for (int i = 0; i < 3; i++) {
+      cache.putObject(i, "v" + i);
+    }
+    cache.getObject(0);
+    cache.getObject(1);
+    cache.getObject(0);
+    cache.getObject(2);
+    assertEquals(2, cache.getL1Count());
+    assertEquals(1, cache.getDemotionCount());
+    // 降级后仍然可以从 L2 读取
+    assertEquals(3, cache.getSize());
+    assertEquals("v1", cache.getObject(1));
+  }
+
+  @Test
+  public void shouldDemoteIdleEntriesFromL1() throws Exception {
+    TieredCache cache = new TieredCache("default");
+    cache.setPromoteAfter(1);
+    cache.setDemoteAfterIdle(50);
+    cache.putObject(0, "v0");
+    cache.putObject(1, "v1");
+    cache.getObject(0);
+    Thread.sleep(100);
+    cache.getObject(1);
+    assertEquals(1, cache.getL1Count());
+    assertEquals(1, cache.getDemotionCount());
+    assertEquals("v0", cache.getObject(0));
+  }
+
+  @Test
+  public void shouldRejectInvalidTierSettings() {
+    TieredCache cache = new TieredCache("default");
+    assertThrows(CacheException.class, () -> cache.setL1Size(0));
+    assertThrows(CacheException.class, () -> cache.setPromoteAfter(0));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldCopyL1HitsOfReadWriteCaches() {
+    Cache readWrite = new CacheBuilder("readWrite").implementation(TieredCache.class).readWrite(true).build();
+    Properties props = new Properties();
+    props.setProperty("promoteAfter", "1");
+    props.setProperty("copyStrategy", DeepCopyStrategy.class.getName());
+    Cache deepCopy = new CacheBuilder("deepCopy").implementation(TieredCache.class).readWrite(true).properties(props).build();
+    for (Cache cache : new Cache[] {readWrite, deepCopy}) {
+      List<String> value = new ArrayList<>();
+      value.add("a");
+      cache.putObject("key", value);
+      for (int i = 0; i < 3; i++) {
+        ((List<String>) cache.getObject("key")).add("b");
+      }
+      List<String> hit = (List<String>) cache.getObject("key");
+      assertNotSame(hit, cache.getObject("key"));
+      assertEquals(value, hit);
+    }
+    TieredCache tiered = (TieredCache) SystemMetaObject.forObject(deepCopy).getValue("delegate");
+    assertEquals(1, tiered.getL1Count());
+    assertEquals(DeepCopyStrategy.class, tiered.getCopyStrategy().getClass());
+
+    Cache readOnly = new CacheBuilder("readOnly").implementation(TieredCache.class).readWrite(false).build();
+    readOnly.putObject("key", new ArrayList<>());
+    readOnly.getObject("key");
+    readOnly.getObject("key");
+    assertSame(readOnly.getObject("key"), readOnly.getObject("key"));
+  }
+
+  @Test
+  public void shouldNotSerializeL1CopiesByDefault() {
+    Cache defaults = new CacheBuilder("defaults").implementation(TieredCache.class).readWrite(true)
+        .copyStrategy(new Configuration().newCacheCopyStrategy()).build();
+    Cache compact = new CacheBuilder("compact").implementation(TieredCache.class).readWrite(true)
+        .copyStrategy(new CompactCopyStrategy()).build();
+    assertEquals(DeepCopyStrategy.class, ((TieredCache) SystemMetaObject.forObject(defaults).getValue("delegate")).getCopyStrategy().getClass());
+    assertEquals(CompactCopyStrategy.class, ((TieredCache) SystemMetaObject.forObject(compact).getValue("delegate")).getCopyStrategy().getClass());
+  }
+
+  @Test
+  public void shouldBeConfiguredFromPropertiesAndRecordTierMetrics() {
+    Configuration configuration = new Configuration();
+    configuration.setCacheMetricsEnabled(true);
+    Properties props = new Properties();
+    props.setProperty("l1Size", "8");
+    props.setProperty("promoteAfter", "1");
+    props.setProperty("maxBytes", "1048576");
+    props.setProperty("direct", "false");
+    Cache cache = new CacheBuilder("tiered")
+        .implementation(PerpetualCache.class)
+        .addDecorator(configuration.getTypeAliasRegistry().resolveAlias("TIERED"))
+        .readWrite(true)
+        .properties(props)
+        .metrics(configuration.newCacheMetrics("tiered"))
+        .tierMetrics(configuration::newCacheMetrics)
+        .build();
+    assertEquals(LoggingCache.class, cache.getClass());
+    TieredCache tiered = (TieredCache) SystemMetaObject.forObject(cache).getValue("delegate");
+    assertEquals(8, tiered.getL1Size());
+    assertFalse(tiered.getL2().isDirect());
+
+    cache.putObject("a", "b");
+    assertEquals("b", cache.getObject("a"));
+    assertEquals("b", cache.getObject("a"));
+    assertNull(cache.getObject("c"));
+    CacheStats l1 = configuration.getCacheStats("tiered.L1");
+    CacheStats l2 = configuration.getCacheStats("tiered.L2");
+    assertEquals(1, l1.getHitCount());
+    assertEquals(2, l1.getMissCount());
+    assertEquals(1, l2.getHitCount());
+    assertEquals(1, l2.getMissCount());
+  }
+
+}
@@ -0,0 +1,51 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class MultiRowInsertTemplateTest {
+
+  @Test
+  public void shouldRepeatValuesRow() {
+    MultiRowInsertTemplate template = MultiRowInsertTemplate.parse("insert into t (a, b) values (?, ?)", 2);
+    assertEquals("insert into t (a, b) values (?, ?)", template.toSql(1));
+    assertEquals("insert into t (a, b) values (?, ?), (?, ?), (?, ?)", template.toSql(3));
+  }
+
+  @Test
+  public void shouldHandleFunctionsQuotesAndCase() {
+    MultiRowInsertTemplate template = MultiRowInsertTemplate.parse(
+        "INSERT INTO t (a, values_count, c)\n  VALUES (lower(?), 'it''s (?)', ?) ", 2);
+    assertEquals("INSERT INTO t (a, values_count, c)\n  VALUES (lower(?), 'it''s (?)', ?), (lower(?), 'it''s (?)', ?)",
+        template.toSql(2));
+  }
+
+  @Test
+  public void shouldNotRewriteUnsupportedStatements() {
+    assertNull(MultiRowInsertTemplate.parse("update t set a = ?", 1));
+    assertNull(MultiRowInsertTemplate.parse("insert into t select ? from dual", 1));
+    assertNull(MultiRowInsertTemplate.parse("insert into t (a) values (?), (?)", 2));
+    assertNull(MultiRowInsertTemplate.parse("insert into t (a) values (?) on duplicate key update a = ?", 2));
+    assertNull(MultiRowInsertTemplate.parse("insert into t (a) values (?) returning id", 1));
+    assertNull(MultiRowInsertTemplate.parse("insert into t (a) values ('?)", 1));
+    assertNull(MultiRowInsertTemplate.parse("insert into t (a, b) values (?, 1)", 2));
+  }
+
+}
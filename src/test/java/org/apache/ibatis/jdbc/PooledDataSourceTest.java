@@ -24,10 +24,15 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.datasource.pooled.PoolEngine;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -75,6 +80,160 @@ public class PooledDataSourceTest extends BaseDataTest {
     }
   }
 
+  @Test
+  public void shouldProperlyMaintainPoolOf3ActiveAnd2IdleConnectionsWithConcurrentBagEngine() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolEngine(PoolEngine.CONCURRENT_BAG);
+      runScript(ds, JPETSTORE_DDL);
+      ds.setDefaultAutoCommit(false);
+      ds.setPoolMaximumActiveConnections(3);
+      ds.setPoolMaximumIdleConnections(2);
+      ds.setPoolMaximumCheckoutTime(10000);
+      ds.setPoolPingConnectionsNotUsedFor(1);
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingQuery("SELECT * FROM PRODUCT");
+      ds.setPoolTimeToWait(10000);
+      List<Connection> connections = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        connections.add(ds.getConnection());
+      }
+      assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+      for (Connection c : connections) {
+        c.close();
+      }
+      assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertEquals(4, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertEquals(0, ds.getPoolState().getHadToWaitCount());
+      assertEquals(0, ds.getPoolState().getClaimedOverdueConnectionCount());
+      assertNotNull(ds.getPoolState().toString());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldHandOffConnectionsToWaitingThreadsWithConcurrentBagEngine() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ds.setPoolEngine(PoolEngine.CONCURRENT_BAG);
+    ds.setPoolMaximumActiveConnections(2);
+    ds.setPoolMaximumIdleConnections(2);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < 50; j++) {
+            try (Connection c = ds.getConnection()) {
+              assertTrue(ds.getPoolState().getActiveConnectionCount() <= 2);
+              assertFalse(c.isClosed());
+            }
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+      assertEquals(400, ds.getPoolState().getRequestCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+      assertTrue(ds.getPoolState().getIdleConnectionCount() <= 2);
+    } finally {
+      executor.shutdownNow();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldReuseConnectionReturnedByTheSameThreadWithConcurrentBagEngine() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolEngine(PoolEngine.CONCURRENT_BAG);
+      Connection c1 = ds.getConnection();
+      Connection c2 = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(c2);
+      c1.close();
+      c2.close();
+      Connection c3 = ds.getConnection();
+      assertSame(real, PooledDataSource.unwrapConnection(c3));
+      assertThrows(SQLException.class, c2::createStatement);
+      c3.close();
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldSelectPoolEngineThroughFactoryProperties() {
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    Properties props = new Properties();
+    props.setProperty("poolEngine", "CONCURRENT_BAG");
+    factory.setProperties(props);
+    assertEquals(PoolEngine.CONCURRENT_BAG, ((PooledDataSource) factory.getDataSource()).getPoolEngine());
+  }
+
+  @Test
+  public void shouldReusePreparedStatementsAcrossSessions() throws Exception {
+    for (PoolEngine engine : PoolEngine.values()) {
+      PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+      try {
+        runScript(ds, JPETSTORE_DDL);
+        runScript(ds, JPETSTORE_DATA);
+        ds.setPoolEngine(engine);
+        ds.setPoolMaximumActiveConnections(1);
+        ds.setPoolStatementCacheSize(2);
+        for (int i = 0; i < 3; i++) {
+          try (Connection c = ds.getConnection();
+               PreparedStatement st = c.prepareStatement("SELECT PRODUCTID FROM PRODUCT WHERE PRODUCTID = ?")) {
+            st.setString(1, "FI-SW-01");
+            try (ResultSet rs = st.executeQuery()) {
+              assertTrue(rs.next());
+              assertEquals("FI-SW-01", rs.getString(1));
+            }
+            assertSame(c, st.getConnection());
+          }
+        }
+        assertEquals(1, ds.getPoolState().getStatementCacheMissCount(), engine.name());
+        assertEquals(2, ds.getPoolState().getStatementCacheHitCount(), engine.name());
+      } finally {
+        ds.forceCloseAll();
+      }
+    }
+  }
+
+  @Test
+  public void shouldCloseStatementsEvictedFromCache() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      runScript(ds, JPETSTORE_DDL);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolStatementCacheSize(1);
+      PreparedStatement first;
+      try (Connection c = ds.getConnection()) {
+        first = PooledDataSourceTest.unwrapStatement(c, "SELECT * FROM PRODUCT");
+        c.prepareStatement("SELECT * FROM ITEM").close();
+        PreparedStatement st = c.prepareStatement("SELECT * FROM PRODUCT");
+        st.close();
+        assertTrue(st.isClosed());
+        assertThrows(SQLException.class, st::executeQuery);
+      }
+      assertTrue(first.isClosed());
+      assertEquals(2, ds.getPoolState().getStatementCacheEvictionCount());
+      assertEquals(3, ds.getPoolState().getStatementCacheMissCount());
+    } finally {
+      ds.forceCloseAll();
+    }
+  }
+
+  private static PreparedStatement unwrapStatement(Connection c, String sql) throws SQLException {
+    PreparedStatement st = c.prepareStatement(sql);
+    PreparedStatement real = st.unwrap(PreparedStatement.class);
+    st.close();
+    return real;
+  }
+
   @Test
   public void shouldNotFailCallingToStringOverAnInvalidConnection() throws Exception {
     PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
@@ -0,0 +1,98 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class SqlTableParserTest {
+
+  @Test
+  public void shouldParseReadTables() {
+    assertEquals(tables("users"), SqlTableParser.parseReadTables("select * from users where id = ?"));
+    assertEquals(tables("users", "orders"),
+        SqlTableParser.parseReadTables("SELECT u.name, o.total FROM app.Users u, \"ORDERS\" AS o WHERE u.id = o.user_id"));
+    assertEquals(tables("users", "orders", "items"),
+        SqlTableParser.parseReadTables("select * from users u left outer join orders o on u.id = o.user_id"
+            + " inner join [dbo].[items] i on i.order_id = o.id"));
+  }
+
+  @Test
+  public void shouldParseSubqueriesAndIgnoreLiteralsAndComments() {
+    assertEquals(tables("orders", "users"),
+        SqlTableParser.parseReadTables("select * from (select user_id from orders) t join users u on u.id = t.user_id"
+            + " where u.name <> 'from accounts' -- from payments\n /* join invoices */"));
+    assertEquals(tables("users", "orders"),
+        SqlTableParser.parseReadTables("select * from users where id in (select user_id from orders where total > 1.5)"));
+  }
+
+  @Test
+  public void shouldReturnNullWhenReadTablesAreUnknown() {
+    assertNull(SqlTableParser.parseReadTables("select 1"));
+    assertNull(SqlTableParser.parseReadTables("{call find_users(?)}"));
+  }
+
+  @Test
+  public void shouldParseWrittenTables() {
+    assertEquals(tables("users"), SqlTableParser.parseWrittenTables("insert into users (id, name) values (?, ?)"));
+    assertEquals(tables("users"), SqlTableParser.parseWrittenTables("update `app`.`users` set name = ? where id = ?"));
+    assertEquals(tables("users"), SqlTableParser.parseWrittenTables("delete from users where id = ?"));
+    assertEquals(tables("users"), SqlTableParser.parseWrittenTables("update only users set name = 'from orders'"));
+    assertEquals(tables("users"), SqlTableParser.parseWrittenTables("truncate table users"));
+    assertEquals(tables("users", "orders"),
+        SqlTableParser.parseWrittenTables("delete from users where id = ?; insert into orders select * from archive"));
+    assertEquals(tables("users", "orders"),
+        SqlTableParser.parseWrittenTables("insert all into users values (1) into orders values (2) select * from dual"));
+  }
+
+  @Test
+  public void shouldReturnNullWhenWrittenTablesAreUnknown() {
+    assertNull(SqlTableParser.parseWrittenTables("{call update_users(?)}"));
+    assertNull(SqlTableParser.parseWrittenTables("drop table users"));
+    assertNull(SqlTableParser.parseWrittenTables("update users set name = ?; call audit()"));
+  }
+
+  @Test
+  public void shouldReturnNullForMultiTableWrites() {
+    assertNull(SqlTableParser.parseWrittenTables("update t1, t2 set t1.x = 1, t2.y = 1 where t1.id = t2.id"));
+    assertNull(SqlTableParser.parseWrittenTables("update t1 a join t2 b on a.id = b.id set b.y = 1"));
+    assertNull(SqlTableParser.parseWrittenTables("update t1 left outer join t2 on t1.id = t2.id set t2.y = 1"));
+    assertNull(SqlTableParser.parseWrittenTables("delete t1, t2 from t1 join t2 on t1.id = t2.id"));
+    assertNull(SqlTableParser.parseWrittenTables("delete t1 from t1 join t2 on t1.id = t2.id"));
+    assertNull(SqlTableParser.parseWrittenTables("delete from t1, t2 using t1 inner join t2 on t1.id = t2.id"));
+    assertNull(SqlTableParser.parseWrittenTables("truncate table t1, t2"));
+    assertEquals(tables("t1"), SqlTableParser.parseWrittenTables("update t1 as a set x = 1 from t2 where a.id = t2.id"));
+    assertEquals(tables("t1"), SqlTableParser.parseWrittenTables("delete from t1 a using t2 where a.id = t2.id"));
+    assertEquals(tables("t1"), SqlTableParser.parseWrittenTables("delete t1 where id = ?"));
+  }
+
+  @Test
+  public void shouldNormalizeDeclaredTables() {
+    assertEquals("users", SqlTableParser.normalize(" APP.\"Users\" "));
+    assertEquals("users", SqlTableParser.normalize("users"));
+  }
+
+  private static Set<String> tables(String... tables) {
+    return new HashSet<>(Arrays.asList(tables));
+  }
+
+}
@@ -0,0 +1,124 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+import org.apache.ibatis.domain.misc.RichType;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LambdaReflectorFactoryTest {
+
+  @Test
+  public void shouldGenerateAccessorsForPublicBean() throws Exception {
+    Reflector reflector = new LambdaReflectorFactory().findForClass(Bean.class);
+    Invoker setter = reflector.getSetInvoker("name");
+    Invoker getter = reflector.getGetInvoker("name");
+    Assertions.assertNotSame(MethodInvoker.class, setter.getClass());
+    Assertions.assertNotSame(MethodInvoker.class, getter.getClass());
+
+    Bean bean = new Bean();
+    setter.invoke(bean, new Object[] {"mybatis"});
+    reflector.getSetInvoker("age").invoke(bean, new Object[] {3});
+    Assertions.assertEquals("mybatis", getter.invoke(bean, null));
+    Assertions.assertEquals(3, reflector.getGetInvoker("age").invoke(bean, null));
+    Assertions.assertEquals(String.class, setter.getType());
+    Assertions.assertEquals(int.class, reflector.getSetInvoker("age").getType());
+  }
+
+  @Test
+  public void shouldBehaveLikeReflectionOnUnexpectedArguments() throws Exception {
+    Reflector reflector = new LambdaReflectorFactory().findForClass(Bean.class);
+    Bean bean = new Bean();
+    Invoker ageSetter = reflector.getSetInvoker("age");
+    // widening conversion
+    ageSetter.invoke(bean, new Object[] {(short) 5});
+    Assertions.assertEquals(5, bean.getAge());
+    Assertions.assertThrows(IllegalArgumentException.class, () -> ageSetter.invoke(bean, new Object[] {null}));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> ageSetter.invoke(bean, new Object[] {"5"}));
+    InvocationTargetException e = Assertions.assertThrows(InvocationTargetException.class,
+        () -> reflector.getSetInvoker("failing").invoke(bean, new Object[] {"x"}));
+    Assertions.assertEquals("failing", e.getTargetException().getMessage());
+  }
+
+  @Test
+  public void shouldFallBackToReflectionForNonPublicMembers() throws Exception {
+    Reflector reflector = new LambdaReflectorFactory().findForClass(RichType.class);
+    RichType richType = new RichType();
+    // private field without accessors
+    reflector.getSetInvoker("richField").invoke(richType, new Object[] {"foo"});
+    Assertions.assertEquals("foo", reflector.getGetInvoker("richField").invoke(richType, null));
+
+    Reflector hidden = new LambdaReflectorFactory().findForClass(HiddenBean.class);
+    Assertions.assertSame(MethodInvoker.class, hidden.getSetInvoker("value").getClass());
+  }
+
+  @Test
+  public void shouldResolveGenericGetterType() {
+    MetaClass metaClass = MetaClass.forClass(Bean.class, new LambdaReflectorFactory());
+    Assertions.assertEquals(String.class, metaClass.getGetterType("names[0]"));
+  }
+
+  public static class Bean {
+    private String name;
+    private int age;
+    private List<String> names;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public int getAge() {
+      return age;
+    }
+
+    public void setAge(int age) {
+      this.age = age;
+    }
+
+    public List<String> getNames() {
+      return names;
+    }
+
+    public void setNames(List<String> names) {
+      this.names = names;
+    }
+
+    public void setFailing(String failing) {
+      throw new IllegalStateException("failing");
+    }
+  }
+
+  static class HiddenBean {
+    private String value;
+
+    public String getValue() {
+      return value;
+    }
+
+    public void setValue(String value) {
+      this.value = value;
+    }
+  }
+}
@@ -28,6 +28,7 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.session.Configuration;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -48,6 +49,16 @@ public class DefaultObjectFactoryTest {
     Assertions.assertEquals("foo", testClass.myString, "myString didn't match expected");
   }
 
+  @Test
+  public void createClassWithAmbiguousGetters() {
+    DefaultObjectFactory defaultObjectFactory = new DefaultObjectFactory();
+    Assertions.assertEquals(AmbiguousGetters.class, defaultObjectFactory.create(AmbiguousGetters.class).getClass());
+    Assertions.assertNotSame(defaultObjectFactory.create(AmbiguousGetters.class), defaultObjectFactory.create(AmbiguousGetters.class));
+    Assertions.assertThrows(ReflectionException.class, () -> defaultObjectFactory.create(TestClass.class));
+    // Configuration 的对象工厂也不需要解析 getter
+    Assertions.assertEquals(AmbiguousGetters.class, new Configuration().getObjectFactory().create(AmbiguousGetters.class).getClass());
+  }
+
   @Test
   public void createClassThrowsProperErrorMsg() {
     DefaultObjectFactory defaultObjectFactory = new DefaultObjectFactory();
@@ -94,4 +105,17 @@ public class DefaultObjectFactoryTest {
     Set set = defaultObjectFactory.create(Set.class);
     Assertions.assertTrue(set instanceof HashSet, " set should be HashSet");
   }
+
+  public static class AmbiguousGetters {
+    private Boolean active;
+
+    public Boolean getActive() {
+      return active;
+    }
+
+    public Boolean isActive() {
+      return active;
+    }
+  }
+
 }
@@ -0,0 +1,225 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CompiledSqlSourceTest {
+
+  private static final String WHERE = "<script>select * from blog"
+      + " <where>"
+      + "  <if test=\"id != null\">and id = #{id}</if>"
+      + "  <if test=\"name != null and name != ''\">and name like #{name}</if>"
+      + "  <if test=\"author != null and author.name == 'jim'\">and author_id = #{author.id}</if>"
+      + "  <if test=\"tags != null and tags.size() > 0\">and tag in"
+      + "   <foreach collection=\"tags\" item=\"tag\" index=\"i\" open=\"(\" close=\")\" separator=\",\">#{tag}</foreach>"
+      + "  </if>"
+      + "  <if test=\"!deleted or count >= 10\">and deleted = #{deleted, jdbcType=BOOLEAN}</if>"
+      + " </where></script>";
+
+  @Test
+  public void shouldRenderSameSqlAsDynamicSqlSource() {
+    Map<String, Object> author = new HashMap<>();
+    author.put("name", "jim");
+    author.put("id", 101);
+    assertSameBoundSql(WHERE, param("id", 1, "name", "%a%", "author", author, "tags", new ArrayList<>(Arrays.asList("x", "y", "z")), "deleted", false, "count", 1));
+    assertSameBoundSql(WHERE, param("id", null, "name", "", "author", null, "tags", new ArrayList<>(), "deleted", true, "count", 10L));
+    assertSameBoundSql(WHERE, param("id", null, "name", null, "author", null, "tags", null, "deleted", true, "count", 9));
+  }
+
+  @Test
+  public void shouldRenderNestedForEachAndBindings() {
+    String script = "<script>"
+        + "<bind name=\"pattern\" value=\"'%' + name + '%'\" />"
+        + "insert into t values"
+        + "<foreach collection=\"rows\" item=\"row\" separator=\",\">"
+        + " (<foreach collection=\"row\" item=\"value\" index=\"key\" separator=\",\">"
+        + "  <if test=\"value != null\">#{value}, #{key}</if></foreach>, #{pattern}, ${table})"
+        + "</foreach></script>";
+    Map<String, Object> row1 = new LinkedHashMap<>();
+    row1.put("a", 1);
+    row1.put("b", null);
+    row1.put("c", "x");
+    Map<String, Object> row2 = new LinkedHashMap<>();
+    row2.put("b", 2);
+    assertSameBoundSql(script, param("name", "jim", "table", "blog", "rows", new ArrayList<>(Arrays.asList(row1, row2))));
+  }
+
+  @Test
+  public void shouldRenderSetChooseAndBeanProperties() {
+    String script = "<script>update author"
+        + "<set>"
+        + " <if test=\"username != null\">username = #{username},</if>"
+        + " <if test=\"bio != null and bio.length() > 0\">bio = #{bio},</if>"
+        + " <choose>"
+        + "  <when test=\"favouriteSection == null\">favourite_section = null,</when>"
+        + "  <when test=\"favouriteSection.name() == 'NEWS'\">favourite_section = 'NEWS',</when>"
+        + "  <otherwise>favourite_section = #{favouriteSection},</otherwise>"
+        + " </choose>"
+        + "</set> where id = #{id}</script>";
+    Author author = new Author();
+    author.setId(1);
+    author.setUsername("jim");
+    author.setBio("");
+    assertSameBoundSql(script, author);
+    author.setBio("bio");
+    author.setFavouriteSection(Section.NEWS);
+    assertSameBoundSql(script, author);
+    author.setFavouriteSection(Section.VIDEOS);
+    assertSameBoundSql(script, author);
+  }
+
+  @Test
+  public void shouldFallBackToOgnlForUnsupportedExpressions() {
+    String script = "<script>select * from t where a = #{a}"
+        + "<if test=\"@java.lang.Math@max(a, 5) == 5\"> and b = 1</if>"
+        + "<if test=\"list[0] == 'xy'\"> and c = 1</if></script>";
+    assertSameBoundSql(script, param("a", 3, "list", new ArrayList<>(Arrays.asList("xy"))));
+    assertSameBoundSql(script, param("a", 7, "list", new ArrayList<>(Arrays.asList("yz"))));
+  }
+
+  @Test
+  public void shouldFailLikeOgnlWhenNavigatingNull() {
+    String script = "<script>select * from t<if test=\"author.name != null\"> where name = #{author.name}</if></script>";
+    Configuration configuration = new Configuration();
+    configuration.setCompileDynamicSql(true);
+    SqlSource sqlSource = new XMLLanguageDriver().createSqlSource(configuration, script, Object.class);
+    BuilderException e = Assertions.assertThrows(BuilderException.class, () -> sqlSource.getBoundSql(param("author", null)));
+    assertTrue(e.getMessage().contains("author.name != null"));
+  }
+
+  @Test
+  public void shouldKeepInterpretingWhenTextCannotBeCompiled() {
+    Configuration configuration = new Configuration();
+    configuration.setCompileDynamicSql(true);
+    XMLLanguageDriver driver = new XMLLanguageDriver();
+    assertTrue(driver.createSqlSource(configuration, "<script>select #{a}<if test=\"a\">, 1</if></script>", Object.class) instanceof CompiledSqlSource);
+    assertTrue(driver.createSqlSource(configuration, "<script>select '\\#{a}'<if test=\"a\">, 1</if></script>", Object.class) instanceof DynamicSqlSource);
+    configuration.setCompileDynamicSql(false);
+    assertTrue(driver.createSqlSource(configuration, "<script>select #{a}<if test=\"a\">, 1</if></script>", Object.class) instanceof DynamicSqlSource);
+  }
+
+  @Test
+  public void shouldCompileCommonExpressions() {
+    Configuration configuration = new Configuration();
+    for (String expression : Arrays.asList("id", "id != null", "name != null and name != ''", "!flag or a.b.c == 'x'",
+        "list.size() > 0", "count >= 10", "s.trim().length() == 0")) {
+      assertTrue(ExpressionCompiler.compile(expression, configuration.getReflectorFactory()).isCompiled(), expression);
+    }
+    for (String expression : Arrays.asList("list[0]", "a + 1 > 2", "map.size > 0", "@java.lang.Math@max(1, 2)")) {
+      assertFalse(ExpressionCompiler.compile(expression, configuration.getReflectorFactory()).isCompiled(), expression);
+    }
+  }
+
+  private static void assertSameBoundSql(String script, Object parameterObject) {
+    Configuration interpreted = new Configuration();
+    Configuration compiled = new Configuration();
+    compiled.setCompileDynamicSql(true);
+    Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
+    SqlSource expectedSource = new XMLLanguageDriver().createSqlSource(interpreted, script, parameterType);
+    SqlSource actualSource = new XMLLanguageDriver().createSqlSource(compiled, script, parameterType);
+    assertTrue(expectedSource instanceof DynamicSqlSource);
+    assertTrue(actualSource instanceof CompiledSqlSource);
+
+    BoundSql expected = expectedSource.getBoundSql(parameterObject);
+    BoundSql actual = actualSource.getBoundSql(parameterObject);
+    assertEquals(expected.getSql(), actual.getSql());
+    List<ParameterMapping> expectedMappings = expected.getParameterMappings();
+    List<ParameterMapping> actualMappings = actual.getParameterMappings();
+    assertEquals(expectedMappings.size(), actualMappings.size());
+    for (int i = 0; i < expectedMappings.size(); i++) {
+      ParameterMapping expectedMapping = expectedMappings.get(i);
+      ParameterMapping actualMapping = actualMappings.get(i);
+      String property = expectedMapping.getProperty();
+      assertEquals(property, actualMapping.getProperty());
+      assertEquals(expectedMapping.getJavaType(), actualMapping.getJavaType());
+      assertEquals(expectedMapping.getJdbcType(), actualMapping.getJdbcType());
+      assertEquals(expected.hasAdditionalParameter(property), actual.hasAdditionalParameter(property));
+      if (expected.hasAdditionalParameter(property)) {
+        assertEquals(expected.getAdditionalParameter(property), actual.getAdditionalParameter(property));
+      }
+    }
+  }
+
+  private static Map<String, Object> param(Object... keyValues) {
+    Map<String, Object> map = new HashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      map.put((String) keyValues[i], keyValues[i + 1]);
+    }
+    return map;
+  }
+
+  public enum Section {
+    NEWS, VIDEOS
+  }
+
+  public static class Author {
+    private Integer id;
+    private String username;
+    private String bio;
+    private Section favouriteSection;
+
+    public Integer getId() {
+      return id;
+    }
+
+    public void setId(Integer id) {
+      this.id = id;
+    }
+
+    public String getUsername() {
+      return username;
+    }
+
+    public void setUsername(String username) {
+      this.username = username;
+    }
+
+    public String getBio() {
+      return bio;
+    }
+
+    public void setBio(String bio) {
+      this.bio = bio;
+    }
+
+    public Section getFavouriteSection() {
+      return favouriteSection;
+    }
+
+    public void setFavouriteSection(Section favouriteSection) {
+      this.favouriteSection = favouriteSection;
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+public class DynamicSqlSourceCacheTest {
+
+  private static final String SCRIPT = "<script>select * from blog"
+      + " <where>"
+      + "  <if test=\"id != null\">and id = #{id}</if>"
+      + "  <if test=\"ids != null\">and id in"
+      + "   <foreach collection=\"ids\" item=\"item\" open=\"(\" close=\")\" separator=\",\">#{item}</foreach>"
+      + "  </if>"
+      + " </where></script>";
+
+  @Test
+  public void shouldReuseParsedSqlForSameShape() {
+    DynamicSqlSource sqlSource = createSqlSource(new Configuration());
+    BoundSql first = sqlSource.getBoundSql(param("id", 1, "ids", null));
+    BoundSql second = sqlSource.getBoundSql(param("id", 2, "ids", null));
+    assertSame(first.getSql(), second.getSql());
+    assertSame(first.getParameterMappings(), second.getParameterMappings());
+    assertEquals(1, sqlSource.getParsedSqlCount());
+
+    BoundSql other = sqlSource.getBoundSql(param("id", null, "ids", new ArrayList<>(Arrays.asList(1, 2))));
+    assertEquals("select * from blog WHERE id in (?,?)", other.getSql().replaceAll("\\s+", " ").trim());
+    assertEquals(2, sqlSource.getParsedSqlCount());
+  }
+
+  @Test
+  public void shouldReparseWhenAdditionalParameterTypeChanges() {
+    DynamicSqlSource sqlSource = createSqlSource(new Configuration());
+    BoundSql integers = sqlSource.getBoundSql(param("id", null, "ids", new ArrayList<>(Arrays.asList(1, 2))));
+    BoundSql longs = sqlSource.getBoundSql(param("id", null, "ids", new ArrayList<>(Arrays.asList(1L, 2L))));
+    assertEquals(integers.getSql(), longs.getSql());
+    assertEquals(Integer.class, integers.getParameterMappings().get(0).getJavaType());
+    assertEquals(Long.class, longs.getParameterMappings().get(0).getJavaType());
+    assertEquals(2L, longs.getAdditionalParameter(longs.getParameterMappings().get(1).getProperty()));
+  }
+
+  @Test
+  public void shouldBoundCachedShapes() {
+    Configuration configuration = new Configuration();
+    configuration.setDynamicSqlCacheSize(2);
+    DynamicSqlSource sqlSource = createSqlSource(configuration);
+    for (int i = 1; i <= 5; i++) {
+      Integer[] ids = new Integer[i];
+      Arrays.fill(ids, i);
+      sqlSource.getBoundSql(param("id", null, "ids", new ArrayList<>(Arrays.asList(ids))));
+    }
+    assertEquals(2, sqlSource.getParsedSqlCount());
+
+    configuration.setDynamicSqlCacheSize(0);
+    DynamicSqlSource uncached = createSqlSource(configuration);
+    BoundSql first = uncached.getBoundSql(param("id", 1, "ids", null));
+    BoundSql second = uncached.getBoundSql(param("id", 1, "ids", null));
+    assertEquals(first.getSql(), second.getSql());
+    assertNotSame(first.getSql(), second.getSql());
+    assertEquals(0, uncached.getParsedSqlCount());
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedShape() {
+    Configuration configuration = new Configuration();
+    configuration.setDynamicSqlCacheSize(2);
+    DynamicSqlSource sqlSource = createSqlSource(configuration);
+    BoundSql hot = sqlSource.getBoundSql(param("id", 1, "ids", null));
+    sqlSource.getBoundSql(param("id", null, "ids", new ArrayList<>(Arrays.asList(1))));
+    assertSame(hot.getSql(), sqlSource.getBoundSql(param("id", 2, "ids", null)).getSql());
+    sqlSource.getBoundSql(param("id", null, "ids", new ArrayList<>(Arrays.asList(1, 2))));
+    assertEquals(2, sqlSource.getParsedSqlCount());
+    assertSame(hot.getSql(), sqlSource.getBoundSql(param("id", 3, "ids", null)).getSql());
+  }
+
+  private static DynamicSqlSource createSqlSource(Configuration configuration) {
+    return (DynamicSqlSource) new XMLLanguageDriver().createSqlSource(configuration, SCRIPT, Map.class);
+  }
+
+  private static Map<String, Object> param(Object... keyValues) {
+    Map<String, Object> map = new HashMap<>();
+    for (int i = 0; i < keyValues.length; i += 2) {
+      map.put((String) keyValues[i], keyValues[i + 1]);
+    }
+    return map;
+  }
+
+}
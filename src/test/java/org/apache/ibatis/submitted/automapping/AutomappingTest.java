@@ -19,7 +19,9 @@ import java.io.Reader;
 import java.util.List;
 
 import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.resultset.ResultMappingPlan;
 import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
@@ -170,4 +172,48 @@ public class AutomappingTest {
       Assertions.assertTrue(article.version > 0, "should update version in mapping");
     }
   }
+
+  @Test
+  public void shouldReuseResultMappingPlanAcrossExecutions() {
+    sqlSessionFactory.getConfiguration().setAutoMappingBehavior(AutoMappingBehavior.PARTIAL);
+    MappedStatement ms = sqlSessionFactory.getConfiguration().getMappedStatement("org.apache.ibatis.submitted.automapping.Mapper.getUser");
+    ResultMappingPlan plan;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user = mapper.getUser(1);
+      Assertions.assertEquals("User1", user.getName());
+      plan = findPlan(ms);
+      Assertions.assertNotNull(plan);
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user = mapper.getUser(2);
+      Assertions.assertEquals(Integer.valueOf(2), user.getId());
+      Assertions.assertEquals("User2", user.getName());
+      Assertions.assertSame(plan, findPlan(ms));
+    }
+  }
+
+  @Test
+  public void shouldMapColumnsByIndexWhenEnabled() {
+    sqlSessionFactory.getConfiguration().setAutoMappingBehavior(AutoMappingBehavior.PARTIAL);
+    sqlSessionFactory.getConfiguration().setMapColumnsByIndex(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user = mapper.getUser(2);
+      Assertions.assertEquals(Integer.valueOf(2), user.getId());
+      Assertions.assertEquals("User2", user.getName());
+    } finally {
+      sqlSessionFactory.getConfiguration().setMapColumnsByIndex(false);
+    }
+  }
+
+  private ResultMappingPlan findPlan(MappedStatement ms) {
+    for (ResultMappingPlan plan : ms.getResultMappingPlans()) {
+      if (plan.isAutoMapping()) {
+        return plan;
+      }
+    }
+    return null;
+  }
 }
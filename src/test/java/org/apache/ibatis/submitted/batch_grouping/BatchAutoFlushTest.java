@@ -0,0 +1,130 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_grouping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BatchAutoFlushTest {
+
+  private static final String INSERT_ORDER = "org.apache.ibatis.submitted.batch_grouping.Mapper.insertOrder";
+  private static final String INSERT_LINE = "org.apache.ibatis.submitted.batch_grouping.Mapper.insertLine";
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_grouping/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/batch_grouping/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldStreamStatementChunksToHandler() {
+    sqlSessionFactory.getConfiguration().setBatchStatementAutoFlushRows(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      List<BatchResult> chunks = new ArrayList<>();
+      sqlSession.setBatchResultHandler(chunks::add);
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 5; i++) {
+        mapper.insertOrder(i, "order");
+      }
+      assertEquals(2, chunks.size());
+      assertEquals(2, chunks.get(0).getUpdateCounts().length);
+      assertEquals(2, chunks.get(1).getParameterObjects().size());
+
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(1, results.get(0).getUpdateCounts().length);
+      assertEquals(3, chunks.size());
+      sqlSession.commit();
+      assertEquals(5, mapper.countOrders("order"));
+    }
+  }
+
+  @Test
+  public void shouldExecuteEarlierStatementsBeforeFullStatement() {
+    sqlSessionFactory.getConfiguration().setBatchGroupingEnabled(true);
+    sqlSessionFactory.getConfiguration().setBatchStatementAutoFlushRows(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      List<String> executed = new ArrayList<>();
+      sqlSession.setBatchResultHandler(result -> executed.add(result.getMappedStatement().getId()));
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertOrder(1, "order");
+      mapper.insertLine(1, 1, "item");
+      mapper.insertLine(2, 1, "item");
+      // the order must be inserted before its lines
+      assertEquals(2, executed.size());
+      assertEquals(INSERT_ORDER, executed.get(0));
+      assertEquals(INSERT_LINE, executed.get(1));
+
+      mapper.insertOrder(2, "order");
+      mapper.insertLine(3, 2, "item");
+      assertEquals(2, sqlSession.flushStatements().size());
+      sqlSession.commit();
+      assertEquals(3, mapper.countLines());
+    }
+  }
+
+  @Test
+  public void shouldNotKeepAutoFlushedResultsWithHandler() {
+    sqlSessionFactory.getConfiguration().setBatchAutoFlushRows(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      List<int[]> updateCounts = new ArrayList<>();
+      sqlSession.setBatchResultHandler(result -> updateCounts.add(result.getUpdateCounts()));
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 5; i++) {
+        mapper.insertOrder(i, "order");
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(3, updateCounts.size());
+      sqlSession.commit();
+    }
+  }
+
+  @Test
+  public void shouldKeepAutoFlushedResultsWithoutHandler() {
+    sqlSessionFactory.getConfiguration().setBatchStatementAutoFlushRows(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 5; i++) {
+        mapper.insertOrder(i, "order");
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(1, results.get(2).getParameterObjects().size());
+      sqlSession.commit();
+    }
+  }
+
+}
@@ -0,0 +1,134 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_grouping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BatchGroupingTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_grouping/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/batch_grouping/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldCreateStatementPerRowWhenInterleavedByDefault() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      insertOrdersWithLines(sqlSession.getMapper(Mapper.class), 3);
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(6, results.size());
+      sqlSession.commit();
+    }
+  }
+
+  @Test
+  public void shouldGroupInterleavedInserts() {
+    sqlSessionFactory.getConfiguration().setBatchGroupingEnabled(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      insertOrdersWithLines(mapper, 3);
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(2, results.size());
+      assertEquals("org.apache.ibatis.submitted.batch_grouping.Mapper.insertOrder", results.get(0).getMappedStatement().getId());
+      assertEquals(3, results.get(0).getUpdateCounts().length);
+      assertEquals(3, results.get(1).getParameterObjects().size());
+      sqlSession.commit();
+      assertEquals(3, mapper.countOrders("order"));
+      assertEquals(3, mapper.countLines());
+    }
+  }
+
+  @Test
+  public void shouldNotMoveInsertsAcrossUpdates() {
+    sqlSessionFactory.getConfiguration().setBatchGroupingEnabled(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertOrder(1, "order");
+      mapper.insertOrder(2, "order");
+      mapper.renameOrders("renamed");
+      mapper.insertOrder(3, "order");
+      mapper.insertOrder(4, "order");
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(2, results.get(2).getParameterObjects().size());
+      sqlSession.commit();
+      assertEquals(2, mapper.countOrders("renamed"));
+      assertEquals(2, mapper.countOrders("order"));
+    }
+  }
+
+  @Test
+  public void shouldAutoFlushAfterMaxRows() {
+    sqlSessionFactory.getConfiguration().setBatchGroupingEnabled(true);
+    sqlSessionFactory.getConfiguration().setBatchAutoFlushRows(4);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      insertOrdersWithLines(sqlSession.getMapper(Mapper.class), 3);
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(4, results.size());
+      assertEquals(2, results.get(0).getParameterObjects().size());
+      assertEquals(2, results.get(1).getParameterObjects().size());
+      assertEquals(1, results.get(2).getParameterObjects().size());
+      assertEquals(1, results.get(3).getParameterObjects().size());
+      sqlSession.commit();
+    }
+  }
+
+  @Test
+  public void shouldAutoFlushAfterMaxBytes() {
+    sqlSessionFactory.getConfiguration().setBatchAutoFlushBytes(40);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 5; i++) {
+        // 8 bytes for the id and 20 bytes for the name
+        mapper.insertOrder(i, "0123456789");
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(2, results.get(0).getParameterObjects().size());
+      assertEquals(1, results.get(2).getParameterObjects().size());
+      sqlSession.commit();
+      assertEquals(5, mapper.countOrders("0123456789"));
+    }
+  }
+
+  private void insertOrdersWithLines(Mapper mapper, int count) {
+    for (int i = 1; i <= count; i++) {
+      mapper.insertOrder(i, "order");
+      mapper.insertLine(i, i, "item");
+    }
+  }
+
+}
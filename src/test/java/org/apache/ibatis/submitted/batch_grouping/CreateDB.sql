@@ -0,0 +1,30 @@
+--
+--    Copyright 2009-2019 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table order_line if exists;
+drop table orders if exists;
+
+create table orders (
+id int primary key,
+name varchar(16)
+);
+
+create table order_line (
+id int primary key,
+order_id int not null,
+item varchar(16),
+foreign key (order_id) references orders(id)
+);
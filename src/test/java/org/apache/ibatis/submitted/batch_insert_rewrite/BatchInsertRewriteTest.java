@@ -0,0 +1,113 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_insert_rewrite;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class BatchInsertRewriteTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_insert_rewrite/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    sqlSessionFactory.getConfiguration().setBatchInsertRewriteEnabled(true);
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/batch_insert_rewrite/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldRewriteIntoMultiRowInsertsAndAssignKeys() {
+    sqlSessionFactory.getConfiguration().setBatchInsertRewriteMaxRows(3);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = new ArrayList<>();
+      for (int i = 0; i < 7; i++) {
+        User user = new User("user" + i);
+        users.add(user);
+        mapper.insert(user);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(7, results.get(0).getParameterObjects().size());
+      assertEquals("[1, 1, 1, 1, 1, 1, 1]", Arrays.toString(results.get(0).getUpdateCounts()));
+      for (int i = 0; i < users.size(); i++) {
+        assertNotNull(users.get(i).getId());
+        assertEquals(users.get(0).getId() + i, users.get(i).getId().intValue());
+      }
+      sqlSession.commit();
+      assertEquals(7, mapper.count());
+      assertEquals("user6", mapper.selectName(users.get(6).getId()));
+    }
+  }
+
+  @Test
+  public void shouldLimitParametersPerStatement() {
+    sqlSessionFactory.getConfiguration().setBatchInsertRewriteMaxParameters(4);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 5; i++) {
+        User user = new User("user" + i);
+        user.setId(i);
+        mapper.insertWithId(user);
+      }
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(5, results.get(0).getUpdateCounts().length);
+      sqlSession.commit();
+      assertEquals(5, mapper.count());
+      assertEquals("user5", mapper.selectName(5));
+    }
+  }
+
+  @Test
+  public void shouldRewriteChunksWithStatementAutoFlush() {
+    sqlSessionFactory.getConfiguration().setBatchStatementAutoFlushRows(4);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      List<BatchResult> chunks = new ArrayList<>();
+      sqlSession.setBatchResultHandler(chunks::add);
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 0; i < 10; i++) {
+        mapper.insert(new User("user" + i));
+      }
+      assertEquals(2, chunks.size());
+      sqlSession.flushStatements();
+      assertEquals(3, chunks.size());
+      assertEquals(2, chunks.get(2).getUpdateCounts().length);
+      sqlSession.commit();
+      assertEquals(10, mapper.count());
+    }
+  }
+
+}
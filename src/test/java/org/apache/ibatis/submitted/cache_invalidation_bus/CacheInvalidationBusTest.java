@@ -0,0 +1,86 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_invalidation_bus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CacheInvalidationBusTest {
+
+  private SqlSessionFactory node1;
+  private SqlSessionFactory node2;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    node1 = newNode();
+    node2 = newNode();
+
+    BaseDataTest.runScript(node1.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/cache_invalidation_bus/CreateDB.sql");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    node1.getConfiguration().getCacheInvalidationBus().close();
+    node2.getConfiguration().getCacheInvalidationBus().close();
+  }
+
+  @Test
+  public void shouldClearCacheOfOtherNodeOnCommit() {
+    assertEquals("User1", selectName(node1));
+    assertEquals("User1", selectName(node2));
+    try (SqlSession sqlSession = node1.openSession()) {
+      sqlSession.getMapper(Mapper.class).updateName(1, "Updated");
+      assertEquals("User1", selectName(node2));
+      sqlSession.commit();
+    }
+    assertEquals("Updated", selectName(node2));
+    assertEquals("Updated", selectName(node1));
+  }
+
+  @Test
+  public void shouldNotPublishOnRollback() {
+    assertEquals("User1", selectName(node2));
+    try (SqlSession sqlSession = node1.openSession()) {
+      sqlSession.getMapper(Mapper.class).updateName(1, "Updated");
+      sqlSession.rollback();
+    }
+    assertEquals(1, node2.getConfiguration().getCache(Mapper.class.getName()).getSize());
+  }
+
+  private static SqlSessionFactory newNode() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_invalidation_bus/Config.xml")) {
+      return new SqlSessionFactoryBuilder().build(reader);
+    }
+  }
+
+  private static String selectName(SqlSessionFactory node) {
+    try (SqlSession sqlSession = node.openSession()) {
+      return sqlSession.getMapper(Mapper.class).selectName(1);
+    }
+  }
+
+}
@@ -0,0 +1,105 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.CacheStats;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CacheMetricsTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/cache_metrics/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/cache_metrics/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldCountSecondLevelCacheHitsAndMisses() {
+    for (int i = 0; i < 3; i++) {
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        assertEquals("User1", sqlSession.getMapper(Mapper.class).selectName(1));
+      }
+    }
+    CacheStats stats = sqlSessionFactory.getConfiguration().getCacheStats(Mapper.class.getName());
+    assertEquals(2, stats.getHitCount());
+    assertEquals(1, stats.getMissCount());
+    assertEquals(1, stats.getPutCount());
+    assertEquals(1, stats.getLoadCount());
+    assertTrue(stats.getTotalLoadTime() > 0);
+    assertEquals(1, stats.getSize());
+    assertEquals(2.0 / 3, stats.getHitRatio(), 0.0001);
+  }
+
+  @Test
+  public void shouldCountEvictions() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int id = 1; id <= 3; id++) {
+        mapper.selectName(id);
+      }
+    }
+    CacheStats stats = sqlSessionFactory.getConfiguration().getCacheStats().get(Mapper.class.getName());
+    assertEquals(3, stats.getPutCount());
+    assertEquals(1, stats.getEvictionCount());
+    assertEquals(2, stats.getSize());
+  }
+
+  @Test
+  public void shouldCountLocalCacheHitsAndMisses() {
+    Configuration configuration = sqlSessionFactory.getConfiguration();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.selectNameWithoutCache(1);
+      mapper.selectNameWithoutCache(1);
+      mapper.selectNameWithoutCache(2);
+    }
+    CacheStats stats = configuration.getLocalCacheStats();
+    assertEquals(1, stats.getHitCount());
+    assertEquals(2, stats.getMissCount());
+    assertEquals(2, stats.getPutCount());
+    assertEquals(2, stats.getLoadCount());
+    assertEquals(0, configuration.getCacheStats(Mapper.class.getName()).getRequestCount());
+  }
+
+  @Test
+  public void shouldNotCollectMetricsWhenDisabled() {
+    Configuration configuration = new Configuration();
+    configuration.addMapper(Mapper.class);
+    assertNull(configuration.getCacheStats(Mapper.class.getName()));
+    assertNull(configuration.getLocalCacheStats());
+    assertTrue(configuration.getCacheStats().isEmpty());
+  }
+
+}
@@ -0,0 +1,157 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.lazy_load_batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.submitted.parallel_nested_query.Dept;
+import org.apache.ibatis.submitted.parallel_nested_query.Mapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LazyLoadBatchTest {
+
+  private static final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/parallel_nested_query/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    sqlSessionFactory.getConfiguration().addInterceptor(new StatementRecorder());
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/parallel_nested_query/CreateDB.sql");
+    statements.clear();
+  }
+
+  @Test
+  public void shouldLoadEachPropertySeparately() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Dept> depts = sqlSession.getMapper(Mapper.class).selectDeptsLazily();
+      assertEquals("alice", depts.get(0).getManager().getName());
+      assertEquals("carol", depts.get(1).getManager().getName());
+      // depts, alice, phones of alice, carol, phones of carol
+      assertEquals(5, statements.size());
+    }
+  }
+
+  @Test
+  public void shouldLoadPropertyOfAllSiblingsOnFirstAccess() {
+    sqlSessionFactory.getConfiguration().setLazyLoadBatchSize(100);
+    sqlSessionFactory.getConfiguration().setNestedQueryBatchSize(100);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Dept> depts = sqlSession.getMapper(Mapper.class).selectDeptsLazily();
+      assertEquals("alice", depts.get(0).getManager().getName());
+      // depts, managers, phones of managers
+      assertEquals(3, statements.size());
+      assertEquals("select * from emp where id in (?, ?)", statements.get(1));
+      assertEquals("carol", depts.get(1).getManager().getName());
+      assertEquals("carol", depts.get(2).getManager().getName());
+      assertEquals("[300]", depts.get(2).getManager().getPhones().toString());
+      assertEquals(3, statements.size());
+
+      assertEquals("[dave[]]", depts.get(2).getEmps().toString());
+      assertEquals("[alice[100, 101], bob[]]", depts.get(0).getEmps().toString());
+      assertEquals("[carol[300]]", depts.get(1).getEmps().toString());
+      assertEquals(5, statements.size());
+      assertEquals("select * from emp where dept_id in (?, ?, ?) order by id", statements.get(3));
+    }
+  }
+
+  @Test
+  public void shouldLoadNextSiblingsOnly() {
+    sqlSessionFactory.getConfiguration().setLazyLoadBatchSize(2);
+    sqlSessionFactory.getConfiguration().setNestedQueryBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Dept> depts = sqlSession.getMapper(Mapper.class).selectDeptsLazily();
+      assertEquals("[carol[300]]", depts.get(1).getEmps().toString());
+      assertEquals("select * from emp where dept_id in (?, ?) order by id", statements.get(1));
+      assertEquals("[dave[]]", depts.get(2).getEmps().toString());
+      assertEquals(3, statements.size());
+      assertEquals("[alice[100, 101], bob[]]", depts.get(0).getEmps().toString());
+      assertEquals("select * from emp where dept_id in (?) order by id", statements.get(3));
+    }
+  }
+
+  @Test
+  public void shouldNotCacheSingleMemberBatchAsNestedQueryResult() {
+    sqlSessionFactory.getConfiguration().setLazyLoadBatchSize(2);
+    sqlSessionFactory.getConfiguration().setNestedQueryBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<Dept> depts = mapper.selectDeptsLazily();
+      assertEquals("[carol[300]]", depts.get(1).getEmps().toString());
+      // 最后一批只有 sales 一个对象
+      assertEquals("[alice[100, 101], bob[]]", depts.get(0).getEmps().toString());
+      assertEquals("[alice[100, 101], bob[]]", mapper.selectEmpsByDept(1).toString());
+    }
+  }
+
+  @Test
+  public void shouldLoadSiblingsAfterSessionIsClosed() {
+    sqlSessionFactory.getConfiguration().setLazyLoadBatchSize(100);
+    sqlSessionFactory.getConfiguration().setNestedQueryBatchSize(100);
+    List<Dept> depts;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      depts = sqlSession.getMapper(Mapper.class).selectDeptsLazily();
+    }
+    assertEquals("[carol[300]]", depts.get(1).getEmps().toString());
+    assertEquals("[alice[100, 101], bob[]]", depts.get(0).getEmps().toString());
+    assertEquals(3, statements.size());
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+  public static class StatementRecorder implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      statements.add(((StatementHandler) invocation.getTarget()).getBoundSql().getSql());
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+  }
+
+}
@@ -0,0 +1,37 @@
+--
+--    Copyright 2009-2019 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+
+drop table users if exists;
+drop table groups if exists;
+
+create table groups (
+id int,
+name varchar(16)
+);
+
+create table users (
+id int,
+name varchar(16),
+group_id int
+);
+
+insert into groups (id, name) values(1, 'Group1');
+insert into groups (id, name) values(2, 'Group2');
+
+insert into users (id, name, group_id) values(1, 'User1', 1);
+insert into users (id, name, group_id) values(2, 'User2', 1);
+insert into users (id, name, group_id) values(3, 'User3', 2);
@@ -0,0 +1,105 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.local_cache_bound;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LocalCacheBoundTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/local_cache_bound/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/local_cache_bound/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedQueries() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user1 = mapper.selectUser(1);
+      User user2 = mapper.selectUser(2);
+      assertSame(user1, mapper.selectUser(1));
+      mapper.selectUser(3);
+      assertSame(user1, mapper.selectUser(1));
+      User reloaded = mapper.selectUser(2);
+      assertNotSame(user2, reloaded);
+      assertEquals("User2", reloaded.getName());
+    }
+    assertEquals(2, sqlSessionFactory.getConfiguration().getLocalCacheStats().getEvictionCount());
+  }
+
+  @Test
+  public void shouldKeepNestedSelectsOfRegularQueries() {
+    sqlSessionFactory.getConfiguration().setLocalCacheMaxEntries(0);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = mapper.selectUsersWithGroup();
+      assertSame(users.get(0).getGroup(), users.get(1).getGroup());
+      assertSame(users.get(0).getGroup(), mapper.selectGroup(1));
+    }
+  }
+
+  @Test
+  public void shouldNotCacheNestedSelectsOfResultHandlerQueries() {
+    sqlSessionFactory.getConfiguration().setLocalCacheMaxEntries(0);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = new ArrayList<>();
+      mapper.selectUsersWithGroupHandler(context -> users.add(context.getResultObject()));
+      assertEquals(3, users.size());
+      assertEquals("Group1", users.get(1).getGroup().getName());
+      assertEquals("Group2", users.get(2).getGroup().getName());
+      assertNotSame(users.get(0).getGroup(), mapper.selectGroup(1));
+    }
+  }
+
+  @Test
+  public void shouldNotCacheNestedSelectsOfCursorQueries() throws Exception {
+    sqlSessionFactory.getConfiguration().setLocalCacheMaxEntries(0);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<User> users = new ArrayList<>();
+      try (Cursor<User> cursor = mapper.selectUsersWithGroupCursor()) {
+        cursor.forEach(users::add);
+      }
+      assertEquals(3, users.size());
+      assertEquals("Group2", users.get(2).getGroup().getName());
+      assertNotSame(users.get(0).getGroup(), mapper.selectGroup(1));
+    }
+  }
+
+}
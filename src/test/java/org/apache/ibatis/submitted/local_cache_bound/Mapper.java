@@ -0,0 +1,52 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.local_cache_bound;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.One;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.ResultMap;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
+
+public interface Mapper {
+
+  @Select("select id, name from users where id = #{id}")
+  User selectUser(int id);
+
+  @Select("select id, name from groups where id = #{id}")
+  Group selectGroup(int id);
+
+  @Select("select id, name, group_id from users order by id")
+  @Results(id = "userWithGroup", value = {
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "name", column = "name"),
+      @Result(property = "group", column = "group_id", one = @One(select = "selectGroup"))
+  })
+  List<User> selectUsersWithGroup();
+
+  @Select("select id, name, group_id from users order by id")
+  @ResultMap("userWithGroup")
+  void selectUsersWithGroupHandler(ResultHandler<User> handler);
+
+  @Select("select id, name, group_id from users order by id")
+  @ResultMap("userWithGroup")
+  Cursor<User> selectUsersWithGroupCursor();
+
+}
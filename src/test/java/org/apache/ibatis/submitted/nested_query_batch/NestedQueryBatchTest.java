@@ -0,0 +1,143 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.nested_query_batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.submitted.parallel_nested_query.Dept;
+import org.apache.ibatis.submitted.parallel_nested_query.Mapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class NestedQueryBatchTest {
+
+  private static final String EXPECTED = "[sales alice[100, 101] [alice[100, 101], bob[]], "
+      + "support carol[300] [carol[300]], research carol[300] [dave[]]]";
+
+  private static final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/parallel_nested_query/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    sqlSessionFactory.getConfiguration().addInterceptor(new StatementRecorder());
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/parallel_nested_query/CreateDB.sql");
+    statements.clear();
+  }
+
+  @Test
+  public void shouldLoadNestedQueriesOneByOne() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(EXPECTED, mapper.selectDepts().toString());
+    }
+    assertTrue(statements.size() > 5);
+  }
+
+  @Test
+  public void shouldBatchNestedQueriesIntoInListQueries() {
+    sqlSessionFactory.getConfiguration().setNestedQueryBatchSize(100);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(EXPECTED, mapper.selectDepts().toString());
+    }
+    // depts, managers, emps, phones of managers, phones of emps
+    assertEquals(5, statements.size());
+    assertTrue(statements.contains("select * from emp where id in (?, ?)"));
+    assertTrue(statements.contains("select * from emp where dept_id in (?, ?, ?) order by id"));
+    assertTrue(statements.contains("select num, emp_id from phone where emp_id in (?, ?, ?, ?) order by id"));
+  }
+
+  @Test
+  public void shouldSplitKeysIntoChunks() {
+    sqlSessionFactory.getConfiguration().setNestedQueryBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(EXPECTED, mapper.selectDepts().toString());
+    }
+    assertTrue(statements.contains("select * from emp where dept_id in (?, ?) order by id"));
+    assertTrue(statements.contains("select * from emp where dept_id in (?) order by id"));
+  }
+
+  @Test
+  public void shouldNotCacheSingleKeyChunkAsNestedQueryResult() {
+    sqlSessionFactory.getConfiguration().setNestedQueryBatchSize(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(EXPECTED, mapper.selectDepts().toString());
+      // 最后一组只有 research 一个参数
+      assertEquals("[dave[]]", mapper.selectEmpsByDept(3).toString());
+      assertEquals(EXPECTED, mapper.selectDepts().toString());
+    }
+  }
+
+  @Test
+  public void shouldLoadUnsupportedNestedQueriesOneByOne() {
+    sqlSessionFactory.getConfiguration().setNestedQueryBatchSize(100);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<Dept> depts = mapper.selectDeptsWithJoinedManager();
+      assertEquals("[sales alice[100, 101] null, support carol[300] null, research carol[300] null]", depts.toString());
+    }
+    // depts, alice, phones of alice, carol, phones of carol
+    assertEquals(5, statements.size());
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+  public static class StatementRecorder implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      statements.add(((StatementHandler) invocation.getTarget()).getBoundSql().getSql());
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+  }
+
+}
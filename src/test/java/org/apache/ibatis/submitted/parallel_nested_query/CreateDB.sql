@@ -0,0 +1,50 @@
+--
+--    Copyright 2009-2019 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table phone if exists;
+drop table emp if exists;
+drop table dept if exists;
+
+create table dept (
+id int,
+name varchar(16),
+manager_id int
+);
+
+create table emp (
+id int,
+name varchar(16),
+dept_id int
+);
+
+create table phone (
+id int,
+num varchar(16),
+emp_id int
+);
+
+insert into dept (id, name, manager_id) values (1, 'sales', 1);
+insert into dept (id, name, manager_id) values (2, 'support', 3);
+insert into dept (id, name, manager_id) values (3, 'research', 3);
+
+insert into emp (id, name, dept_id) values (1, 'alice', 1);
+insert into emp (id, name, dept_id) values (2, 'bob', 1);
+insert into emp (id, name, dept_id) values (3, 'carol', 2);
+insert into emp (id, name, dept_id) values (4, 'dave', 3);
+
+insert into phone (id, num, emp_id) values (1, '100', 1);
+insert into phone (id, num, emp_id) values (2, '101', 1);
+insert into phone (id, num, emp_id) values (3, '300', 3);
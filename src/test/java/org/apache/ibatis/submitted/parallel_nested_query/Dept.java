@@ -0,0 +1,63 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.parallel_nested_query;
+
+import java.util.List;
+
+public class Dept {
+
+  private Integer id;
+  private String name;
+  private Emp manager;
+  private List<Emp> emps;
+
+  public Integer getId() {
+    return id;
+  }
+
+  public void setId(Integer id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public Emp getManager() {
+    return manager;
+  }
+
+  public void setManager(Emp manager) {
+    this.manager = manager;
+  }
+
+  public List<Emp> getEmps() {
+    return emps;
+  }
+
+  public void setEmps(List<Emp> emps) {
+    this.emps = emps;
+  }
+
+  @Override
+  public String toString() {
+    return name + " " + manager + " " + emps;
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.parallel_nested_query;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Many;
+import org.apache.ibatis.annotations.One;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.ResultMap;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.FetchType;
+import org.apache.ibatis.session.ResultHandler;
+
+public interface Mapper {
+
+  @Results(id = "deptResult", value = {
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "name", column = "name"),
+      @Result(property = "manager", column = "manager_id", one = @One(select = "selectEmp")),
+      @Result(property = "emps", column = "id", many = @Many(select = "selectEmpsByDept"))
+  })
+  @Select("select * from dept order by id")
+  List<Dept> selectDepts();
+
+  @ResultMap("deptResult")
+  @Select("select * from dept order by id")
+  void selectDeptsWithHandler(ResultHandler<Dept> handler);
+
+  @Results(id = "lazyDeptResult", value = {
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "name", column = "name"),
+      @Result(property = "manager", column = "manager_id", one = @One(select = "selectEmp", fetchType = FetchType.LAZY)),
+      @Result(property = "emps", column = "id", many = @Many(select = "selectEmpsByDept", fetchType = FetchType.LAZY))
+  })
+  @Select("select * from dept order by id")
+  List<Dept> selectDeptsLazily();
+
+  @Results(id = "deptWithJoinedManagerResult", value = {
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "name", column = "name"),
+      @Result(property = "manager", column = "manager_id", one = @One(select = "selectManager"))
+  })
+  @Select("select * from dept order by id")
+  List<Dept> selectDeptsWithJoinedManager();
+
+  @ResultMap("empResult")
+  @Select("select e.* from emp e where e.id = #{id} and exists (select 1 from dept d where d.manager_id = e.id)")
+  Emp selectManager(int id);
+
+  @Results(id = "empResult", value = {
+      @Result(property = "id", column = "id", id = true),
+      @Result(property = "name", column = "name"),
+      @Result(property = "phones", column = "id", many = @Many(select = "selectPhones"))
+  })
+  @Select("select * from emp where id = #{id}")
+  Emp selectEmp(int id);
+
+  @ResultMap("empResult")
+  @Select("select * from emp where dept_id = #{deptId} order by id")
+  List<Emp> selectEmpsByDept(int deptId);
+
+  @Select("select num, emp_id from phone where emp_id = #{empId} order by id")
+  List<String> selectPhones(int empId);
+
+}
@@ -0,0 +1,114 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.parallel_nested_query;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.resultset.NestedQueryExecutor;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ParallelNestedQueryTest {
+
+  private static final String EXPECTED = "[sales alice[100, 101] [alice[100, 101], bob[]], "
+      + "support carol[300] [carol[300]], research carol[300] [dave[]]]";
+
+  private SqlSessionFactory sqlSessionFactory;
+  private NestedQueryExecutor nestedQueryExecutor;
+  private final AtomicInteger submittedTasks = new AtomicInteger();
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/parallel_nested_query/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/parallel_nested_query/CreateDB.sql");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (nestedQueryExecutor != null) {
+      nestedQueryExecutor.shutdown();
+    }
+  }
+
+  private void enableParallelism(int parallelism) {
+    nestedQueryExecutor = new NestedQueryExecutor(parallelism);
+    Executor countingExecutor = command -> {
+      submittedTasks.incrementAndGet();
+      nestedQueryExecutor.execute(command);
+    };
+    sqlSessionFactory.getConfiguration().setNestedQueryParallelism(parallelism);
+    sqlSessionFactory.getConfiguration().setNestedQueryExecutor(countingExecutor);
+  }
+
+  @Test
+  public void shouldLoadNestedQueriesSerially() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(EXPECTED, mapper.selectDepts().toString());
+    }
+  }
+
+  @Test
+  public void shouldLoadNestedQueriesInParallel() {
+    enableParallelism(4);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(EXPECTED, mapper.selectDepts().toString());
+    }
+    assertTrue(submittedTasks.get() > 0);
+  }
+
+  @Test
+  public void shouldNotDeadlockWhenNestedQueriesHaveNestedQueries() {
+    enableParallelism(1);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 0; i < 10; i++) {
+        assertEquals(EXPECTED, mapper.selectDepts().toString());
+        sqlSession.clearCache();
+      }
+    }
+  }
+
+  @Test
+  public void shouldLoadSeriallyWithResultHandler() {
+    enableParallelism(4);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      List<String> depts = new ArrayList<>();
+      mapper.selectDeptsWithHandler(context -> depts.add(context.getResultObject().toString()));
+      assertEquals(EXPECTED, depts.toString());
+    }
+  }
+
+}
@@ -0,0 +1,39 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.refresh_ahead;
+
+import java.util.Map;
+
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+@CacheNamespace(timeToLive = 2000, refreshAhead = 1500)
+public interface Mapper {
+
+  @Select("select name from users where id = #{id}")
+  String selectName(int id);
+
+  @Select("select name from users where id = #{id}")
+  String selectNameByParams(Map<String, Object> params);
+
+  @Update("update users set name = #{name} where id = #{id}")
+  @Options(flushCache = Options.FlushCachePolicy.FALSE)
+  void updateNameWithoutFlush(@Param("id") int id, @Param("name") String name);
+
+}
@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.refresh_ahead;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.CacheStats;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RefreshAheadTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/refresh_ahead/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/refresh_ahead/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldRefreshEntryInBackgroundBeforeItExpires() throws Exception {
+    assertEquals("User1", selectName(1));
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+      sqlSession.getMapper(Mapper.class).updateNameWithoutFlush(1, "Updated");
+    }
+    // 还没有进入提前刷新的时间窗口
+    assertEquals("User1", selectName(1));
+    Thread.sleep(700);
+    // 读取者仍然得到当前的值，同时在后台提前刷新
+    assertEquals("User1", selectName(1));
+    String name = "User1";
+    for (int i = 0; i < 40 && "User1".equals(name); i++) {
+      Thread.sleep(25);
+      name = selectName(1);
+    }
+    assertEquals("Updated", name);
+    // 始终没有过期，只有第一次读取未命中
+    CacheStats stats = sqlSessionFactory.getConfiguration().getCacheStats(Mapper.class.getName());
+    assertEquals(1, stats.getMissCount());
+    assertEquals(2, stats.getPutCount());
+  }
+
+  @Test
+  public void shouldRefreshWithParameterValuesReadBeforeReturning() throws Exception {
+    List<Runnable> refreshes = new ArrayList<>();
+    sqlSessionFactory.getConfiguration().setAsyncExecutor(refreshes::add);
+    Map<String, Object> params = new HashMap<>();
+    params.put("id", 1);
+    assertEquals("User1", selectNameByParams(params));
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(true)) {
+      sqlSession.getMapper(Mapper.class).updateNameWithoutFlush(1, "Updated");
+    }
+    Thread.sleep(700);
+    assertEquals("User1", selectNameByParams(params));
+    assertEquals(1, refreshes.size());
+    // 调用方在后台刷新执行之前，复用了参数对象
+    params.put("id", 2);
+    refreshes.get(0).run();
+    params.put("id", 1);
+    assertEquals("Updated", selectNameByParams(params));
+  }
+
+  private String selectName(int id) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(Mapper.class).selectName(id);
+    }
+  }
+
+  private String selectNameByParams(Map<String, Object> params) {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(Mapper.class).selectNameByParams(params);
+    }
+  }
+
+}
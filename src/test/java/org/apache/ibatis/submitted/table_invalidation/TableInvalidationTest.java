@@ -0,0 +1,135 @@
+/**
+ *    Copyright 2009-2019 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.table_invalidation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.cache.CacheStats;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TableInvalidationTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/table_invalidation/Config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+            "org/apache/ibatis/submitted/table_invalidation/CreateDB.sql");
+  }
+
+  @Test
+  public void shouldOnlyInvalidateEntriesDependingOnWrittenTables() {
+    populateCache();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      // 没有缓存的 namespace 写入的数据表，也会使缓存对象失效
+      sqlSession.getMapper(OrderMapper.class).insertOrder(2);
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals("User1", mapper.selectName(1));
+      assertEquals(2, mapper.countOrders(1));
+    }
+    assertStats(1, 3);
+  }
+
+  @Test
+  public void shouldInvalidateEntriesOfAllTablesTheyRead() {
+    populateCache();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(Mapper.class).updateName(2, "Updated");
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals("User1", mapper.selectName(1));
+      assertEquals(1, mapper.countOrders(1));
+      assertEquals("Updated", mapper.selectName(2));
+    }
+    // selectName(1) 和 countOrders(1) 都依赖 users 表
+    assertStats(0, 5);
+  }
+
+  @Test
+  public void shouldUseDeclaredTables() {
+    populateCache();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(Mapper.class).updateWithDeclaredTables("update users set name = 'Updated' where id = 1");
+      sqlSession.commit();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("Updated", sqlSession.getMapper(Mapper.class).selectName(1));
+    }
+    assertStats(0, 3);
+  }
+
+  @Test
+  public void shouldNotReturnEntriesOfTablesWrittenInCurrentTransaction() {
+    populateCache();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(OrderMapper.class).insertOrder(2);
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(2, mapper.countOrders(1));
+      assertEquals("User1", mapper.selectName(1));
+      sqlSession.rollback();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      // 回滚后，缓存对象仍然有效
+      assertEquals(1, sqlSession.getMapper(Mapper.class).countOrders(1));
+    }
+    assertStats(2, 3);
+  }
+
+  @Test
+  public void shouldFlushNamespaceWhenWrittenTablesAreUnknown() {
+    populateCache();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(Mapper.class).setSchema();
+      sqlSession.commit(true);
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("User1", sqlSession.getMapper(Mapper.class).selectName(1));
+    }
+    assertStats(0, 3);
+  }
+
+  private void populateCache() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals("User1", mapper.selectName(1));
+      assertEquals(1, mapper.countOrders(1));
+    }
+  }
+
+  private void assertStats(long hits, long misses) {
+    CacheStats stats = sqlSessionFactory.getConfiguration().getCacheStats(Mapper.class.getName());
+    assertEquals(hits, stats.getHitCount());
+    assertEquals(misses, stats.getMissCount());
+  }
+
+}